@@ -15,6 +15,13 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Export the Room schema of every version so migrations can be reviewed and tested
+        javaCompileOptions {
+            annotationProcessorOptions {
+                arguments["room.schemaLocation"] = "$projectDir/schemas"
+            }
+        }
     }
 
     buildTypes {
@@ -30,8 +37,13 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // Robolectric (Room migration tests) needs the merged resources and manifest
+        unitTests.isIncludeAndroidResources = true
+    }
     buildFeatures {
         viewBinding = true
+        buildConfig = true // BuildConfig.DEBUG gates network logging
     }
 }
 dependencies {
@@ -58,6 +70,9 @@ dependencies {
     implementation(libs.room.runtime.android)
 
     testImplementation(libs.junit)
+    testImplementation(libs.mockwebserver)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.test.core)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 
@@ -72,6 +87,9 @@ dependencies {
     implementation(libs.converter.gson)
     implementation(libs.logging.interceptor) // Or your preferred version
 
+    // WorkManager for the offline upload queue
+    implementation(libs.work.runtime)
+
     // Lottie for animations
     implementation(libs.lottie) // Or your preferred version
 
@@ -0,0 +1,248 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.View;
+import android.view.Window;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.Room;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.redyapp.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scroll benchmark for the history list, run on a device.
+ *
+ * Flings through a long history and reports, from FrameMetrics, how many frames missed their
+ * deadline, and how many objects the main thread allocated per row bound. Binding reads text
+ * formatted by HistoryPager in the background and reuses the listeners of each ViewHolder,
+ * so scrolling a long, paged history should cost about as much per row as scrolling a single
+ * page. Both are measured on the same device and compared, which catches a regression (e.g. a
+ * formatter or listener created in bind() again, or paging work on the main thread) without
+ * fixed limits that depend on the device. The numbers are logged under the tag of this class.
+ *
+ * The history lives in an in-memory database that replaces the app's own while the test runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryScrollBenchmarkTest {
+
+    private static final String TAG = "HistoryScrollBenchmark";
+    private static final int ROWS = 1500;
+    private static final int FLINGS = 12;
+    // The baseline: one page, so nothing is loaded while flinging
+    private static final int BASELINE_ROWS = HistoryPager.PAGE_SIZE - 1;
+    private static final int BASELINE_FLINGS = 6;
+
+    // Slack over the baseline: allocations and frame times vary from run to run
+    private static final double ALLOCATION_FACTOR = 1.5;
+    private static final double ALLOCATION_SLACK_PER_ROW = 20;
+    private static final double JANK_SLACK = 0.10;
+
+    private HistoryDatabase database;
+    private HistoryDatabase appDatabase;
+    private final Random random = new Random(7);
+    private final long now = System.currentTimeMillis();
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, HistoryDatabase.class).build();
+        appDatabase = HistoryDatabase.replaceInstance(database);
+    }
+
+    @After
+    public void tearDown() {
+        HistoryDatabase.replaceInstance(appDatabase);
+        database.close();
+    }
+
+    @Test
+    public void fling_costsNoMorePerRowThanASinglePage() throws InterruptedException {
+        insertRows(0, BASELINE_ROWS);
+        Measurement baseline = measureFlings(BASELINE_FLINGS);
+        insertRows(BASELINE_ROWS, ROWS);
+        Measurement history = measureFlings(FLINGS);
+        Log.i(TAG, "baseline: " + baseline);
+        Log.i(TAG, "history: " + history);
+
+        assertTrue("too few rows were bound", baseline.rowsBound > 0 && history.rowsBound > 100);
+        double allocationBound = baseline.allocationsPerRow() * ALLOCATION_FACTOR + ALLOCATION_SLACK_PER_ROW;
+        assertTrue("allocations per row: " + history.allocationsPerRow() + ", baseline " + baseline.allocationsPerRow(),
+                history.allocationsPerRow() <= allocationBound);
+        assertTrue("janky frame ratio: " + history.jankRatio() + ", baseline " + baseline.jankRatio(),
+                history.jankRatio() <= baseline.jankRatio() + JANK_SLACK);
+    }
+
+    /**
+     * Adds history rows, one minute apart and newest first, from index from up to index to.
+     */
+    private void insertRows(int from, int to) {
+        String[] labels = {"sweet", "not sweet", "very sweet", "low sweet"};
+        database.runInTransaction(() -> {
+            for (int i = from; i < to; i++) {
+                HistoryItem item = new HistoryItem(labels[i % labels.length], random.nextDouble(),
+                        null, new Date(now - i * 60_000L));
+                item.setNotes("scroll benchmark row");
+                item.setTags(i % 3 == 0 ? "market ripe" : null);
+                item.setDurationMs(5000);
+                byte[] peaks = new byte[256];
+                random.nextBytes(peaks);
+                item.setWaveform(peaks);
+                database.historyDao().insert(item);
+            }
+        });
+    }
+
+    /**
+     * Opens the history and flings down through it as pages load, then back up twice.
+     */
+    // Thread allocation counting is the only per-thread allocation counter; getDefaultDisplay()
+    // is kept for API 29
+    @SuppressWarnings("deprecation")
+    private Measurement measureFlings(int flings) throws InterruptedException {
+        AtomicInteger frames = new AtomicInteger();
+        AtomicInteger jankyFrames = new AtomicInteger();
+        AtomicInteger rowsBound = new AtomicInteger();
+        AtomicLong allocations = new AtomicLong();
+        AtomicLong frameBudgetNanos = new AtomicLong();
+        HandlerThread metricsThread = new HandlerThread("frame-metrics");
+        metricsThread.start();
+
+        try (ActivityScenario<HistoryActivity> scenario = ActivityScenario.launch(HistoryActivity.class)) {
+            // Wait for the first page
+            waitUntil(scenario, activity -> recyclerView(activity).getChildCount() > 0);
+
+            AtomicBoolean measuring = new AtomicBoolean(true);
+            Window.OnFrameMetricsAvailableListener frameListener = (window, metrics, dropCount) -> {
+                if (!measuring.get()) return;
+                frames.incrementAndGet();
+                if (metrics.getMetric(FrameMetrics.TOTAL_DURATION) > frameBudgetNanos.get()) jankyFrames.incrementAndGet();
+            };
+            RecyclerView.OnChildAttachStateChangeListener bindCounter = new RecyclerView.OnChildAttachStateChangeListener() {
+                @Override
+                public void onChildViewAttachedToWindow(View view) {
+                    rowsBound.incrementAndGet();
+                }
+
+                @Override
+                public void onChildViewDetachedFromWindow(View view) {
+                }
+            };
+            scenario.onActivity(activity -> {
+                // A frame is janky when it takes longer than one refresh interval
+                float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+                frameBudgetNanos.set((long) (1e9 / refreshRate));
+                activity.getWindow().addOnFrameMetricsAvailableListener(frameListener, new Handler(metricsThread.getLooper()));
+                recyclerView(activity).addOnChildAttachStateChangeListener(bindCounter);
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+            });
+
+            // Fling down through the pages as they load, then back up
+            for (int i = 0; i < flings; i++) {
+                int velocity = i < flings - 2 ? 8000 : -20000;
+                flingAndSettle(scenario, velocity);
+            }
+
+            scenario.onActivity(activity -> {
+                allocations.set(Debug.getThreadAllocCount());
+                Debug.stopAllocCounting();
+                recyclerView(activity).removeOnChildAttachStateChangeListener(bindCounter);
+                activity.getWindow().removeOnFrameMetricsAvailableListener(frameListener);
+            });
+            measuring.set(false);
+        } finally {
+            metricsThread.quitSafely();
+        }
+
+        return new Measurement(frames.get(), jankyFrames.get(), rowsBound.get(), allocations.get());
+    }
+
+    /**
+     * What one measureFlings() run saw.
+     */
+    private static final class Measurement {
+        final int frames;
+        final int jankyFrames;
+        final int rowsBound;
+        final long allocations;
+
+        Measurement(int frames, int jankyFrames, int rowsBound, long allocations) {
+            this.frames = frames;
+            this.jankyFrames = jankyFrames;
+            this.rowsBound = rowsBound;
+            this.allocations = allocations;
+        }
+
+        double allocationsPerRow() {
+            return (double) allocations / Math.max(1, rowsBound);
+        }
+
+        double jankRatio() {
+            return (double) jankyFrames / Math.max(1, frames);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("frames=%d janky=%d (%.1f%%) rowsBound=%d allocations=%d (%.1f per row)",
+                    frames, jankyFrames, jankRatio() * 100, rowsBound, allocations, allocationsPerRow());
+        }
+    }
+
+    private static RecyclerView recyclerView(HistoryActivity activity) {
+        return activity.findViewById(R.id.history_recycler_view);
+    }
+
+    /**
+     * Flings the list and waits until it stops scrolling.
+     */
+    private static void flingAndSettle(ActivityScenario<HistoryActivity> scenario, int velocity) throws InterruptedException {
+        CountDownLatch settled = new CountDownLatch(1);
+        RecyclerView.OnScrollListener idleListener = new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) settled.countDown();
+            }
+        };
+        scenario.onActivity(activity -> {
+            RecyclerView list = recyclerView(activity);
+            list.addOnScrollListener(idleListener);
+            if (!list.fling(0, velocity)) settled.countDown(); // Already at the end
+        });
+        settled.await(10, TimeUnit.SECONDS);
+        scenario.onActivity(activity -> recyclerView(activity).removeOnScrollListener(idleListener));
+    }
+
+    private static void waitUntil(ActivityScenario<HistoryActivity> scenario, Predicate<HistoryActivity> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        boolean[] met = {false};
+        while (!met[0] && System.currentTimeMillis() < deadline) {
+            scenario.onActivity(activity -> met[0] = condition.test(activity));
+            if (!met[0]) Thread.sleep(50);
+        }
+        assertTrue("timed out", met[0]);
+    }
+}
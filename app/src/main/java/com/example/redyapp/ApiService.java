@@ -1,37 +1,54 @@
 package com.example.redyapp;
 
+import java.util.List;
+
 import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
 import retrofit2.Call;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
 import retrofit2.http.Multipart;
 import retrofit2.http.POST;
 import retrofit2.http.Part;
 
 /**
  * ApiService is an interface that defines the API endpoints for making network requests.
- * It includes a method for making a prediction request.
- * The response is expected to be a PredictionResponse object.
+ * It includes methods for making a prediction request from an audio file or from
+ * precomputed log-mel features, for one recording or for a batch of them.
+ * The response is expected to be a PredictionResponse object (a list of them, in request
+ * order, for the batch endpoints).
  */
 public interface ApiService {
+    // Lightweight ping used to open (and keep) a connection before the first prediction;
+    // only the round trip matters, the response is ignored
+    @GET("health")
+    Call<Void> health();
+
     // Endpoint for making a prediction request with a file
     @Multipart
     @POST("predict")
     Call<PredictionResponse> predictWatermelonSweetness(
             @Part MultipartBody.Part file
     );
-}
 
-/**
- * PredictionResponse is a data class that represents the response from the prediction endpoint.
- * It includes the predicted label and its confidence.
- * This class is used to deserialize the JSON response from the server.
- * @see ApiService for the API endpoint
- */
-class PredictionResponse {
-    String predicted_label;
-    Double confidence;
+    // Endpoint for making a prediction request from on-device log-mel features
+    // (packed float16 frames, see Audio.LogMelEncoder for the layout)
+    @POST("predict/features")
+    Call<PredictionResponse> predictFromFeatures(
+            @Body RequestBody features
+    );
 
-    public String getPredictedLabel() { return predicted_label; }
-    public void setPredictedLabel(String predicted_label) { this.predicted_label = predicted_label; }
-    public Double getConfidence() { return confidence; }
-    public void setConfidence(Double confidence) { this.confidence = confidence; }
+    // Endpoint for scoring many audio files in one request ("files" parts)
+    @Multipart
+    @POST("predict/batch")
+    Call<List<PredictionResponse>> predictBatch(
+            @Part List<MultipartBody.Part> files
+    );
+
+    // Endpoint for scoring many log-mel feature blobs in one request ("features" parts)
+    @Multipart
+    @POST("predict/features/batch")
+    Call<List<PredictionResponse>> predictFeaturesBatch(
+            @Part List<MultipartBody.Part> features
+    );
 }
@@ -0,0 +1,215 @@
+package com.example.redyapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AppExecutors holds the application-wide background pools, so screens and components share
+ * a few bounded, long-lived pools instead of each creating (and leaking) its own threads:
+ *
+ * - diskIO(): file access and database reads
+ * - compute(): CPU-bound work such as DSP, feature extraction and inference
+ * - databaseWrite(): a single thread for every database write (history inserts and edits,
+ *   waveforms, prediction cache entries), so they run in the order they were submitted and never
+ *   wait on each other for SQLite's write lock. The background workers (upload queue, audio
+ *   compaction, history reconciliation) hand their writes to it as well and wait for each one
+ *   (see awaitDatabaseWrite())
+ * - scheduler(): a single daemon timer thread for delayed work, e.g. closing a batch window;
+ *   its tasks only hand work off to the other pools
+ * - mainThread(): posts to the UI thread
+ *
+ * Each pool is a MeteredExecutor that tracks queue depth and task latency.
+ * Components that need their tasks to run one at a time (because their state is not
+ * thread-safe) wrap a pool with serial() instead of owning a thread.
+ * Uses the Singleton pattern.
+ */
+public class AppExecutors {
+
+    private static final int DISK_IO_THREADS = 4;
+
+    // Volatile instance to ensure visibility across threads.
+    private static volatile AppExecutors instance;
+
+    private final MeteredExecutor diskIO;
+    private final MeteredExecutor compute;
+    private final MeteredExecutor databaseWrite;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Executor mainThread = new MainThreadExecutor();
+
+    private AppExecutors() {
+        // Leave a core for the UI and audio threads
+        int computeThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        diskIO = new MeteredExecutor("io", DISK_IO_THREADS, Process.THREAD_PRIORITY_BACKGROUND);
+        // The user is waiting on these results, so they run at normal priority
+        compute = new MeteredExecutor("compute", computeThreads, Process.THREAD_PRIORITY_DEFAULT);
+        databaseWrite = new MeteredExecutor("db-write", 1, Process.THREAD_PRIORITY_BACKGROUND);
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Like the other pools, an idle app holds no timer thread; canceled timers are dropped at once
+        scheduler.setKeepAliveTime(30, TimeUnit.SECONDS);
+        scheduler.allowCoreThreadTimeOut(true);
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @return The singleton AppExecutors instance.
+     */
+    public static AppExecutors getInstance() {
+        if (instance == null) {
+            // Use a synchronized block to prevent race conditions during instantiation.
+            synchronized (AppExecutors.class) {
+                if (instance == null) {
+                    instance = new AppExecutors();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public MeteredExecutor diskIO() {
+        return diskIO;
+    }
+
+    public MeteredExecutor compute() {
+        return compute;
+    }
+
+    public MeteredExecutor databaseWrite() {
+        return databaseWrite;
+    }
+
+    /**
+     * Runs a database write on databaseWrite() and blocks until it is done, for background
+     * workers that need the outcome before they go on. The wait is not cut short by an
+     * interrupt, since the write runs anyway; the interrupt is kept for the caller.
+     * Must not be called on the writer thread itself.
+     *
+     * @param write The write.
+     * @return What the write returned, e.g. the number of updated rows.
+     */
+    public <T> T awaitDatabaseWrite(Callable<T> write) {
+        FutureTask<T> future = new FutureTask<>(write);
+        databaseWrite.execute(future);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    // Rethrow the write's own failure on the worker thread
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Like awaitDatabaseWrite(Callable), for writes without a result.
+     */
+    public void awaitDatabaseWrite(Runnable write) {
+        awaitDatabaseWrite(Executors.callable(write));
+    }
+
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    /**
+     * Creates an executor that runs its tasks one at a time, in submission order, on a shared
+     * pool. It holds no thread of its own, so it can be created per component.
+     *
+     * @param pool The pool to run the tasks on.
+     * @return The serial executor.
+     */
+    public static Executor serial(Executor pool) {
+        return new SerialExecutor(pool);
+    }
+
+    /**
+     * @return A summary of every pool, for logs and diagnostics.
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        return diskIO + "; " + compute + "; " + databaseWrite;
+    }
+
+    private static class MainThreadExecutor implements Executor {
+        private Handler handler;
+
+        @Override
+        public synchronized void execute(@NonNull Runnable task) {
+            if (handler == null) handler = new Handler(Looper.getMainLooper());
+            handler.post(task);
+        }
+    }
+
+    private static class SerialExecutor implements Executor {
+        private final Executor pool;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+
+        SerialExecutor(Executor pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable task) {
+            tasks.add(task);
+            if (!running) {
+                running = true;
+                pool.execute(this::drain);
+            }
+        }
+
+        // Runs one task, then hands the next one back to the pool so other work can interleave
+        private void drain() {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+                if (task == null) {
+                    running = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } finally {
+                synchronized (this) {
+                    if (tasks.isEmpty()) {
+                        running = false;
+                    } else {
+                        pool.execute(this::drain);
+                    }
+                }
+            }
+        }
+    }
+}
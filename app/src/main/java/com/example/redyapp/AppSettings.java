@@ -0,0 +1,93 @@
+package com.example.redyapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.redyapp.Prediction.PredictorPolicy;
+
+/**
+ * AppSettings wraps the SharedPreferences that hold the user-facing options
+ * from SettingsActivity, so every screen reads them with the same keys and defaults.
+ */
+public class AppSettings {
+
+    private static final String PREFS_NAME = "redy_settings";
+    private static final String KEY_SEND_FEATURES = "send_features";
+    private static final String KEY_PREDICTOR_POLICY = "predictor_policy";
+    private static final String KEY_STREAM_UPLOAD = "stream_upload";
+    private static final String KEY_LIVE_TAP_SCORING = "live_tap_scoring";
+    private static final String KEY_AUDIO_STORAGE_BUDGET_MB = "audio_storage_budget_mb";
+
+    // Default space for history recordings; a compacted tap recording takes about 30 KB
+    public static final int DEFAULT_AUDIO_STORAGE_BUDGET_MB = 250;
+
+    private final SharedPreferences prefs;
+
+    public AppSettings(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return true if recordings should be sent as compact on-device log-mel features
+     *         instead of the raw WAV file.
+     */
+    public boolean isSendFeaturesEnabled() {
+        return prefs.getBoolean(KEY_SEND_FEATURES, false);
+    }
+
+    public void setSendFeaturesEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_SEND_FEATURES, enabled).apply();
+    }
+
+    /**
+     * @return true if recordings should be uploaded to the backend while they are captured.
+     */
+    public boolean isStreamUploadEnabled() {
+        return prefs.getBoolean(KEY_STREAM_UPLOAD, false);
+    }
+
+    public void setStreamUploadEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_STREAM_UPLOAD, enabled).apply();
+    }
+
+    /**
+     * @return true if the taps of a recording should be scored while it is still captured.
+     *         Not used while recordings are uploaded during capture.
+     */
+    public boolean isLiveTapScoringEnabled() {
+        return prefs.getBoolean(KEY_LIVE_TAP_SCORING, false);
+    }
+
+    public void setLiveTapScoringEnabled(boolean enabled) {
+        prefs.edit().putBoolean(KEY_LIVE_TAP_SCORING, enabled).apply();
+    }
+
+    /**
+     * @return How predictions choose between the on-device model and the backend.
+     *         Defaults to REMOTE_FIRST, which matches the behavior without a local model.
+     */
+    public PredictorPolicy getPredictorPolicy() {
+        String name = prefs.getString(KEY_PREDICTOR_POLICY, PredictorPolicy.REMOTE_FIRST.name());
+        try {
+            return PredictorPolicy.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return PredictorPolicy.REMOTE_FIRST;
+        }
+    }
+
+    public void setPredictorPolicy(PredictorPolicy policy) {
+        prefs.edit().putString(KEY_PREDICTOR_POLICY, policy.name()).apply();
+    }
+
+    /**
+     * @return The space history recordings may take, in megabytes (0 for no limit).
+     *         Beyond it AudioCompactionWorker deletes the least recently used recordings.
+     */
+    public int getAudioStorageBudgetMb() {
+        return prefs.getInt(KEY_AUDIO_STORAGE_BUDGET_MB, DEFAULT_AUDIO_STORAGE_BUDGET_MB);
+    }
+
+    public void setAudioStorageBudgetMb(int megabytes) {
+        prefs.edit().putInt(KEY_AUDIO_STORAGE_BUDGET_MB, megabytes).apply();
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.redyapp.Audio;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Encodes a 16-bit PCM WAV recording to AAC-LC in an MPEG-4 (.m4a) file with MediaCodec and
+ * MediaMuxer. At the default bitrate a tap recording shrinks about 10x, and the result is
+ * still played back (see AudioDecoder) like the original.
+ */
+public final class AacEncoder {
+
+    public static final String MIME_TYPE = MediaFormat.MIMETYPE_AUDIO_AAC;
+    // Mono speech-grade bitrate; plenty for listening back to a tap
+    private static final int BIT_RATE = 48_000;
+    private static final long TIMEOUT_US = 10_000;
+    // Encoding runs far faster than real time; a codec still busy after the length of the
+    // audio plus this margin is stuck and is given up
+    private static final long DEADLINE_MARGIN_MS = 10_000;
+
+    private AacEncoder() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Encodes a WAV file. Blocking, call off the main thread.
+     *
+     * @param wav The 16-bit PCM WAV file to read (mixed down to mono).
+     * @param output The .m4a file to write; deleted again if encoding fails.
+     * @throws IOException If the WAV cannot be read, the encoder or muxer fails, or the encoder
+     *                     does not finish in time.
+     */
+    public static void encode(File wav, File output) throws IOException {
+        PcmAudio audio = WavReader.read(wav);
+        MediaCodec codec = null;
+        MediaMuxer muxer = null;
+        boolean muxerStarted = false;
+        try {
+            MediaFormat format = MediaFormat.createAudioFormat(MIME_TYPE, audio.getSampleRate(), 1);
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+            codec = MediaCodec.createEncoderByType(MIME_TYPE);
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+            muxer = new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+
+            short[] samples = audio.getSamples();
+            int sampleCount = audio.getSampleCount();
+            int nextSample = 0;
+            boolean inputDone = false;
+            int track = -1;
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            long deadline = SystemClock.elapsedRealtime() + audio.getDurationMs() + DEADLINE_MARGIN_MS;
+            while (true) {
+                if (SystemClock.elapsedRealtime() > deadline) {
+                    throw new IOException("AAC encoder did not finish in time");
+                }
+                // Feed as much PCM as the encoder takes
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inputIndex);
+                        input.clear();
+                        input.order(ByteOrder.LITTLE_ENDIAN);
+                        int count = Math.min(sampleCount - nextSample, input.remaining() / 2);
+                        input.asShortBuffer().put(samples, nextSample, count);
+                        long presentationUs = nextSample * 1_000_000L / audio.getSampleRate();
+                        nextSample += count;
+                        inputDone = nextSample >= sampleCount;
+                        codec.queueInputBuffer(inputIndex, 0, count * 2, presentationUs,
+                                inputDone ? MediaCodec.BUFFER_FLAG_END_OF_STREAM : 0);
+                    }
+                }
+
+                // Move encoded frames to the muxer
+                int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    track = muxer.addTrack(codec.getOutputFormat());
+                    muxer.start();
+                    muxerStarted = true;
+                } else if (outputIndex >= 0) {
+                    ByteBuffer encoded = codec.getOutputBuffer(outputIndex);
+                    // The codec config (ASC) is carried by the track format, not written as a sample
+                    boolean isConfig = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+                    if (!isConfig && info.size > 0 && muxerStarted) {
+                        encoded.position(info.offset).limit(info.offset + info.size);
+                        muxer.writeSampleData(track, encoded, info);
+                    }
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) break;
+                }
+            }
+            if (!muxerStarted) throw new IOException("Encoder produced no output");
+            // Stopping writes the MP4 index; a failure here means an unplayable file
+            muxerStarted = false;
+            muxer.stop();
+        } catch (IOException | RuntimeException e) {
+            // MediaCodec and MediaMuxer report failures as IllegalStateException
+            output.delete();
+            throw e instanceof IOException ? (IOException) e : new IOException("AAC encoding failed", e);
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            if (muxer != null) {
+                try {
+                    if (muxerStarted) muxer.stop();
+                } catch (IllegalStateException ignored) {
+                    // Already failing, the file is deleted above
+                }
+                muxer.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package com.example.redyapp.Audio;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * AudioCaptureEngine records raw 16-bit PCM from the microphone with AudioRecord.
+ *
+ * This class:
+ * 1. Reads fixed-size chunks on a dedicated high-priority audio thread
+ * 2. Stores the samples in a preallocated direct ByteBuffer ring (no allocations while capturing)
+ * 3. Runs an OnsetDetector on every chunk and stops by itself once enough taps were heard
+ * 4. Writes a real RIFF/WAV file (header computed once) holding only a short pre/post-roll
+ *    around each tap, or the whole capture if no tap was detected. A "taps" chunk after the
+ *    audio marks each window and where its tap was in the capture (see WavHeader.TAP_CHUNK_ID)
+ * 5. Reports the finished file or an error back on the main thread
+ * 6. Reports each tap window as soon as its post-roll is captured (see TapWindowObserver), so
+ *    the taps can be scored while the recording is still in progress
+ * 7. Optionally forwards every chunk to a PcmStream as it is read (see openStream()), so the
+ *    recording can be uploaded while it is still in progress
+ * 8. Publishes how much was captured after every chunk, so another thread can read the newest
+ *    samples straight from the ring while capturing (see readLatest() and ChunkObserver)
+ *
+ * Compared to MediaRecorder with AMR_NB this avoids the lossy encoder on the device
+ * and the decode step on the server, and the capture latency is fixed by the chunk size.
+ */
+public class AudioCaptureEngine {
+
+    /**
+     * Callback for the progress and result of a capture. All methods are called on the main thread.
+     */
+    public interface Listener {
+        void onTapDetected(int tapCount);
+        void onCaptureComplete(File wavFile);
+        void onCaptureError(String message);
+    }
+
+    /**
+     * Notified on the capture thread after each chunk is stored in the ring.
+     * Must return at once (e.g. wake another thread) so the capture timing is not disturbed.
+     */
+    public interface ChunkObserver {
+        void onChunkCaptured();
+    }
+
+    /**
+     * Notified on the capture thread once the window around a tap is complete, with the window
+     * exactly as it will be written to the WAV file. Must return at once; the window can be
+     * copied with readCaptured() from another thread.
+     */
+    public interface TapWindowObserver {
+        /**
+         * @param index The index of the window in the file.
+         * @param fromByte The first byte of the window, as an offset from the start of the capture.
+         * @param toByte The end of the window (exclusive).
+         */
+        void onTapWindow(int index, long fromByte, long toByte);
+    }
+
+    // Capture format: 16 kHz mono 16-bit PCM, which is what the prediction model expects
+    public static final int SAMPLE_RATE = 16000;
+    public static final int CHANNELS = 1;
+    public static final int BITS_PER_SAMPLE = 16;
+    public static final int BYTES_PER_FRAME = CHANNELS * BITS_PER_SAMPLE / 8;
+    // Each AudioRecord read covers 20 ms of audio
+    private static final int CHUNK_MS = 20;
+    // Audio kept before and after each detected tap
+    private static final int PRE_ROLL_MS = 50;
+    private static final int POST_ROLL_MS = 250;
+    // Two taps closer than this are treated as one
+    private static final int REFRACTORY_MS = 150;
+    // Upper bound on remembered onsets when no tap target is set
+    private static final int MAX_ONSETS = 16;
+    private static final String TAG = "AudioCaptureEngine";
+
+    private final File outputFile;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Preallocated storage, sized once for the longest allowed capture
+    private final int chunkBytes;
+    private final ByteBuffer chunkBuffer;
+    private final ByteBuffer ring;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(WavHeader.HEADER_SIZE);
+    private final ByteBuffer tapChunk;
+
+    // Onset tracking: byte offsets (from the start of the capture) of every detected tap
+    private final OnsetDetector onsetDetector = new OnsetDetector(SAMPLE_RATE, REFRACTORY_MS);
+    private final int targetTaps;
+    private final long[] onsetBytes;
+    private final int preRollBytes = SAMPLE_RATE * BYTES_PER_FRAME * PRE_ROLL_MS / 1000;
+    private final int postRollBytes = SAMPLE_RATE * BYTES_PER_FRAME * POST_ROLL_MS / 1000;
+    private int onsetCount;
+    // Windows kept around the taps, as byte offsets from the start of the capture. A window is
+    // fixed once its post-roll is captured; windows of close taps are merged
+    private final long[] windowFrom;
+    private final long[] windowTo;
+    private final long[] windowOnset;
+    private int windowCount;
+    // Onsets whose window was fixed (or dropped, when merged away)
+    private int closedOnsets;
+
+    private AudioRecord audioRecord;
+    private Thread captureThread;
+    // Live copy of the capture for streaming uploads, null unless openStream() was called
+    private volatile PcmStream pcmStream;
+    // Total number of PCM bytes read since start, may exceed the ring capacity
+    private long totalBytesCaptured;
+    // totalBytesCaptured, written after each chunk is in the ring, for readers on other threads
+    private volatile long publishedBytes;
+    private volatile ChunkObserver chunkObserver;
+    private volatile TapWindowObserver tapWindowObserver;
+    // Flags written from the main thread and read by the capture thread
+    private volatile boolean stopRequested = false;
+    private volatile boolean canceled = false;
+
+    /**
+     * Creates a capture engine. Nothing is recorded until start() is called.
+     *
+     * @param outputFile The WAV file to write when the capture is stopped.
+     * @param maxDurationMs The longest capture to keep; older audio is overwritten beyond this.
+     * @param targetTaps Stop automatically after this many taps (post-roll included), 0 to disable.
+     * @param listener Receives tap updates, the finished file or an error on the main thread.
+     */
+    public AudioCaptureEngine(File outputFile, long maxDurationMs, int targetTaps, Listener listener) {
+        this.outputFile = outputFile;
+        this.listener = listener;
+        this.targetTaps = targetTaps;
+        this.onsetBytes = new long[targetTaps > 0 ? targetTaps : MAX_ONSETS];
+        this.windowFrom = new long[onsetBytes.length];
+        this.windowTo = new long[onsetBytes.length];
+        this.windowOnset = new long[onsetBytes.length];
+        this.tapChunk = ByteBuffer.allocateDirect(WavHeader.tapChunkSize(onsetBytes.length)).order(ByteOrder.LITTLE_ENDIAN);
+        this.chunkBytes = SAMPLE_RATE * BYTES_PER_FRAME * CHUNK_MS / 1000;
+        int chunkCount = (int) Math.max(1, (maxDurationMs + CHUNK_MS - 1) / CHUNK_MS);
+        this.chunkBuffer = ByteBuffer.allocateDirect(chunkBytes).order(ByteOrder.LITTLE_ENDIAN);
+        this.ring = ByteBuffer.allocateDirect(chunkBytes * chunkCount).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Opens the microphone and starts the capture thread.
+     * The caller is responsible for holding the RECORD_AUDIO permission.
+     *
+     * @return true if the recorder started, false if the device refused to open the microphone.
+     */
+    @SuppressLint("MissingPermission")
+    public boolean start() {
+        if (captureThread != null) return false;
+        int minBufferSize = AudioRecord.getMinBufferSize(SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferSize <= 0) {
+            Log.e(TAG, "Unsupported capture format, getMinBufferSize returned " + minBufferSize);
+            return false;
+        }
+        // Give the driver a few chunks of headroom so reads never starve
+        int bufferSize = Math.max(minBufferSize, chunkBytes * 4);
+        audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, SAMPLE_RATE,
+                AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT, bufferSize);
+        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            Log.e(TAG, "AudioRecord failed to initialize");
+            releaseRecorder();
+            return false;
+        }
+        try {
+            audioRecord.startRecording();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "AudioRecord startRecording() failed: " + e.getMessage());
+            releaseRecorder();
+            return false;
+        }
+
+        ring.clear();
+        totalBytesCaptured = 0;
+        publishedBytes = 0;
+        onsetDetector.reset();
+        onsetCount = 0;
+        windowCount = 0;
+        closedOnsets = 0;
+        stopRequested = false;
+        canceled = false;
+        captureThread = new Thread(this::captureLoop, "AudioCapture");
+        captureThread.start();
+        return true;
+    }
+
+    /**
+     * Creates a stream that receives every captured chunk as it is read, from the start of
+     * the capture (the whole recording, not only the windows kept in the WAV file).
+     * The stream is closed when the capture ends and aborted if it is canceled or fails.
+     * Must be called before start().
+     *
+     * @return The live PCM stream.
+     */
+    public PcmStream openStream() {
+        if (captureThread != null) throw new IllegalStateException("Capture already started");
+        pcmStream = new PcmStream(chunkBytes);
+        return pcmStream;
+    }
+
+    /**
+     * @param observer Notified after every captured chunk, or null to stop notifications.
+     *                 May be set at any time.
+     */
+    public void setChunkObserver(ChunkObserver observer) {
+        chunkObserver = observer;
+    }
+
+    /**
+     * @param observer Notified of every tap window, or null to stop notifications.
+     *                 Set it before start() to see every window.
+     */
+    public void setTapWindowObserver(TapWindowObserver observer) {
+        tapWindowObserver = observer;
+    }
+
+    /**
+     * @return The number of PCM bytes captured so far. Any thread.
+     */
+    public long getCapturedBytes() {
+        return publishedBytes;
+    }
+
+    /**
+     * Copies the newest captured samples, from any thread, while the capture runs.
+     * Reads the ring in place: the published part is never written again until the ring
+     * wraps around, which is a whole capture later.
+     *
+     * @param dest Receives the samples, oldest first; zeros where the capture is shorter.
+     * @param count The number of samples to copy.
+     * @return The number of captured samples copied.
+     */
+    public int readLatest(short[] dest, int count) {
+        long end = publishedBytes;
+        int capacity = ring.capacity();
+        // The chunk being read next overwrites the oldest part of the ring
+        long available = Math.min(end, Math.max(0, capacity - chunkBytes)) / BYTES_PER_FRAME;
+        int copied = (int) Math.min(count, available);
+        int missing = count - copied;
+        for (int i = 0; i < missing; i++) {
+            dest[i] = 0;
+        }
+        long from = end - (long) copied * BYTES_PER_FRAME;
+        for (int i = 0; i < copied; i++) {
+            dest[missing + i] = ring.getShort((int) ((from + (long) i * BYTES_PER_FRAME) % capacity));
+        }
+        return copied;
+    }
+
+    /**
+     * Copies a range of the capture, from any thread, e.g. a window reported to the
+     * TapWindowObserver. Like readLatest(), reads the ring in place, so the range must be
+     * published already and not older than the ring.
+     *
+     * @param fromByte The first byte, as an offset from the start of the capture.
+     * @param toByte The end of the range (exclusive).
+     * @param dest Receives the bytes at its position.
+     */
+    public void readCaptured(long fromByte, long toByte, ByteBuffer dest) {
+        int capacity = ring.capacity();
+        while (fromByte < toByte) {
+            int start = (int) (fromByte % capacity);
+            int count = (int) Math.min(toByte - fromByte, capacity - start);
+            dest.put(slice(start, start + count));
+            fromByte += count;
+        }
+    }
+
+    /**
+     * Stops the capture and writes the WAV file in the background.
+     * The listener is notified once the file is complete.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Stops the capture and discards everything that was recorded.
+     * The listener is not notified.
+     */
+    public void cancel() {
+        canceled = true;
+        stopRequested = true;
+    }
+
+    /**
+     * @return true while the capture thread is running.
+     */
+    public boolean isCapturing() {
+        return captureThread != null && captureThread.isAlive();
+    }
+
+    /**
+     * Body of the capture thread: reads chunks until stop() or cancel() is called,
+     * then finalizes the WAV file.
+     */
+    private void captureLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        String error = null;
+        try {
+            while (!stopRequested) {
+                chunkBuffer.clear();
+                int read = audioRecord.read(chunkBuffer, chunkBytes, AudioRecord.READ_BLOCKING);
+                if (read < 0) {
+                    error = "AudioRecord read failed with code " + read;
+                    break;
+                }
+                chunkBuffer.limit(read);
+                if (pcmStream != null) pcmStream.write(chunkBuffer);
+                detectOnset(chunkBuffer);
+                appendToRing(chunkBuffer);
+                publishedBytes = totalBytesCaptured;
+                ChunkObserver observer = chunkObserver;
+                if (observer != null) observer.onChunkCaptured();
+                closeTapWindows(false);
+                if (hasEnoughTaps()) {
+                    // All requested taps and their post-roll are in the ring, stop early
+                    break;
+                }
+            }
+        } finally {
+            releaseRecorder();
+            // End the live stream right away so a streaming upload completes without waiting for the file
+            if (pcmStream != null) {
+                if (canceled || error != null) {
+                    pcmStream.abort();
+                } else {
+                    pcmStream.close();
+                }
+            }
+        }
+
+        if (canceled) {
+            return;
+        }
+        if (error == null) {
+            try {
+                writeWavFile();
+            } catch (IOException e) {
+                error = "Failed to write WAV file: " + e.getMessage();
+            }
+        }
+
+        final String finalError = error;
+        mainHandler.post(() -> {
+            captureThread = null;
+            if (canceled) return;
+            if (finalError != null) {
+                Log.e(TAG, finalError);
+                listener.onCaptureError(finalError);
+            } else {
+                listener.onCaptureComplete(outputFile);
+            }
+        });
+    }
+
+    /**
+     * Runs the onset detector on a chunk and records the tap position if one is found.
+     * The chunk position is left untouched.
+     */
+    private void detectOnset(ByteBuffer chunk) {
+        long onsetSample = onsetDetector.process(chunk);
+        if (onsetSample < 0 || onsetCount >= onsetBytes.length) return;
+        onsetBytes[onsetCount++] = onsetSample * BYTES_PER_FRAME;
+        final int tapCount = onsetCount;
+        mainHandler.post(() -> {
+            if (!canceled) listener.onTapDetected(tapCount);
+        });
+    }
+
+    /**
+     * @return true once the target number of taps was detected and the last tap's post-roll was captured.
+     */
+    private boolean hasEnoughTaps() {
+        return targetTaps > 0
+                && onsetCount >= targetTaps
+                && totalBytesCaptured >= onsetBytes[onsetCount - 1] + postRollBytes;
+    }
+
+    /**
+     * Fixes the window kept around each tap whose post-roll is captured, or around every
+     * remaining tap once the capture ended, and reports it to the TapWindowObserver.
+     * A window starts at its pre-roll, or where the previous window ended if that is later.
+     *
+     * @param captureEnded true to close the windows of taps whose post-roll was cut short.
+     */
+    private void closeTapWindows(boolean captureEnded) {
+        // Oldest byte offset still held by the ring
+        long oldest = Math.max(0, totalBytesCaptured - ring.capacity());
+        while (closedOnsets < onsetCount) {
+            long onset = onsetBytes[closedOnsets];
+            if (!captureEnded && totalBytesCaptured < onset + postRollBytes) return;
+            closedOnsets++;
+            long windowEnd = windowCount > 0 ? windowTo[windowCount - 1] : oldest;
+            long from = Math.max(windowEnd, Math.max(oldest, onset - preRollBytes));
+            long to = Math.min(totalBytesCaptured, onset + postRollBytes);
+            if (to <= from) continue;
+            windowFrom[windowCount] = from;
+            windowTo[windowCount] = to;
+            windowOnset[windowCount] = onset;
+            int index = windowCount++;
+            TapWindowObserver observer = tapWindowObserver;
+            if (observer != null) observer.onTapWindow(index, from, to);
+        }
+    }
+
+    /**
+     * Copies a chunk into the ring, wrapping around and overwriting the oldest audio when full.
+     *
+     * @param chunk The freshly read chunk, positioned at 0 with its limit at the number of bytes read.
+     */
+    private void appendToRing(ByteBuffer chunk) {
+        int remaining = chunk.remaining();
+        totalBytesCaptured += remaining;
+        while (chunk.hasRemaining()) {
+            if (!ring.hasRemaining()) ring.clear();
+            int count = Math.min(chunk.remaining(), ring.remaining());
+            int oldLimit = chunk.limit();
+            chunk.limit(chunk.position() + count);
+            ring.put(chunk);
+            chunk.limit(oldLimit);
+        }
+    }
+
+    /**
+     * Writes the header followed by the audio to keep, in chronological order.
+     * When taps were detected only the windows around them are kept (see closeTapWindows()),
+     * followed by the "taps" chunk that marks them; otherwise, or when every window was
+     * overwritten in a long capture, the whole ring is written.
+     */
+    private void writeWavFile() throws IOException {
+        closeTapWindows(true);
+        // Oldest byte offset still held by the ring
+        long oldest = Math.max(0, totalBytesCaptured - ring.capacity());
+
+        // First pass: total payload size and the tap chunk, so the header is computed exactly once
+        long dataBytes = 0;
+        int trailingBytes = 0;
+        int kept = 0;
+        if (onsetCount > 0) {
+            tapChunk.clear();
+            tapChunk.putInt(WavHeader.TAP_CHUNK_ID).putInt(0).putInt(0);
+            for (int i = 0; i < windowCount; i++) {
+                // Windows fixed early may have been overwritten since in a long capture
+                long from = Math.max(oldest, windowFrom[i]);
+                if (windowTo[i] <= from) continue;
+                tapChunk.putInt((int) (dataBytes / BYTES_PER_FRAME))
+                        .putInt((int) ((windowTo[i] - from) / BYTES_PER_FRAME))
+                        .putInt((int) (windowOnset[i] / BYTES_PER_FRAME));
+                dataBytes += windowTo[i] - from;
+                kept++;
+            }
+            if (kept > 0) {
+                trailingBytes = WavHeader.tapChunkSize(kept);
+                tapChunk.putInt(4, trailingBytes - 8).putInt(8, kept);
+            }
+            tapChunk.flip();
+        }
+        if (kept == 0) {
+            // No window survived (or none was needed): keep everything the ring holds
+            dataBytes = totalBytesCaptured - oldest;
+        }
+        WavHeader.write(header, SAMPLE_RATE, CHANNELS, BITS_PER_SAMPLE, (int) dataBytes, trailingBytes);
+
+        // Second pass: stream the selected ranges straight from the ring into the file
+        try (FileOutputStream out = new FileOutputStream(outputFile);
+             FileChannel channel = out.getChannel()) {
+            writeFully(channel, header);
+            if (kept == 0) {
+                writeRange(channel, oldest, totalBytesCaptured);
+            } else {
+                for (int i = 0; i < windowCount; i++) {
+                    long from = Math.max(oldest, windowFrom[i]);
+                    if (windowTo[i] > from) writeRange(channel, from, windowTo[i]);
+                }
+                writeFully(channel, tapChunk);
+            }
+        }
+    }
+
+    /**
+     * Writes the captured bytes [from, to) (offsets from the start of the capture) to the channel,
+     * handling the wrap-around of the ring. The range must still be inside the ring.
+     */
+    private void writeRange(FileChannel channel, long from, long to) throws IOException {
+        int capacity = ring.capacity();
+        while (from < to) {
+            int start = (int) (from % capacity);
+            int count = (int) Math.min(to - from, capacity - start);
+            writeFully(channel, slice(start, start + count));
+            from += count;
+        }
+    }
+
+    private ByteBuffer slice(int from, int to) {
+        ByteBuffer view = ring.duplicate();
+        view.limit(to).position(from);
+        return view;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void releaseRecorder() {
+        if (audioRecord != null) {
+            try {
+                if (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+                    audioRecord.stop();
+                }
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "AudioRecord stop() failed: " + e.getMessage());
+            }
+            audioRecord.release();
+            audioRecord = null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.redyapp.Audio;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes any stored recording into mono 16-bit PCM: WAV files with WavReader, compressed
+ * files (the AAC recordings written by AacEncoder) with MediaExtractor and MediaCodec.
+ */
+public final class AudioDecoder {
+
+    private static final long TIMEOUT_US = 10_000;
+    // Decoding runs far faster than real time; a codec still busy after the length of the
+    // audio plus this margin is stuck and is given up
+    private static final long DEADLINE_MARGIN_MS = 10_000;
+    private static final int RIFF = 0x46464952; // "RIFF", little-endian
+
+    private AudioDecoder() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Decodes a recording. Blocking, call off the main thread.
+     *
+     * @param file The WAV or compressed audio file.
+     * @return The mono samples and sample rate.
+     * @throws IOException If the file cannot be read or decoded.
+     */
+    public static PcmAudio decode(File file) throws IOException {
+        return isWav(file) ? WavReader.read(file) : decodeCompressed(file);
+    }
+
+    private static boolean isWav(File file) throws IOException {
+        byte[] magic = new byte[4];
+        try (FileInputStream in = new FileInputStream(file)) {
+            if (in.read(magic) != magic.length) return false;
+        }
+        return ByteBuffer.wrap(magic).order(ByteOrder.LITTLE_ENDIAN).getInt() == RIFF;
+    }
+
+    private static PcmAudio decodeCompressed(File file) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(file.getAbsolutePath());
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat trackFormat = extractor.getTrackFormat(i);
+                String mime = trackFormat.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = trackFormat;
+                    break;
+                }
+            }
+            if (format == null) throw new IOException("No audio track in " + file.getName());
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            // Sized from the container duration when known, grown otherwise
+            long durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+            short[] samples = new short[(int) Math.max(1024, durationUs * sampleRate / 1_000_000L)];
+            int sampleCount = 0;
+            boolean inputDone = false;
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            long deadline = SystemClock.elapsedRealtime() + durationUs / 1000 + DEADLINE_MARGIN_MS;
+            while (true) {
+                if (SystemClock.elapsedRealtime() > deadline) {
+                    throw new IOException("Decoder did not finish " + file.getName() + " in time");
+                }
+                // Feed compressed frames
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inputIndex);
+                        int size = extractor.readSampleData(input, 0);
+                        if (size < 0) {
+                            inputDone = true;
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                // Collect decoded PCM, mixed down to mono
+                int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                } else if (outputIndex >= 0) {
+                    ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                    output.position(info.offset).limit(info.offset + info.size);
+                    ShortBuffer pcm = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    int frames = pcm.remaining() / channels;
+                    if (sampleCount + frames > samples.length) {
+                        samples = Arrays.copyOf(samples, Math.max(samples.length * 2, sampleCount + frames));
+                    }
+                    for (int i = 0; i < frames; i++) {
+                        int sum = 0;
+                        for (int c = 0; c < channels; c++) {
+                            sum += pcm.get();
+                        }
+                        samples[sampleCount++] = (short) (sum / channels);
+                    }
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) break;
+                }
+            }
+            return new PcmAudio(samples, sampleCount, sampleRate);
+        } catch (RuntimeException e) {
+            // MediaCodec and MediaExtractor report failures as IllegalStateException
+            throw new IOException("Could not decode " + file.getName(), e);
+        } finally {
+            if (codec != null) codec.release();
+            extractor.release();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.redyapp.Audio;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.redyapp.AppExecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * ClipPlayer is the app's single playback engine for short recordings.
+ *
+ * Recordings are decoded once to PCM (see AudioDecoder) and kept in a byte-bounded LRU cache,
+ * so playing a clip again, or a clip that was preloaded, only copies PCM into an AudioTrack in
+ * static mode and starts it; there is no prepare step. Replaying the clip that is already
+ * loaded reuses its track without copying at all. Clips too long for a static track (see
+ * STATIC_LIMIT_BYTES) play from a small streaming track instead, topped up from the decoded
+ * PCM on the main thread as it plays.
+ *
+ * Decoding and track setup run on a background thread; every other method, and every
+ * Listener callback, runs on the main thread. Position queries do not allocate, so they can
+ * be polled every display frame.
+ * Uses the Singleton pattern.
+ */
+public class ClipPlayer {
+
+    public interface Listener {
+        void onPlaybackStarted();
+
+        void onPlaybackCompleted();
+
+        void onPlaybackError(String message);
+    }
+
+    private static final String TAG = "ClipPlayer";
+    // Decoded PCM kept for instant starts: about 25 five-second tap recordings
+    private static final int CACHE_BYTES = 4 * 1024 * 1024;
+    // Static tracks live in shared memory that some devices cap at about 1 MiB; longer clips
+    // (over 30 s at 16 kHz) are streamed
+    private static final int STATIC_LIMIT_BYTES = 1024 * 1024;
+    // Buffer of a streaming track, and how often it is topped up
+    private static final int STREAM_BUFFER_MS = 500;
+    private static final int STREAM_REFILL_MS = 100;
+
+    // Volatile instance to ensure visibility across threads.
+    private static volatile ClipPlayer instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Decodes one clip at a time, so a preload and a play of the same clip never decode twice
+    private final Executor loader = AppExecutors.serial(AppExecutors.getInstance().compute());
+    private final LruCache<String, PcmAudio> cache = new LruCache<String, PcmAudio>(CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String path, PcmAudio audio) {
+            return audio.getSamples().length * 2;
+        }
+    };
+
+    // Current clip, only touched on the main thread
+    private AudioTrack track;
+    private String trackPath;
+    private int trackFrames;
+    private int trackSampleRate;
+    // Set for a streaming track: the PCM still to be written, the next frame to write, and the
+    // clip frame the track's playback head counts from (it restarts at 0 on every flush)
+    private short[] streamSamples;
+    private int writtenFrames;
+    private int baseFrame;
+    private Listener listener;
+    private boolean playing;
+    // Reached the end; the track is paused there
+    private boolean completed;
+    // Incremented by every play() and stop(), so stale background loads are discarded
+    private int generation;
+
+    private final AudioTrack.OnPlaybackPositionUpdateListener endListener =
+            new AudioTrack.OnPlaybackPositionUpdateListener() {
+                @Override
+                public void onMarkerReached(AudioTrack audioTrack) {
+                    if (audioTrack != track) return;
+                    // Paused at the end; the track stays loaded for an instant replay
+                    audioTrack.pause();
+                    playing = false;
+                    completed = true;
+                    if (listener != null) listener.onPlaybackCompleted();
+                }
+
+                @Override
+                public void onPeriodicNotification(AudioTrack audioTrack) {
+                    if (audioTrack == track) fillStream();
+                }
+            };
+
+    private ClipPlayer() {
+    }
+
+    /**
+     * @return The singleton ClipPlayer instance.
+     */
+    public static ClipPlayer getInstance() {
+        if (instance == null) {
+            // Use a synchronized block to prevent race conditions during instantiation.
+            synchronized (ClipPlayer.class) {
+                if (instance == null) {
+                    instance = new ClipPlayer();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Plays a recording from the start, stopping whatever was playing.
+     *
+     * This method:
+     * 1. Replays the current track directly if it holds the same recording
+     * 2. Otherwise decodes the recording (or takes it from the cache) in the background
+     * 3. Copies the PCM into a static AudioTrack (a streaming one for long clips) and starts it
+     *    on the main thread
+     *
+     * @param path The recording to play.
+     * @param listener Notified on the main thread; replaced by the next play().
+     */
+    public void play(String path, Listener listener) {
+        this.listener = listener;
+        int request = ++generation;
+        if (track != null && path.equals(trackPath)) {
+            track.pause();
+            moveTo(0);
+            start();
+            return;
+        }
+        releaseTrack();
+        loader.execute(() -> {
+            AudioTrack loaded = null;
+            String error = null;
+            PcmAudio audio = null;
+            try {
+                audio = load(path);
+                loaded = createTrack(audio);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Cannot play " + path, e);
+                error = "Could not play this recording.";
+            }
+            final AudioTrack newTrack = loaded;
+            final PcmAudio newAudio = audio;
+            final String finalError = error;
+            mainHandler.post(() -> {
+                if (request != generation) {
+                    // Another clip was requested meanwhile
+                    if (newTrack != null) newTrack.release();
+                    return;
+                }
+                if (newTrack == null) {
+                    if (this.listener != null) this.listener.onPlaybackError(finalError);
+                    return;
+                }
+                track = newTrack;
+                trackPath = path;
+                trackFrames = newAudio.getSampleCount();
+                trackSampleRate = newAudio.getSampleRate();
+                if (isStreamed(newAudio)) {
+                    streamSamples = newAudio.getSamples();
+                    writtenFrames = 0;
+                    baseFrame = 0;
+                    track.setPositionNotificationPeriod(trackSampleRate * STREAM_REFILL_MS / 1000);
+                }
+                track.setPlaybackPositionUpdateListener(endListener, mainHandler);
+                start();
+            });
+        });
+    }
+
+    /**
+     * Decodes a recording into the cache in the background, so a later play() starts at once.
+     *
+     * @param path The recording to preload.
+     */
+    public void preload(String path) {
+        if (cache.get(path) != null) return;
+        loader.execute(() -> {
+            try {
+                load(path);
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot preload " + path + ": " + e.getMessage());
+            }
+        });
+    }
+
+    public void pause() {
+        if (track != null && playing) {
+            track.pause();
+            playing = false;
+        }
+    }
+
+    public void resume() {
+        if (track != null && !playing) {
+            // A finished clip starts over
+            if (completed) moveTo(0);
+            start();
+        }
+    }
+
+    /**
+     * Moves the playback position, keeping the play/pause state.
+     *
+     * @param fraction The new position, from 0 (start) to 1 (end).
+     */
+    public void seekTo(float fraction) {
+        if (track == null) return;
+        boolean wasPlaying = playing;
+        if (wasPlaying) track.pause();
+        int frame = Math.max(0, Math.min(trackFrames - 1, (int) (fraction * trackFrames)));
+        moveTo(frame);
+        completed = false;
+        if (wasPlaying) {
+            fillStream();
+            track.setNotificationMarkerPosition(trackFrames - baseFrame);
+            track.play();
+        }
+    }
+
+    /**
+     * Stops playback and releases the track. The decoded PCM stays cached.
+     */
+    public void stop() {
+        generation++;
+        listener = null;
+        releaseTrack();
+    }
+
+    /**
+     * Drops the decoded PCM, e.g. when the app goes to the background.
+     */
+    public void trimMemory() {
+        cache.evictAll();
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * @param path A recording.
+     * @return Whether the recording is loaded, playing or paused.
+     */
+    public boolean isLoaded(String path) {
+        return track != null && path != null && path.equals(trackPath);
+    }
+
+    /**
+     * @return The playback position of the current clip in milliseconds, 0 if none.
+     */
+    public long getPositionMs() {
+        if (track == null || trackSampleRate == 0) return 0;
+        return Math.min(trackFrames, baseFrame + track.getPlaybackHeadPosition()) * 1000L / trackSampleRate;
+    }
+
+    /**
+     * @return The length of the current clip in milliseconds, 0 if none.
+     */
+    public long getDurationMs() {
+        return trackSampleRate == 0 ? 0 : trackFrames * 1000L / trackSampleRate;
+    }
+
+    private void start() {
+        fillStream();
+        // Re-armed on every start, as the marker fires once
+        track.setNotificationMarkerPosition(trackFrames - baseFrame);
+        track.play();
+        playing = true;
+        completed = false;
+        if (listener != null) listener.onPlaybackStarted();
+    }
+
+    private void releaseTrack() {
+        if (track != null) {
+            track.setPlaybackPositionUpdateListener(null);
+            track.release();
+            track = null;
+        }
+        trackPath = null;
+        trackFrames = 0;
+        trackSampleRate = 0;
+        streamSamples = null;
+        writtenFrames = 0;
+        baseFrame = 0;
+        playing = false;
+        completed = false;
+    }
+
+    /**
+     * Moves the paused track to a frame of the clip. A static track moves its playback head;
+     * a streaming track drops what it buffered and is refilled from the frame on the next start.
+     */
+    private void moveTo(int frame) {
+        if (streamSamples == null) {
+            track.setPlaybackHeadPosition(frame);
+            return;
+        }
+        track.flush();
+        baseFrame = frame;
+        writtenFrames = frame;
+    }
+
+    /**
+     * Writes as much of a streaming clip as its track has room for, without blocking.
+     */
+    private void fillStream() {
+        if (streamSamples == null || writtenFrames >= trackFrames) return;
+        int written = track.write(streamSamples, writtenFrames, trackFrames - writtenFrames,
+                AudioTrack.WRITE_NON_BLOCKING);
+        if (written > 0) writtenFrames += written;
+    }
+
+    /**
+     * Returns the decoded recording, decoding and caching it on a miss. Runs on the loader.
+     */
+    private PcmAudio load(String path) throws IOException {
+        PcmAudio audio = cache.get(path);
+        if (audio == null) {
+            audio = AudioDecoder.decode(new File(path));
+            if (audio.getSampleCount() == 0) throw new IOException("Empty recording");
+            cache.put(path, audio);
+        }
+        return audio;
+    }
+
+    private static boolean isStreamed(PcmAudio audio) {
+        return audio.getSampleCount() * 2 > STATIC_LIMIT_BYTES;
+    }
+
+    /**
+     * Creates a static track holding the whole clip, or an empty streaming track for a clip
+     * above STATIC_LIMIT_BYTES. Runs on the loader.
+     */
+    private static AudioTrack createTrack(PcmAudio audio) throws IOException {
+        boolean stream = isStreamed(audio);
+        int bufferBytes = audio.getSampleCount() * 2;
+        if (stream) {
+            int minBufferBytes = AudioTrack.getMinBufferSize(audio.getSampleRate(),
+                    AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+            bufferBytes = Math.max(minBufferBytes, audio.getSampleRate() * 2 * STREAM_BUFFER_MS / 1000);
+        }
+        AudioTrack track = new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_MEDIA)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .setSampleRate(audio.getSampleRate())
+                        .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                        .build())
+                .setTransferMode(stream ? AudioTrack.MODE_STREAM : AudioTrack.MODE_STATIC)
+                .setBufferSizeInBytes(bufferBytes)
+                .build();
+        if (stream) {
+            if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+                track.release();
+                throw new IOException("Could not create a streaming AudioTrack");
+            }
+            return track;
+        }
+        int written = track.write(audio.getSamples(), 0, audio.getSampleCount());
+        if (written != audio.getSampleCount() || track.getState() != AudioTrack.STATE_INITIALIZED) {
+            track.release();
+            throw new IOException("Could not load the clip into an AudioTrack (" + written + ")");
+        }
+        return track;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.redyapp.Audio;
+
+/**
+ * In-place iterative radix-2 FFT over caller-owned float arrays.
+ *
+ * The twiddle factors and the bit-reversal permutation are computed once in the constructor,
+ * so transform() itself never allocates and can be called for every audio frame.
+ */
+public class Fft {
+
+    private final int size;
+    private final int[] bitReversed;
+    private final float[] cos;
+    private final float[] sin;
+
+    /**
+     * @param size The transform length, must be a power of two.
+     */
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.bitReversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            bitReversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        this.cos = new float[size / 2];
+        this.sin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2.0 * Math.PI * i / size;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Computes the forward transform in place.
+     *
+     * @param re Real parts, length at least getSize(). Overwritten with the result.
+     * @param im Imaginary parts, length at least getSize(). Overwritten with the result.
+     */
+    public void transform(float[] re, float[] im) {
+        // Reorder the input into bit-reversed order
+        for (int i = 0; i < size; i++) {
+            int j = bitReversed[i];
+            if (j > i) {
+                float tr = re[i];
+                re[i] = re[j];
+                re[j] = tr;
+                float ti = im[i];
+                im[i] = im[j];
+                im[j] = ti;
+            }
+        }
+        // Butterflies
+        for (int half = 1; half < size; half <<= 1) {
+            int step = size / (half << 1);
+            for (int start = 0; start < size; start += half << 1) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * step];
+                    float wi = sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    float xr = re[b] * wr - im[b] * wi;
+                    float xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.redyapp.Audio;
+
+/**
+ * Conversion between 32-bit floats and IEEE 754 half-precision (binary16) bit patterns.
+ * Used to halve the size of feature tensors sent to the backend.
+ */
+public final class Float16 {
+
+    private Float16() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Converts a float to the nearest half-precision value (round to nearest even).
+     * Values beyond the half range become infinity; NaN is preserved.
+     *
+     * @param value The value to convert.
+     * @return The binary16 bit pattern in the low 16 bits.
+     */
+    public static short fromFloat(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent == 0xFF) {
+            // Infinity or NaN
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1F) {
+            // Overflow
+            return (short) (sign | 0x7C00);
+        }
+        if (halfExponent <= 0) {
+            // Subnormal half or zero
+            if (halfExponent < -10) return (short) sign;
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int halfMantissa = mantissa >> shift;
+            int roundBit = 1 << (shift - 1);
+            int remainder = mantissa & ((roundBit << 1) - 1);
+            if (remainder > roundBit || (remainder == roundBit && (halfMantissa & 1) != 0)) {
+                halfMantissa++;
+            }
+            return (short) (sign | halfMantissa);
+        }
+        int half = sign | (halfExponent << 10) | (mantissa >> 13);
+        // Round to nearest even; a carry into the exponent is the correct result
+        int remainder = mantissa & 0x1FFF;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) half;
+    }
+
+    /**
+     * Converts a half-precision bit pattern back to a float.
+     *
+     * @param half The binary16 bit pattern.
+     * @return The equivalent float value.
+     */
+    public static float toFloat(short half) {
+        int h = half & 0xFFFF;
+        int sign = (h & 0x8000) << 16;
+        int exponent = (h >>> 10) & 0x1F;
+        int mantissa = h & 0x3FF;
+        if (exponent == 0) {
+            if (mantissa == 0) return Float.intBitsToFloat(sign);
+            // Subnormal: value = mantissa * 2^-24
+            float value = mantissa * 5.9604645e-8f;
+            return sign != 0 ? -value : value;
+        }
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
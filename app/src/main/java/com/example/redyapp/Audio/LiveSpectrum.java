@@ -0,0 +1,86 @@
+package com.example.redyapp.Audio;
+
+import android.os.Process;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds the live level meter and spectrum from a running capture.
+ *
+ * A DSP thread sleeps until the capture thread reports a new chunk (an unpark, which never
+ * blocks the capture thread), reads the newest FFT_SIZE samples straight from the capture
+ * ring, analyzes them with a SpectrumAnalyzer and publishes the frame through a TripleBuffer.
+ * The view takes the newest frame on each display frame; nothing is allocated per frame on
+ * either side, and a slow side only ever skips frames.
+ */
+public class LiveSpectrum implements AudioCaptureEngine.ChunkObserver {
+
+    // The level shows the newest 20 ms, one capture chunk
+    private static final int LEVEL_MS = 20;
+
+    private final AudioCaptureEngine engine;
+    private final SpectrumAnalyzer analyzer = new SpectrumAnalyzer(AudioCaptureEngine.SAMPLE_RATE);
+    private final short[] samples = new short[SpectrumAnalyzer.FFT_SIZE];
+    private final int levelSamples = AudioCaptureEngine.SAMPLE_RATE * LEVEL_MS / 1000;
+    private final TripleBuffer<SpectrumAnalyzer.Frame> frames = new TripleBuffer<>(
+            new SpectrumAnalyzer.Frame(), new SpectrumAnalyzer.Frame(), new SpectrumAnalyzer.Frame());
+    private final Thread thread = new Thread(this::run, "LiveSpectrum");
+    private volatile boolean running;
+
+    /**
+     * @param engine The capture to visualize.
+     */
+    public LiveSpectrum(AudioCaptureEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Starts the DSP thread and subscribes to the capture. Call once.
+     */
+    public void start() {
+        running = true;
+        thread.start();
+        engine.setChunkObserver(this);
+    }
+
+    /**
+     * Unsubscribes from the capture and ends the DSP thread. The last frame stays readable.
+     */
+    public void stop() {
+        engine.setChunkObserver(null);
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return The frames for the view; only one consumer thread may read them.
+     */
+    public TripleBuffer<SpectrumAnalyzer.Frame> getFrames() {
+        return frames;
+    }
+
+    @Override
+    public void onChunkCaptured() {
+        // Capture thread: only wake the DSP thread
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Body of the DSP thread: analyzes the newest audio whenever a chunk was captured.
+     */
+    private void run() {
+        // Below the capture thread (URGENT_AUDIO), level with the UI it feeds
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+        long analyzedBytes = -1;
+        while (running) {
+            LockSupport.park(this);
+            long captured = engine.getCapturedBytes();
+            // Spurious wake-ups and stop() find nothing new
+            if (!running || captured == analyzedBytes) continue;
+            analyzedBytes = captured;
+            engine.readLatest(samples, samples.length);
+            analyzer.analyze(samples, levelSamples, frames.getBackSlot());
+            frames.publish();
+        }
+    }
+}
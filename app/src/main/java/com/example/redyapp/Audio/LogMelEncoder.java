@@ -0,0 +1,62 @@
+package com.example.redyapp.Audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Packs log-mel spectrogram frames into the compact binary body accepted by the
+ * "predict/features" endpoint.
+ *
+ * Layout (little-endian):
+ *   magic "LMEL" (4 bytes), version (u16), mel bands (u16), frames (u32),
+ *   sample rate (u32), hop length (u32), then frames * melBands float16 values, frame by frame.
+ *
+ * The feature scratch array is kept between calls, so repeated encodes only allocate the output.
+ */
+public class LogMelEncoder {
+
+    public static final String CONTENT_TYPE = "application/x-logmel-f16";
+    public static final int HEADER_SIZE = 20;
+    private static final int MAGIC = 0x4C454D4C; // "LMEL" read as little-endian int
+    private static final short VERSION = 1;
+
+    private final MelSpectrogram melSpectrogram;
+    private float[] features = new float[0];
+
+    public LogMelEncoder(MelSpectrogram melSpectrogram) {
+        this.melSpectrogram = melSpectrogram;
+    }
+
+    /**
+     * Computes and packs the log-mel frames of the given audio.
+     *
+     * @param audio Mono PCM at the sample rate of the MelSpectrogram.
+     * @return The encoded request body.
+     * @throws IllegalArgumentException If the audio has a different sample rate.
+     */
+    public byte[] encode(PcmAudio audio) {
+        if (audio.getSampleRate() != melSpectrogram.getSampleRate()) {
+            throw new IllegalArgumentException("Expected " + melSpectrogram.getSampleRate()
+                    + " Hz audio, got " + audio.getSampleRate() + " Hz");
+        }
+        int melBands = melSpectrogram.getMelBands();
+        int frames = melSpectrogram.frameCount(audio.getSampleCount());
+        int values = frames * melBands;
+        if (features.length < values) {
+            features = new float[values];
+        }
+        melSpectrogram.compute(audio.getSamples(), audio.getSampleCount(), features);
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + values * 2).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putShort((short) melBands);
+        out.putInt(frames);
+        out.putInt(melSpectrogram.getSampleRate());
+        out.putInt(melSpectrogram.getHopLength());
+        for (int i = 0; i < values; i++) {
+            out.putShort(Float16.fromFloat(features[i]));
+        }
+        return out.array();
+    }
+}
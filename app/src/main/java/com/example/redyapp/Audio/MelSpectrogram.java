@@ -0,0 +1,171 @@
+package com.example.redyapp.Audio;
+
+/**
+ * Computes log-mel spectrogram frames from 16-bit PCM.
+ *
+ * The signal is pre-emphasized, then each frame is Hann-windowed, transformed with an FFT,
+ * converted to a power spectrum and projected onto a bank of triangular mel filters
+ * (HTK mel scale, 50 Hz to Nyquist), then the natural log is taken.
+ * All scratch buffers and the filter bank are allocated once, so compute() does not allocate
+ * and one instance can be reused for every recording.
+ *
+ * Instances are not thread-safe.
+ */
+public class MelSpectrogram {
+
+    // Default parameters, matching the backend feature extractor
+    public static final int DEFAULT_FFT_SIZE = 512;
+    public static final int DEFAULT_HOP_LENGTH = 160;
+    public static final int DEFAULT_MEL_BANDS = 64;
+    // Lowest filter edge in Hz; the highest is the Nyquist frequency (8 kHz at 16 kHz)
+    public static final double MIN_FREQUENCY_HZ = 50.0;
+    // Pre-emphasis coefficient applied to the signal before framing
+    public static final float PRE_EMPHASIS = 0.97f;
+    // Floor applied before taking the log to avoid -Infinity on silent frames
+    public static final float LOG_FLOOR = 1e-10f;
+
+    private final int sampleRate;
+    private final int fftSize;
+    private final int hopLength;
+    private final int melBands;
+
+    private final Fft fft;
+    private final float[] window;
+    private final float[] re;
+    private final float[] im;
+    private final float[] power;
+    // Sparse triangular filters: first FFT bin and weights of every mel band
+    private final int[] filterStart;
+    private final float[][] filterWeights;
+
+    /**
+     * Creates an extractor with the default FFT size, hop length and number of mel bands.
+     *
+     * @param sampleRate The sample rate of the input audio in Hz.
+     */
+    public MelSpectrogram(int sampleRate) {
+        this(sampleRate, DEFAULT_FFT_SIZE, DEFAULT_HOP_LENGTH, DEFAULT_MEL_BANDS);
+    }
+
+    /**
+     * @param sampleRate The sample rate of the input audio in Hz.
+     * @param fftSize The frame length and FFT size, a power of two.
+     * @param hopLength The distance between consecutive frames in samples.
+     * @param melBands The number of mel filters (values per output frame).
+     */
+    public MelSpectrogram(int sampleRate, int fftSize, int hopLength, int melBands) {
+        this.sampleRate = sampleRate;
+        this.fftSize = fftSize;
+        this.hopLength = hopLength;
+        this.melBands = melBands;
+        this.fft = new Fft(fftSize);
+        this.re = new float[fftSize];
+        this.im = new float[fftSize];
+        this.power = new float[fftSize / 2 + 1];
+
+        // Periodic Hann window
+        this.window = new float[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / fftSize));
+        }
+
+        // Triangular filters spaced evenly on the mel scale between MIN_FREQUENCY_HZ and Nyquist
+        this.filterStart = new int[melBands];
+        this.filterWeights = new float[melBands][];
+        double minMel = hzToMel(MIN_FREQUENCY_HZ);
+        double maxMel = hzToMel(sampleRate / 2.0);
+        double[] edgesHz = new double[melBands + 2];
+        for (int i = 0; i < edgesHz.length; i++) {
+            edgesHz[i] = melToHz(minMel + (maxMel - minMel) * i / (melBands + 1));
+        }
+        double binHz = (double) sampleRate / fftSize;
+        for (int m = 0; m < melBands; m++) {
+            double lower = edgesHz[m];
+            double center = edgesHz[m + 1];
+            double upper = edgesHz[m + 2];
+            int first = (int) Math.ceil(lower / binHz);
+            int last = Math.min(power.length - 1, (int) Math.floor(upper / binHz));
+            if (last < first) last = first;
+            float[] weights = new float[last - first + 1];
+            for (int bin = first; bin <= last; bin++) {
+                double hz = bin * binHz;
+                double w = hz <= center
+                        ? (hz - lower) / (center - lower)
+                        : (upper - hz) / (upper - center);
+                weights[bin - first] = (float) Math.max(0.0, w);
+            }
+            filterStart[m] = first;
+            filterWeights[m] = weights;
+        }
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getHopLength() {
+        return hopLength;
+    }
+
+    public int getMelBands() {
+        return melBands;
+    }
+
+    /**
+     * @param sampleCount The number of input samples.
+     * @return The number of frames compute() produces for that many samples (at least one).
+     */
+    public int frameCount(int sampleCount) {
+        if (sampleCount <= fftSize) return 1;
+        return 1 + (sampleCount - fftSize) / hopLength;
+    }
+
+    /**
+     * Computes log-mel frames for the given samples. Samples past the end are treated as zeros.
+     *
+     * @param pcm The 16-bit samples.
+     * @param sampleCount The number of valid samples in pcm.
+     * @param out Output array of at least frameCount(sampleCount) * getMelBands() values,
+     *            filled frame by frame (row-major, one row of mel bands per frame).
+     * @return The number of frames written.
+     */
+    public int compute(short[] pcm, int sampleCount, float[] out) {
+        int frames = frameCount(sampleCount);
+        for (int f = 0; f < frames; f++) {
+            int offset = f * hopLength;
+            for (int i = 0; i < fftSize; i++) {
+                int index = offset + i;
+                float sample = 0f;
+                if (index < sampleCount) {
+                    float previous = index > 0 ? pcm[index - 1] : 0f;
+                    sample = (pcm[index] - PRE_EMPHASIS * previous) / 32768f;
+                }
+                re[i] = sample * window[i];
+                im[i] = 0f;
+            }
+            fft.transform(re, im);
+            for (int k = 0; k < power.length; k++) {
+                power[k] = re[k] * re[k] + im[k] * im[k];
+            }
+            int base = f * melBands;
+            for (int m = 0; m < melBands; m++) {
+                float[] weights = filterWeights[m];
+                int start = filterStart[m];
+                float energy = 0f;
+                for (int j = 0; j < weights.length; j++) {
+                    energy += weights[j] * power[start + j];
+                }
+                out[base + m] = (float) Math.log(Math.max(energy, LOG_FLOOR));
+            }
+        }
+        return frames;
+    }
+
+    static double hzToMel(double hz) {
+        return 2595.0 * Math.log10(1.0 + hz / 700.0);
+    }
+
+    static double melToHz(double mel) {
+        return 700.0 * (Math.pow(10.0, mel / 2595.0) - 1.0);
+    }
+}
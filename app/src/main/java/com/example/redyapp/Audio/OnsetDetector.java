@@ -0,0 +1,154 @@
+package com.example.redyapp.Audio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming tap (onset) detector for 16-bit PCM audio.
+ *
+ * The signal is split into short frames. For every frame the detector computes the
+ * energy of the pre-emphasized signal (a cheap stand-in for high-frequency spectral content)
+ * and the positive rise in dB over the quieter of the two previous frames (the energy flux),
+ * so an attack that straddles a frame boundary still shows up as one sharp rise.
+ * An onset is reported when the flux clearly exceeds the running flux statistics of the
+ * background noise and the frame is loud enough, with a refractory period so a single tap
+ * is only counted once.
+ *
+ * The detector keeps only a handful of scalars as state, so it can run directly on the
+ * capture thread without allocating.
+ */
+public class OnsetDetector {
+
+    // 256 samples = 16 ms at 16 kHz
+    public static final int FRAME_SIZE = 256;
+    // Pre-emphasis coefficient (first-order high-pass) to favor the sharp attack of a tap
+    private static final float PRE_EMPHASIS = 0.95f;
+    // Minimum rise in dB over the previous frames to count as an onset
+    private static final double MIN_RISE_DB = 9.0;
+    // Frames quieter than this (dBFS) are never onsets
+    private static final double MIN_LEVEL_DB = -45.0;
+    // How many standard deviations above the mean flux an onset must be
+    private static final double FLUX_STD_FACTOR = 3.0;
+    // Smoothing factor for the running flux statistics
+    private static final double STATS_ALPHA = 0.05;
+    // Frames ignored at the start while the microphone settles
+    private static final int WARM_UP_FRAMES = 4;
+    private static final double EPSILON = 1e-10;
+
+    private final int refractoryFrames;
+
+    private float previousSample;
+    private double frameEnergy;
+    private int frameFill;
+    private long frameIndex;
+    private double previousLevelDb = -100.0;
+    private double olderLevelDb = -100.0;
+    private double fluxMean;
+    private double fluxVariance;
+    private long lastOnsetFrame = Long.MIN_VALUE / 2;
+    private long samplesProcessed;
+    private int onsetCount;
+
+    /**
+     * @param sampleRate The sample rate of the incoming audio in Hz.
+     * @param refractoryMs The minimum time between two reported onsets.
+     */
+    public OnsetDetector(int sampleRate, int refractoryMs) {
+        this.refractoryFrames = Math.max(1, (int) ((long) refractoryMs * sampleRate / 1000 / FRAME_SIZE));
+    }
+
+    /**
+     * Feeds a chunk of little-endian 16-bit PCM to the detector.
+     * The buffer position and limit are not modified.
+     *
+     * @param pcm Buffer holding the samples between its position and limit.
+     * @return The absolute sample index of the onset found in this chunk, or -1 if none.
+     */
+    public long process(ByteBuffer pcm) {
+        long onset = -1;
+        for (int i = pcm.position(); i + 1 < pcm.limit(); i += 2) {
+            long found = feed(pcm.getShort(i) / 32768f);
+            if (found >= 0) onset = found;
+        }
+        return onset;
+    }
+
+    /**
+     * Feeds a block of 16-bit samples to the detector.
+     *
+     * @param samples The sample array.
+     * @param offset Index of the first sample to process.
+     * @param length Number of samples to process.
+     * @return The absolute sample index of the last onset found in this block, or -1 if none.
+     */
+    public long process(short[] samples, int offset, int length) {
+        long onset = -1;
+        for (int i = offset; i < offset + length; i++) {
+            long found = feed(samples[i] / 32768f);
+            if (found >= 0) onset = found;
+        }
+        return onset;
+    }
+
+    /**
+     * @return The number of onsets detected since creation or the last reset().
+     */
+    public int getOnsetCount() {
+        return onsetCount;
+    }
+
+    /**
+     * Clears all state so the detector can be reused for a new recording.
+     */
+    public void reset() {
+        previousSample = 0f;
+        frameEnergy = 0.0;
+        frameFill = 0;
+        frameIndex = 0;
+        previousLevelDb = -100.0;
+        olderLevelDb = -100.0;
+        fluxMean = 0.0;
+        fluxVariance = 0.0;
+        lastOnsetFrame = Long.MIN_VALUE / 2;
+        samplesProcessed = 0;
+        onsetCount = 0;
+    }
+
+    /**
+     * Processes one normalized sample and closes the frame when it is full.
+     *
+     * @return The absolute sample index of the frame start if the frame is an onset, otherwise -1.
+     */
+    private long feed(float sample) {
+        float emphasized = sample - PRE_EMPHASIS * previousSample;
+        previousSample = sample;
+        frameEnergy += emphasized * emphasized;
+        frameFill++;
+        samplesProcessed++;
+        if (frameFill < FRAME_SIZE) return -1;
+
+        double levelDb = 10.0 * Math.log10(frameEnergy / FRAME_SIZE + EPSILON);
+        double flux = Math.max(0.0, levelDb - Math.min(previousLevelDb, olderLevelDb));
+        olderLevelDb = previousLevelDb;
+        previousLevelDb = levelDb;
+        frameEnergy = 0.0;
+        frameFill = 0;
+        long currentFrame = frameIndex++;
+        if (currentFrame < WARM_UP_FRAMES) return -1;
+
+        double threshold = Math.max(MIN_RISE_DB, fluxMean + FLUX_STD_FACTOR * Math.sqrt(fluxVariance));
+        boolean isOnset = flux > threshold
+                && levelDb > MIN_LEVEL_DB
+                && currentFrame - lastOnsetFrame >= refractoryFrames;
+
+        // Only background frames update the statistics, so a burst of taps does not raise the bar
+        if (!isOnset) {
+            double delta = flux - fluxMean;
+            fluxMean += STATS_ALPHA * delta;
+            fluxVariance = (1.0 - STATS_ALPHA) * (fluxVariance + STATS_ALPHA * delta * delta);
+            return -1;
+        }
+        lastOnsetFrame = currentFrame;
+        onsetCount++;
+        return samplesProcessed - FRAME_SIZE;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.redyapp.Audio;
+
+import java.util.List;
+
+/**
+ * Mono 16-bit PCM samples together with their sample rate.
+ * The samples array may be larger than sampleCount so buffers can be reused.
+ */
+public class PcmAudio {
+
+    private final short[] samples;
+    private final int sampleCount;
+    private final int sampleRate;
+    // The taps AudioCaptureEngine kept in the recording, or null for any other audio
+    private final List<TapSegmenter.Segment> markedTaps;
+
+    public PcmAudio(short[] samples, int sampleCount, int sampleRate) {
+        this(samples, sampleCount, sampleRate, null);
+    }
+
+    public PcmAudio(short[] samples, int sampleCount, int sampleRate, List<TapSegmenter.Segment> markedTaps) {
+        this.samples = samples;
+        this.sampleCount = sampleCount;
+        this.sampleRate = sampleRate;
+        this.markedTaps = markedTaps;
+    }
+
+    public short[] getSamples() {
+        return samples;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @return The tap windows marked by the recorder, with their onsets in the original capture,
+     *         or null if the audio carries none (see WavHeader.TAP_CHUNK_ID).
+     */
+    public List<TapSegmenter.Segment> getMarkedTaps() {
+        return markedTaps;
+    }
+
+    /**
+     * @return The duration of the audio in milliseconds.
+     */
+    public long getDurationMs() {
+        return sampleRate > 0 ? sampleCount * 1000L / sampleRate : 0;
+    }
+}
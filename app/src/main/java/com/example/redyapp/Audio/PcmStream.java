@@ -0,0 +1,117 @@
+package com.example.redyapp.Audio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Hands PCM chunks from the capture thread to a consumer (e.g. an HTTP request body)
+ * while the recording is still in progress.
+ *
+ * The producer never blocks: chunks are copied into recycled byte arrays and a new array is
+ * only allocated while the consumer is behind. The consumer blocks in drainTo() until the
+ * producer calls close() (end of the recording) or abort() (canceled or failed capture).
+ */
+public class PcmStream {
+
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    // Markers queued after the last chunk
+    private static final Chunk END = new Chunk(0);
+    private static final Chunk ABORT = new Chunk(0);
+
+    private final int chunkBytes;
+    // Chunks written by the producer and not yet consumed, in order
+    private final LinkedBlockingQueue<Chunk> filled = new LinkedBlockingQueue<>();
+    // Consumed chunks, ready for reuse by the producer
+    private final ConcurrentLinkedQueue<Chunk> free = new ConcurrentLinkedQueue<>();
+    private volatile boolean finished = false;
+
+    /**
+     * @param chunkBytes Size of the recycled chunk arrays, ideally the capture read size.
+     */
+    public PcmStream(int chunkBytes) {
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Copies the remaining bytes of a buffer into the stream. The buffer position is left untouched.
+     * Called from the producer (capture) thread.
+     *
+     * @param pcm Little-endian 16-bit PCM, between position and limit.
+     */
+    public void write(ByteBuffer pcm) {
+        if (finished) return;
+        int start = pcm.position();
+        while (pcm.hasRemaining()) {
+            Chunk chunk = free.poll();
+            if (chunk == null) chunk = new Chunk(chunkBytes);
+            chunk.length = Math.min(pcm.remaining(), chunk.data.length);
+            pcm.get(chunk.data, 0, chunk.length);
+            filled.add(chunk);
+        }
+        pcm.position(start);
+    }
+
+    /**
+     * Marks the end of the recording; drainTo() returns once everything was consumed.
+     */
+    public void close() {
+        finish(END);
+    }
+
+    /**
+     * Marks the recording as discarded; drainTo() throws instead of completing.
+     */
+    public void abort() {
+        finish(ABORT);
+    }
+
+    private synchronized void finish(Chunk marker) {
+        if (finished) return;
+        finished = true;
+        filled.add(marker);
+    }
+
+    /**
+     * Writes every chunk to the output as it arrives, until the stream is closed.
+     * The output is flushed whenever the consumer has caught up with the producer,
+     * so data reaches the socket while the recording continues.
+     *
+     * @param out The destination; it is flushed but not closed.
+     * @throws IOException If writing fails, the stream was aborted or the thread was interrupted.
+     */
+    public void drainTo(OutputStream out) throws IOException {
+        while (true) {
+            Chunk chunk = filled.poll();
+            if (chunk == null) {
+                out.flush();
+                try {
+                    chunk = filled.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for audio");
+                }
+            }
+            if (chunk == END) {
+                out.flush();
+                return;
+            }
+            if (chunk == ABORT) {
+                throw new IOException("Recording was aborted");
+            }
+            out.write(chunk.data, 0, chunk.length);
+            free.add(chunk);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.redyapp.Audio;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Signal-quality report of a recording, used to turn away recordings that cannot give a
+ * meaningful prediction before they are scored.
+ *
+ * analyze() goes over the PCM once, frame by frame, and measures:
+ * - the RMS and peak level in dBFS,
+ * - the share of clipped samples,
+ * - an SNR estimate: the loudest frames against the quietest ones (the noise floor between
+ *   taps); wind and handling noise fill the gaps and push it down,
+ * - the number of taps, found by an OnsetDetector fed the same frames.
+ *
+ * The verdict is REJECT for recordings that are silent, heavily clipped or mostly noise,
+ * WARN for ones that are usable but doubtful, GOOD otherwise.
+ */
+public final class SignalQuality {
+
+    public enum Verdict { GOOD, WARN, REJECT }
+
+    // Samples at or above this magnitude count as clipped (-0.2 dBFS)
+    static final int CLIP_LEVEL = 32_000;
+    // Quieter peaks mean nothing was recorded
+    static final double SILENT_PEAK_DB = -40.0;
+    static final double REJECT_CLIPPED_RATIO = 0.05;
+    static final double WARN_CLIPPED_RATIO = 0.005;
+    static final double REJECT_SNR_DB = 8.0;
+    static final double WARN_SNR_DB = 15.0;
+    // Share of frames averaged for the noise floor and for the signal level
+    private static final double EDGE_FRAMES = 0.1;
+    private static final int REFRACTORY_MS = 150;
+    private static final double EPSILON = 1e-10;
+
+    private final double rmsDb;
+    private final double peakDb;
+    private final double clippedRatio;
+    private final double snrDb;
+    private final int tapCount;
+    private final Verdict verdict;
+    private final String reason;
+
+    private SignalQuality(double rmsDb, double peakDb, double clippedRatio, double snrDb, int tapCount) {
+        this.rmsDb = rmsDb;
+        this.peakDb = peakDb;
+        this.clippedRatio = clippedRatio;
+        this.snrDb = snrDb;
+        this.tapCount = tapCount;
+
+        if (peakDb < SILENT_PEAK_DB) {
+            verdict = Verdict.REJECT;
+            reason = "Nothing was recorded. Check the microphone and tap closer to it.";
+        } else if (clippedRatio > REJECT_CLIPPED_RATIO) {
+            verdict = Verdict.REJECT;
+            reason = "The recording is overloaded. Hold the phone a little further from the melon.";
+        } else if (snrDb < REJECT_SNR_DB) {
+            verdict = Verdict.REJECT;
+            reason = "There is too much background noise (wind or handling). Try a quieter spot.";
+        } else if (tapCount == 0) {
+            verdict = Verdict.WARN;
+            reason = "No clear taps were heard.";
+        } else if (clippedRatio > WARN_CLIPPED_RATIO) {
+            verdict = Verdict.WARN;
+            reason = "Some taps were too loud and got clipped.";
+        } else if (snrDb < WARN_SNR_DB) {
+            verdict = Verdict.WARN;
+            reason = "The background is noisy; the result may be less reliable.";
+        } else {
+            verdict = Verdict.GOOD;
+            reason = null;
+        }
+    }
+
+    /**
+     * Measures a recording.
+     *
+     * @param audio The recording.
+     * @return Its quality report.
+     */
+    public static SignalQuality analyze(PcmAudio audio) {
+        short[] samples = audio.getSamples();
+        int count = audio.getSampleCount();
+        int frameSize = OnsetDetector.FRAME_SIZE;
+        int frames = count / frameSize;
+        double[] frameEnergy = new double[Math.max(1, frames)];
+        OnsetDetector detector = new OnsetDetector(audio.getSampleRate(), REFRACTORY_MS);
+
+        double sumSquares = 0;
+        int peak = 0;
+        int clipped = 0;
+        for (int offset = 0; offset < count; offset += frameSize) {
+            int end = Math.min(count, offset + frameSize);
+            double energy = 0;
+            for (int i = offset; i < end; i++) {
+                int sample = samples[i];
+                int magnitude = Math.abs(sample);
+                if (magnitude > peak) peak = magnitude;
+                if (magnitude >= CLIP_LEVEL) clipped++;
+                energy += (double) sample * sample;
+            }
+            sumSquares += energy;
+            if (end - offset == frameSize) {
+                frameEnergy[offset / frameSize] = energy / frameSize;
+                // Still in cache from the loop above
+                detector.process(samples, offset, frameSize);
+            }
+        }
+
+        double rmsDb = count > 0 ? toDb(sumSquares / count) : toDb(0);
+        double peakDb = 20.0 * Math.log10(peak / 32768.0 + EPSILON);
+        double clippedRatio = count > 0 ? (double) clipped / count : 0;
+        return new SignalQuality(rmsDb, peakDb, clippedRatio, estimateSnr(frameEnergy, frames), detector.getOnsetCount());
+    }
+
+    /**
+     * @return The mean energy of the loudest frames over that of the quietest ones, in dB.
+     */
+    private static double estimateSnr(double[] frameEnergy, int frames) {
+        if (frames < 2) return 0;
+        Arrays.sort(frameEnergy, 0, frames);
+        int edge = Math.max(1, (int) (frames * EDGE_FRAMES));
+        double noise = 0;
+        double signal = 0;
+        for (int i = 0; i < edge; i++) {
+            noise += frameEnergy[i];
+            signal += frameEnergy[frames - 1 - i];
+        }
+        return toDb(signal / edge) - toDb(noise / edge);
+    }
+
+    /**
+     * @return A mean square of 16-bit samples in dBFS.
+     */
+    private static double toDb(double meanSquare) {
+        return 10.0 * Math.log10(meanSquare / (32768.0 * 32768.0) + EPSILON);
+    }
+
+    public double getRmsDb() {
+        return rmsDb;
+    }
+
+    public double getPeakDb() {
+        return peakDb;
+    }
+
+    public double getClippedRatio() {
+        return clippedRatio;
+    }
+
+    public double getSnrDb() {
+        return snrDb;
+    }
+
+    public int getTapCount() {
+        return tapCount;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    /**
+     * @return Why the recording was rejected or warned about, for the user; null if GOOD.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s rms=%.1f dBFS peak=%.1f dBFS clipped=%.2f%% snr=%.1f dB taps=%d",
+                verdict, rmsDb, peakDb, clippedRatio * 100, snrDb, tapCount);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.redyapp.Audio;
+
+/**
+ * Turns the latest samples of a capture into a frame for the live level meter and spectrum.
+ *
+ * The window is Hann-weighted and transformed with an FFT; the spectrum is summarized in
+ * BANDS logarithmically spaced bands, each showing its loudest bin, scaled to 0..1 over
+ * MIN_DB..0 dB (0 dB being a full-scale sine). The level is the RMS and peak of the newest
+ * samples. All buffers are allocated in the constructor, so analyze() can run for every
+ * captured chunk without allocating.
+ */
+public final class SpectrumAnalyzer {
+
+    // 32 ms at 16 kHz
+    public static final int FFT_SIZE = 512;
+    public static final int BANDS = 24;
+    // Bottom of the scale; quieter bands and levels are drawn empty
+    public static final float MIN_DB = -90f;
+    private static final float MIN_HZ = 60f;
+    private static final double EPSILON = 1e-12;
+
+    /**
+     * One analyzed moment of the capture. Reused, see TripleBuffer.
+     */
+    public static final class Frame {
+        // RMS and peak level of the newest samples in dBFS, at least MIN_DB
+        public float levelDb = MIN_DB;
+        public float peakDb = MIN_DB;
+        // Band magnitudes from 0 (MIN_DB or below) to 1 (0 dB)
+        public final float[] bands = new float[BANDS];
+    }
+
+    private final Fft fft = new Fft(FFT_SIZE);
+    private final float[] window = new float[FFT_SIZE];
+    private final float[] re = new float[FFT_SIZE];
+    private final float[] im = new float[FFT_SIZE];
+    // FFT bins [bandStart, bandEnd) of each band
+    private final int[] bandStart = new int[BANDS];
+    private final int[] bandEnd = new int[BANDS];
+    // Power of a full-scale sine in its bin: (amplitude * window gain * size / 2)^2
+    private final double fullScalePower;
+
+    /**
+     * @param sampleRate The sample rate of the capture in Hz.
+     */
+    public SpectrumAnalyzer(int sampleRate) {
+        double windowSum = 0;
+        for (int i = 0; i < FFT_SIZE; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / FFT_SIZE));
+            windowSum += window[i];
+        }
+        fullScalePower = (windowSum / 2) * (windowSum / 2);
+
+        int lastBin = FFT_SIZE / 2 + 1;
+        double ratio = Math.pow(sampleRate / 2.0 / MIN_HZ, 1.0 / BANDS);
+        int previousEnd = Math.max(1, (int) (MIN_HZ * FFT_SIZE / sampleRate));
+        for (int b = 0; b < BANDS; b++) {
+            double upperHz = MIN_HZ * Math.pow(ratio, b + 1);
+            // Low bands narrower than a bin get one bin each
+            bandStart[b] = Math.min(previousEnd, lastBin - 1);
+            bandEnd[b] = Math.min(lastBin, Math.max(bandStart[b] + 1, (int) (upperHz * FFT_SIZE / sampleRate)));
+            previousEnd = bandEnd[b];
+        }
+    }
+
+    /**
+     * Analyzes the newest samples of a capture.
+     *
+     * @param samples FFT_SIZE samples, oldest first.
+     * @param levelSamples How many of the newest samples the level is measured over.
+     * @param out Receives the result.
+     */
+    public void analyze(short[] samples, int levelSamples, Frame out) {
+        double sumSquares = 0;
+        int peak = 0;
+        for (int i = FFT_SIZE - levelSamples; i < FFT_SIZE; i++) {
+            int sample = samples[i];
+            sumSquares += (double) sample * sample;
+            peak = Math.max(peak, Math.abs(sample));
+        }
+        out.levelDb = toDb(sumSquares / levelSamples / (32768.0 * 32768.0));
+        out.peakDb = toDb((double) peak * peak / (32768.0 * 32768.0));
+
+        for (int i = 0; i < FFT_SIZE; i++) {
+            re[i] = samples[i] / 32768f * window[i];
+            im[i] = 0f;
+        }
+        fft.transform(re, im);
+        for (int b = 0; b < BANDS; b++) {
+            float loudest = 0f;
+            for (int k = bandStart[b]; k < bandEnd[b]; k++) {
+                loudest = Math.max(loudest, re[k] * re[k] + im[k] * im[k]);
+            }
+            float db = toDb(loudest / fullScalePower);
+            out.bands[b] = (db - MIN_DB) / -MIN_DB;
+        }
+    }
+
+    /**
+     * @return A power ratio in dB, clamped to MIN_DB..0.
+     */
+    private static float toDb(double power) {
+        return (float) Math.max(MIN_DB, Math.min(0.0, 10.0 * Math.log10(power + EPSILON)));
+    }
+}
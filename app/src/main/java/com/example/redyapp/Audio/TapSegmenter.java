@@ -0,0 +1,108 @@
+package com.example.redyapp.Audio;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a recording into its separate taps.
+ *
+ * Users usually knock a melon several times within one recording. The taps are found with an
+ * OnsetDetector; each segment starts a little before its onset and ends at the next tap or
+ * after MAX_TAP_MS, whichever comes first, so the ring-out of a tap is kept while the next
+ * knock is not. Segments too short to score are dropped.
+ *
+ * Recordings made by AudioCaptureEngine hold only a short window around each tap, and mark
+ * those windows in the file (see PcmAudio.getMarkedTaps()). Their windows are used as they are,
+ * with the onsets the engine heard in the original capture rather than in the shortened file.
+ */
+public final class TapSegmenter {
+
+    // Minimum time between two taps; faster knocks are one tap ringing
+    private static final int REFRACTORY_MS = 150;
+    // Audio kept before the detected onset, as the onset is only frame-accurate
+    static final int PRE_ROLL_MS = 20;
+    // Longest segment, pre-roll included: the ring-out of a tap has died down by then
+    static final int MAX_TAP_MS = 700;
+    // Shortest segment worth scoring
+    static final int MIN_TAP_MS = 150;
+
+    /**
+     * A tap as a range of samples in the recording.
+     */
+    public static final class Segment {
+        public final int start;
+        public final int length;
+        // Start of the tap in the recording, as it was captured
+        public final long onsetMs;
+
+        Segment(int start, int length, long onsetMs) {
+            this.start = start;
+            this.length = length;
+            this.onsetMs = onsetMs;
+        }
+    }
+
+    private TapSegmenter() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Finds the taps of a recording.
+     *
+     * @param audio The recording.
+     * @param maxTaps The most segments to return; later taps are ignored.
+     * @return The taps in recording order, possibly none.
+     */
+    public static List<Segment> split(PcmAudio audio, int maxTaps) {
+        int sampleRate = audio.getSampleRate();
+        int count = audio.getSampleCount();
+        short[] samples = audio.getSamples();
+
+        List<Segment> marked = audio.getMarkedTaps();
+        if (marked != null) {
+            List<Segment> segments = new ArrayList<>();
+            for (Segment segment : marked) {
+                if (segments.size() >= maxTaps) break;
+                if (isLongEnough(segment.length, sampleRate)) segments.add(segment);
+            }
+            return segments;
+        }
+
+        // Frame by frame, so every onset of the recording is seen
+        List<Integer> onsets = new ArrayList<>();
+        OnsetDetector detector = new OnsetDetector(sampleRate, REFRACTORY_MS);
+        for (int offset = 0; offset + OnsetDetector.FRAME_SIZE <= count; offset += OnsetDetector.FRAME_SIZE) {
+            long onset = detector.process(samples, offset, OnsetDetector.FRAME_SIZE);
+            if (onset >= 0) onsets.add((int) onset);
+        }
+
+        int preRoll = toSamples(PRE_ROLL_MS, sampleRate);
+        int maxLength = toSamples(MAX_TAP_MS, sampleRate);
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < onsets.size() && segments.size() < maxTaps; i++) {
+            int onset = onsets.get(i);
+            int start = Math.max(0, onset - preRoll);
+            int end = Math.min(count, start + maxLength);
+            if (i + 1 < onsets.size()) {
+                end = Math.min(end, onsets.get(i + 1) - preRoll);
+            }
+            if (isLongEnough(end - start, sampleRate)) {
+                segments.add(new Segment(start, end - start, onset * 1000L / sampleRate));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @param length A segment length in samples.
+     * @param sampleRate The sample rate.
+     * @return true if a segment of this length is worth scoring.
+     */
+    public static boolean isLongEnough(int length, int sampleRate) {
+        return length >= toSamples(MIN_TAP_MS, sampleRate);
+    }
+
+    private static int toSamples(int millis, int sampleRate) {
+        return (int) ((long) millis * sampleRate / 1000);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.redyapp.Audio;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free handoff of the latest value from one producer thread to one consumer thread.
+ *
+ * Three preallocated slots rotate between the producer (the one it is filling), the consumer
+ * (the one it is reading) and the middle (the latest published one). Publishing and acquiring
+ * each swap a slot with the middle through a single atomic exchange, so neither side ever
+ * waits for the other or allocates, and a slow consumer simply skips to the newest value.
+ *
+ * Exactly one thread may call getBackSlot()/publish() and exactly one thread may call
+ * acquire()/getFrontSlot().
+ *
+ * @param <T> The slot type, typically a mutable frame reused forever.
+ */
+public final class TripleBuffer<T> {
+
+    // The middle slot index lives in the low bits; the flag marks it as not yet acquired
+    private static final int INDEX_MASK = 0b11;
+    private static final int FRESH = 0b100;
+
+    private final Object[] slots;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    // Owned by the producer and the consumer respectively
+    private int back = 0;
+    private int front = 2;
+
+    public TripleBuffer(T first, T second, T third) {
+        this.slots = new Object[]{first, second, third};
+    }
+
+    /**
+     * @return The slot the producer fills next. Producer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBackSlot() {
+        return (T) slots[back];
+    }
+
+    /**
+     * Makes the filled back slot the latest value and hands the producer a free slot.
+     * Producer thread only.
+     */
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Takes the latest published value, if there is one the consumer has not seen.
+     * Consumer thread only.
+     *
+     * @return true if getFrontSlot() now holds a newer value.
+     */
+    public boolean acquire() {
+        if ((middle.get() & FRESH) == 0) return false;
+        front = middle.getAndSet(front) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * @return The slot the consumer reads, stable until its next acquire(). Consumer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    public T getFrontSlot() {
+        return (T) slots[front];
+    }
+}
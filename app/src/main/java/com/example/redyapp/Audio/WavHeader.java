@@ -0,0 +1,100 @@
+package com.example.redyapp.Audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Builds the 44-byte RIFF/WAVE header for 16-bit PCM audio.
+ * The header is written into a caller-supplied buffer so the capture engine can
+ * compute it once per recording without any intermediate allocations.
+ */
+public final class WavHeader {
+
+    // Size of a canonical PCM WAV header in bytes
+    public static final int HEADER_SIZE = 44;
+    // Size value used for both RIFF and data chunks when the final length is unknown (streaming)
+    public static final int UNKNOWN_SIZE = 0xFFFFFFFF;
+    // "taps" chunk that AudioCaptureEngine writes after the audio: the tap count, then for
+    // each tap its first frame in the data chunk, its length in frames and the frame of its
+    // onset counted from the start of the capture (all 32-bit). Other readers skip it.
+    public static final int TAP_CHUNK_ID = 0x73706174;
+    public static final int TAP_ENTRY_SIZE = 12;
+
+    private WavHeader() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Allocates a new header buffer and fills it for the given format.
+     *
+     * @param sampleRate The sample rate in Hz (e.g., 16000).
+     * @param channels The number of interleaved channels.
+     * @param bitsPerSample The sample width in bits (16 for PCM_16BIT).
+     * @param dataBytes The length of the PCM payload in bytes, or UNKNOWN_SIZE for a stream.
+     * @return A little-endian buffer positioned at 0 with the limit set to HEADER_SIZE.
+     */
+    public static ByteBuffer create(int sampleRate, int channels, int bitsPerSample, int dataBytes) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        write(header, sampleRate, channels, bitsPerSample, dataBytes);
+        return header;
+    }
+
+    /**
+     * Writes the header into an existing buffer, starting at index 0.
+     * The buffer is left flipped and ready to be written to a channel or stream.
+     *
+     * @param header A buffer with at least HEADER_SIZE bytes of capacity.
+     * @param sampleRate The sample rate in Hz.
+     * @param channels The number of interleaved channels.
+     * @param bitsPerSample The sample width in bits.
+     * @param dataBytes The length of the PCM payload in bytes, or UNKNOWN_SIZE for a stream.
+     */
+    public static void write(ByteBuffer header, int sampleRate, int channels, int bitsPerSample, int dataBytes) {
+        write(header, sampleRate, channels, bitsPerSample, dataBytes, 0);
+    }
+
+    /**
+     * Writes the header of a file that has more chunks after the audio.
+     *
+     * @param header A buffer with at least HEADER_SIZE bytes of capacity.
+     * @param sampleRate The sample rate in Hz.
+     * @param channels The number of interleaved channels.
+     * @param bitsPerSample The sample width in bits.
+     * @param dataBytes The length of the PCM payload in bytes (even).
+     * @param trailingBytes The size of the chunks after the audio, chunk headers included.
+     */
+    public static void write(ByteBuffer header, int sampleRate, int channels, int bitsPerSample,
+                             int dataBytes, int trailingBytes) {
+        int blockAlign = channels * (bitsPerSample / 8);
+        int byteRate = sampleRate * blockAlign;
+        int riffSize = dataBytes == UNKNOWN_SIZE ? UNKNOWN_SIZE : dataBytes + HEADER_SIZE - 8 + trailingBytes;
+
+        header.clear();
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        // RIFF chunk descriptor
+        header.put((byte) 'R').put((byte) 'I').put((byte) 'F').put((byte) 'F');
+        header.putInt(riffSize);
+        header.put((byte) 'W').put((byte) 'A').put((byte) 'V').put((byte) 'E');
+        // "fmt " sub-chunk (16 bytes for PCM)
+        header.put((byte) 'f').put((byte) 'm').put((byte) 't').put((byte) ' ');
+        header.putInt(16);
+        header.putShort((short) 1); // Audio format 1 = linear PCM
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(byteRate);
+        header.putShort((short) blockAlign);
+        header.putShort((short) bitsPerSample);
+        // "data" sub-chunk
+        header.put((byte) 'd').put((byte) 'a').put((byte) 't').put((byte) 'a');
+        header.putInt(dataBytes);
+        header.flip();
+    }
+
+    /**
+     * @param taps The number of taps.
+     * @return The size of a "taps" chunk, chunk header included.
+     */
+    public static int tapChunkSize(int taps) {
+        return 8 + 4 + taps * TAP_ENTRY_SIZE;
+    }
+}
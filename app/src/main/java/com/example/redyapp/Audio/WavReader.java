@@ -0,0 +1,154 @@
+package com.example.redyapp.Audio;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads 16-bit PCM WAV files into mono sample arrays.
+ * Multi-channel files are mixed down by averaging the channels.
+ * Compressed or non-16-bit WAV files are rejected with an IOException.
+ * The tap windows that AudioCaptureEngine marks in its recordings are read along with the samples.
+ */
+public final class WavReader {
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private WavReader() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Reads a WAV file.
+     *
+     * @param file The file to read.
+     * @return The mono samples and sample rate.
+     * @throws IOException If the file cannot be read or is not 16-bit PCM.
+     */
+    public static PcmAudio read(File file) throws IOException {
+        return parse(map(file));
+    }
+
+    /**
+     * Maps a whole WAV file into memory, for callers that need its bytes as well as its samples
+     * (e.g. to hash them); parse() the returned buffer to read the samples.
+     *
+     * @param file The file to map.
+     * @return The read-only file contents, positioned at the start.
+     * @throws IOException If the file cannot be read or is too small or too large for a WAV file.
+     */
+    public static ByteBuffer map(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file);
+             FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            if (size < WavHeader.HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected WAV size: " + size);
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    /**
+     * Parses a complete WAV file held in memory.
+     *
+     * @param buffer The file contents, positioned at the start of the RIFF header.
+     * @return The mono samples and sample rate.
+     * @throws IOException If the data is not a 16-bit PCM WAV file.
+     */
+    public static PcmAudio parse(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != 0x46464952 /* "RIFF" */) throw new IOException("Not a RIFF file");
+        buffer.getInt(); // RIFF size, unreliable for streamed files
+        if (buffer.getInt() != 0x45564157 /* "WAVE" */) throw new IOException("Not a WAVE file");
+
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+        short[] samples = null;
+        int tapChunk = -1;
+        long tapChunkSize = 0;
+        while (buffer.remaining() >= 8) {
+            int chunkId = buffer.getInt();
+            long chunkSize = buffer.getInt() & 0xFFFFFFFFL;
+            if (chunkId == 0x20746D66 /* "fmt " */) {
+                int start = buffer.position();
+                int format = buffer.getShort() & 0xFFFF;
+                channels = buffer.getShort() & 0xFFFF;
+                sampleRate = buffer.getInt();
+                buffer.getInt(); // byte rate
+                buffer.getShort(); // block align
+                bitsPerSample = buffer.getShort() & 0xFFFF;
+                if (format != FORMAT_PCM && format != FORMAT_EXTENSIBLE) {
+                    throw new IOException("Unsupported WAV format: " + format);
+                }
+                buffer.position(start + (int) chunkSize + (int) (chunkSize & 1));
+            } else if (chunkId == 0x61746164 /* "data" */) {
+                if (channels == 0 || bitsPerSample != 16) {
+                    throw new IOException("Only 16-bit PCM WAV is supported");
+                }
+                // Streamed files may carry an unknown size; use whatever is present
+                int start = buffer.position();
+                int dataBytes = (int) Math.min(chunkSize, buffer.remaining());
+                int frames = dataBytes / (2 * channels);
+                samples = new short[frames];
+                for (int i = 0; i < frames; i++) {
+                    int sum = 0;
+                    for (int c = 0; c < channels; c++) {
+                        sum += buffer.getShort();
+                    }
+                    samples[i] = (short) (sum / channels);
+                }
+                // Chunks may follow the audio
+                buffer.position(Math.min(buffer.limit(), start + dataBytes + (dataBytes & 1)));
+            } else {
+                // Skip unknown chunks (LIST, fact, ...), which are padded to an even size
+                long skip = chunkSize + (chunkSize & 1);
+                if (skip > buffer.remaining()) break;
+                if (chunkId == WavHeader.TAP_CHUNK_ID) {
+                    tapChunk = buffer.position();
+                    tapChunkSize = chunkSize;
+                }
+                buffer.position(buffer.position() + (int) skip);
+            }
+        }
+        if (samples == null) throw new IOException("WAV file has no data chunk");
+        List<TapSegmenter.Segment> taps = tapChunk >= 0
+                ? readTaps(buffer, tapChunk, tapChunkSize, samples.length, sampleRate)
+                : null;
+        return new PcmAudio(samples, samples.length, sampleRate, taps);
+    }
+
+    /**
+     * Reads the tap windows of a "taps" chunk (see WavHeader.TAP_CHUNK_ID).
+     *
+     * @param buffer The file contents.
+     * @param start The index of the chunk contents.
+     * @param size The size of the chunk contents.
+     * @param frames The number of frames in the data chunk.
+     * @param sampleRate The sample rate, to convert the onsets.
+     * @return The windows, or null if the chunk does not fit the audio.
+     */
+    private static List<TapSegmenter.Segment> readTaps(ByteBuffer buffer, int start, long size, int frames, int sampleRate) {
+        if (size < 4 || sampleRate <= 0) return null;
+        int count = buffer.getInt(start);
+        if (count < 0 || size < 4 + (long) count * WavHeader.TAP_ENTRY_SIZE) return null;
+        List<TapSegmenter.Segment> taps = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int entry = start + 4 + i * WavHeader.TAP_ENTRY_SIZE;
+            int first = buffer.getInt(entry);
+            int length = buffer.getInt(entry + 4);
+            long onsetFrame = buffer.getInt(entry + 8) & 0xFFFFFFFFL;
+            if (first < 0 || length <= 0 || (long) first + length > frames) return null;
+            taps.add(new TapSegmenter.Segment(first, length, onsetFrame * 1000 / sampleRate));
+        }
+        return taps;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.redyapp.Audio;
+
+/**
+ * Downsamples a recording to a small min/max peak array for drawing its waveform.
+ *
+ * The result holds BUCKETS pairs of bytes, {min0, max0, min1, max1, ...}: the lowest and
+ * highest sample of each equal slice of the recording, scaled from 16 to 8 bits. At the default
+ * size this is 256 bytes, small enough to store with each history item and draw while
+ * scrolling without touching the audio file.
+ */
+public final class WaveformPeaks {
+
+    // Number of min/max pairs per recording
+    public static final int BUCKETS = 128;
+
+    private WaveformPeaks() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Computes the peaks of a recording.
+     *
+     * @param audio The decoded recording.
+     * @param buckets The number of min/max pairs to produce.
+     * @return 2 * buckets bytes; slices with no samples (very short recordings) are 0.
+     */
+    public static byte[] compute(PcmAudio audio, int buckets) {
+        short[] samples = audio.getSamples();
+        int sampleCount = audio.getSampleCount();
+        byte[] peaks = new byte[buckets * 2];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int start = (int) ((long) bucket * sampleCount / buckets);
+            int end = (int) ((long) (bucket + 1) * sampleCount / buckets);
+            if (start >= end) continue;
+            int min = Short.MAX_VALUE;
+            int max = Short.MIN_VALUE;
+            for (int i = start; i < end; i++) {
+                int sample = samples[i];
+                if (sample < min) min = sample;
+                if (sample > max) max = sample;
+            }
+            // Arithmetic shift keeps the sign: -32768..32767 -> -128..127
+            peaks[bucket * 2] = (byte) (min >> 8);
+            peaks[bucket * 2 + 1] = (byte) (max >> 8);
+        }
+        return peaks;
+    }
+
+    /**
+     * @param peaks A peak array from compute().
+     * @return The largest absolute peak, 0 for silence; used to scale the drawing.
+     */
+    public static int maxAmplitude(byte[] peaks) {
+        int max = 0;
+        for (byte peak : peaks) {
+            max = Math.max(max, Math.abs(peak));
+        }
+        return max;
+    }
+}
@@ -1,15 +1,24 @@
 package com.example.redyapp;
 
 import androidx.room.TypeConverter;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Type Converters for Room to handle data types it doesn't natively support.
- * In this case, it converts a Date object to a Long (timestamp) and back,
- * so that dates can be stored in the database.
+ * It converts a Date object to a Long (timestamp) and back, so that dates can be stored
+ * in the database, and the per-tap scores of a prediction to the same JSON the backend uses.
  */
 public class Converters {
 
+    private static final Gson GSON = new Gson();
+    private static final Type TAP_SCORES_TYPE = new TypeToken<List<PredictionResponse.TapScore>>() {}.getType();
+
     /**
      * Converts a Long timestamp from the database into a Date object.
      * @param value The Long timestamp.
@@ -29,4 +38,24 @@ public class Converters {
     public static Long dateToTimestamp(Date date) {
         return date == null ? null : date.getTime();
     }
+
+    /**
+     * Converts a JSON array from the database into a list of tap scores.
+     * @param json The JSON text.
+     * @return The tap scores, or null if the text was null.
+     */
+    @TypeConverter
+    public static List<PredictionResponse.TapScore> fromTapScoresJson(String json) {
+        return json == null ? null : GSON.fromJson(json, TAP_SCORES_TYPE);
+    }
+
+    /**
+     * Converts a list of tap scores into a JSON array to be stored in the database.
+     * @param tapScores The tap scores.
+     * @return The JSON text, or null if the list was null.
+     */
+    @TypeConverter
+    public static String tapScoresToJson(List<PredictionResponse.TapScore> tapScores) {
+        return tapScores == null ? null : GSON.toJson(tapScores, TAP_SCORES_TYPE);
+    }
 }
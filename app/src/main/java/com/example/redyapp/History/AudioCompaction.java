@@ -0,0 +1,61 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the history recordings within their storage budget, in three tiers:
+ * recent recordings stay as recorded (WAV), older ones are transcoded to AAC, and when the
+ * total still exceeds the budget from AppSettings the least recently used recordings are
+ * deleted (their prediction rows are kept). The work is done by AudioCompactionWorker.
+ */
+public final class AudioCompaction {
+
+    // Unique work names: the daily run and an extra run after a settings change
+    private static final String PERIODIC_WORK_NAME = "audio_compaction";
+    private static final String ONE_TIME_WORK_NAME = "audio_compaction_now";
+
+    private AudioCompaction() {
+    }
+
+    /**
+     * Schedules the daily compaction, unless it is already scheduled.
+     *
+     * @param context Any context; the application context is used.
+     */
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(AudioCompactionWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints())
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniquePeriodicWork(PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Runs a compaction soon, e.g. after the storage budget was lowered.
+     *
+     * @param context Any context; the application context is used.
+     */
+    public static void runNow(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(AudioCompactionWorker.class)
+                .setConstraints(constraints())
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniqueWork(ONE_TIME_WORK_NAME, ExistingWorkPolicy.REPLACE, request);
+    }
+
+    // Transcoding is CPU work that can wait; don't drain a low battery for it
+    private static Constraints constraints() {
+        return new Constraints.Builder()
+                .setRequiresBatteryNotLow(true)
+                .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.AppSettings;
+import com.example.redyapp.Audio.AacEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacts the history recordings (see AudioCompaction).
+ *
+ * This worker:
+ * 1. Fills in the size of recordings saved before sizes were tracked
+ * 2. Fills in the duration and waveform of recordings that have none (see WaveformGenerator),
+ *    before they are compressed
+ * 3. Transcodes WAV recordings older than COMPACT_AFTER_DAYS to AAC, replacing the WAV
+ * 4. Deletes the least recently used recordings while the total exceeds the storage budget
+ *
+ * Recordings still waiting in the upload queue are never touched. The database row is always
+ * updated before the old file is deleted, so a crash leaves at worst an unreferenced file.
+ * Rows are updated through the database writer, waiting for each update (see
+ * AppExecutors.awaitDatabaseWrite()).
+ */
+public class AudioCompactionWorker extends Worker {
+
+    private static final String TAG = "AudioCompactionWorker";
+    // Recordings younger than this stay uncompressed
+    static final int COMPACT_AFTER_DAYS = 7;
+    // Number of items read from the database per round
+    private static final int BATCH_SIZE = 25;
+    private static final long BYTES_PER_MB = 1024L * 1024;
+
+    // Periodic and one-time runs may overlap; only one compacts at a time
+    private static final Object LOCK = new Object();
+
+    private final HistoryDao historyDao;
+    private final AppSettings appSettings;
+    private final AppExecutors executors = AppExecutors.getInstance();
+
+    public AudioCompactionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+        historyDao = HistoryDatabase.getInstance(context).historyDao();
+        appSettings = new AppSettings(context);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        synchronized (LOCK) {
+            fillInSizes();
+            fillInWaveforms();
+            long saved = compactOldRecordings();
+            long evicted = enforceBudget(appSettings.getAudioStorageBudgetMb() * BYTES_PER_MB);
+            Log.d(TAG, "Compaction saved " + saved + " bytes, eviction freed " + evicted
+                    + " bytes, " + historyDao.getTotalAudioBytes() + " bytes stored");
+        }
+        return Result.success();
+    }
+
+    /**
+     * Records codec and size for items saved before they were tracked. Items whose file is
+     * gone lose their audio reference.
+     */
+    private void fillInSizes() {
+        while (!isStopped()) {
+            List<HistoryItem> items = historyDao.getItemsWithoutAudioSize(BATCH_SIZE);
+            if (items.isEmpty()) return;
+            for (HistoryItem item : items) {
+                File file = new File(item.getLocalAudioPath());
+                if (file.length() > 0) {
+                    String codec = item.getAudioCodec() != null ? item.getAudioCodec() : HistoryItem.CODEC_WAV;
+                    executors.awaitDatabaseWrite(() ->
+                            historyDao.updateAudio(item.getId(), item.getLocalAudioPath(), codec, file.length()));
+                } else {
+                    Log.w(TAG, "Recording of item " + item.getId() + " is missing");
+                    executors.awaitDatabaseWrite(() -> historyDao.clearAudio(item.getId(), item.getLocalAudioPath()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the waveform of items saved before waveforms were computed, or whose background
+     * computation was interrupted. Every processed item gets a waveform, empty on failure.
+     */
+    private void fillInWaveforms() {
+        while (!isStopped()) {
+            List<HistoryItem> items = historyDao.getItemsWithoutWaveform(BATCH_SIZE);
+            if (items.isEmpty()) return;
+            for (HistoryItem item : items) {
+                if (isStopped()) return;
+                WaveformGenerator.generate(historyDao, item);
+            }
+        }
+    }
+
+    /**
+     * Transcodes old WAV recordings to AAC.
+     *
+     * @return The number of bytes saved.
+     */
+    private long compactOldRecordings() {
+        Date olderThan = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(COMPACT_AFTER_DAYS));
+        // Items that failed to encode in this run, so they are not picked again
+        Set<Integer> failed = new HashSet<>();
+        long saved = 0;
+        while (!isStopped()) {
+            List<HistoryItem> candidates = historyDao.getCompactionCandidates(HistoryItem.CODEC_WAV, olderThan,
+                    BATCH_SIZE + failed.size());
+            boolean progressed = false;
+            for (HistoryItem item : candidates) {
+                if (isStopped()) break;
+                if (failed.contains(item.getId())) continue;
+                progressed = true;
+                long before = item.getAudioSizeBytes();
+                long after = compact(item);
+                if (after < 0) {
+                    failed.add(item.getId());
+                } else {
+                    saved += before - after;
+                }
+            }
+            if (!progressed) break;
+        }
+        return saved;
+    }
+
+    /**
+     * Transcodes one recording and points its row at the new file.
+     *
+     * @return The size of the new file, or -1 if the recording could not be compacted.
+     */
+    private long compact(HistoryItem item) {
+        File source = new File(item.getLocalAudioPath());
+        File target = null;
+        try {
+            target = File.createTempFile("rec_" + System.currentTimeMillis() + "_", ".m4a",
+                    HistoryAudioStore.getDirectory(getApplicationContext()));
+            AacEncoder.encode(source, target);
+            File encoded = target;
+            int updated = executors.awaitDatabaseWrite(() ->
+                    historyDao.updateAudio(item.getId(), encoded.getAbsolutePath(), HistoryItem.CODEC_AAC, encoded.length()));
+            if (updated == 0) {
+                // The item was deleted while it was being encoded
+                target.delete();
+                return -1;
+            }
+            source.delete();
+            return target.length();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not compact " + source.getName() + ": " + e.getMessage());
+            if (target != null) target.delete();
+            return -1;
+        }
+    }
+
+    /**
+     * Deletes the least recently used recordings until the total fits the budget.
+     *
+     * @param budgetBytes The budget, 0 for no limit.
+     * @return The number of bytes freed.
+     */
+    private long enforceBudget(long budgetBytes) {
+        if (budgetBytes <= 0) return 0;
+        long total = historyDao.getTotalAudioBytes();
+        long freed = 0;
+        while (total > budgetBytes && !isStopped()) {
+            List<HistoryItem> leastRecentlyUsed = historyDao.getLeastRecentlyUsedAudio(BATCH_SIZE);
+            if (leastRecentlyUsed.isEmpty()) break;
+            for (HistoryItem item : leastRecentlyUsed) {
+                if (total <= budgetBytes) break;
+                // Forget the file first; an undeleted file is only an orphan, never a broken row.
+                // A row that points elsewhere by now is not deleted from under its new file.
+                int cleared = executors.awaitDatabaseWrite(() ->
+                        historyDao.clearAudio(item.getId(), item.getLocalAudioPath()));
+                if (cleared == 0) continue;
+                new File(item.getLocalAudioPath()).delete();
+                total -= item.getAudioSizeBytes();
+                freed += item.getAudioSizeBytes();
+            }
+        }
+        return freed;
+    }
+}
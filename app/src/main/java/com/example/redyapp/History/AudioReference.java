@@ -0,0 +1,11 @@
+package com.example.redyapp.History;
+
+/**
+ * The audio file a history item points to, read without the rest of the row.
+ * Filled by Room from HistoryDao.getAudioReferencesAfter().
+ */
+public class AudioReference {
+
+    public int id;
+    public String localAudioPath;
+}
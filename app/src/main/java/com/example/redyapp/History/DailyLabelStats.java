@@ -0,0 +1,16 @@
+package com.example.redyapp.History;
+
+/**
+ * One row of the per-day rollup of the history: the items of one label on one local day.
+ * Filled by Room from HistoryDao.getDailyStats().
+ */
+public class DailyLabelStats {
+
+    // Local calendar day, formatted yyyy-MM-dd by SQLite
+    public String day;
+    public String predictedLabel;
+    // Number of items with this label that day
+    public int count;
+    // Mean confidence of those items
+    public double averageConfidence;
+}
@@ -1,28 +1,58 @@
 package com.example.redyapp.History;
 
+import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.Spinner;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.redyapp.AppExecutors;
 import com.example.redyapp.R;
 
 import java.io.File;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Calendar;
+import java.util.Date;
 
 /**
  * An activity that displays a list of past prediction results from the local Room database.
- * It observes changes in the database and updates the UI accordingly.
- * It also handles user interactions, such as deleting history items.
+ * The list is loaded page by page as it is scrolled (see HistoryPager), and the pages on
+ * screen are refreshed when the database changes. The list can be narrowed with a full-text search
+ * over labels, notes and tags and with period and confidence filters (see HistoryFilter).
+ * It also handles user interactions, such as deleting history items and editing their notes.
  */
 public class HistoryActivity extends AppCompatActivity implements HistoryAdapter.OnHistoryItemInteractionListener {
 
     private HistoryAdapter historyAdapter;
     private HistoryDatabase historyDatabase;
-    private final ExecutorService databaseExecutor = Executors.newSingleThreadExecutor();
+    private final AppExecutors executors = AppExecutors.getInstance();
+    // Loads the history in pages and reloads them when the table changes
+    private HistoryPager historyPager;
+
+    // Wait for a pause in typing before searching
+    private static final long SEARCH_DELAY_MS = 250;
+    // Filter choices, matching the spinner entries by position
+    private static final String[] PERIODS = {"Any time", "Today", "Last 7 days", "Last 30 days"};
+    private static final int[] PERIOD_DAYS = {-1, 0, 6, 29};
+    private static final String[] CONFIDENCES = {"Any confidence", "Confidence 80%+", "Confidence 50%+", "Confidence below 50%"};
+    private static final double[][] CONFIDENCE_RANGES = {{0, 1}, {0.8, 1}, {0.5, 1}, {0, 0.5}};
+
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private EditText searchInput;
+    private Spinner periodSpinner;
+    private Spinner confidenceSpinner;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,23 +64,152 @@ public class HistoryActivity extends AppCompatActivity implements HistoryAdapter
 
         // Set up the RecyclerView
         RecyclerView recyclerView = findViewById(R.id.history_recycler_view);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
 
         // Initialize the adapter and pass 'this' as the listener for delete callbacks
         // *** THIS LINE IS THE FIX ***
         historyAdapter = new HistoryAdapter(this);
         recyclerView.setAdapter(historyAdapter);
 
-        // Observe the LiveData from the database.
-        // When the data changes (e.g., an item is added or deleted), the onChanged() method
-        // will be triggered, and the UI will be updated.
-        historyDatabase.historyDao().getAllHistoryItems().observe(this, historyItems -> {
+        // Load the history page by page. When the data changes (e.g., an item is added or
+        // deleted), the pages on screen are queried again and the UI is updated.
+        historyPager = new HistoryPager(historyDatabase, executors.diskIO(), historyItems -> {
             // Update the adapter's data set
             historyAdapter.setHistoryItems(historyItems);
+            // After the next layout, keep loading if the items don't fill the screen yet
+            recyclerView.post(() -> historyPager.loadAround(layoutManager.findFirstVisibleItemPosition(),
+                    layoutManager.findLastVisibleItemPosition()));
+        });
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                historyPager.loadAround(layoutManager.findFirstVisibleItemPosition(),
+                        layoutManager.findLastVisibleItemPosition());
+            }
         });
+        historyPager.start();
+
+        setUpFilters();
 
         // Set up the back button to close the activity
         findViewById(R.id.back_button).setOnClickListener(v -> finish());
+
+        // Open the statistics screen
+        findViewById(R.id.stats_button).setOnClickListener(v -> startActivity(new Intent(this, StatsActivity.class)));
+    }
+
+    /**
+     * Sets up the search box and the filter spinners. Any change replaces the pager's filter;
+     * typing is debounced so a query runs once the user pauses.
+     */
+    private void setUpFilters() {
+        searchInput = findViewById(R.id.search_input);
+        periodSpinner = findViewById(R.id.period_spinner);
+        confidenceSpinner = findViewById(R.id.confidence_spinner);
+
+        periodSpinner.setAdapter(createSpinnerAdapter(PERIODS));
+        confidenceSpinner.setAdapter(createSpinnerAdapter(CONFIDENCES));
+
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchHandler.removeCallbacks(applyFilter);
+                searchHandler.postDelayed(applyFilter, SEARCH_DELAY_MS);
+            }
+        });
+
+        AdapterView.OnItemSelectedListener onFilterSelected = new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                applyFilter.run();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        };
+        periodSpinner.setOnItemSelectedListener(onFilterSelected);
+        confidenceSpinner.setOnItemSelectedListener(onFilterSelected);
+    }
+
+    private ArrayAdapter<String> createSpinnerAdapter(String[] entries) {
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, entries);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        return adapter;
+    }
+
+    // Builds the filter from the search box and spinners and hands it to the pager
+    private final Runnable applyFilter = new Runnable() {
+        @Override
+        public void run() {
+            searchHandler.removeCallbacks(this);
+            int periodDays = PERIOD_DAYS[periodSpinner.getSelectedItemPosition()];
+            double[] confidence = CONFIDENCE_RANGES[confidenceSpinner.getSelectedItemPosition()];
+            HistoryFilter filter = new HistoryFilter(searchInput.getText().toString(),
+                    periodDays < 0 ? null : startOfDay(periodDays), null, confidence[0], confidence[1]);
+            historyPager.setFilter(filter);
+        }
+    };
+
+    /**
+     * @param daysAgo Number of days before today.
+     * @return Local midnight at the start of that day.
+     */
+    private static Date startOfDay(int daysAgo) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, -daysAgo);
+        return calendar.getTime();
+    }
+
+    /**
+     * This method is called from the HistoryAdapter when the user long-presses an item.
+     * Shows a dialog to edit the item's notes and tags, saved on a background thread.
+     * @param historyItem The item to edit.
+     */
+    @Override
+    public void onEditNotesClicked(HistoryItem historyItem) {
+        EditText notesInput = new EditText(this);
+        notesInput.setHint("Notes");
+        notesInput.setText(historyItem.getNotes());
+        EditText tagsInput = new EditText(this);
+        tagsInput.setHint("Tags (e.g. ripe market)");
+        tagsInput.setText(historyItem.getTags());
+
+        LinearLayout form = new LinearLayout(this);
+        form.setOrientation(LinearLayout.VERTICAL);
+        int padding = (int) (20 * getResources().getDisplayMetrics().density);
+        form.setPadding(padding, 0, padding, 0);
+        form.addView(notesInput);
+        form.addView(tagsInput);
+
+        new AlertDialog.Builder(this)
+                .setTitle("Notes and Tags")
+                .setView(form)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    String notes = notesInput.getText().toString().trim();
+                    String tags = tagsInput.getText().toString().trim();
+                    executors.databaseWrite().execute(() -> historyDatabase.historyDao().updateNotes(historyItem.getId(),
+                            notes.isEmpty() ? null : notes, tags.isEmpty() ? null : tags));
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    /**
+     * This method is called from the HistoryAdapter when a recording starts playing.
+     * Records the playback so recently played recordings are the last to be evicted.
+     * @param historyItem The item being played.
+     */
+    @Override
+    public void onPlaybackStarted(HistoryItem historyItem) {
+        executors.databaseWrite().execute(() -> historyDatabase.historyDao().markPlayed(historyItem.getId(), new Date()));
     }
 
     /**
@@ -77,11 +236,11 @@ public class HistoryActivity extends AppCompatActivity implements HistoryAdapter
      * @param historyItem The item to delete.
      */
     private void deleteItemFromDatabaseAndStorage(final HistoryItem historyItem) {
-        databaseExecutor.execute(() -> {
-            // Step 1: Delete the record from the Room database
-            historyDatabase.historyDao().delete(historyItem);
+        // Step 1: Delete the record from the Room database
+        executors.databaseWrite().execute(() -> historyDatabase.historyDao().delete(historyItem));
 
-            // Step 2: Delete the associated audio file from local storage
+        // Step 2: Delete the associated audio file from local storage
+        executors.diskIO().execute(() -> {
             String localPath = historyItem.getLocalAudioPath();
             if (localPath != null && !localPath.isEmpty()) {
                 File audioFile = new File(localPath);
@@ -96,13 +255,20 @@ public class HistoryActivity extends AppCompatActivity implements HistoryAdapter
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchHandler.removeCallbacks(applyFilter);
+        historyPager.stop();
+    }
+
     @Override
     protected void onStop() {
         super.onStop();
-        // It's crucial to release the MediaPlayer resources when the activity is no longer visible
+        // It's crucial to stop playback when the activity is no longer visible
         // to prevent audio from playing in the background.
         if (historyAdapter != null) {
-            historyAdapter.releaseMediaPlayer();
+            historyAdapter.stopPlayback();
         }
     }
 }
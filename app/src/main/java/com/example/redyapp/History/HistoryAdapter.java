@@ -1,43 +1,81 @@
 package com.example.redyapp.History;
 
-import android.media.MediaPlayer;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
-import android.widget.SeekBar;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.redyapp.Audio.ClipPlayer;
 import com.example.redyapp.R;
 
-import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
 
 public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.HistoryViewHolder> {
 
-    private List<HistoryItem> historyItems = new ArrayList<>();
+    // Items are the same row if they have the same id, and unchanged if every column matches
+    private static final DiffUtil.ItemCallback<HistoryItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<HistoryItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HistoryItem oldItem, @NonNull HistoryItem newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull HistoryItem oldItem, @NonNull HistoryItem newItem) {
+            return Objects.equals(oldItem.getPredictedLabel(), newItem.getPredictedLabel())
+                    && oldItem.getConfidence() == newItem.getConfidence()
+                    && Objects.equals(oldItem.getConfidenceVariance(), newItem.getConfidenceVariance())
+                    && Objects.equals(oldItem.getLocalAudioPath(), newItem.getLocalAudioPath())
+                    && Objects.equals(oldItem.getTimestamp(), newItem.getTimestamp())
+                    && Objects.equals(oldItem.getNotes(), newItem.getNotes())
+                    && Objects.equals(oldItem.getTags(), newItem.getTags())
+                    && oldItem.getDurationMs() == newItem.getDurationMs()
+                    && Arrays.equals(oldItem.getWaveform(), newItem.getWaveform());
+        }
+    };
+
+    // Computes list diffs on a background thread and dispatches granular updates
+    private final AsyncListDiffer<HistoryItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private final OnHistoryItemInteractionListener listener;
 
-    private MediaPlayer mediaPlayer;
-    private int currentlyPlayingPosition = -1;
+    // Shared playback engine; decoded recordings stay cached between plays
+    private final ClipPlayer player = ClipPlayer.getInstance();
+    private final Choreographer choreographer = Choreographer.getInstance();
+    // Id of the item being played (-1 if none), so playback survives list updates that move rows
+    private int playingItemId = -1;
     private HistoryViewHolder playingHolder;
-    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean progressScheduled;
+    // Reused "mm:ss / mm:ss" text of the playing row, rewritten only when the second changes
+    private final char[] progressText = "00:00 / 00:00".toCharArray();
+    private long shownSecond = -1;
 
     public interface OnHistoryItemInteractionListener {
         void onDeleteClicked(HistoryItem historyItem);
+
+        void onEditNotesClicked(HistoryItem historyItem);
+
+        void onPlaybackStarted(HistoryItem historyItem);
     }
 
     public HistoryAdapter(OnHistoryItemInteractionListener listener) {
         this.listener = listener;
+        // Stop playback if the playing item was removed from the list
+        differ.addListListener((previousList, currentList) -> {
+            if (playingItemId == -1) return;
+            for (HistoryItem item : currentList) {
+                // Rows of pages that are not loaded may hold it
+                if (item == null || item.getId() == playingItemId) return;
+            }
+            stopPlayback();
+        });
     }
 
     @NonNull
@@ -50,152 +88,270 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.HistoryV
 
     @Override
     public void onBindViewHolder(@NonNull HistoryViewHolder holder, int position) {
-        HistoryItem currentItem = historyItems.get(position);
-        holder.bind(currentItem);
+        HistoryItem currentItem = differ.getCurrentList().get(position);
+        if (currentItem != null) {
+            holder.bind(currentItem);
+        } else {
+            holder.bindPlaceholder();
+        }
     }
 
     @Override
     public int getItemCount() {
-        return historyItems.size();
+        return differ.getCurrentList().size();
     }
 
+    /**
+     * Replaces the list. The difference to the current list is computed in the background and
+     * only the inserted, removed and changed rows are updated.
+     * @param newHistoryItems The new list, with null for rows not loaded yet (see HistoryPager);
+     *                        it must not be modified afterwards.
+     */
     public void setHistoryItems(List<HistoryItem> newHistoryItems) {
-        this.historyItems = newHistoryItems;
-        notifyDataSetChanged();
+        differ.submitList(newHistoryItems);
     }
 
-    public void releaseMediaPlayer() {
-        if (mediaPlayer != null) {
-            handler.removeCallbacks(updateSeekBar);
-            mediaPlayer.release();
-            mediaPlayer = null;
-            currentlyPlayingPosition = -1;
+    /**
+     * Stops playback and resets the playing row.
+     */
+    public void stopPlayback() {
+        player.stop();
+        resetPlayingRow();
+    }
+
+    /**
+     * Forgets the playing row and shows it as not playing. The player keeps its clip loaded,
+     * so playing the same recording again starts at once.
+     */
+    private void resetPlayingRow() {
+        cancelProgress();
+        playingItemId = -1;
+        if (playingHolder != null) {
+            playingHolder.updateNonPlayingView();
+            playingHolder = null;
         }
     }
 
-    // Moved the Runnable here to be accessible by the whole adapter
-    private final Runnable updateSeekBar = new Runnable() {
+    // Created once and reused for every play
+    private final ClipPlayer.Listener playbackListener = new ClipPlayer.Listener() {
+        @Override
+        public void onPlaybackStarted() {
+            if (playingHolder != null) playingHolder.updatePlayingView();
+        }
+
+        @Override
+        public void onPlaybackCompleted() {
+            resetPlayingRow();
+        }
+
+        @Override
+        public void onPlaybackError(String message) {
+            Log.e("HistoryAdapter", message);
+            stopPlayback();
+        }
+    };
+
+    // Moves the playing row's waveform progress and time along, once per display frame
+    private final Choreographer.FrameCallback progressCallback = new Choreographer.FrameCallback() {
         @Override
-        public void run() {
-            if (mediaPlayer != null && mediaPlayer.isPlaying() && playingHolder != null) {
-                int currentPos = mediaPlayer.getCurrentPosition();
-                playingHolder.seekBar.setProgress(currentPos);
-
-                String currentTimeStr = String.format(Locale.getDefault(), "%02d:%02d",
-                        TimeUnit.MILLISECONDS.toMinutes(currentPos),
-                        TimeUnit.MILLISECONDS.toSeconds(currentPos) -
-                                TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(currentPos))
-                );
-                String totalTimeStr = String.format(Locale.getDefault(), "%02d:%02d",
-                        TimeUnit.MILLISECONDS.toMinutes(mediaPlayer.getDuration()),
-                        TimeUnit.MILLISECONDS.toSeconds(mediaPlayer.getDuration()) -
-                                TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(mediaPlayer.getDuration()))
-                );
-
-                playingHolder.durationTextView.setText(String.format("%s / %s", currentTimeStr, totalTimeStr));
-
-                handler.postDelayed(this, 200);
+        public void doFrame(long frameTimeNanos) {
+            progressScheduled = false;
+            if (player.isPlaying() && playingHolder != null) {
+                showProgress(playingHolder);
+                scheduleProgress();
             }
         }
     };
 
+    private void scheduleProgress() {
+        if (!progressScheduled) {
+            progressScheduled = true;
+            choreographer.postFrameCallback(progressCallback);
+        }
+    }
+
+    private void cancelProgress() {
+        choreographer.removeFrameCallback(progressCallback);
+        progressScheduled = false;
+    }
+
+    /**
+     * Shows the player's position on a row. Runs every frame while playing, so it allocates
+     * nothing: the time text is written into a reused char array.
+     */
+    private void showProgress(HistoryViewHolder holder) {
+        long position = player.getPositionMs();
+        long duration = player.getDurationMs();
+        holder.waveformView.setProgress(duration > 0 ? (float) position / duration : 0f);
+        long second = position / 1000;
+        if (second != shownSecond) {
+            shownSecond = second;
+            writeTime(progressText, 0, position);
+            writeTime(progressText, 8, duration);
+            holder.durationTextView.setText(progressText, 0, progressText.length);
+        }
+    }
+
+    /**
+     * Writes a time as "mm:ss" into a char array.
+     */
+    private static void writeTime(char[] text, int offset, long millis) {
+        long totalSeconds = millis / 1000;
+        int minutes = (int) Math.min(99, totalSeconds / 60);
+        int seconds = (int) (totalSeconds % 60);
+        text[offset] = (char) ('0' + minutes / 10);
+        text[offset + 1] = (char) ('0' + minutes % 10);
+        text[offset + 3] = (char) ('0' + seconds / 10);
+        text[offset + 4] = (char) ('0' + seconds % 10);
+    }
+
+    /**
+     * Decodes the recordings of the rows around a position in the background, as the next
+     * one played is likely a neighbour.
+     */
+    private void preloadNeighbours(int position) {
+        List<HistoryItem> items = differ.getCurrentList();
+        for (int i = position - 1; i <= position + 1; i += 2) {
+            if (i >= 0 && i < items.size() && items.get(i) != null && items.get(i).getLocalAudioPath() != null) {
+                player.preload(items.get(i).getLocalAudioPath());
+            }
+        }
+    }
+
     class HistoryViewHolder extends RecyclerView.ViewHolder {
-        TextView dateTextView, durationTextView;
+        TextView dateTextView, detailsTextView, durationTextView;
         ImageView playPauseButton, deleteButton;
-        SeekBar seekBar;
+        WaveformView waveformView;
+        // The bound item, read by the listeners
+        private HistoryItem item;
 
+        /**
+         * Finds the views and sets up their listeners once. The listeners act on whichever item
+         * is bound when they fire, so binding a row creates no objects.
+         */
         HistoryViewHolder(@NonNull View itemView) {
             super(itemView);
             dateTextView = itemView.findViewById(R.id.history_item_date);
+            detailsTextView = itemView.findViewById(R.id.history_item_details);
             durationTextView = itemView.findViewById(R.id.history_item_duration);
             playPauseButton = itemView.findViewById(R.id.history_item_play_pause);
             deleteButton = itemView.findViewById(R.id.history_item_delete);
-            seekBar = itemView.findViewById(R.id.history_item_seekbar);
+            waveformView = itemView.findViewById(R.id.history_item_waveform);
+
+            playPauseButton.setOnClickListener(v -> {
+                if (item != null) handlePlayPauseClick(item);
+            });
+
+            deleteButton.setOnClickListener(v -> {
+                if (item != null && listener != null) {
+                    listener.onDeleteClicked(item);
+                }
+            });
+
+            // Long press to write notes and tags for the item
+            itemView.setOnLongClickListener(v -> {
+                if (item != null && listener != null) {
+                    listener.onEditNotesClicked(item);
+                    return true;
+                }
+                return false;
+            });
+
+            waveformView.setOnSeekListener(fraction -> {
+                if (item != null && item.getId() == playingItemId && player.isLoaded(item.getLocalAudioPath())) {
+                    player.seekTo(fraction);
+                    shownSecond = -1;
+                    showProgress(this);
+                }
+            });
         }
 
+        /**
+         * Shows an item. The row text was formatted ahead of time (see HistoryRowText).
+         */
         void bind(final HistoryItem item) {
-            SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yy, HH:mm", Locale.getDefault());
-            dateTextView.setText(item.getTimestamp() != null ? sdf.format(item.getTimestamp()) : "No date");
+            this.item = item;
+            dateTextView.setText(HistoryRowText.date(item));
+            detailsTextView.setText(HistoryRowText.details(item));
+            waveformView.setPeaks(item.getWaveform());
 
-            if (getAdapterPosition() == currentlyPlayingPosition) {
+            if (item.getId() == playingItemId) {
                 playingHolder = this;
                 updatePlayingView();
             } else {
+                if (playingHolder == this) playingHolder = null; // Recycled for another item
                 updateNonPlayingView();
             }
 
-            playPauseButton.setOnClickListener(v -> handlePlayPauseClick(item));
-
-            deleteButton.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onDeleteClicked(item);
-                }
-            });
+            // The recording may have been removed to stay within the storage budget
+            boolean hasAudio = item.getLocalAudioPath() != null;
+            playPauseButton.setEnabled(hasAudio);
+            playPauseButton.setAlpha(hasAudio ? 1f : 0.3f);
+            waveformView.setEnabled(hasAudio);
+            if (!hasAudio) {
+                durationTextView.setText("Audio removed");
+            }
+        }
 
-            seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
-                @Override
-                public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
-                    if (fromUser && mediaPlayer != null && getAdapterPosition() == currentlyPlayingPosition) {
-                        mediaPlayer.seekTo(progress);
-                    }
-                }
-                @Override public void onStartTrackingTouch(SeekBar seekBar) {}
-                @Override public void onStopTrackingTouch(SeekBar seekBar) {}
-            });
+        /**
+         * Shows an empty row for an item that is not loaded yet.
+         */
+        void bindPlaceholder() {
+            item = null;
+            if (playingHolder == this) playingHolder = null;
+            dateTextView.setText(null);
+            detailsTextView.setText(null);
+            durationTextView.setText(null);
+            waveformView.setPeaks(null);
+            waveformView.setSeekable(false);
+            waveformView.setProgress(0);
+            playPauseButton.setImageResource(R.drawable.play);
+            playPauseButton.setEnabled(false);
+            waveformView.setEnabled(false);
         }
 
         private void handlePlayPauseClick(HistoryItem item) {
-            if (getAdapterPosition() == currentlyPlayingPosition) {
-                if (mediaPlayer.isPlaying()) {
-                    mediaPlayer.pause();
+            if (item.getId() == playingItemId && player.isLoaded(item.getLocalAudioPath())) {
+                if (player.isPlaying()) {
+                    player.pause();
                 } else {
-                    mediaPlayer.start();
+                    player.resume();
                 }
                 updatePlayingView();
             } else {
-                releaseMediaPlayer();
-                currentlyPlayingPosition = getAdapterPosition();
+                resetPlayingRow();
+                playingItemId = item.getId();
                 playingHolder = this;
-                startPlaying(item.getLocalAudioPath());
-            }
-        }
-
-        private void startPlaying(String localPath) {
-            mediaPlayer = new MediaPlayer();
-            try {
-                mediaPlayer.setDataSource(localPath);
-                mediaPlayer.setOnPreparedListener(mp -> {
-                    mp.start();
-                    updatePlayingView();
-                });
-                mediaPlayer.setOnCompletionListener(mp -> {
-                    releaseMediaPlayer();
-                    updateNonPlayingView();
-                });
-                mediaPlayer.prepareAsync();
-            } catch (IOException e) {
-                Log.e("HistoryAdapter", "MediaPlayer prepare() failed", e);
-                releaseMediaPlayer();
+                player.play(item.getLocalAudioPath(), playbackListener);
+                preloadNeighbours(getBindingAdapterPosition());
+                if (listener != null) {
+                    listener.onPlaybackStarted(item);
+                }
             }
         }
 
         void updatePlayingView() {
-            if (mediaPlayer != null) {
-                seekBar.setMax(mediaPlayer.getDuration());
-                if (mediaPlayer.isPlaying()) {
-                    playPauseButton.setImageResource(R.drawable.play);
-                    handler.post(updateSeekBar);
-                } else {
-                    playPauseButton.setImageResource(R.drawable.play);
-                    handler.removeCallbacks(updateSeekBar);
-                }
+            playPauseButton.setImageResource(R.drawable.play);
+            waveformView.setSeekable(true);
+            // Nothing to show while the recording is still being decoded
+            if (player.getDurationMs() > 0) {
+                shownSecond = -1;
+                showProgress(this);
+            }
+            if (player.isPlaying()) {
+                scheduleProgress();
+            } else {
+                cancelProgress();
             }
         }
 
         void updateNonPlayingView() {
             playPauseButton.setImageResource(R.drawable.play);
-            seekBar.setProgress(0);
-            durationTextView.setText("00:00 / 00:05");
+            waveformView.setSeekable(false);
+            waveformView.setProgress(0);
+            if (item != null) {
+                durationTextView.setText(HistoryRowText.duration(item));
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Owns the audio files kept for the history, in getFilesDir()/history_audio.
+ *
+ * Files are copied in with FileChannel.transferTo, which lets the kernel move the bytes
+ * (sendfile) instead of looping over a heap buffer. Picked files are imported
+ * straight from the ContentResolver file descriptor, so the history copy is the only copy:
+ * it is what gets uploaded and what the history item points to afterwards.
+ */
+public final class HistoryAudioStore {
+
+    private static final String DIRECTORY = "history_audio";
+    // Buffer for descriptors that cannot be transferred directly (pipes)
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+    private HistoryAudioStore() {
+        // Utility class, no instances
+    }
+
+    /**
+     * @param context Any context.
+     * @return The directory holding the history audio, created if needed.
+     */
+    public static File getDirectory(Context context) {
+        File directory = new File(context.getFilesDir(), DIRECTORY);
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        return directory;
+    }
+
+    /**
+     * Imports a picked file from its content URI. Blocking, call off the main thread.
+     *
+     * @param context Any context.
+     * @param uri The content URI returned by the picker.
+     * @return The new file in the history directory.
+     * @throws IOException If the URI cannot be opened or the copy fails (no partial file is left behind).
+     */
+    public static File importUri(Context context, Uri uri) throws IOException {
+        ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+        if (descriptor == null) {
+            throw new FileNotFoundException("No file descriptor for " + uri);
+        }
+        try (ParcelFileDescriptor.AutoCloseInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+            return copyIn(context, in);
+        }
+    }
+
+    /**
+     * Copies a file (e.g. a finished recording) into the history directory.
+     * Blocking, call off the main thread.
+     *
+     * @param context Any context.
+     * @param source The file to copy.
+     * @return The new file in the history directory.
+     * @throws IOException If the copy fails (no partial file is left behind).
+     */
+    public static File importFile(Context context, File source) throws IOException {
+        try (FileInputStream in = new FileInputStream(source)) {
+            return copyIn(context, in);
+        }
+    }
+
+    private static File copyIn(Context context, FileInputStream in) throws IOException {
+        // Unique name, even for two imports within the same millisecond
+        File destination = File.createTempFile("rec_" + System.currentTimeMillis() + "_", ".wav", getDirectory(context));
+        try (FileOutputStream out = new FileOutputStream(destination);
+             FileChannel target = out.getChannel()) {
+            FileChannel source = in.getChannel();
+            long size = source.size();
+            if (size > 0) {
+                // Regular file: let the kernel move the bytes directly
+                long position = source.position();
+                while (position < size) {
+                    long transferred = source.transferTo(position, size - position, target);
+                    if (transferred <= 0) break;
+                    position += transferred;
+                }
+            } else {
+                // Pipes (some providers stream their content) have no size, read until end of stream
+                ByteBuffer buffer = ByteBuffer.allocateDirect(PIPE_BUFFER_SIZE);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+        } catch (IOException e) {
+            destination.delete();
+            throw e;
+        }
+        return destination;
+    }
+}
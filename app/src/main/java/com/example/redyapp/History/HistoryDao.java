@@ -1,11 +1,14 @@
 package com.example.redyapp.History;
 
-import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+
+import com.example.redyapp.PredictionResponse;
+
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -20,9 +23,64 @@ public interface HistoryDao {
     /**
      * Inserts a new history item into the database. If there's a conflict, it replaces the old item.
      * @param historyItem The item to insert.
+     * @return The row id of the inserted item.
      */
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insert(HistoryItem historyItem);
+    long insert(HistoryItem historyItem);
+
+    /**
+     * Fills in the prediction of an item that was saved while offline.
+     * @param id The id of the history item.
+     * @param predictedLabel The predicted label.
+     * @param confidence The confidence of the prediction.
+     * @param tapScores The scores of the single taps it was voted from, or null.
+     * @param confidenceVariance The variance of the tap confidences, or null.
+     */
+    @Query("UPDATE history_table SET predictedLabel = :predictedLabel, confidence = :confidence, "
+            + "tapScores = :tapScores, confidenceVariance = :confidenceVariance WHERE id = :id")
+    void updatePrediction(int id, String predictedLabel, double confidence,
+                          List<PredictionResponse.TapScore> tapScores, Double confidenceVariance);
+
+    /**
+     * Saves the user's notes and tags of an item (the full-text index follows by trigger).
+     * @param id The id of the history item.
+     * @param notes The notes, or null.
+     * @param tags The tags, or null.
+     */
+    @Query("UPDATE history_table SET notes = :notes, tags = :tags WHERE id = :id")
+    void updateNotes(int id, String notes, String tags);
+
+    /**
+     * Records that an item's recording was played, for least-recently-used eviction.
+     * @param id The id of the history item.
+     * @param playedAt The time of playback.
+     */
+    @Query("UPDATE history_table SET lastPlayedAt = :playedAt WHERE id = :id")
+    void markPlayed(int id, Date playedAt);
+
+    /**
+     * Points an item at a new audio file, e.g. after it was compacted.
+     * @param id The id of the history item.
+     * @param localAudioPath The new file.
+     * @param audioCodec The format of the new file (HistoryItem.CODEC_*).
+     * @param audioSizeBytes The size of the new file.
+     * @return The number of rows updated (0 if the item was deleted meanwhile).
+     */
+    @Query("UPDATE history_table SET localAudioPath = :localAudioPath, audioCodec = :audioCodec, "
+            + "audioSizeBytes = :audioSizeBytes WHERE id = :id")
+    int updateAudio(int id, String localAudioPath, String audioCodec, long audioSizeBytes);
+
+    /**
+     * Forgets an item's recording after it was evicted or found missing; the prediction itself
+     * is kept. Only clears the reference if the item still points at the given file, so a row
+     * that compaction re-pointed at a new file in the meantime is left alone.
+     * @param id The id of the history item.
+     * @param localAudioPath The path the caller found missing or is about to delete.
+     * @return The number of rows changed, 0 if the item points elsewhere by now.
+     */
+    @Query("UPDATE history_table SET localAudioPath = NULL, audioCodec = NULL, audioSizeBytes = 0 "
+            + "WHERE id = :id AND localAudioPath = :localAudioPath")
+    int clearAudio(int id, String localAudioPath);
 
     /**
      * Deletes a specific history item from the database.
@@ -32,11 +90,167 @@ public interface HistoryDao {
     void delete(HistoryItem historyItem);
 
     /**
-     * Retrieves all history items from the database, ordered by timestamp in descending order (newest first).
-     * This method returns LiveData, which allows the UI (HistoryActivity) to automatically
-     * update whenever the data in this table changes.
-     * @return A LiveData list of all HistoryItems.
+     * Retrieves the newest history items, ordered by timestamp in descending order (newest first).
+     * This is the first page of the keyset-paginated history (see HistoryPager); ties on the
+     * timestamp are broken by id so the order is stable across pages.
+     * @param limit The maximum number of items to return.
+     * @return Up to limit HistoryItems.
+     */
+    @Query("SELECT * FROM history_table ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<HistoryItem> getNewest(int limit);
+
+    /**
+     * Retrieves the page that follows a given item, using the item's (timestamp, id) as the key
+     * instead of an OFFSET, so loading a page costs the same no matter how deep it is.
+     * The redundant "timestamp <= :timestamp" bound lets SQLite seek into the timestamp index
+     * instead of scanning it from the newest entry.
+     * @param timestamp The timestamp of the last item already loaded.
+     * @param id The id of the last item already loaded.
+     * @param limit The maximum number of items to return.
+     * @return Up to limit HistoryItems older than the given item.
+     */
+    @Query("SELECT * FROM history_table WHERE timestamp <= :timestamp AND (timestamp < :timestamp OR id < :id) "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<HistoryItem> getOlderThan(Date timestamp, int id, int limit);
+
+    /**
+     * Retrieves a page of the items within a date and confidence range, newest first, keyed
+     * like getOlderThan. The timestamp bounds are seeks into the timestamp index and the
+     * confidence range is checked on the index-ordered rows, so no sort is needed and the
+     * scan stops as soon as the page is full.
+     * @param from Oldest timestamp included.
+     * @param to Newest timestamp included.
+     * @param minConfidence Lowest confidence included.
+     * @param maxConfidence Highest confidence included.
+     * @param beforeTimestamp Timestamp of the last item already loaded (Long.MAX_VALUE for the first page).
+     * @param beforeId Id of the last item already loaded (Integer.MAX_VALUE for the first page).
+     * @param limit The maximum number of items to return.
+     * @return Up to limit matching HistoryItems.
+     */
+    @Query("SELECT * FROM history_table WHERE timestamp BETWEEN :from AND :to "
+            + "AND confidence BETWEEN :minConfidence AND :maxConfidence "
+            + "AND timestamp <= :beforeTimestamp AND (timestamp < :beforeTimestamp OR id < :beforeId) "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<HistoryItem> getFilteredPage(Date from, Date to, double minConfidence, double maxConfidence,
+                                      Date beforeTimestamp, int beforeId, int limit);
+
+    /**
+     * Same as getFilteredPage, restricted to the items whose label, notes or tags match a
+     * full-text query. The matching ids come from the history_fts index in one lookup; the
+     * rows are then read in timestamp index order, so a common term is not sorted in full.
+     * @param match An FTS4 MATCH expression (see HistoryFilter.getMatchQuery).
+     * @return Up to limit matching HistoryItems.
+     */
+    @Query("SELECT * FROM history_table WHERE id IN (SELECT docid FROM history_fts WHERE history_fts MATCH :match) "
+            + "AND timestamp BETWEEN :from AND :to "
+            + "AND confidence BETWEEN :minConfidence AND :maxConfidence "
+            + "AND timestamp <= :beforeTimestamp AND (timestamp < :beforeTimestamp OR id < :beforeId) "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<HistoryItem> searchPage(String match, Date from, Date to, double minConfidence, double maxConfidence,
+                                 Date beforeTimestamp, int beforeId, int limit);
+
+    /**
+     * Stores the duration and waveform peaks of an item's recording.
+     * @param id The id of the history item.
+     * @param durationMs The length of the recording in milliseconds.
+     * @param waveform The peaks from WaveformPeaks, or an empty array if the audio could not be decoded.
+     */
+    @Query("UPDATE history_table SET durationMs = :durationMs, waveform = :waveform WHERE id = :id")
+    void updateWaveform(int id, long durationMs, byte[] waveform);
+
+    /**
+     * Retrieves items that have a recording but no waveform yet (saved before waveforms were
+     * computed, or whose background computation did not finish).
+     * @param limit The maximum number of items to return.
+     * @return Up to limit items.
+     */
+    @Query("SELECT * FROM history_table WHERE localAudioPath IS NOT NULL AND waveform IS NULL LIMIT :limit")
+    List<HistoryItem> getItemsWithoutWaveform(int limit);
+
+    // Recordings the upload queue still needs must stay untouched by compaction and eviction
+    String NOT_QUEUED = "id NOT IN (SELECT historyItemId FROM pending_uploads)";
+
+    /**
+     * Retrieves items that have a recording but no recorded size yet (saved before sizes were
+     * tracked), so their size can be filled in.
+     * @param limit The maximum number of items to return.
+     * @return Up to limit items.
+     */
+    @Query("SELECT * FROM history_table WHERE localAudioPath IS NOT NULL AND audioSizeBytes = 0 LIMIT :limit")
+    List<HistoryItem> getItemsWithoutAudioSize(int limit);
+
+    /**
+     * Retrieves the oldest recordings that are still stored in a given format, for compaction.
+     * @param audioCodec The format to look for (HistoryItem.CODEC_WAV).
+     * @param olderThan Only items recorded before this time.
+     * @param limit The maximum number of items to return.
+     * @return Up to limit items, oldest first.
+     */
+    @Query("SELECT * FROM history_table WHERE audioCodec = :audioCodec AND timestamp < :olderThan "
+            + "AND localAudioPath IS NOT NULL AND " + NOT_QUEUED + " ORDER BY timestamp LIMIT :limit")
+    List<HistoryItem> getCompactionCandidates(String audioCodec, Date olderThan, int limit);
+
+    /**
+     * @return The total size of the stored recordings in bytes.
+     */
+    @Query("SELECT COALESCE(SUM(audioSizeBytes), 0) FROM history_table WHERE localAudioPath IS NOT NULL")
+    long getTotalAudioBytes();
+
+    /**
+     * Retrieves the recordings that were used least recently (played, or else recorded, longest
+     * ago), which are evicted first when storage is over budget.
+     * @param limit The maximum number of items to return.
+     * @return Up to limit items, least recently used first.
+     */
+    @Query("SELECT * FROM history_table WHERE localAudioPath IS NOT NULL AND " + NOT_QUEUED + " "
+            + "ORDER BY COALESCE(lastPlayedAt, timestamp) LIMIT :limit")
+    List<HistoryItem> getLeastRecentlyUsedAudio(int limit);
+
+    /**
+     * Finds which of the given files are referenced by a history item or the upload queue,
+     * in one query per batch (history paths are looked up by index; the queue is small).
+     * @param paths Absolute file paths, at most a few hundred (SQLite limits bound parameters).
+     * @return The referenced paths among them.
+     */
+    @Query("SELECT localAudioPath FROM history_table WHERE localAudioPath IN (:paths) "
+            + "UNION SELECT audioPath FROM pending_uploads WHERE audioPath IN (:paths)")
+    List<String> getReferencedPaths(List<String> paths);
+
+    /**
+     * Retrieves the audio references of the items after a given id, for walking the table in
+     * batches without OFFSET.
+     * @param afterId The last id already checked (0 to start).
+     * @param limit The maximum number of rows to return.
+     * @return Up to limit references, by increasing id.
+     */
+    @Query("SELECT id, localAudioPath FROM history_table WHERE id > :afterId AND localAudioPath IS NOT NULL "
+            + "ORDER BY id LIMIT :limit")
+    List<AudioReference> getAudioReferencesAfter(int afterId, int limit);
+
+    // Items that have no real prediction yet (or never will) are left out of the statistics
+    String SCORED = "predictedLabel IS NOT NULL AND predictedLabel NOT IN ('"
+            + HistoryItem.LABEL_PENDING + "', '" + HistoryItem.LABEL_FAILED + "')";
+
+    /**
+     * Counts the scored items per label since a given time, with their average confidence.
+     * The aggregation runs in SQLite; only one row per label is returned.
+     * @param since Only items at or after this time are counted (new Date(0) for all of them).
+     * @return One row per label, most frequent first.
+     */
+    @Query("SELECT predictedLabel, COUNT(*) AS count, AVG(confidence) AS averageConfidence "
+            + "FROM history_table WHERE timestamp >= :since AND " + SCORED + " "
+            + "GROUP BY predictedLabel ORDER BY count DESC")
+    List<LabelStats> getLabelStats(Date since);
+
+    /**
+     * Counts the scored items per local day and label since a given time, with their average
+     * confidence. Days are computed by SQLite from the millisecond timestamps.
+     * @param since Only items at or after this time are counted.
+     * @return One row per day and label, newest day first.
      */
-    @Query("SELECT * FROM history_table ORDER BY timestamp DESC")
-    LiveData<List<HistoryItem>> getAllHistoryItems();
+    @Query("SELECT strftime('%Y-%m-%d', timestamp / 1000, 'unixepoch', 'localtime') AS day, "
+            + "predictedLabel, COUNT(*) AS count, AVG(confidence) AS averageConfidence "
+            + "FROM history_table WHERE timestamp >= :since AND " + SCORED + " "
+            + "GROUP BY day, predictedLabel ORDER BY day DESC, count DESC")
+    List<DailyLabelStats> getDailyStats(Date since);
 }
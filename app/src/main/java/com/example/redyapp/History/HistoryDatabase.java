@@ -1,12 +1,19 @@
 package com.example.redyapp.History;
 
 import android.content.Context;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.example.redyapp.Converters;
+import com.example.redyapp.Prediction.PendingUpload;
+import com.example.redyapp.Prediction.PendingUploadDao;
+import com.example.redyapp.Prediction.PredictionCacheDao;
+import com.example.redyapp.Prediction.PredictionCacheEntry;
 
 /**
  * The main database class for the application, built using Room.
@@ -16,13 +23,128 @@ import com.example.redyapp.Converters;
  * It uses a Singleton pattern to prevent having multiple instances of the
  * database opened at the same time, which is an expensive operation.
  */
-@Database(entities = {HistoryItem.class}, version = 1, exportSchema = false)
-@TypeConverters({Converters.class}) // Register the TypeConverter for Date objects
+@Database(entities = {HistoryItem.class, HistorySearchEntry.class, PredictionCacheEntry.class, PendingUpload.class}, version = 10, exportSchema = true)
+@TypeConverters({Converters.class}) // Register the TypeConverters for dates and tap scores
 public abstract class HistoryDatabase extends RoomDatabase {
 
     // Abstract method to get the DAO. Room will generate the implementation.
     public abstract HistoryDao historyDao();
 
+    // DAO for the content-addressed prediction cache
+    public abstract PredictionCacheDao predictionCacheDao();
+
+    // DAO for the offline upload queue
+    public abstract PendingUploadDao pendingUploadDao();
+
+    // Version 1 -> 2: adds the prediction_cache table
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `prediction_cache` (`contentHash` TEXT NOT NULL, "
+                    + "`predictedLabel` TEXT, `confidence` REAL NOT NULL, `modelVersion` TEXT, "
+                    + "`createdAt` INTEGER NOT NULL, PRIMARY KEY(`contentHash`))");
+        }
+    };
+
+    // Version 2 -> 3: adds the pending_uploads table (offline upload queue)
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `pending_uploads` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                    + "`audioPath` TEXT, `historyItemId` INTEGER NOT NULL, `attempts` INTEGER NOT NULL, "
+                    + "`createdAt` INTEGER NOT NULL, `lastError` TEXT)");
+        }
+    };
+
+    // Version 3 -> 4: indexes history_table on timestamp and predictedLabel
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_timestamp` ON `history_table` (`timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_predictedLabel` ON `history_table` (`predictedLabel`)");
+        }
+    };
+
+    // Version 4 -> 5: adds notes and tags to history_table and the history_fts full-text index
+    // over label, notes and tags, with the triggers Room uses to keep external content in sync
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `notes` TEXT");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `tags` TEXT");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `history_fts` USING FTS4("
+                    + "`predictedLabel` TEXT, `notes` TEXT, `tags` TEXT, content=`history_table`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_BEFORE_UPDATE "
+                    + "BEFORE UPDATE ON `history_table` BEGIN DELETE FROM `history_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_BEFORE_DELETE "
+                    + "BEFORE DELETE ON `history_table` BEGIN DELETE FROM `history_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_AFTER_UPDATE "
+                    + "AFTER UPDATE ON `history_table` BEGIN INSERT INTO `history_fts`(`docid`, `predictedLabel`, `notes`, `tags`) "
+                    + "VALUES (NEW.`rowid`, NEW.`predictedLabel`, NEW.`notes`, NEW.`tags`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_AFTER_INSERT "
+                    + "AFTER INSERT ON `history_table` BEGIN INSERT INTO `history_fts`(`docid`, `predictedLabel`, `notes`, `tags`) "
+                    + "VALUES (NEW.`rowid`, NEW.`predictedLabel`, NEW.`notes`, NEW.`tags`); END");
+            // Index the rows that already exist
+            db.execSQL("INSERT INTO `history_fts`(`history_fts`) VALUES ('rebuild')");
+        }
+    };
+
+    // Version 5 -> 6: records the codec, size and last playback of each recording (storage compaction)
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `audioCodec` TEXT");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `audioSizeBytes` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `lastPlayedAt` INTEGER");
+            // Every recording so far is a WAV file; sizes are filled in by AudioCompactionWorker
+            db.execSQL("UPDATE `history_table` SET `audioCodec` = 'wav' WHERE `localAudioPath` IS NOT NULL");
+        }
+    };
+
+    // Version 6 -> 7: indexes history_table on localAudioPath (file reconciliation)
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_localAudioPath` ON `history_table` (`localAudioPath`)");
+        }
+    };
+
+    // Version 7 -> 8: stores the duration and waveform peaks of each recording
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `durationMs` INTEGER NOT NULL DEFAULT 0");
+            // Existing recordings are filled in by AudioCompactionWorker
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `waveform` BLOB");
+        }
+    };
+
+    // Version 8 -> 9: stores the per-tap scores of recordings scored tap by tap
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `tapScores` TEXT");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `confidenceVariance` REAL");
+        }
+    };
+
+    // Version 9 -> 10: keys prediction_cache by content hash, predictor and model version.
+    // The table only holds cached results, so it is recreated empty rather than copied.
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase db) {
+            db.execSQL("DROP TABLE IF EXISTS `prediction_cache`");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `prediction_cache` (`contentHash` TEXT NOT NULL, "
+                    + "`source` TEXT NOT NULL, `modelVersion` TEXT NOT NULL, `predictedLabel` TEXT, "
+                    + "`confidence` REAL NOT NULL, `createdAt` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`contentHash`, `source`, `modelVersion`))");
+        }
+    };
+
+    // Every schema step since version 1, in order. Each version bump must add one here
+    // (and the exported schema under app/schemas) so existing history is never wiped.
+    static final Migration[] ALL_MIGRATIONS = {MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10};
+
     // Volatile instance to ensure visibility across threads.
     private static volatile HistoryDatabase INSTANCE;
 
@@ -39,14 +161,27 @@ public abstract class HistoryDatabase extends RoomDatabase {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     HistoryDatabase.class, "history_database")
-                            // NOTE: In a real production app, you would need to handle migrations
-                            // for database schema changes. .fallbackToDestructiveMigration()
-                            // is simple for development but deletes all data on schema change.
-                            .fallbackToDestructiveMigration()
+                            .addMigrations(ALL_MIGRATIONS)
                             .build();
                 }
             }
         }
         return INSTANCE;
     }
+
+    /**
+     * Replaces the singleton, so device tests can run screens against their own database.
+     *
+     * @param database The database getInstance() returns from now on, or null to open the
+     *                 app's database again on the next call.
+     * @return The database that was replaced, possibly null.
+     */
+    @VisibleForTesting
+    public static HistoryDatabase replaceInstance(HistoryDatabase database) {
+        synchronized (HistoryDatabase.class) {
+            HistoryDatabase previous = INSTANCE;
+            INSTANCE = database;
+            return previous;
+        }
+    }
 }
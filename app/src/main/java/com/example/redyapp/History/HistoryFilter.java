@@ -0,0 +1,76 @@
+package com.example.redyapp.History;
+
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * An immutable filter over the history: optional search text (matched against the label,
+ * notes and tags through the full-text index), a date range and a confidence range.
+ * HistoryPager uses it to choose the HistoryDao query of each page.
+ */
+public final class HistoryFilter {
+
+    // The whole history
+    public static final HistoryFilter NONE = new HistoryFilter(null, null, null, 0, 1);
+
+    private final String text;
+    private final Date from;
+    private final Date to;
+    private final double minConfidence;
+    private final double maxConfidence;
+
+    /**
+     * @param text Search text, or null/blank for none.
+     * @param from Oldest timestamp included, or null for no lower bound.
+     * @param to Newest timestamp included, or null for no upper bound.
+     * @param minConfidence Lowest confidence included (0 for no bound).
+     * @param maxConfidence Highest confidence included (1 for no bound).
+     */
+    public HistoryFilter(String text, Date from, Date to, double minConfidence, double maxConfidence) {
+        this.text = text == null ? "" : text.trim();
+        this.from = from;
+        this.to = to;
+        this.minConfidence = minConfidence;
+        this.maxConfidence = maxConfidence;
+    }
+
+    /**
+     * @return True if this filter lets every item through.
+     */
+    public boolean isEmpty() {
+        return getMatchQuery() == null && from == null && to == null && minConfidence <= 0 && maxConfidence >= 1;
+    }
+
+    /**
+     * Turns the search text into an FTS4 MATCH expression: every word must appear, as a word
+     * prefix, in the label, notes or tags ("swe rip" finds "Sweet" tagged "ripe").
+     * Punctuation is dropped so user input can never form FTS query syntax.
+     *
+     * @return The MATCH expression, or null if there is no search text.
+     */
+    public String getMatchQuery() {
+        StringBuilder query = new StringBuilder();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (query.length() > 0) query.append(' ');
+            query.append(word).append('*');
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+
+    public Date getFrom() {
+        return from != null ? from : new Date(0);
+    }
+
+    public Date getTo() {
+        return to != null ? to : new Date(Long.MAX_VALUE);
+    }
+
+    public double getMinConfidence() {
+        return minConfidence;
+    }
+
+    public double getMaxConfidence() {
+        return maxConfidence;
+    }
+}
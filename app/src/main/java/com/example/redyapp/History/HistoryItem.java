@@ -1,18 +1,37 @@
 package com.example.redyapp.History;
 
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import com.example.redyapp.PredictionResponse;
+
 import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 
 /**
  * Represents a single history item in the prediction history.
  * This class is a Room Entity, defining the structure of the "history_table".
+ * The timestamp index serves the newest-first (timestamp, id) paging (the id is the rowid,
+ * which every index entry carries); the label index serves filtering and grouping by result.
+ * The label, notes and tags are also indexed for full-text search by HistorySearchEntry.
+ * The audio path index lets HistoryReconciler match batches of files to rows.
  */
-@Entity(tableName = "history_table")
+@Entity(tableName = "history_table",
+        indices = {@Index("timestamp"), @Index("predictedLabel"), @Index("localAudioPath")})
 public class HistoryItem implements Serializable {
 
+    // Label of an item recorded offline that is still waiting in the upload queue
+    public static final String LABEL_PENDING = "Pending";
+    // Label of an item the upload queue gave up on
+    public static final String LABEL_FAILED = "Not scored";
+
+    // Audio formats of the stored recording (audioCodec)
+    public static final String CODEC_WAV = "wav";
+    public static final String CODEC_AAC = "aac";
+
     @PrimaryKey(autoGenerate = true)
     private int id;
 
@@ -20,6 +39,32 @@ public class HistoryItem implements Serializable {
     private double confidence;
     private String localAudioPath; // Stores the absolute path to the audio file on the device
     private Date timestamp;
+    // Free text the user wrote about the recording (nullable)
+    private String notes;
+    // User tags, separated by spaces or commas (nullable)
+    private String tags;
+    // Format and size of the file at localAudioPath (null and 0 once the audio was evicted)
+    private String audioCodec;
+    private long audioSizeBytes;
+    // Last time the recording was played back, for least-recently-used eviction (nullable)
+    private Date lastPlayedAt;
+    // Length of the recording in milliseconds (0 until the waveform has been computed)
+    private long durationMs;
+    // Min/max peaks of the recording for drawing (see WaveformPeaks); null until computed,
+    // empty if the recording could not be decoded
+    private byte[] waveform;
+    // Score of each tap when the recording was scored tap by tap, and the variance of the
+    // confidence across the taps (both null for recordings scored as a whole)
+    private List<PredictionResponse.TapScore> tapScores;
+    private Double confidenceVariance;
+
+    // Row text of the history list, formatted once per item (see HistoryRowText); not stored
+    @Ignore
+    private transient String dateText;
+    @Ignore
+    private transient String detailsText;
+    @Ignore
+    private transient String durationText;
 
     /**
      * Constructs a new HistoryItem.
@@ -78,4 +123,100 @@ public class HistoryItem implements Serializable {
     public void setTimestamp(Date timestamp) {
         this.timestamp = timestamp;
     }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public void setNotes(String notes) {
+        this.notes = notes;
+    }
+
+    public String getTags() {
+        return tags;
+    }
+
+    public void setTags(String tags) {
+        this.tags = tags;
+    }
+
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    public void setAudioCodec(String audioCodec) {
+        this.audioCodec = audioCodec;
+    }
+
+    public long getAudioSizeBytes() {
+        return audioSizeBytes;
+    }
+
+    public void setAudioSizeBytes(long audioSizeBytes) {
+        this.audioSizeBytes = audioSizeBytes;
+    }
+
+    public Date getLastPlayedAt() {
+        return lastPlayedAt;
+    }
+
+    public void setLastPlayedAt(Date lastPlayedAt) {
+        this.lastPlayedAt = lastPlayedAt;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public byte[] getWaveform() {
+        return waveform;
+    }
+
+    public void setWaveform(byte[] waveform) {
+        this.waveform = waveform;
+    }
+
+    public List<PredictionResponse.TapScore> getTapScores() {
+        return tapScores;
+    }
+
+    public void setTapScores(List<PredictionResponse.TapScore> tapScores) {
+        this.tapScores = tapScores;
+    }
+
+    public Double getConfidenceVariance() {
+        return confidenceVariance;
+    }
+
+    public void setConfidenceVariance(Double confidenceVariance) {
+        this.confidenceVariance = confidenceVariance;
+    }
+
+    String getDateText() {
+        return dateText;
+    }
+
+    void setDateText(String dateText) {
+        this.dateText = dateText;
+    }
+
+    String getDetailsText() {
+        return detailsText;
+    }
+
+    void setDetailsText(String detailsText) {
+        this.detailsText = detailsText;
+    }
+
+    String getDurationText() {
+        return durationText;
+    }
+
+    void setDurationText(String durationText) {
+        this.durationText = durationText;
+    }
 }
@@ -0,0 +1,351 @@
+package com.example.redyapp.History;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the history page by page as the list is scrolled, instead of materializing the
+ * whole table on every change.
+ *
+ * Pages use keyset pagination on (timestamp, id) (see HistoryDao.getOlderThan), so each page
+ * is an index range scan whatever its depth. Each page covers the keys between the last item of
+ * the page before and the last item of its own, so it can be queried again on its own. Only the
+ * pages near the visible rows keep their items; pages scrolled far away are dropped and shown
+ * as placeholders (null items) of the same size, so positions don't move, until they are
+ * scrolled back to. When history_table changes, the pages on screen are queried again and the
+ * other pages are marked out of date, to be queried again when they are scrolled to.
+ * A HistoryFilter narrows the pages with the filtered and full-text queries of HistoryDao,
+ * which are keyed the same way.
+ * All public methods must be called on the main thread; queries run on the given executor.
+ */
+public class HistoryPager {
+
+    // Items per page, a few screens' worth
+    public static final int PAGE_SIZE = 30;
+    // Load pages this close to the visible rows, so they are there before they are reached
+    private static final int PREFETCH_DISTANCE = 10;
+    // Keep the items of pages this close to the visible rows; farther pages are dropped
+    static final int KEEP_DISTANCE = 2 * PAGE_SIZE;
+
+    /**
+     * Receives the rows, newest first, on the main thread. Rows of pages that are not loaded
+     * are null.
+     */
+    public interface Listener {
+        void onItemsLoaded(List<HistoryItem> items);
+    }
+
+    private final HistoryDao historyDao;
+    private final InvalidationTracker invalidationTracker;
+    private final Executor queryExecutor;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // The pages in order, newest first (main thread only)
+    private final List<Page> pages = new ArrayList<>();
+    private boolean endReached = false;
+    private HistoryFilter filter = HistoryFilter.NONE;
+    // Incremented when the pages are replaced so results of outdated queries are dropped
+    private int generation = 0;
+    // The visible rows, as last reported by loadAround()
+    private int firstVisible = 0;
+    private int lastVisible = 0;
+
+    // Marks the pages out of date whenever history_table is written to
+    private final InvalidationTracker.Observer tableObserver = new InvalidationTracker.Observer("history_table") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            mainHandler.post(HistoryPager.this::invalidate);
+        }
+    };
+
+    public HistoryPager(HistoryDatabase database, Executor queryExecutor, Listener listener) {
+        this.historyDao = database.historyDao();
+        this.invalidationTracker = database.getInvalidationTracker();
+        this.queryExecutor = queryExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * Loads the first page and starts following changes to the table.
+     */
+    public void start() {
+        invalidationTracker.addObserver(tableObserver);
+        update();
+    }
+
+    /**
+     * Stops following changes; pending results are dropped.
+     */
+    public void stop() {
+        invalidationTracker.removeObserver(tableObserver);
+        generation++;
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /**
+     * Replaces the filter and loads the first page of the filtered history.
+     *
+     * @param filter The new filter (HistoryFilter.NONE for the whole history).
+     */
+    public void setFilter(HistoryFilter filter) {
+        if (filter.isEmpty() && this.filter.isEmpty()) return; // Already showing everything
+        this.filter = filter;
+        generation++;
+        pages.clear();
+        endReached = false;
+        firstVisible = 0;
+        lastVisible = 0;
+        update();
+    }
+
+    /**
+     * Tells the pager which rows are visible, so the pages around them are loaded before they
+     * are reached and the pages far from them are dropped.
+     *
+     * @param firstPosition The first visible adapter position.
+     * @param lastPosition The last visible adapter position.
+     */
+    public void loadAround(int firstPosition, int lastPosition) {
+        if (lastPosition < 0) return; // Nothing laid out yet
+        firstVisible = firstPosition;
+        lastVisible = lastPosition;
+        if (dropFarPages()) publish();
+        update();
+    }
+
+    /**
+     * Marks every page out of date and queries the ones near the visible rows again.
+     */
+    private void invalidate() {
+        for (Page page : pages) page.version++;
+        update();
+    }
+
+    /**
+     * Queries the pages near the visible rows that are not loaded or out of date, and the next
+     * page when the visible rows come close to the end.
+     */
+    private void update() {
+        int from = firstVisible - PREFETCH_DISTANCE;
+        int to = lastVisible + PREFETCH_DISTANCE;
+        int start = 0;
+        for (Page page : pages) {
+            int end = start + page.size;
+            if (end > from && start <= to && !page.loading && (page.items == null || page.isStale())) {
+                load(page);
+            }
+            start = end;
+        }
+        // start is now the row count
+        Page last = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+        if (last == null) {
+            load(addPage(null));
+        } else if (!endReached && to >= start && last.items != null && !last.loading && !last.items.isEmpty()) {
+            load(addPage(last.items.get(last.items.size() - 1)));
+        }
+    }
+
+    private Page addPage(HistoryItem after) {
+        Page page = new Page(after == null ? null : new Key(after));
+        pages.add(page);
+        return page;
+    }
+
+    /**
+     * Queries one page. The last page is open-ended and holds up to PAGE_SIZE items; the others
+     * run up to the key the next page starts after, which takes more than one query when many
+     * rows were added in between.
+     */
+    private void load(Page page) {
+        page.loading = true;
+        final int requestGeneration = generation;
+        final int requestVersion = page.version;
+        final Key after = page.after;
+        final int limit = page == pages.get(pages.size() - 1) ? PAGE_SIZE : Math.max(page.size, PAGE_SIZE) + PAGE_SIZE;
+        final HistoryFilter pageFilter = filter;
+        queryExecutor.execute(() -> {
+            List<HistoryItem> rows = queryPage(pageFilter, after, limit);
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) return; // The pages were replaced
+                page.loading = false;
+                int index = pages.indexOf(page);
+                Page next = index + 1 < pages.size() ? pages.get(index + 1) : null;
+                List<HistoryItem> items = rows;
+                boolean complete = true;
+                if (next == null) {
+                    endReached = rows.size() < limit;
+                } else {
+                    // Keep the rows up to where the next page starts
+                    int count = 0;
+                    while (count < rows.size() && !next.after.isOlder(rows.get(count))) count++;
+                    complete = count < rows.size() || rows.size() < limit;
+                    if (count < rows.size()) items = new ArrayList<>(rows.subList(0, count));
+                }
+                page.items = items;
+                page.size = items.size();
+                // Not complete: query again with a larger limit
+                page.loadedVersion = complete ? requestVersion : requestVersion - 1;
+                dropFarPages();
+                publish();
+                update();
+            });
+        });
+    }
+
+    /**
+     * Drops the items of the pages far from the visible rows; they keep their size.
+     *
+     * @return Whether any page was dropped.
+     */
+    private boolean dropFarPages() {
+        int from = firstVisible - KEEP_DISTANCE;
+        int to = lastVisible + KEEP_DISTANCE;
+        boolean dropped = false;
+        int start = 0;
+        for (Page page : pages) {
+            int end = start + page.size;
+            if (page.items != null && (end <= from || start > to)) {
+                page.items = null;
+                dropped = true;
+            }
+            start = end;
+        }
+        return dropped;
+    }
+
+    /**
+     * Runs the query for one page (on the query executor) and formats the row text of its
+     * items there, so binding them on the main thread formats nothing.
+     *
+     * @param pageFilter The filter of the page.
+     * @param after The key of the last item of the page before, or null for the first page.
+     * @param limit The maximum number of items.
+     */
+    private List<HistoryItem> queryPage(HistoryFilter pageFilter, Key after, int limit) {
+        List<HistoryItem> page;
+        if (pageFilter.isEmpty()) {
+            page = after == null
+                    ? historyDao.getNewest(limit)
+                    : historyDao.getOlderThan(after.timestamp, after.id, limit);
+        } else {
+            Date beforeTimestamp = after == null ? new Date(Long.MAX_VALUE) : after.timestamp;
+            int beforeId = after == null ? Integer.MAX_VALUE : after.id;
+            String match = pageFilter.getMatchQuery();
+            page = match == null
+                    ? historyDao.getFilteredPage(pageFilter.getFrom(), pageFilter.getTo(), pageFilter.getMinConfidence(),
+                            pageFilter.getMaxConfidence(), beforeTimestamp, beforeId, limit)
+                    : historyDao.searchPage(match, pageFilter.getFrom(), pageFilter.getTo(), pageFilter.getMinConfidence(),
+                            pageFilter.getMaxConfidence(), beforeTimestamp, beforeId, limit);
+        }
+        HistoryRowText.precompute(page);
+        return page;
+    }
+
+    /**
+     * Hands the rows to the listener. Only the page references are copied; the pages' item
+     * lists are never modified once loaded.
+     */
+    private void publish() {
+        List<List<HistoryItem>> loaded = new ArrayList<>(pages.size());
+        int[] ends = new int[pages.size()];
+        int end = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            loaded.add(page.items);
+            end += page.size;
+            ends[i] = end;
+        }
+        listener.onItemsLoaded(new Rows(loaded, ends));
+    }
+
+    /**
+     * The (timestamp, id) key of an item, in the order of the history.
+     */
+    private static final class Key {
+        final Date timestamp;
+        final int id;
+
+        Key(HistoryItem item) {
+            this.timestamp = item.getTimestamp();
+            this.id = item.getId();
+        }
+
+        /**
+         * Whether an item comes after this key, i.e. is older.
+         */
+        boolean isOlder(HistoryItem item) {
+            int order = item.getTimestamp().compareTo(timestamp);
+            return order < 0 || (order == 0 && item.getId() < id);
+        }
+    }
+
+    /**
+     * A page of the history (main thread only).
+     */
+    private static final class Page {
+        // Key of the last item of the page before, null for the first page
+        final Key after;
+        // The loaded items, or null when not loaded or dropped
+        List<HistoryItem> items;
+        // The number of rows, kept when the items are dropped
+        int size;
+        boolean loading;
+        // Incremented when the table changes; the items are out of date until loaded again
+        int version;
+        int loadedVersion = -1;
+
+        Page(Key after) {
+            this.after = after;
+        }
+
+        boolean isStale() {
+            return loadedVersion != version;
+        }
+    }
+
+    /**
+     * The rows of the pages as one read-only list, with null for the rows of pages that are
+     * not loaded.
+     */
+    private static final class Rows extends AbstractList<HistoryItem> {
+        private final List<List<HistoryItem>> pages;
+        // The end row of each page, exclusive
+        private final int[] ends;
+
+        Rows(List<List<HistoryItem>> pages, int[] ends) {
+            this.pages = pages;
+            this.ends = ends;
+        }
+
+        @Override
+        public HistoryItem get(int index) {
+            if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Row " + index + " of " + size());
+            // The first page that ends after the row
+            int low = 0;
+            int high = ends.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] > index) high = mid;
+                else low = mid + 1;
+            }
+            List<HistoryItem> items = pages.get(low);
+            return items == null ? null : items.get(index - (low == 0 ? 0 : ends[low - 1]));
+        }
+
+        @Override
+        public int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Runs a HistoryReconciler pass in the background and reports what it reclaimed in its
+ * output data (KEY_BYTES_RECLAIMED and friends).
+ */
+public class HistoryReconcileWorker extends Worker {
+
+    public static final String KEY_BYTES_RECLAIMED = "bytes_reclaimed";
+    public static final String KEY_FILES_DELETED = "files_deleted";
+    public static final String KEY_ROWS_FLAGGED = "rows_flagged";
+    public static final String KEY_QUEUE_ENTRIES_DROPPED = "queue_entries_dropped";
+
+    public HistoryReconcileWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        HistoryReconciler.Report report = new HistoryReconciler(getApplicationContext()).reconcile(this::isStopped);
+        Data output = new Data.Builder()
+                .putLong(KEY_BYTES_RECLAIMED, report.bytesReclaimed)
+                .putInt(KEY_FILES_DELETED, report.filesDeleted)
+                .putInt(KEY_ROWS_FLAGGED, report.rowsFlagged)
+                .putInt(KEY_QUEUE_ENTRIES_DROPPED, report.queueEntriesDropped)
+                .build();
+        return Result.success(output);
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.Prediction.PendingUpload;
+import com.example.redyapp.Prediction.PendingUploadDao;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Brings the history audio files and the database back in agreement after crashes and
+ * failed operations (deleting a history item, for example, removes the row and then the file,
+ * not atomically).
+ *
+ * A run:
+ * 1. Drops upload queue entries whose recording is gone, marking their items as not scored
+ * 2. Clears the audio reference of history items whose file is gone (the prediction is kept)
+ * 3. Deletes files in the history directory that no item or queue entry references
+ * 4. Deletes stale files left in the cache directories
+ *
+ * Rows and files are checked in batches of BATCH_SIZE, with one set-based query per batch of
+ * files. At most MAX_PER_RUN rows and files are checked per run; the position is saved, so
+ * the next run continues where this one stopped. Files younger than ORPHAN_GRACE_MS are never
+ * deleted, since they may belong to an import or a compaction whose row is not written yet.
+ * Audio references are cleared only while the row still points at the missing file, so a
+ * recording that AudioCompactionWorker re-points at its new file at the same time is kept.
+ */
+public class HistoryReconciler {
+
+    private static final String TAG = "HistoryReconciler";
+    private static final String PREFS_NAME = "history_reconciler";
+    private static final String KEY_ROW_CURSOR = "row_cursor";
+    private static final String KEY_FILE_CURSOR = "file_cursor";
+    private static final String WORK_NAME = "history_reconcile";
+
+    // Rows or files per query; well under SQLite's limit on bound parameters
+    static final int BATCH_SIZE = 200;
+    // Rows and files checked per run
+    static final int MAX_PER_RUN = 2000;
+    // Unreferenced history files younger than this are left alone
+    static final long ORPHAN_GRACE_MS = TimeUnit.HOURS.toMillis(1);
+    // Cache files older than this are no longer in use
+    static final long CACHE_MAX_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * What a run changed.
+     */
+    public static class Report {
+        public int queueEntriesDropped;
+        public int rowsFlagged;
+        public int filesDeleted;
+        public long bytesReclaimed;
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d queue entries dropped, %d rows flagged, %d files deleted, %d bytes reclaimed",
+                    queueEntriesDropped, rowsFlagged, filesDeleted, bytesReclaimed);
+        }
+    }
+
+    private final HistoryDao historyDao;
+    private final PendingUploadDao pendingUploadDao;
+    private final File audioDirectory;
+    private final List<File> cacheDirectories;
+    private final SharedPreferences cursors;
+    private final AppExecutors executors = AppExecutors.getInstance();
+
+    public HistoryReconciler(Context context) {
+        this(HistoryDatabase.getInstance(context), HistoryAudioStore.getDirectory(context),
+                Arrays.asList(context.getCacheDir(), context.getExternalCacheDir()),
+                context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+    }
+
+    HistoryReconciler(HistoryDatabase database, File audioDirectory, List<File> cacheDirectories,
+                      SharedPreferences cursors) {
+        this.historyDao = database.historyDao();
+        this.pendingUploadDao = database.pendingUploadDao();
+        this.audioDirectory = audioDirectory;
+        this.cacheDirectories = cacheDirectories;
+        this.cursors = cursors;
+    }
+
+    /**
+     * Schedules a daily reconciliation, unless it is already scheduled.
+     *
+     * @param context Any context; the application context is used.
+     */
+    public static void schedule(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(HistoryReconcileWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(new Constraints.Builder().setRequiresBatteryNotLow(true).build())
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Runs one bounded reconciliation pass. Blocking, call off the main thread.
+     *
+     * @param isStopped Checked between batches; the pass ends early when it returns true.
+     * @return What was changed.
+     */
+    public Report reconcile(BooleanSupplier isStopped) {
+        Report report = new Report();
+        dropDanglingQueueEntries(report, isStopped);
+        flagDanglingRows(report, isStopped);
+        deleteOrphanFiles(report, isStopped);
+        deleteStaleCacheFiles(report, isStopped);
+        Log.d(TAG, report.toString());
+        return report;
+    }
+
+    private void dropDanglingQueueEntries(Report report, BooleanSupplier isStopped) {
+        int afterId = 0;
+        while (!isStopped.getAsBoolean()) {
+            List<PendingUpload> entries = pendingUploadDao.getAfter(afterId, BATCH_SIZE);
+            if (entries.isEmpty()) return;
+            for (PendingUpload entry : entries) {
+                afterId = entry.getId();
+                if (new File(entry.getAudioPath()).exists()) continue;
+                executors.awaitDatabaseWrite(() -> {
+                    historyDao.updatePrediction(entry.getHistoryItemId(), HistoryItem.LABEL_FAILED, 0, null, null);
+                    historyDao.clearAudio(entry.getHistoryItemId(), entry.getAudioPath());
+                    pendingUploadDao.delete(entry);
+                });
+                report.queueEntriesDropped++;
+            }
+        }
+    }
+
+    private void flagDanglingRows(Report report, BooleanSupplier isStopped) {
+        int afterId = cursors.getInt(KEY_ROW_CURSOR, 0);
+        int checked = 0;
+        while (checked < MAX_PER_RUN && !isStopped.getAsBoolean()) {
+            List<AudioReference> references = historyDao.getAudioReferencesAfter(afterId, BATCH_SIZE);
+            if (references.isEmpty()) {
+                afterId = 0; // Reached the end, start over next run
+                break;
+            }
+            for (AudioReference reference : references) {
+                afterId = reference.id;
+                if (!new File(reference.localAudioPath).exists() && executors.awaitDatabaseWrite(() ->
+                        historyDao.clearAudio(reference.id, reference.localAudioPath)) > 0) {
+                    report.rowsFlagged++;
+                }
+            }
+            checked += references.size();
+        }
+        cursors.edit().putInt(KEY_ROW_CURSOR, afterId).apply();
+    }
+
+    private void deleteOrphanFiles(Report report, BooleanSupplier isStopped) {
+        String[] names = audioDirectory.list();
+        if (names == null) return;
+        Arrays.sort(names);
+        // Continue after the last file checked by the previous run
+        String cursor = cursors.getString(KEY_FILE_CURSOR, "");
+        int start = Arrays.binarySearch(names, cursor);
+        start = start >= 0 ? start + 1 : -start - 1;
+        int end = Math.min(names.length, start + MAX_PER_RUN);
+        long now = System.currentTimeMillis();
+
+        int index = start;
+        while (index < end && !isStopped.getAsBoolean()) {
+            int batchEnd = Math.min(end, index + BATCH_SIZE);
+            List<String> paths = new ArrayList<>(batchEnd - index);
+            for (int i = index; i < batchEnd; i++) {
+                paths.add(new File(audioDirectory, names[i]).getAbsolutePath());
+            }
+            Set<String> referenced = new HashSet<>(historyDao.getReferencedPaths(paths));
+            for (String path : paths) {
+                if (referenced.contains(path)) continue;
+                File file = new File(path);
+                if (!file.isFile() || now - file.lastModified() < ORPHAN_GRACE_MS) continue;
+                long size = file.length();
+                if (file.delete()) {
+                    report.filesDeleted++;
+                    report.bytesReclaimed += size;
+                }
+            }
+            index = batchEnd;
+        }
+        // Start over once every file was checked
+        if (index >= names.length) {
+            cursors.edit().putString(KEY_FILE_CURSOR, "").apply();
+        } else if (index > start) {
+            cursors.edit().putString(KEY_FILE_CURSOR, names[index - 1]).apply();
+        }
+    }
+
+    private void deleteStaleCacheFiles(Report report, BooleanSupplier isStopped) {
+        long now = System.currentTimeMillis();
+        for (File directory : cacheDirectories) {
+            File[] files = directory != null ? directory.listFiles() : null;
+            if (files == null) continue;
+            // Only loose files; subdirectories belong to libraries that manage them
+            for (File file : files) {
+                if (isStopped.getAsBoolean()) return;
+                if (!file.isFile() || now - file.lastModified() < CACHE_MAX_AGE_MS) continue;
+                long size = file.length();
+                if (file.delete()) {
+                    report.filesDeleted++;
+                    report.bytesReclaimed += size;
+                }
+            }
+        }
+    }
+}
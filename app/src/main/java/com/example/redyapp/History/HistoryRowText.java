@@ -0,0 +1,100 @@
+package com.example.redyapp.History;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Formats the text of a history row: the date, the details line and the duration.
+ *
+ * Each string is formatted once per item and cached on it. HistoryPager formats whole pages on
+ * its background thread, so binding a row on the main thread only reads the cached strings;
+ * items that were not prepared that way are formatted on first use.
+ */
+final class HistoryRowText {
+
+    // Immutable and thread-safe, unlike SimpleDateFormat, so one instance serves every thread
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd.MM.yy, HH:mm", Locale.getDefault());
+
+    private HistoryRowText() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Formats the row text of every item that does not have it yet.
+     *
+     * @param items Items about to be shown; call before they are handed to the main thread.
+     */
+    static void precompute(List<HistoryItem> items) {
+        for (HistoryItem item : items) {
+            date(item);
+            details(item);
+            duration(item);
+        }
+    }
+
+    /**
+     * @return The date of the item, e.g. "22.04.25, 16:00".
+     */
+    static String date(HistoryItem item) {
+        String text = item.getDateText();
+        if (text == null) {
+            text = item.getTimestamp() != null
+                    ? DATE_FORMAT.format(item.getTimestamp().toInstant().atZone(ZoneId.systemDefault()))
+                    : "No date";
+            item.setDateText(text);
+        }
+        return text;
+    }
+
+    /**
+     * @return The label, confidence, tags and notes of the item, e.g. "Sweet · 84%  #ripe"
+     *         ("Sweet · 84% ±6 · 4 taps" when voted over taps) with the notes on a second line.
+     */
+    static String details(HistoryItem item) {
+        String text = item.getDetailsText();
+        if (text == null) {
+            StringBuilder details = new StringBuilder();
+            String label = item.getPredictedLabel();
+            if (label != null) {
+                details.append(label);
+                if (!HistoryItem.LABEL_PENDING.equals(label) && !HistoryItem.LABEL_FAILED.equals(label)) {
+                    details.append(String.format(Locale.getDefault(), " · %.0f%%", item.getConfidence() * 100));
+                    if (item.getTapScores() != null && item.getConfidenceVariance() != null) {
+                        details.append(String.format(Locale.getDefault(), " ±%.0f · %d taps",
+                                Math.sqrt(item.getConfidenceVariance()) * 100, item.getTapScores().size()));
+                    }
+                }
+            }
+            if (item.getTags() != null) {
+                for (String tag : item.getTags().split("[\\s,]+")) {
+                    if (!tag.isEmpty()) details.append("  #").append(tag);
+                }
+            }
+            if (item.getNotes() != null && !item.getNotes().isEmpty()) {
+                details.append('\n').append(item.getNotes());
+            }
+            text = details.toString();
+            item.setDetailsText(text);
+        }
+        return text;
+    }
+
+    /**
+     * @return The idle duration text of the item, "00:00 / mm:ss", with "--:--" until the
+     *         duration is known.
+     */
+    static String duration(HistoryItem item) {
+        String text = item.getDurationText();
+        if (text == null) {
+            long seconds = item.getDurationMs() / 1000;
+            text = item.getDurationMs() > 0
+                    ? String.format(Locale.US, "00:00 / %02d:%02d", Math.min(99, seconds / 60), seconds % 60)
+                    : "00:00 / --:--";
+            item.setDurationText(text);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.redyapp.History;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+
+/**
+ * Full-text index over the searchable columns of the history (label, notes and tags).
+ * It is an external-content FTS4 table: the text itself stays in history_table, and Room
+ * keeps the index in sync with triggers on every insert, update and delete. The docid of
+ * a row is the id of its HistoryItem. Only used in HistoryDao queries, never loaded directly.
+ */
+@Fts4(contentEntity = HistoryItem.class)
+@Entity(tableName = "history_fts")
+public class HistorySearchEntry {
+
+    private String predictedLabel;
+    private String notes;
+    private String tags;
+
+    public String getPredictedLabel() {
+        return predictedLabel;
+    }
+
+    public void setPredictedLabel(String predictedLabel) {
+        this.predictedLabel = predictedLabel;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public void setNotes(String notes) {
+        this.notes = notes;
+    }
+
+    public String getTags() {
+        return tags;
+    }
+
+    public void setTags(String tags) {
+        this.tags = tags;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.redyapp.History;
+
+/**
+ * One row of an aggregate query over the history: how many items got a label and their
+ * average confidence. Room fills it straight from the GROUP BY result, so summarizing the
+ * history never loads the HistoryItems themselves.
+ */
+public class LabelStats {
+
+    public String predictedLabel;
+    // Number of items with this label
+    public int count;
+    // Mean confidence of those items
+    public double averageConfidence;
+}
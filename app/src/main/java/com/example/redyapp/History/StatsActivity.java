@@ -0,0 +1,133 @@
+package com.example.redyapp.History;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.R;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Shows a summary of the history: results per label this week and overall, and a per-day
+ * breakdown of the last two weeks.
+ * Every number comes from the aggregate queries of HistoryDao (GROUP BY in SQLite), so the
+ * screen reads a handful of rollup rows however large the history is.
+ */
+public class StatsActivity extends AppCompatActivity {
+
+    private static final String TAG = "StatsActivity";
+    // Days covered by the "this week" summary and by the per-day breakdown
+    private static final int WEEK_DAYS = 7;
+    private static final int DAILY_DAYS = 14;
+
+    private TextView weekSummary;
+    private TextView allTimeSummary;
+    private TextView dailySummary;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_stats);
+
+        weekSummary = findViewById(R.id.week_summary);
+        allTimeSummary = findViewById(R.id.all_time_summary);
+        dailySummary = findViewById(R.id.daily_summary);
+
+        // Set up the back button to close the activity
+        findViewById(R.id.back_button).setOnClickListener(v -> finish());
+
+        loadStats();
+    }
+
+    /**
+     * Runs the aggregate queries on a background thread and shows the results.
+     */
+    private void loadStats() {
+        HistoryDao historyDao = HistoryDatabase.getInstance(getApplicationContext()).historyDao();
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            long start = SystemClock.elapsedRealtime();
+            List<LabelStats> week = historyDao.getLabelStats(startOfDay(WEEK_DAYS - 1));
+            List<LabelStats> allTime = historyDao.getLabelStats(new Date(0));
+            List<DailyLabelStats> daily = historyDao.getDailyStats(startOfDay(DAILY_DAYS - 1));
+            Log.d(TAG, "Statistics queried in " + (SystemClock.elapsedRealtime() - start) + " ms");
+
+            String weekText = formatLabelStats(week);
+            String allTimeText = formatLabelStats(allTime);
+            String dailyText = formatDailyStats(daily);
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                weekSummary.setText(weekText);
+                allTimeSummary.setText(allTimeText);
+                dailySummary.setText(dailyText);
+            });
+        });
+    }
+
+    /**
+     * @param daysAgo Number of days before today.
+     * @return Local midnight at the start of that day.
+     */
+    private static Date startOfDay(int daysAgo) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, -daysAgo);
+        return calendar.getTime();
+    }
+
+    /**
+     * Formats per-label rows as "Label: count (share), avg confidence" lines under a total.
+     */
+    private static String formatLabelStats(List<LabelStats> stats) {
+        int total = 0;
+        for (LabelStats row : stats) {
+            total += row.count;
+        }
+        if (total == 0) {
+            return "No results yet";
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(total).append(total == 1 ? " result" : " results");
+        for (LabelStats row : stats) {
+            text.append(String.format(Locale.getDefault(), "\n%s: %d (%.0f%%), avg confidence %.0f%%",
+                    row.predictedLabel, row.count, 100.0 * row.count / total, row.averageConfidence * 100));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Formats the per-day rows (newest day first) as one line per day.
+     */
+    private static String formatDailyStats(List<DailyLabelStats> stats) {
+        if (stats.isEmpty()) {
+            return "No results in the last " + DAILY_DAYS + " days";
+        }
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = null;
+        String currentDay = null;
+        for (DailyLabelStats row : stats) {
+            if (!row.day.equals(currentDay)) {
+                if (line != null) lines.add(line.toString());
+                currentDay = row.day;
+                line = new StringBuilder(row.day).append("  ");
+            } else {
+                line.append(" · ");
+            }
+            line.append(String.format(Locale.getDefault(), "%s %d (avg %.0f%%)",
+                    row.predictedLabel, row.count, row.averageConfidence * 100));
+        }
+        lines.add(line.toString());
+        return String.join("\n", lines);
+    }
+}
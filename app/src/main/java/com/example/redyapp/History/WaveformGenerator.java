@@ -0,0 +1,78 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.Audio.AudioDecoder;
+import com.example.redyapp.Audio.PcmAudio;
+import com.example.redyapp.Audio.WavReader;
+import com.example.redyapp.Audio.WaveformPeaks;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Decodes a history recording once and stores its duration and waveform peaks on the item,
+ * so the history list can show them without opening the audio file.
+ *
+ * New recordings are processed in the background right after their row is saved
+ * (generateInBackground); older ones are filled in by AudioCompactionWorker (generate).
+ */
+public final class WaveformGenerator {
+
+    private static final String TAG = "WaveformGenerator";
+
+    private WaveformGenerator() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Computes the waveform of a freshly saved recording on the compute pool and stores it
+     * through the database writer.
+     *
+     * @param context Any context; the application context is used.
+     * @param itemId The id of the history item that owns the recording.
+     * @param wavFile The WAV recording.
+     */
+    public static void generateInBackground(Context context, int itemId, File wavFile) {
+        HistoryDao historyDao = HistoryDatabase.getInstance(context.getApplicationContext()).historyDao();
+        AppExecutors executors = AppExecutors.getInstance();
+        executors.compute().execute(() -> {
+            try {
+                PcmAudio audio = WavReader.read(wavFile);
+                byte[] peaks = WaveformPeaks.compute(audio, WaveformPeaks.BUCKETS);
+                executors.databaseWrite().execute(() ->
+                        historyDao.updateWaveform(itemId, audio.getDurationMs(), peaks));
+            } catch (IOException e) {
+                // Left empty; AudioCompactionWorker retries and records the failure
+                Log.w(TAG, "Could not decode " + wavFile.getName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Computes the waveform of an item on the calling thread, decoding WAV and AAC recordings
+     * alike, and stores it through the database writer, waiting for the write. An empty
+     * waveform is stored when the file cannot be decoded, so the item is not picked again.
+     *
+     * @param historyDao The DAO to store the result with.
+     * @param item An item with a recording.
+     */
+    static void generate(HistoryDao historyDao, HistoryItem item) {
+        File file = new File(item.getLocalAudioPath());
+        long durationMs = 0;
+        byte[] peaks = new byte[0];
+        try {
+            PcmAudio audio = AudioDecoder.decode(file);
+            durationMs = audio.getDurationMs();
+            peaks = WaveformPeaks.compute(audio, WaveformPeaks.BUCKETS);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not decode " + file.getName() + ": " + e.getMessage());
+        }
+        long finalDurationMs = durationMs;
+        byte[] finalPeaks = peaks;
+        AppExecutors.getInstance().awaitDatabaseWrite(() ->
+                historyDao.updateWaveform(item.getId(), finalDurationMs, finalPeaks));
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.redyapp.History;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.example.redyapp.Audio.WaveformPeaks;
+import com.example.redyapp.R;
+
+/**
+ * Draws a recording's waveform from its precomputed min/max peaks (see WaveformPeaks), with
+ * the played part highlighted. Nothing is decoded or allocated while drawing, so rows can be
+ * bound and scrolled freely. While seeking is enabled (the row's recording is the one playing),
+ * tapping or dragging sideways seeks like a SeekBar; a drag only takes over from the list once
+ * it moved sideways past the touch slop, so vertical swipes still scroll.
+ * Without peaks (not computed yet, or audio that cannot be decoded) a flat line is drawn.
+ */
+public class WaveformView extends View {
+
+    public interface OnSeekListener {
+        /**
+         * @param fraction The touched position, from 0 (start) to 1 (end).
+         */
+        void onSeek(float fraction);
+    }
+
+    private final Paint playedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint remainingPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private byte[] peaks;
+    // Largest absolute peak, so quiet recordings still fill the height
+    private int maxAmplitude;
+    // Played fraction, from 0 to 1
+    private float progress;
+    private OnSeekListener onSeekListener;
+    private boolean seekable;
+    private final int touchSlop;
+    // Where the current gesture started, and whether it turned into a sideways drag
+    private float downX;
+    private float downY;
+    private boolean dragging;
+
+    public WaveformView(Context context) {
+        this(context, null);
+    }
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        playedPaint.setColor(ContextCompat.getColor(context, R.color.dark_green));
+        playedPaint.setStrokeWidth(2 * density);
+        playedPaint.setStrokeCap(Paint.Cap.ROUND);
+        remainingPaint.set(playedPaint);
+        remainingPaint.setColor(ContextCompat.getColor(context, R.color.green));
+        remainingPaint.setAlpha(110);
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    }
+
+    /**
+     * @param peaks The peaks of the recording, or null/empty to draw a flat line. The array is
+     *              kept, not copied, and must not be modified afterwards.
+     */
+    public void setPeaks(@Nullable byte[] peaks) {
+        this.peaks = peaks != null && peaks.length >= 2 ? peaks : null;
+        this.maxAmplitude = this.peaks != null ? WaveformPeaks.maxAmplitude(this.peaks) : 0;
+        invalidate();
+    }
+
+    /**
+     * @param progress The played fraction, from 0 to 1.
+     */
+    public void setProgress(float progress) {
+        float clamped = Math.max(0f, Math.min(1f, progress));
+        if (clamped != this.progress) {
+            this.progress = clamped;
+            invalidate();
+        }
+    }
+
+    public void setOnSeekListener(@Nullable OnSeekListener onSeekListener) {
+        this.onSeekListener = onSeekListener;
+    }
+
+    /**
+     * @param seekable true to let touches seek, i.e. while this row's recording is playing.
+     *                 Otherwise touches go to the row and the list as usual.
+     */
+    public void setSeekable(boolean seekable) {
+        this.seekable = seekable;
+        if (!seekable) dragging = false;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float left = getPaddingLeft();
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float top = getPaddingTop();
+        float height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (width <= 0 || height <= 0) return;
+        float centerY = top + height / 2f;
+        float playedX = left + width * progress;
+
+        if (peaks == null || maxAmplitude == 0) {
+            canvas.drawLine(left, centerY, playedX, centerY, playedPaint);
+            canvas.drawLine(playedX, centerY, left + width, centerY, remainingPaint);
+            return;
+        }
+
+        int buckets = peaks.length / 2;
+        float step = width / buckets;
+        float scale = (height / 2f) / maxAmplitude;
+        // Keep a dot visible for silent slices
+        float minHalfHeight = playedPaint.getStrokeWidth() / 2f;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            float x = left + step * (bucket + 0.5f);
+            float minY = centerY - Math.min(-minHalfHeight, peaks[bucket * 2] * scale);
+            float maxY = centerY - Math.max(minHalfHeight, peaks[bucket * 2 + 1] * scale);
+            canvas.drawLine(x, maxY, x, minY, x <= playedX ? playedPaint : remainingPaint);
+        }
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (onSeekListener == null || !seekable || !isEnabled()) return super.onTouchEvent(event);
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downX = event.getX();
+                downY = event.getY();
+                dragging = false;
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (!dragging) {
+                    float dx = Math.abs(event.getX() - downX);
+                    if (dx <= touchSlop || dx < Math.abs(event.getY() - downY)) return true;
+                    // A sideways drag: keep the list from scrolling while it lasts
+                    dragging = true;
+                    getParent().requestDisallowInterceptTouchEvent(true);
+                }
+                seek(event.getX());
+                return true;
+            case MotionEvent.ACTION_UP:
+                // A drag ends where it was released; a tap seeks to where it touched
+                seek(event.getX());
+                dragging = false;
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                dragging = false;
+                return true;
+            default:
+                return super.onTouchEvent(event);
+        }
+    }
+
+    private void seek(float x) {
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        if (width <= 0) return;
+        float fraction = Math.max(0f, Math.min(1f, (x - getPaddingLeft()) / width));
+        setProgress(fraction);
+        onSeekListener.onSeek(fraction);
+    }
+}
@@ -3,47 +3,48 @@ package com.example.redyapp;
 import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.media.MediaRecorder;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.CountDownTimer;
-import android.provider.OpenableColumns;
 import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
 import androidx.core.content.ContextCompat;
 
+import com.example.redyapp.Audio.AudioCaptureEngine;
+import com.example.redyapp.Audio.LiveSpectrum;
+import com.example.redyapp.Audio.PcmStream;
+import com.example.redyapp.Audio.SignalQuality;
+import com.example.redyapp.Audio.WavReader;
 import com.example.redyapp.History.HistoryActivity;
+import com.example.redyapp.History.HistoryAudioStore;
 import com.example.redyapp.History.HistoryDatabase;
 import com.example.redyapp.History.HistoryItem;
+import com.example.redyapp.History.WaveformGenerator;
 import com.example.redyapp.LogReg.MainLogRegActivity;
+import com.example.redyapp.Prediction.EnsemblePredictor;
+import com.example.redyapp.Prediction.LiveTapScorer;
+import com.example.redyapp.Prediction.PredictionNetworkException;
+import com.example.redyapp.Prediction.PredictionTask;
+import com.example.redyapp.Prediction.Predictor;
+import com.example.redyapp.Prediction.PredictorPolicy;
+import com.example.redyapp.Prediction.Predictors;
+import com.example.redyapp.Prediction.RemotePredictor;
+import com.example.redyapp.Prediction.UploadQueue;
 import com.example.redyapp.databinding.ActivityMainBinding;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.Date;
 import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
-import okhttp3.MediaType;
-import okhttp3.MultipartBody;
-import okhttp3.RequestBody;
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
 
 /**
  * MainActivity is the main screen of the RedyApp application.
@@ -63,12 +64,23 @@ public class MainActivity extends AppCompatActivity {
     FirebaseUser user;
     // Database for saving prediction history
     private HistoryDatabase historyDatabase;
-    // Thread executor for database operations to avoid blocking UI thread
-    private final ExecutorService databaseExecutor = Executors.newSingleThreadExecutor();
+    // Shared background pools: file work on diskIO, database writes on databaseWrite
+    private final AppExecutors executors = AppExecutors.getInstance();
+    // User options from SettingsActivity
+    private AppSettings appSettings;
+    // Scores recordings on the backend and/or on the device, as selected in the settings,
+    // answering repeated audio from the prediction cache
+    private EnsemblePredictor predictor;
+    // Backend predictor, also used directly for uploads that stream while recording
+    private RemotePredictor remotePredictor;
     // View binding for the activity layout
     private ActivityMainBinding binding;
-    // MediaRecorder for capturing audio
-    private MediaRecorder mediaRecorder;
+    // PCM capture engine (AudioRecord) for capturing audio
+    private AudioCaptureEngine captureEngine;
+    // Feeds the live level meter and spectrum while recording
+    private LiveSpectrum liveSpectrum;
+    // Stage timings of the prediction in progress
+    private final PredictionTracer tracer = PredictionTracer.getInstance();
     // File to store recorded audio
     private File audioOutputFile;
     // Flags to track application state
@@ -76,12 +88,27 @@ public class MainActivity extends AppCompatActivity {
     private boolean isDisplayingResult = false;
     private boolean isUploading = false;
     private boolean recordingCanceled = false; // Flag to track if recording was manually canceled
-    // Duration for audio recording in milliseconds (5 seconds)
+    // Maximum duration for audio recording in milliseconds (5 seconds); the capture normally
+    // ends sooner, as soon as TAPS_PER_RECORDING taps have been detected
     private static final long RECORDING_DURATION = 5000;
-    // Timer to automatically stop recording after the defined duration
+    // Number of taps after which the recording stops by itself
+    private static final int TAPS_PER_RECORDING = 3;
+    // Timer to stop recording after the maximum duration if not enough taps were heard
     private CountDownTimer countDownTimer;
-    // Current API call for upload cancellation
-    private Call<PredictionResponse> currentUploadCall;
+    // Current prediction request for upload cancellation
+    private PredictionTask currentPrediction;
+    // Scores the taps of the recording while it is captured, if enabled in the settings
+    private LiveTapScorer liveTapScorer;
+    // Upload that streams the recording while it is captured, and its result if it
+    // arrived before the capture engine finished writing the WAV file
+    private PredictionTask streamingPrediction;
+    private PredictionResponse streamedResult;
+    // The finished recording while the streaming upload is still waiting for its response
+    private File streamedFile;
+    // Imported copy of the picked file being uploaded, deleted if the upload is canceled
+    private File currentImportedFile;
+    // File whose signal quality is being checked before upload; cleared if the upload is canceled
+    private File qualityCheckFile;
     // Tag for logging
     private static final String TAG = "MainActivity";
 
@@ -91,9 +118,11 @@ public class MainActivity extends AppCompatActivity {
      */
     private final ActivityResultLauncher<String> requestRecordAudioPermissionLauncher =
             registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> {
+                tracer.end(PredictionTracer.Stage.PERMISSION);
                 if (isGranted) {
                     startRecordingFlow();
                 } else {
+                    tracer.finish(PredictionTracer.Outcome.CANCELED);
                     Toast.makeText(this, "Recording permission denied.", Toast.LENGTH_SHORT).show();
                 }
             });
@@ -107,13 +136,9 @@ public class MainActivity extends AppCompatActivity {
                     uri -> {
                         if (uri != null) {
                             Log.d(TAG, "File selected: " + uri.toString());
-                            File fileToUpload = getFileFromUri(uri);
-                            if (fileToUpload != null && fileToUpload.exists()) {
-                                setProcessingUIState("Uploading...");
-                                uploadAudioFile(fileToUpload, true);
-                            } else {
-                                Toast.makeText(MainActivity.this, "Failed to process selected file.", Toast.LENGTH_SHORT).show();
-                            }
+                            tracer.begin(PredictionTracer.Source.FILE);
+                            setProcessingUIState("Uploading...");
+                            importPickedFile(uri);
                         } else {
                             Log.d(TAG, "No file selected");
                         }
@@ -149,6 +174,13 @@ public class MainActivity extends AppCompatActivity {
 
         // Initialize the history database
         historyDatabase = HistoryDatabase.getInstance(this);
+        appSettings = new AppSettings(this);
+        // Each tap of a recording is scored on its own (and cached by content), then voted on
+        remotePredictor = new RemotePredictor(appSettings);
+        predictor = Predictors.create(this, appSettings, remotePredictor);
+
+        // Open a connection to the backend now, so the first prediction doesn't pay for it
+        RetrofitClient.warmUp();
 
         // Set up view binding
         binding = ActivityMainBinding.inflate(getLayoutInflater());
@@ -325,7 +357,10 @@ public class MainActivity extends AppCompatActivity {
      * Otherwise, requests the necessary permission
      */
     private void checkPermissionAndStartRecording() {
+        tracer.begin(PredictionTracer.Source.RECORDING);
+        tracer.start(PredictionTracer.Stage.PERMISSION);
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED) {
+            tracer.end(PredictionTracer.Stage.PERMISSION);
             startRecordingFlow();
         } else if (shouldShowRequestPermissionRationale(Manifest.permission.RECORD_AUDIO)) {
             Toast.makeText(this, "Audio recording permission is needed.", Toast.LENGTH_LONG).show();
@@ -336,13 +371,16 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Initiates the audio recording process using MediaRecorder
+     * Initiates the audio recording process using the PCM capture engine
      *
      * This method:
      * 1. Sets up the recording UI state
      * 2. Creates an output file for the recording
-     * 3. Configures and starts the MediaRecorder
-     * 4. Sets up a timer to automatically stop recording after the set duration
+     * 3. Starts the AudioRecord-based capture engine (16 kHz, 16-bit PCM), which stops by
+     *    itself once TAPS_PER_RECORDING taps were detected
+     * 4. Sets up a timer to stop recording after the maximum duration as a fallback
+     * 5. If enabled in the settings, starts uploading the recording while it is captured,
+     *    or else scores each tap while the recording is still captured
      */
     private void startRecordingFlow() {
         if (isRecording) return;
@@ -353,6 +391,7 @@ public class MainActivity extends AppCompatActivity {
         File outputDir = getExternalCacheDir();
         if (outputDir == null) outputDir = getCacheDir();
         if (outputDir == null) {
+            tracer.finish(PredictionTracer.Outcome.ERROR);
             Toast.makeText(this, "Cannot access storage for recording.", Toast.LENGTH_LONG).show();
             resetToInitialStateAfterError();
             return;
@@ -361,80 +400,221 @@ public class MainActivity extends AppCompatActivity {
         // Create output file for the recording
         audioOutputFile = new File(outputDir, "recorded_watermelon_thump.wav");
 
-        // Initialize MediaRecorder with appropriate constructor based on Android version
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.S) {
-            mediaRecorder = new MediaRecorder(this);
-        } else {
-            mediaRecorder = new MediaRecorder();
+        // Create the capture engine; the WAV file is written when the capture stops
+        tracer.start(PredictionTracer.Stage.RECORDER_START);
+        captureEngine = new AudioCaptureEngine(audioOutputFile, RECORDING_DURATION, TAPS_PER_RECORDING, captureListener);
+        stopLiveTapScoring();
+        cancelStreamingPrediction();
+        PcmStream pcmStream = null;
+        // The streamed recording is scored by the backend as a whole, so its taps are not scored
+        // ahead as well; with the on-device model first nothing is sent while recording
+        if (appSettings.isStreamUploadEnabled() && appSettings.getPredictorPolicy() != PredictorPolicy.LOCAL_FIRST) {
+            pcmStream = captureEngine.openStream();
+        } else if (appSettings.isLiveTapScoringEnabled()) {
+            liveTapScorer = new LiveTapScorer(captureEngine, predictor);
+            captureEngine.setTapWindowObserver(liveTapScorer);
+        }
+        if (!captureEngine.start()) {
+            tracer.finish(PredictionTracer.Outcome.ERROR);
+            Log.e(TAG, "AudioRecord failed to start");
+            Toast.makeText(this, "Recording failed to start.", Toast.LENGTH_SHORT).show();
+            resetRecordingState();
+            return;
         }
+        tracer.end(PredictionTracer.Stage.RECORDER_START);
+        tracer.start(PredictionTracer.Stage.CAPTURE);
+        isRecording = true;
+        if (pcmStream != null) {
+            startStreamingPrediction(pcmStream);
+        }
+        startLiveSpectrum();
+
+        // Set timer to automatically stop recording after defined duration
+        countDownTimer = new CountDownTimer(RECORDING_DURATION, 1000) {
+            public void onTick(long millisUntilFinished) { /* ... */ }
+            public void onFinish() {
+                if (isRecording && !recordingCanceled) { // Only process if not manually canceled
+                    stopRecording();
+                }
+            }
+        }.start();
+    }
 
-        // Configure MediaRecorder settings
-        mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-        mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
-        mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
-        mediaRecorder.setOutputFile(audioOutputFile.getAbsolutePath());
+    /**
+     * Shows the live level meter and spectrum of the running capture
+     */
+    private void startLiveSpectrum() {
+        liveSpectrum = new LiveSpectrum(captureEngine);
+        liveSpectrum.start();
+        binding.spectrumView.setSource(liveSpectrum.getFrames());
+        binding.spectrumView.setVisibility(View.VISIBLE);
+    }
 
-        try {
-            // Start recording
-            mediaRecorder.prepare();
-            mediaRecorder.start();
-            isRecording = true;
-
-            // Set timer to automatically stop recording after defined duration
-            countDownTimer = new CountDownTimer(RECORDING_DURATION, 1000) {
-                public void onTick(long millisUntilFinished) { /* ... */ }
-                public void onFinish() {
-                    if (isRecording && !recordingCanceled) { // Only process if not manually canceled
-                        stopRecording();
-                    }
+    /**
+     * Stops the live level meter and spectrum, if running, and hides them
+     */
+    private void stopLiveSpectrum() {
+        if (liveSpectrum != null) {
+            liveSpectrum.stop();
+            liveSpectrum = null;
+        }
+        if (binding != null) {
+            binding.spectrumView.clearSource();
+            binding.spectrumView.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Starts an upload that sends the recording while it is being captured, so the result
+     * arrives shortly after the capture ends. The result is only used once the finished
+     * recording passed the quality check; if the upload fails, the file is sent through the
+     * regular predictor instead (see requestPrediction).
+     *
+     * @param pcmStream The live stream of the capture engine
+     */
+    private void startStreamingPrediction(PcmStream pcmStream) {
+        streamedResult = null;
+        streamedFile = null;
+        // Overlaps the capture; its API call is traced from the start of the recording
+        tracer.start(PredictionTracer.Stage.PREDICT);
+        streamingPrediction = remotePredictor.predictStreaming(pcmStream, audioOutputFile.getName(), new Predictor.Callback() {
+            @Override
+            public void onResult(PredictionResponse prediction) {
+                streamingPrediction = null;
+                tracer.end(PredictionTracer.Stage.PREDICT);
+                if (streamedFile != null) {
+                    // The capture already finished and is waiting for this result
+                    File file = streamedFile;
+                    streamedFile = null;
+                    showPrediction(prediction, file, false);
+                } else {
+                    streamedResult = prediction;
                 }
-            }.start();
-        } catch (IOException | IllegalStateException e) {
-            Log.e(TAG, "MediaRecorder start/prepare failed: " + e.getMessage());
-            Toast.makeText(this, "Recording failed to start.", Toast.LENGTH_SHORT).show();
-            resetRecordingState();
+            }
+
+            @Override
+            public void onError(String message, Throwable cause) {
+                streamingPrediction = null;
+                tracer.end(PredictionTracer.Stage.PREDICT);
+                Log.w(TAG, "Streaming upload failed, sending the file instead: " + message);
+                if (streamedFile != null) {
+                    // The recording already passed the quality check
+                    File file = streamedFile;
+                    streamedFile = null;
+                    requestPrediction(file, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the streaming upload, if any, and forgets its result
+     */
+    private void cancelStreamingPrediction() {
+        if (streamingPrediction != null) {
+            streamingPrediction.cancel();
+            streamingPrediction = null;
         }
+        streamedResult = null;
+        streamedFile = null;
     }
 
     /**
-     * Stops the audio recording process and processes the recorded file
-     * This is called either when the timer completes or when the user manually stops recording
+     * Stops scoring taps of the recording ahead, if that was running. Called once the finished
+     * recording was scored, or when it will not be
      */
-    private void stopRecording() {
-        if (!isRecording || mediaRecorder == null) return;
-        if (countDownTimer != null) countDownTimer.cancel();
-        try {
-            mediaRecorder.stop();
-            mediaRecorder.release();
-        } catch (RuntimeException e) {
-            Log.e(TAG, "MediaRecorder stop() failed: " + e.getMessage());
-        } finally {
-            mediaRecorder = null;
+    private void stopLiveTapScoring() {
+        if (liveTapScorer != null) {
+            liveTapScorer.stop();
+            liveTapScorer = null;
+        }
+    }
+
+    /**
+     * Receives tap updates and the finished WAV file (or an error) from the capture engine
+     * on the main thread
+     */
+    private final AudioCaptureEngine.Listener captureListener = new AudioCaptureEngine.Listener() {
+        @Override
+        public void onTapDetected(int tapCount) {
+            if (binding == null || !isRecording) return;
+            binding.textViewInstruction.setText(String.format(Locale.US,
+                    "Recording... tap %d/%d (tap to cancel)", tapCount, TAPS_PER_RECORDING));
+        }
+
+        @Override
+        public void onCaptureComplete(File wavFile) {
+            captureEngine = null;
+            stopLiveSpectrum();
+            // When the engine stopped by itself after the last tap, finalizing is part of CAPTURE
+            tracer.end(PredictionTracer.Stage.CAPTURE);
+            tracer.end(PredictionTracer.Stage.FINALIZE);
+            // The engine may have stopped by itself after enough taps, so stop the fallback timer
+            if (countDownTimer != null) countDownTimer.cancel();
             isRecording = false;
+            if (binding == null || recordingCanceled) {
+                stopLiveTapScoring();
+                cancelStreamingPrediction();
+                return;
+            }
+            if (wavFile != null && wavFile.exists() && wavFile.length() > 0) {
+                setProcessingUIState("Predicting...");
+                // Taps scored (or a recording streamed) while recording are only used once the
+                // recording passed the quality check
+                uploadAudioFile(wavFile, false);
+            } else {
+                stopLiveTapScoring();
+                cancelStreamingPrediction();
+                tracer.finish(PredictionTracer.Outcome.ERROR);
+                Log.w(TAG, "Recorded audio file issue.");
+                Toast.makeText(MainActivity.this, "Audio file not created.", Toast.LENGTH_SHORT).show();
+                setInitialUIState();
+            }
         }
-        if (audioOutputFile != null && audioOutputFile.exists() && audioOutputFile.length() > 0) {
-            setProcessingUIState("Predicting...");
-            uploadAudioFile(audioOutputFile, false);
-        } else {
-            Log.w(TAG, "Recorded audio file issue.");
-            Toast.makeText(this, "Audio file not created.", Toast.LENGTH_SHORT).show();
+
+        @Override
+        public void onCaptureError(String message) {
+            captureEngine = null;
+            stopLiveSpectrum();
+            if (countDownTimer != null) countDownTimer.cancel();
+            isRecording = false;
+            stopLiveTapScoring();
+            cancelStreamingPrediction();
+            tracer.finish(PredictionTracer.Outcome.ERROR);
+            if (binding == null) return;
+            Toast.makeText(MainActivity.this, "Recording failed.", Toast.LENGTH_SHORT).show();
             setInitialUIState();
         }
+    };
+
+    /**
+     * Stops the audio recording process; the capture engine finalizes the WAV file in the
+     * background and hands it to captureListener for upload.
+     * This is called either when the timer completes or when the user manually stops recording
+     */
+    private void stopRecording() {
+        if (!isRecording || captureEngine == null) return;
+        if (countDownTimer != null) countDownTimer.cancel();
+        isRecording = false;
+        stopLiveSpectrum();
+        tracer.end(PredictionTracer.Stage.CAPTURE);
+        tracer.start(PredictionTracer.Stage.FINALIZE);
+        setProcessingUIState("Predicting...");
+        captureEngine.stop();
     }
 
     /**
-     * Cleans up resources used by the MediaRecorder and resets the UI state
+     * Cleans up resources used by the capture engine and resets the UI state
      * Called when recording is finished or if there's an error during recording
      */
     private void resetRecordingState() {
-        if (mediaRecorder != null) {
-            try {
-                mediaRecorder.release();
-            } catch (Exception e) {
-                Log.e(TAG, "Error releasing media recorder: " + e.getMessage());
-            }
-            mediaRecorder = null;
+        stopLiveSpectrum();
+        if (captureEngine != null) {
+            captureEngine.cancel();
+            captureEngine = null;
         }
+        stopLiveTapScoring();
+        cancelStreamingPrediction();
         isRecording = false;
         if (binding != null) {
             setInitialUIState();
@@ -457,22 +637,27 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Cleans up resources when the activity is being destroyed
-     * Ensures MediaRecorder and CountDownTimer are properly released
+     * Ensures the capture engine and CountDownTimer are properly released
      */
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        tracer.finish(PredictionTracer.Outcome.ABANDONED);
+        // A result arriving after this point would find no views to show it in
+        if (currentPrediction != null) {
+            currentPrediction.cancel();
+            currentPrediction = null;
+        }
         if (binding != null) {
             resetRecordingState();
             binding = null;
         } else {
-            if (mediaRecorder != null) {
-                try {
-                    mediaRecorder.release();
-                } catch (Exception e) {
-                    Log.e(TAG, "Error releasing media recorder: " + e.getMessage());
-                }
-                mediaRecorder = null;
+            stopLiveSpectrum();
+            stopLiveTapScoring();
+            cancelStreamingPrediction();
+            if (captureEngine != null) {
+                captureEngine.cancel();
+                captureEngine = null;
             }
             if (countDownTimer != null) countDownTimer.cancel();
             isRecording = false;
@@ -480,143 +665,252 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Extracts a filename from a content URI
+     * Imports a picked file into the history audio directory in the background, then uploads it
+     * The import is a single kernel-side copy from the ContentResolver file descriptor; the
+     * imported file is uploaded and later referenced by the history item, so it is never copied again
      *
-     * @param uri The URI to extract the filename from
-     * @return The extracted filename or a default name if extraction fails
+     * @param uri The content URI returned by the picker
      */
-    private String getFileName(Uri uri) {
-        String result = null;
-        // Try to get the display name from the content provider
-        if (uri.getScheme() != null && uri.getScheme().equals("content")) {
-            try (android.database.Cursor cursor = getContentResolver().query(uri, null, null, null, null)) {
-                if (cursor != null && cursor.moveToFirst()) {
-                    int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
-                    if (nameIndex != -1) result = cursor.getString(nameIndex);
-                }
-            } catch (Exception e) {
-                Log.e(TAG, "Error getting file name from URI", e);
-            }
-        }
-        // If we couldn't get the name from content provider, try to extract it from the path
-        if (result == null) {
-            result = uri.getPath();
-            if (result != null) {
-                int cut = result.lastIndexOf('/');
-                if (cut != -1) result = result.substring(cut + 1);
+    private void importPickedFile(Uri uri) {
+        tracer.start(PredictionTracer.Stage.IMPORT);
+        executors.diskIO().execute(() -> {
+            File imported;
+            try {
+                imported = HistoryAudioStore.importUri(getApplicationContext(), uri);
+            } catch (IOException | SecurityException e) {
+                Log.e(TAG, "Failed to import file from URI: " + e.getMessage(), e);
+                imported = null;
             }
-        }
-        // Ensure the file has a .wav extension
-        return (result != null && result.toLowerCase().endsWith(".wav")) ? result : "uploaded_audio.wav";
-    }
-
-    /**
-     * Converts a content URI to a File by copying the content to a temporary file
-     *
-     * @param uri The URI of the file to convert
-     * @return A File object pointing to the copied file, or null if the operation fails
-     */
-    private File getFileFromUri(Uri uri) {
-        File tempFile = null;
-        String fileName = getFileName(uri);
-        try {
-            InputStream inputStream = getContentResolver().openInputStream(uri);
-            if (inputStream == null) return null;
-            File cacheDir = getApplicationContext().getCacheDir();
-            tempFile = new File(cacheDir, fileName);
-            try (OutputStream outputStream = new FileOutputStream(tempFile)) {
-                byte[] buffer = new byte[1024 * 4];
-                int read;
-                while ((read = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, read);
+            final File fileToUpload = imported;
+            runOnUiThread(() -> {
+                tracer.end(PredictionTracer.Stage.IMPORT);
+                if (binding == null || !isUploading) {
+                    // Activity closed or upload canceled while importing
+                    if (fileToUpload != null) fileToUpload.delete();
+                    return;
                 }
-                outputStream.flush();
-            }
-            inputStream.close();
-            return tempFile;
-        } catch (IOException e) {
-            Log.e(TAG, "Failed to copy file from URI: " + e.getMessage(), e);
-            if (tempFile != null && tempFile.exists()) tempFile.delete();
-            return null;
-        }
+                if (fileToUpload != null) {
+                    uploadAudioFile(fileToUpload, true);
+                } else {
+                    tracer.finish(PredictionTracer.Outcome.ERROR);
+                    Toast.makeText(MainActivity.this, "Failed to process selected file.", Toast.LENGTH_SHORT).show();
+                    setInitialUIState();
+                }
+            });
+        });
     }
 
     /**
-     * Uploads an audio file to the prediction API and handles the response
-     * Optimized for faster processing with reduced file copying overhead
+     * Checks the signal quality of an audio file in the background, then sends it to the
+     * predictor. Recordings that are silent, overloaded or mostly noise are not sent unless
+     * the user confirms; doubtful ones are sent with a warning
      *
      * @param file The audio file to upload
-     * @param isUploadedFile Flag indicating if this is a user-uploaded file (true) or a recorded file (false)
+     * @param isUploadedFile Flag indicating if this is a user-picked file, already imported into
+     *                       the history audio directory (true), or a recorded file (false)
      */
     private void uploadAudioFile(File file, boolean isUploadedFile) {
         // Validate file existence and size
         if (file == null || !file.exists() || file.length() == 0L) {
+            tracer.finish(PredictionTracer.Outcome.ERROR);
             Toast.makeText(this, "File to upload is invalid.", Toast.LENGTH_SHORT).show();
             resetToInitialStateAfterError();
             return;
         }
 
-        // For performance, create the API request first, then handle file copying in background
-        RequestBody requestFile = RequestBody.create(file, MediaType.parse("audio/wav"));
-        MultipartBody.Part body = MultipartBody.Part.createFormData("file", file.getName(), requestFile);
+        currentImportedFile = isUploadedFile ? file : null;
+        qualityCheckFile = file;
+        tracer.start(PredictionTracer.Stage.QUALITY_CHECK);
+        executors.compute().execute(() -> {
+            SignalQuality quality = null;
+            try {
+                quality = SignalQuality.analyze(WavReader.read(file));
+                QualityGateMetrics.getInstance().record(file.getName(), quality);
+            } catch (IOException | RuntimeException e) {
+                // Not a PCM WAV file; the predictor decides what to do with it
+                QualityGateMetrics.getInstance().recordUnreadable(file.getName(), e.getMessage());
+            }
+            final SignalQuality result = quality;
+            runOnUiThread(() -> {
+                if (binding == null || qualityCheckFile != file) {
+                    // Activity closed or upload canceled during the check
+                    return;
+                }
+                qualityCheckFile = null;
+                tracer.end(PredictionTracer.Stage.QUALITY_CHECK);
+                if (result == null || result.getVerdict() == SignalQuality.Verdict.GOOD) {
+                    requestPrediction(file, isUploadedFile);
+                } else if (result.getVerdict() == SignalQuality.Verdict.WARN) {
+                    Toast.makeText(MainActivity.this, result.getReason(), Toast.LENGTH_SHORT).show();
+                    requestPrediction(file, isUploadedFile);
+                } else {
+                    showQualityRejectedDialog(result, file, isUploadedFile);
+                }
+            });
+        });
+    }
 
-        // Get API service and make the prediction request immediately
-        ApiService apiService = RetrofitClient.getInstance();
-        currentUploadCall = apiService.predictWatermelonSweetness(body);
+    /**
+     * Explains why a recording is not worth scoring and lets the user score it anyway or
+     * record again
+     *
+     * @param quality The quality report of the recording
+     * @param file The audio file
+     * @param isUploadedFile Flag indicating if this is a user-uploaded file (true) or a recorded file (false)
+     */
+    private void showQualityRejectedDialog(SignalQuality quality, File file, boolean isUploadedFile) {
+        new AlertDialog.Builder(this)
+                .setTitle("Recording not usable")
+                .setMessage(quality.getReason())
+                .setCancelable(false)
+                .setPositiveButton("Try again", (dialog, which) -> {
+                    stopLiveTapScoring();
+                    cancelStreamingPrediction();
+                    tracer.finish(PredictionTracer.Outcome.CANCELED);
+                    isUploading = false;
+                    currentImportedFile = null;
+                    deleteTemporaryUpload(file, isUploadedFile);
+                    setInitialUIState();
+                })
+                .setNegativeButton("Score anyway", (dialog, which) -> {
+                    QualityGateMetrics.getInstance().recordScoredAnyway();
+                    requestPrediction(file, isUploadedFile);
+                })
+                .show();
+    }
+
+    /**
+     * Sends an audio file to the predictor and handles the result
+     * Depending on the settings the prediction comes from the backend, the on-device model,
+     * or whichever of the two answers first (see PolicyPredictor). Taps already scored while
+     * recording are answered from the cache, or joined while their requests are still running.
+     * A recording that was streamed while it was captured uses the result of the streaming
+     * upload instead
+     *
+     * @param file The audio file to upload
+     * @param isUploadedFile Flag indicating if this is a user-picked file (true) or a recorded file (false)
+     */
+    private void requestPrediction(File file, boolean isUploadedFile) {
+        if (!isUploadedFile && streamedResult != null) {
+            // The streaming upload answered before the quality check finished
+            PredictionResponse prediction = streamedResult;
+            streamedResult = null;
+            showPrediction(prediction, file, false);
+            return;
+        }
+        if (!isUploadedFile && streamingPrediction != null) {
+            // Wait for the streaming upload; it is cancelable like a regular upload
+            streamedFile = file;
+            currentPrediction = streamingPrediction;
+            return;
+        }
+        tracer.start(PredictionTracer.Stage.PREDICT);
+        currentPrediction = predictor.predict(file, new Predictor.Callback() {
+            @Override
+            public void onResult(PredictionResponse prediction) {
+                tracer.end(PredictionTracer.Stage.PREDICT);
+                stopLiveTapScoring();
+                showPrediction(prediction, file, isUploadedFile);
+            }
 
-        // Execute the request asynchronously
-        currentUploadCall.enqueue(new Callback<>() {
             @Override
-            public void onResponse(@NonNull Call<PredictionResponse> call, @NonNull Response<PredictionResponse> response) {
+            public void onError(String message, Throwable cause) {
+                tracer.end(PredictionTracer.Stage.PREDICT);
+                stopLiveTapScoring();
+                tracer.finish(PredictionTracer.Outcome.ERROR);
                 isUploading = false; // Reset uploading flag
-                currentUploadCall = null; // Clear current call reference
-
-                if (response.isSuccessful() && response.body() != null) {
-                    // Process successful response
-                    PredictionResponse prediction = response.body();
-                    displayResultsOnMainActivity(prediction.getPredictedLabel(), prediction.getConfidence());
-
-                    // Copy file to persistent storage in background after successful prediction
-                    databaseExecutor.execute(() -> {
-                        File persistentAudioFile = copyAudioToPersistentStorage(file);
+                currentImportedFile = null;
+                currentPrediction = null; // Clear current request reference
+                setInitialUIState();
+                if (cause instanceof PredictionNetworkException) {
+                    // No connection: keep the recording and score it once the network is back
+                    Toast.makeText(MainActivity.this, "No connection. The recording was saved and will be scored when you're back online.", Toast.LENGTH_LONG).show();
+                    executors.diskIO().execute(() -> {
+                        File persistentAudioFile = isUploadedFile ? file : copyAudioToPersistentStorage(file);
                         if (persistentAudioFile != null) {
-                            saveHistoryToDatabase(prediction.getPredictedLabel(), prediction.getConfidence(), persistentAudioFile.getAbsolutePath());
+                            executors.databaseWrite().execute(() ->
+                                    UploadQueue.enqueue(getApplicationContext(), persistentAudioFile));
                         } else {
-                            Log.w(TAG, "Failed to save audio file to persistent storage for history");
+                            Log.w(TAG, "Failed to save audio file to persistent storage for the upload queue");
                         }
                     });
-                } else {
-                    // Handle API error
-                    Log.e(TAG, "API Error or empty body. Code: " + response.code());
-                    Toast.makeText(MainActivity.this, "Prediction failed. Code: " + response.code(), Toast.LENGTH_LONG).show();
-                    setInitialUIState();
-                }
-
-                // Clean up temporary file if it was a user upload
-                if (isUploadedFile && file.getParentFile() != null && file.getParentFile().equals(getCacheDir())) {
-                    file.delete();
+                    return;
                 }
+                Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
+                deleteTemporaryUpload(file, isUploadedFile);
             }
+        });
+    }
 
-            @Override
-            public void onFailure(@NonNull Call<PredictionResponse> call, @NonNull Throwable t) {
-                isUploading = false; // Reset uploading flag
-                currentUploadCall = null; // Clear current call reference
-
-                // Check if the failure was due to cancellation
-                if (call.isCanceled()) {
-                    Log.d(TAG, "Upload was canceled");
-                    return; // Don't show error message for cancellation
-                }
+    /**
+     * Displays a prediction and saves it, with a persistent copy of the audio, to the history
+     *
+     * @param prediction The prediction to show
+     * @param file The audio file that was scored
+     * @param isUploadedFile Flag indicating if this is a user-uploaded file (true) or a recorded file (false)
+     */
+    private void showPrediction(PredictionResponse prediction, File file, boolean isUploadedFile) {
+        if (binding == null) {
+            // Destroyed meanwhile; the trace was already finished as abandoned
+            Log.w(TAG, "Binding is null in showPrediction, dropping the result.");
+            return;
+        }
+        long traceId = tracer.getActiveTraceId();
+        int renderSpan = tracer.start(traceId, PredictionTracer.Stage.RENDER);
+        isUploading = false; // Reset uploading flag
+        currentImportedFile = null;
+        currentPrediction = null; // Clear current request reference
+        displayResultsOnMainActivity(prediction.getPredictedLabel(), prediction.getConfidence());
+        displayTapAgreement(prediction);
+        // The trace ends once the frame showing the result is handed to the display
+        binding.getRoot().getViewTreeObserver().registerFrameCommitCallback(() -> {
+            tracer.end(traceId, renderSpan);
+            tracer.finish(traceId, PredictionTracer.Outcome.OK);
+        });
 
-                // Handle network failure
-                Log.e(TAG, "Network Failure: " + t.getMessage(), t);
-                Toast.makeText(MainActivity.this, "Network request failed.", Toast.LENGTH_LONG).show();
-                setInitialUIState();
+        // Copy recordings to persistent storage in background after successful prediction;
+        // picked files were imported there already. The copy runs on the I/O pool and the
+        // insert is handed to the database writer
+        int persistSpan = tracer.start(traceId, PredictionTracer.Stage.PERSIST);
+        executors.diskIO().execute(() -> {
+            File persistentAudioFile = isUploadedFile ? file : copyAudioToPersistentStorage(file);
+            if (persistentAudioFile != null) {
+                saveHistoryToDatabase(prediction, persistentAudioFile.getAbsolutePath(), traceId, persistSpan);
+            } else {
+                tracer.end(traceId, persistSpan);
+                Log.w(TAG, "Failed to save audio file to persistent storage for history");
             }
         });
     }
 
+    /**
+     * Shows how much the taps of a voted prediction agreed, in place of the plain confidence
+     *
+     * @param prediction The displayed prediction; nothing changes unless it was voted over taps
+     */
+    private void displayTapAgreement(PredictionResponse prediction) {
+        if (binding == null) {
+            Log.w(TAG, "Binding is null in displayTapAgreement, cannot update UI.");
+            return;
+        }
+        if (prediction.getTapScores() == null || prediction.getConfidenceVariance() == null) return;
+        binding.textViewPredictionConfidence.setText(String.format(Locale.US, "%.1f%% ±%.1f · %d taps",
+                prediction.getConfidence() * 100, Math.sqrt(prediction.getConfidenceVariance()) * 100,
+                prediction.getTapScores().size()));
+    }
+
+    /**
+     * Deletes the imported copy of a user-picked file when no history item will reference it
+     *
+     * @param file The uploaded file
+     * @param isUploadedFile Flag indicating if this is a user-uploaded file (true) or a recorded file (false)
+     */
+    private void deleteTemporaryUpload(File file, boolean isUploadedFile) {
+        if (isUploadedFile) {
+            file.delete();
+        }
+    }
+
     /**
      * Copies an audio file to the app's persistent storage for history tracking
      *
@@ -624,39 +918,35 @@ public class MainActivity extends AppCompatActivity {
      * @return The new file in persistent storage, or null if copying failed
      */
     private File copyAudioToPersistentStorage(File sourceFile) {
-        File persistentDir = new File(getFilesDir(), "history_audio");
-        if (!persistentDir.exists()) {
-            persistentDir.mkdirs();
-        }
-        String fileName = "rec_" + System.currentTimeMillis() + ".wav";
-        File destinationFile = new File(persistentDir, fileName);
-        try (InputStream in = new FileInputStream(sourceFile);
-             OutputStream out = new FileOutputStream(destinationFile)) {
-            byte[] buf = new byte[1024];
-            int len;
-            while ((len = in.read(buf)) > 0) {
-                out.write(buf, 0, len);
-            }
+        try {
+            return HistoryAudioStore.importFile(getApplicationContext(), sourceFile);
         } catch (IOException e) {
             Log.e(TAG, "Failed to copy file to persistent storage", e);
             return null;
         }
-        return destinationFile;
     }
 
     /**
      * Saves a prediction result to the history database
      * Uses a background thread to avoid blocking the UI thread
      *
-     * @param label The predicted label (e.g., "sweet", "not sweet")
-     * @param confidence The confidence level of the prediction (0.0-1.0)
+     * @param prediction The prediction, with its tap scores if it was voted over several taps
      * @param localAudioPath Path to the saved audio file on device storage
+     * @param traceId The trace of the prediction
+     * @param persistSpan The PERSIST span of the trace, ended once the item is inserted
      */
-    private void saveHistoryToDatabase(String label, Double confidence, String localAudioPath) {
-        databaseExecutor.execute(() -> {
-            HistoryItem historyItem = new HistoryItem(label, confidence, localAudioPath, new Date());
-            historyDatabase.historyDao().insert(historyItem);
+    private void saveHistoryToDatabase(PredictionResponse prediction, String localAudioPath, long traceId, int persistSpan) {
+        executors.databaseWrite().execute(() -> {
+            HistoryItem historyItem = new HistoryItem(prediction.getPredictedLabel(), prediction.getConfidence(), localAudioPath, new Date());
+            historyItem.setTapScores(prediction.getTapScores());
+            historyItem.setConfidenceVariance(prediction.getConfidenceVariance());
+            historyItem.setAudioCodec(HistoryItem.CODEC_WAV);
+            historyItem.setAudioSizeBytes(new File(localAudioPath).length());
+            int historyItemId = (int) historyDatabase.historyDao().insert(historyItem);
+            tracer.end(traceId, persistSpan);
             Log.d(TAG, "History item saved to local Room database.");
+            // Decode the recording once for the duration and waveform shown in the history
+            WaveformGenerator.generateInBackground(getApplicationContext(), historyItemId, new File(localAudioPath));
         });
     }
 
@@ -665,10 +955,21 @@ public class MainActivity extends AppCompatActivity {
      * This is called when the user clicks the watermelon mic button during upload
      */
     private void cancelUpload() {
-        if (isUploading && currentUploadCall != null) {
-            currentUploadCall.cancel();
-            currentUploadCall = null;
+        if (isUploading) {
+            if (currentPrediction != null) {
+                currentPrediction.cancel();
+            }
+            currentPrediction = null;
+            qualityCheckFile = null;
+            stopLiveTapScoring();
+            cancelStreamingPrediction();
+            if (currentImportedFile != null) {
+                File canceledFile = currentImportedFile;
+                currentImportedFile = null;
+                executors.diskIO().execute(canceledFile::delete);
+            }
             isUploading = false;
+            tracer.finish(PredictionTracer.Outcome.CANCELED);
             Log.d(TAG, "Upload canceled by user");
             setInitialUIState();
         }
@@ -684,23 +985,21 @@ public class MainActivity extends AppCompatActivity {
 
             // Stop recording without processing the file
             if (countDownTimer != null) countDownTimer.cancel();
-            try {
-                if (mediaRecorder != null) {
-                    mediaRecorder.stop();
-                    mediaRecorder.release();
-                }
-            } catch (RuntimeException e) {
-                Log.e(TAG, "MediaRecorder stop() failed during cancel: " + e.getMessage());
-            } finally {
-                mediaRecorder = null;
-                isRecording = false;
+            stopLiveSpectrum();
+            if (captureEngine != null) {
+                captureEngine.cancel();
+                captureEngine = null;
             }
+            stopLiveTapScoring();
+            cancelStreamingPrediction();
+            isRecording = false;
 
             // Delete the incomplete recording file
             if (audioOutputFile != null && audioOutputFile.exists()) {
                 audioOutputFile.delete();
                 audioOutputFile = null;
             }
+            tracer.finish(PredictionTracer.Outcome.CANCELED);
             Log.d(TAG, "Recording canceled by user");
             setInitialUIState(); // Go back to initial state without processing
         }
@@ -0,0 +1,144 @@
+package com.example.redyapp;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MeteredExecutor is a fixed-size thread pool that measures itself: how many tasks wait in
+ * its queue, how long they wait before running (the sign of a stall) and how long they run.
+ * A task that waited longer than STALL_THRESHOLD_MS is logged with the queue depth.
+ * All methods are thread-safe.
+ */
+public class MeteredExecutor implements Executor {
+
+    private static final String TAG = "MeteredExecutor";
+    // Queue waits longer than this are logged as stalls
+    private static final long STALL_THRESHOLD_MS = 500;
+
+    private final String name;
+    private final ThreadPoolExecutor pool;
+
+    // Tasks submitted but not yet started
+    private int queueDepth;
+    private int maxQueueDepth;
+    private long startedTasks;
+    private long completed;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalRunNanos;
+    private long maxRunNanos;
+
+    /**
+     * @param name Name of the pool, used for its threads and in the metrics.
+     * @param threads Number of threads.
+     * @param threadPriority Linux priority of the threads (android.os.Process.THREAD_PRIORITY_*).
+     */
+    public MeteredExecutor(String name, int threads, int threadPriority) {
+        this.name = name;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(() -> {
+                    Process.setThreadPriority(threadPriority);
+                    runnable.run();
+                }, name + "-" + threadCount.incrementAndGet()));
+        // Idle threads exit after 30 s, so an idle app holds no threads
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        final long submittedAt = System.nanoTime();
+        synchronized (this) {
+            queueDepth++;
+            maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+        }
+        pool.execute(() -> {
+            long startedAt = System.nanoTime();
+            int depth = started(startedAt - submittedAt);
+            if (startedAt - submittedAt > TimeUnit.MILLISECONDS.toNanos(STALL_THRESHOLD_MS)) {
+                Log.w(TAG, String.format(Locale.US, "%s: task waited %.0f ms (%d still queued)",
+                        name, (startedAt - submittedAt) / 1e6, depth));
+            }
+            try {
+                task.run();
+            } finally {
+                finished(System.nanoTime() - startedAt);
+            }
+        });
+    }
+
+    private synchronized int started(long waitNanos) {
+        queueDepth--;
+        startedTasks++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        return queueDepth;
+    }
+
+    private synchronized void finished(long runNanos) {
+        completed++;
+        totalRunNanos += runNanos;
+        maxRunNanos = Math.max(maxRunNanos, runNanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of tasks waiting to start.
+     */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public synchronized long getCompletedTasks() {
+        return completed;
+    }
+
+    /**
+     * @return The mean time tasks waited in the queue, in milliseconds (0 if none started).
+     */
+    public synchronized double getAverageWaitMs() {
+        return startedTasks == 0 ? 0 : totalWaitNanos / 1e6 / startedTasks;
+    }
+
+    public synchronized double getMaxWaitMs() {
+        return maxWaitNanos / 1e6;
+    }
+
+    /**
+     * @return The mean run time of tasks, in milliseconds (0 if none ran).
+     */
+    public synchronized double getAverageRunMs() {
+        return completed == 0 ? 0 : totalRunNanos / 1e6 / completed;
+    }
+
+    public synchronized double getMaxRunMs() {
+        return maxRunNanos / 1e6;
+    }
+
+    /**
+     * @return A one-line summary, for logs and diagnostics.
+     */
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%s: queued=%d (max %d) done=%d wait=%.1fms (max %.1f) run=%.1fms (max %.1f)",
+                name, queueDepth, maxQueueDepth, completed, getAverageWaitMs(), getMaxWaitMs(),
+                getAverageRunMs(), getMaxRunMs());
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.redyapp;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Locale;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * NetworkMetrics collects per-phase timings of every API call made through RetrofitClient,
+ * using an OkHttp EventListener: DNS lookup, TCP connect, TLS handshake, time to first byte
+ * (request sent until response headers) and the whole call.
+ *
+ * Calls that reuse a pooled connection have no DNS/connect/TLS phase; they are counted
+ * separately so the effect of the warm-up and of connection reuse is visible.
+ * Calls made while a prediction is traced also become spans of its trace (see PredictionTracer).
+ * Uses the Singleton pattern; all methods are thread-safe.
+ */
+public class NetworkMetrics {
+
+    private static final String TAG = "NetworkMetrics";
+
+    /**
+     * Phases of a call that are timed.
+     */
+    public enum Phase { DNS, CONNECT, TLS, TTFB, CALL }
+
+    private static final NetworkMetrics INSTANCE = new NetworkMetrics();
+
+    // Per phase: number of samples, sum and last value in nanoseconds
+    private final long[] counts = new long[Phase.values().length];
+    private final long[] totalNanos = new long[Phase.values().length];
+    private final long[] lastNanos = new long[Phase.values().length];
+    private long failedCalls;
+    private long reusedConnections;
+
+    private NetworkMetrics() {
+    }
+
+    /**
+     * @return The singleton NetworkMetrics instance.
+     */
+    public static NetworkMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return A factory to install with OkHttpClient.Builder.eventListenerFactory().
+     */
+    public EventListener.Factory listenerFactory() {
+        return call -> new CallTimer();
+    }
+
+    public synchronized long getCount(Phase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    /**
+     * @return The latest duration of the phase in milliseconds, or -1 if it was never measured.
+     */
+    public synchronized double getLastMs(Phase phase) {
+        return counts[phase.ordinal()] == 0 ? -1 : lastNanos[phase.ordinal()] / 1e6;
+    }
+
+    /**
+     * @return The mean duration of the phase in milliseconds, or -1 if it was never measured.
+     */
+    public synchronized double getAverageMs(Phase phase) {
+        long count = counts[phase.ordinal()];
+        return count == 0 ? -1 : totalNanos[phase.ordinal()] / 1e6 / count;
+    }
+
+    public synchronized long getFailedCalls() {
+        return failedCalls;
+    }
+
+    public synchronized long getReusedConnections() {
+        return reusedConnections;
+    }
+
+    /**
+     * @return A one-line summary of the averages, for logs and diagnostics.
+     */
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        StringBuilder summary = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            summary.append(String.format(Locale.US, "%s=%.1fms(n=%d) ", phase.name().toLowerCase(Locale.US),
+                    getAverageMs(phase), counts[phase.ordinal()]));
+        }
+        return summary.append("reused=").append(reusedConnections)
+                .append(" failed=").append(failedCalls).toString();
+    }
+
+    private synchronized void record(Phase phase, long start, long end) {
+        if (start == 0 || end < start) return; // Phase did not happen (e.g. pooled connection)
+        int index = phase.ordinal();
+        counts[index]++;
+        totalNanos[index] += end - start;
+        lastNanos[index] = end - start;
+    }
+
+    private synchronized void recordCall(boolean failed, boolean reused) {
+        if (failed) failedCalls++;
+        if (reused) reusedConnections++;
+    }
+
+    /**
+     * Timestamps the events of a single call. OkHttp creates one per call and invokes it
+     * from the thread running the call.
+     */
+    private final class CallTimer extends EventListener {
+        private long callStart;
+        private long dnsStart;
+        private long dnsEnd;
+        private long connectStart;
+        private long connectEnd;
+        private long secureConnectStart;
+        private long secureConnectEnd;
+        private long requestStart;
+        private long responseHeadersStart;
+        // Trace of the prediction this call belongs to, and its NETWORK and RESPONSE spans
+        private long traceId;
+        private int networkSpan = -1;
+        private int responseSpan = -1;
+
+        @Override
+        public void callStart(@NonNull Call call) {
+            callStart = System.nanoTime();
+            PredictionTracer tracer = PredictionTracer.getInstance();
+            traceId = tracer.getActiveTraceId();
+            networkSpan = tracer.start(traceId, PredictionTracer.Stage.NETWORK);
+        }
+
+        @Override
+        public void dnsStart(@NonNull Call call, @NonNull String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(@NonNull Call call, @NonNull String domainName, @NonNull List<InetAddress> inetAddressList) {
+            dnsEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(@NonNull Call call) {
+            secureConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(@NonNull Call call, Handshake handshake) {
+            secureConnectEnd = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress,
+                               @NonNull Proxy proxy, Protocol protocol) {
+            connectEnd = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersStart(@NonNull Call call) {
+            if (requestStart == 0) requestStart = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(@NonNull Call call) {
+            responseHeadersStart = System.nanoTime();
+            if (responseSpan == -1) {
+                // The body is read and parsed by the converter before the call ends
+                PredictionTracer tracer = PredictionTracer.getInstance();
+                tracer.end(traceId, networkSpan);
+                responseSpan = tracer.start(traceId, PredictionTracer.Stage.RESPONSE);
+            }
+        }
+
+        @Override
+        public void responseHeadersEnd(@NonNull Call call, @NonNull Response response) {
+            // Headers of a redirect or retry; time the final response from its own request
+            if (response.isRedirect()) requestStart = 0;
+        }
+
+        @Override
+        public void callEnd(@NonNull Call call) {
+            finish(false);
+        }
+
+        @Override
+        public void callFailed(@NonNull Call call, @NonNull IOException ioe) {
+            finish(true);
+        }
+
+        private void finish(boolean failed) {
+            long end = System.nanoTime();
+            record(Phase.DNS, dnsStart, dnsEnd);
+            record(Phase.CONNECT, connectStart, connectEnd);
+            record(Phase.TLS, secureConnectStart, secureConnectEnd);
+            record(Phase.TTFB, requestStart, responseHeadersStart);
+            record(Phase.CALL, callStart, end);
+            recordCall(failed, connectStart == 0);
+            PredictionTracer tracer = PredictionTracer.getInstance();
+            tracer.end(traceId, networkSpan);
+            tracer.end(traceId, responseSpan);
+            if (connectStart != 0) {
+                tracer.record(traceId, PredictionTracer.Stage.CONNECT, dnsStart != 0 ? dnsStart : connectStart,
+                        secureConnectEnd != 0 ? Math.max(secureConnectEnd, connectEnd) : connectEnd);
+            }
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, String.format(Locale.US, "dns=%.1f connect=%.1f tls=%.1f ttfb=%.1f total=%.1f ms%s",
+                        millis(dnsStart, dnsEnd), millis(connectStart, connectEnd),
+                        millis(secureConnectStart, secureConnectEnd), millis(requestStart, responseHeadersStart),
+                        millis(callStart, end), failed ? " (failed)" : ""));
+            }
+        }
+
+        private double millis(long start, long end) {
+            return start == 0 || end < start ? 0 : (end - start) / 1e6;
+        }
+    }
+}
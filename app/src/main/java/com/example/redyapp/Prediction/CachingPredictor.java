@@ -0,0 +1,186 @@
+package com.example.redyapp.Prediction;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.PredictionResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predictor decorator that answers from the PredictionCache when the same audio was
+ * scored before (e.g. a WAV picked again, or a file re-scored from the history), and
+ * stores every new result. Misses are forwarded to the wrapped predictor unchanged.
+ *
+ * Each engine is wrapped on its own (inside PolicyPredictor), so its entries are stored under
+ * its source and model version and a lookup only ever returns what that engine would answer.
+ * The content hash is taken from the caller when it has one; only otherwise the file is hashed here.
+ *
+ * Requests for the same audio that overlap share one request to the engine, which stays
+ * joinable until its result is in the cache. A tap scored while the recording is still being
+ * captured (see LiveTapScorer) is thus answered once, for the live request and for the same
+ * tap of the finished recording.
+ */
+public class CachingPredictor implements Predictor {
+
+    private static final String TAG = "CachingPredictor";
+
+    private final Predictor delegate;
+    private final PredictionCache cache;
+    // PredictionCache.SOURCE_LOCAL or SOURCE_REMOTE
+    private final String source;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Hashing and lookups read files, writes go through the shared database writer
+    private final AppExecutors executors = AppExecutors.getInstance();
+    // Requests to the engine by content hash, until their result is stored; guarded by itself
+    private final Map<String, Flight> flights = new HashMap<>();
+
+    /**
+     * @param delegate The engine to cache.
+     * @param cache The shared cache.
+     * @param source The engine's source in the cache, PredictionCache.SOURCE_LOCAL or SOURCE_REMOTE.
+     */
+    public CachingPredictor(Predictor delegate, PredictionCache cache, String source) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.source = source;
+    }
+
+    @Override
+    public PredictionTask predict(File wavFile, Callback callback) {
+        return predict(wavFile, null, callback);
+    }
+
+    @Override
+    public PredictionTask predict(File wavFile, String knownHash, Callback callback) {
+        PredictionTask task = new PredictionTask();
+        executors.diskIO().execute(() -> {
+            if (task.isCanceled()) return;
+            String contentHash = knownHash;
+            PredictionResponse cached = null;
+            try {
+                if (contentHash == null) contentHash = PredictionCache.hash(wavFile);
+                cached = cache.get(contentHash, source);
+            } catch (IOException e) {
+                Log.w(TAG, "Could not hash audio, skipping cache: " + e.getMessage());
+            }
+            final String hash = contentHash;
+            final PredictionResponse hit = cached;
+            mainHandler.post(() -> {
+                if (task.isCanceled()) return;
+                if (hit != null) {
+                    Log.d(TAG, "Prediction cache hit for " + hash + " (" + source + ")");
+                    callback.onResult(hit);
+                    return;
+                }
+                if (hash == null) {
+                    PredictionTask inner = delegate.predict(wavFile, callback);
+                    task.setCancelAction(inner::cancel);
+                } else {
+                    join(hash, wavFile, task, callback);
+                }
+            });
+        });
+        return task;
+    }
+
+    /**
+     * Waits for the request in flight for the same audio, or starts one. Main thread.
+     * The engine reads the file of the caller that started the request, which callers keep
+     * until they are answered or cancel.
+     */
+    private void join(String hash, File wavFile, PredictionTask task, Callback callback) {
+        Flight flight;
+        boolean started = false;
+        PredictionResponse answered;
+        synchronized (flights) {
+            flight = flights.get(hash);
+            if (flight == null) {
+                flight = new Flight();
+                flights.put(hash, flight);
+                started = true;
+            }
+            answered = flight.result;
+            if (answered == null) flight.waiting.put(task, callback);
+        }
+        if (answered != null) {
+            // Answered just now; the result is still being stored
+            callback.onResult(answered);
+            return;
+        }
+        final Flight joined = flight;
+        task.setCancelAction(() -> leave(hash, joined, task));
+        if (!started) {
+            Log.d(TAG, "Joined the request in flight for " + hash + " (" + source + ")");
+            return;
+        }
+
+        PredictionTask request = delegate.predict(wavFile, new Callback() {
+            @Override
+            public void onResult(PredictionResponse prediction) {
+                List<Callback> waiting;
+                synchronized (flights) {
+                    joined.result = prediction;
+                    waiting = new ArrayList<>(joined.waiting.values());
+                    joined.waiting.clear();
+                }
+                executors.databaseWrite().execute(() -> {
+                    cache.put(hash, source, prediction);
+                    synchronized (flights) {
+                        flights.remove(hash, joined);
+                    }
+                });
+                for (Callback waiter : waiting) waiter.onResult(prediction);
+            }
+
+            @Override
+            public void onError(String message, Throwable cause) {
+                List<Callback> waiting;
+                synchronized (flights) {
+                    flights.remove(hash, joined);
+                    waiting = new ArrayList<>(joined.waiting.values());
+                    joined.waiting.clear();
+                }
+                for (Callback waiter : waiting) waiter.onError(message, cause);
+            }
+        });
+        synchronized (flights) {
+            joined.request = request;
+            if (!joined.waiting.isEmpty() || joined.result != null) return;
+        }
+        // Everyone left while the request was being started
+        request.cancel();
+    }
+
+    /**
+     * Removes a canceled request from its flight, and stops the engine request once nobody
+     * waits for it any more. Any thread.
+     */
+    private void leave(String hash, Flight flight, PredictionTask task) {
+        PredictionTask request;
+        synchronized (flights) {
+            if (flight.waiting.remove(task) == null || !flight.waiting.isEmpty() || flight.result != null) return;
+            flights.remove(hash, flight);
+            request = flight.request;
+        }
+        if (request != null) request.cancel();
+    }
+
+    /**
+     * One request to the engine and the callers waiting for it. Guarded by flights.
+     */
+    private static final class Flight {
+        final Map<PredictionTask, Callback> waiting = new LinkedHashMap<>();
+        PredictionTask request;
+        // Set once answered, until the result is stored
+        PredictionResponse result;
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.redyapp.Prediction;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.Audio.PcmAudio;
+import com.example.redyapp.Audio.TapSegmenter;
+import com.example.redyapp.Audio.WavHeader;
+import com.example.redyapp.Audio.WavReader;
+import com.example.redyapp.PredictionResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Predictor decorator that scores every tap of a recording separately and combines the
+ * results (see EnsembleVote), instead of scoring the whole recording once.
+ *
+ * The recording is split with TapSegmenter and each tap is written to its own short WAV file.
+ * All taps are then handed to the wrapped predictor at once, so they are scored concurrently:
+ * on the compute pool by LocalPredictor, or in one batch request by RemotePredictor (see
+ * PredictionBatcher). Recordings with fewer than MIN_TAPS taps, or that cannot be read, are
+ * scored as a whole as before.
+ *
+ * The SHA-256 of the recording and of each tap file is computed from the bytes read and written
+ * here and passed on with them, so the cache below does not read any file a second time.
+ *
+ * Taps of a recording still being captured can be scored ahead with prefetchTap(). They are
+ * written byte for byte as split() writes them later, so the finished recording finds them in
+ * the cache, or joins their requests while they are in flight (see CachingPredictor).
+ */
+public class EnsemblePredictor implements Predictor {
+
+    private static final String TAG = "EnsemblePredictor";
+    // With a single tap there is nothing to vote on
+    static final int MIN_TAPS = 2;
+    // A five-second recording rarely holds more; further taps add time but little information
+    static final int MAX_TAPS = 6;
+
+    private final Predictor delegate;
+    private final File segmentDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Splitting reads and writes files
+    private final AppExecutors executors = AppExecutors.getInstance();
+
+    /**
+     * @param context Any context; segments are written to its cache directory.
+     * @param delegate The predictor that scores each tap.
+     */
+    public EnsemblePredictor(Context context, Predictor delegate) {
+        this.delegate = delegate;
+        this.segmentDir = new File(context.getApplicationContext().getCacheDir(), "taps");
+    }
+
+    @Override
+    public PredictionTask predict(File wavFile, Callback callback) {
+        PredictionTask task = new PredictionTask();
+        executors.diskIO().execute(() -> {
+            if (task.isCanceled()) return;
+            Recording read = null;
+            try {
+                read = split(wavFile);
+            } catch (IOException | RuntimeException e) {
+                // Not a readable PCM WAV; the wrapped predictor decides what to do with it
+                Log.w(TAG, "Could not split " + wavFile.getName() + " into taps: " + e.getMessage());
+            }
+            final Recording recording = read;
+            mainHandler.post(() -> {
+                if (task.isCanceled()) {
+                    if (recording != null && recording.taps != null) deleteSegments(recording.taps);
+                    return;
+                }
+                if (recording == null || recording.taps == null) {
+                    PredictionTask inner = delegate.predict(wavFile,
+                            recording != null ? recording.contentHash : null, callback);
+                    task.setCancelAction(inner::cancel);
+                } else {
+                    scoreTaps(recording.taps, task, callback);
+                }
+            });
+        });
+        return task;
+    }
+
+    /**
+     * Starts scoring one tap of a recording that is still being captured, ahead of predict() on
+     * the finished file. Nothing is reported: the result is only kept by the cache. Any thread.
+     *
+     * @param sampleRate The sample rate of the recording.
+     * @param pcm The samples of the tap window as they will appear in the file (16-bit
+     *            little-endian mono), from its position to its limit.
+     * @return A handle to stop the request.
+     */
+    public PredictionTask prefetchTap(int sampleRate, ByteBuffer pcm) {
+        PredictionTask task = new PredictionTask();
+        executors.diskIO().execute(() -> {
+            if (task.isCanceled()) return;
+            File file;
+            String contentHash;
+            try {
+                file = createSegmentFile();
+                try {
+                    contentHash = writeWav(file, sampleRate, pcm);
+                } catch (IOException e) {
+                    file.delete();
+                    throw e;
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Could not write tap for early scoring: " + e.getMessage());
+                return;
+            }
+            mainHandler.post(() -> {
+                if (task.isCanceled()) {
+                    file.delete();
+                    return;
+                }
+                PredictionTask inner = delegate.predict(file, contentHash, new Callback() {
+                    @Override
+                    public void onResult(PredictionResponse prediction) {
+                        file.delete();
+                    }
+
+                    @Override
+                    public void onError(String message, Throwable cause) {
+                        Log.d(TAG, "Early tap scoring failed: " + message);
+                        file.delete();
+                    }
+                });
+                task.setCancelAction(() -> {
+                    inner.cancel();
+                    file.delete();
+                });
+            });
+        });
+        return task;
+    }
+
+    /**
+     * Hashes a recording, splits it into taps and writes each to a WAV file. Runs on the I/O pool.
+     *
+     * @return The recording's hash, and its segments unless it has too few taps to vote on.
+     */
+    private Recording split(File wavFile) throws IOException {
+        ByteBuffer contents = WavReader.map(wavFile);
+        String contentHash = PredictionCache.hash(contents);
+        PcmAudio audio = WavReader.parse(contents);
+        List<TapSegmenter.Segment> found = TapSegmenter.split(audio, MAX_TAPS);
+        Log.d(TAG, "Found " + found.size() + " taps in " + wavFile.getName());
+        if (found.size() < MIN_TAPS) return new Recording(contentHash, null);
+
+        List<TapSegment> segments = new ArrayList<>(found.size());
+        try {
+            for (TapSegmenter.Segment segment : found) {
+                File file = createSegmentFile();
+                TapSegment tap = new TapSegment(file, segment.onsetMs);
+                segments.add(tap);
+                tap.contentHash = writeWav(file, audio, segment);
+            }
+        } catch (IOException e) {
+            deleteSegments(segments);
+            throw e;
+        }
+        return new Recording(contentHash, segments);
+    }
+
+    /**
+     * Scores all taps concurrently and reports their combined verdict. Runs on the main thread,
+     * where every delegate callback arrives too, so the counters need no locking.
+     */
+    private void scoreTaps(List<TapSegment> taps, PredictionTask task, Callback callback) {
+        PredictionResponse.TapScore[] scores = new PredictionResponse.TapScore[taps.size()];
+        List<PredictionTask> innerTasks = new ArrayList<>(taps.size());
+        int[] remaining = {taps.size()};
+        String[] firstError = new String[1];
+        Throwable[] firstCause = new Throwable[1];
+        // Reported by the first tap that has one
+        String[] modelVersion = new String[1];
+
+        Runnable finish = () -> {
+            deleteSegments(taps);
+            if (task.isCanceled()) return;
+            List<PredictionResponse.TapScore> scored = new ArrayList<>(scores.length);
+            for (PredictionResponse.TapScore score : scores) {
+                if (score != null) scored.add(score);
+            }
+            if (scored.isEmpty()) {
+                // Every tap failed the same way the whole recording would have, e.g. offline
+                callback.onError(firstError[0] != null ? firstError[0] : "Could not score the recording.", firstCause[0]);
+                return;
+            }
+            PredictionResponse verdict = EnsembleVote.combine(scored);
+            verdict.setModelVersion(modelVersion[0]);
+            Log.d(TAG, "Voted " + verdict.getPredictedLabel() + " from " + scored.size() + "/" + scores.length
+                    + " taps, variance " + verdict.getConfidenceVariance());
+            callback.onResult(verdict);
+        };
+
+        for (int i = 0; i < taps.size(); i++) {
+            final int index = i;
+            TapSegment tap = taps.get(i);
+            innerTasks.add(delegate.predict(tap.file, tap.contentHash, new Callback() {
+                @Override
+                public void onResult(PredictionResponse prediction) {
+                    if (prediction.getPredictedLabel() != null && prediction.getConfidence() != null) {
+                        scores[index] = new PredictionResponse.TapScore(prediction.getPredictedLabel(),
+                                prediction.getConfidence(), tap.onsetMs);
+                        if (modelVersion[0] == null) modelVersion[0] = prediction.getModelVersion();
+                    }
+                    if (--remaining[0] == 0) finish.run();
+                }
+
+                @Override
+                public void onError(String message, Throwable cause) {
+                    if (firstError[0] == null) {
+                        firstError[0] = message;
+                        firstCause[0] = cause;
+                    }
+                    if (--remaining[0] == 0) finish.run();
+                }
+            }));
+        }
+        task.setCancelAction(() -> {
+            for (PredictionTask inner : innerTasks) inner.cancel();
+            deleteSegments(taps);
+        });
+    }
+
+    private void deleteSegments(List<TapSegment> segments) {
+        for (TapSegment segment : segments) {
+            segment.file.delete();
+        }
+    }
+
+    private File createSegmentFile() throws IOException {
+        if (!segmentDir.exists() && !segmentDir.mkdirs()) {
+            throw new IOException("Cannot create " + segmentDir);
+        }
+        return File.createTempFile("tap_", ".wav", segmentDir);
+    }
+
+    /**
+     * Writes the samples of one segment as a mono 16-bit WAV file.
+     *
+     * @return The SHA-256 of the written file.
+     */
+    private static String writeWav(File file, PcmAudio audio, TapSegmenter.Segment segment) throws IOException {
+        ByteBuffer pcm = ByteBuffer.allocate(segment.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        pcm.asShortBuffer().put(audio.getSamples(), segment.start, segment.length);
+        return writeWav(file, audio.getSampleRate(), pcm);
+    }
+
+    /**
+     * Writes 16-bit little-endian mono samples as a WAV file.
+     *
+     * @return The SHA-256 of the written file.
+     */
+    private static String writeWav(File file, int sampleRate, ByteBuffer pcm) throws IOException {
+        ByteBuffer header = WavHeader.create(sampleRate, 1, 16, pcm.remaining());
+        String contentHash = PredictionCache.hash(header, pcm);
+        try (FileOutputStream out = new FileOutputStream(file);
+             FileChannel channel = out.getChannel()) {
+            while (header.hasRemaining()) channel.write(header);
+            while (pcm.hasRemaining()) channel.write(pcm);
+        }
+        return contentHash;
+    }
+
+    /**
+     * A recording as read by split().
+     */
+    private static final class Recording {
+        final String contentHash;
+        // Null when the recording is scored as a whole
+        final List<TapSegment> taps;
+
+        Recording(String contentHash, List<TapSegment> taps) {
+            this.contentHash = contentHash;
+            this.taps = taps;
+        }
+    }
+
+    /**
+     * A tap written to its own file.
+     */
+    private static final class TapSegment {
+        final File file;
+        final long onsetMs;
+        // Set once the file is written
+        String contentHash;
+
+        TapSegment(File file, long onsetMs) {
+            this.file = file;
+            this.onsetMs = onsetMs;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.redyapp.Prediction;
+
+import com.example.redyapp.PredictionResponse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines the predictions of the separate taps of a recording into one verdict.
+ *
+ * Each tap votes for its label with its confidence as the weight, and the label with the
+ * largest total wins. Every tap then gives the winning label a score: its confidence if it
+ * voted for it, 0 otherwise. The verdict's confidence is the mean of these scores and its
+ * variance their sample variance, so taps that disagree lower the confidence and raise the
+ * variance alike.
+ */
+final class EnsembleVote {
+
+    private EnsembleVote() {
+        // Utility class, no instances
+    }
+
+    /**
+     * @param taps The tap predictions, at least one.
+     * @return The verdict, carrying the tap scores and the confidence variance.
+     */
+    static PredictionResponse combine(List<PredictionResponse.TapScore> taps) {
+        // Insertion order breaks ties in favour of the earlier tap
+        Map<String, Double> votes = new LinkedHashMap<>();
+        for (PredictionResponse.TapScore tap : taps) {
+            votes.merge(tap.getPredictedLabel(), tap.getConfidence(), Double::sum);
+        }
+        String winner = null;
+        double winnerVotes = -1;
+        for (Map.Entry<String, Double> vote : votes.entrySet()) {
+            if (vote.getValue() > winnerVotes) {
+                winner = vote.getKey();
+                winnerVotes = vote.getValue();
+            }
+        }
+
+        int n = taps.size();
+        double mean = winnerVotes / n;
+        double squares = 0;
+        for (PredictionResponse.TapScore tap : taps) {
+            double score = winner != null && winner.equals(tap.getPredictedLabel()) ? tap.getConfidence() : 0;
+            squares += (score - mean) * (score - mean);
+        }
+
+        PredictionResponse verdict = new PredictionResponse(winner, mean);
+        verdict.setConfidenceVariance(n > 1 ? squares / (n - 1) : 0.0);
+        verdict.setTapScores(new ArrayList<>(taps));
+        return verdict;
+    }
+}
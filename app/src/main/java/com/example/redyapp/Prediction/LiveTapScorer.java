@@ -0,0 +1,83 @@
+package com.example.redyapp.Prediction;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.Audio.AudioCaptureEngine;
+import com.example.redyapp.Audio.TapSegmenter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scores the taps of a recording while it is still being captured.
+ *
+ * The capture engine reports the window around each tap as soon as its post-roll is in. The
+ * window is copied out of the ring and handed to EnsemblePredictor.prefetchTap(), which scores
+ * it through the same chain as the finished recording. When the finished file is scored, its
+ * taps are answered from the cache or join these requests, so the result is the same as
+ * without early scoring, only sooner. Nothing is shown from here: the finished recording still
+ * goes through the quality check first.
+ */
+public class LiveTapScorer implements AudioCaptureEngine.TapWindowObserver {
+
+    private final AudioCaptureEngine engine;
+    private final EnsemblePredictor predictor;
+    private final AppExecutors executors = AppExecutors.getInstance();
+    // Requests started so far; guarded by itself
+    private final List<PredictionTask> tasks = new ArrayList<>();
+    private boolean stopped;
+    // Windows passed on, only touched on the capture thread
+    private int scoredWindows;
+
+    /**
+     * @param engine The capture engine, not started yet; register the scorer with
+     *               setTapWindowObserver().
+     * @param predictor The chain the finished recording will be scored with.
+     */
+    public LiveTapScorer(AudioCaptureEngine engine, EnsemblePredictor predictor) {
+        this.engine = engine;
+        this.predictor = predictor;
+    }
+
+    @Override
+    public void onTapWindow(int index, long fromByte, long toByte) {
+        // Only the windows TapSegmenter will pick from the finished file
+        int frames = (int) ((toByte - fromByte) / AudioCaptureEngine.BYTES_PER_FRAME);
+        if (!TapSegmenter.isLongEnough(frames, AudioCaptureEngine.SAMPLE_RATE)
+                || scoredWindows >= EnsemblePredictor.MAX_TAPS) {
+            return;
+        }
+        scoredWindows++;
+        executors.diskIO().execute(() -> {
+            synchronized (tasks) {
+                if (stopped) return;
+            }
+            ByteBuffer pcm = ByteBuffer.allocate((int) (toByte - fromByte)).order(ByteOrder.LITTLE_ENDIAN);
+            engine.readCaptured(fromByte, toByte, pcm);
+            pcm.flip();
+            PredictionTask task = predictor.prefetchTap(AudioCaptureEngine.SAMPLE_RATE, pcm);
+            synchronized (tasks) {
+                if (!stopped) {
+                    tasks.add(task);
+                    return;
+                }
+            }
+            task.cancel();
+        });
+    }
+
+    /**
+     * Stops the requests that are still running. Call it once the finished recording was
+     * scored, or when it will not be.
+     */
+    public void stop() {
+        List<PredictionTask> running;
+        synchronized (tasks) {
+            stopped = true;
+            running = new ArrayList<>(tasks);
+            tasks.clear();
+        }
+        for (PredictionTask task : running) task.cancel();
+    }
+}
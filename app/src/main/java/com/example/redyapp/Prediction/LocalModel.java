@@ -0,0 +1,250 @@
+package com.example.redyapp.Prediction;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small exported classifier evaluated with plain float arrays.
+ *
+ * The model takes log-mel frames (time-major, one row of mel bands per frame) and runs a
+ * sequence of layers: 1-D convolutions over time, a global average pool over time, and dense
+ * layers, ending in a softmax over the labels.
+ * The model is immutable once loaded and evaluate() keeps its intermediate results local,
+ * so one instance can be evaluated on several threads at once.
+ *
+ * Binary layout (little-endian), as written by the training export script:
+ *   magic "RDYM" (int), format version (int), model version (u16 length + UTF-8),
+ *   mel bands (int), label count (int), labels (u16 length + UTF-8 each), layer count (int),
+ *   then per layer: type (byte), activation (byte) and its parameters:
+ *     CONV1D: in, out, kernel (ints), weights[out][in][kernel], bias[out]
+ *     DENSE: in, out (ints), weights[out][in], bias[out]
+ *     GLOBAL_AVG_POOL: no parameters
+ */
+public class LocalModel {
+
+    private static final int MAGIC = 0x4D594452; // "RDYM" read as little-endian int
+    private static final int FORMAT_VERSION = 1;
+
+    static final byte LAYER_CONV1D = 1;
+    static final byte LAYER_DENSE = 2;
+    static final byte LAYER_GLOBAL_AVG_POOL = 3;
+
+    static final byte ACTIVATION_NONE = 0;
+    static final byte ACTIVATION_RELU = 1;
+    static final byte ACTIVATION_SOFTMAX = 2;
+
+    private final String modelVersion;
+    private final int melBands;
+    private final String[] labels;
+    private final List<Layer> layers;
+
+    private LocalModel(String modelVersion, int melBands, String[] labels, List<Layer> layers) {
+        this.modelVersion = modelVersion;
+        this.melBands = melBands;
+        this.labels = labels;
+        this.layers = layers;
+    }
+
+    /**
+     * Parses a model file.
+     *
+     * @param buffer The complete model file contents.
+     * @return The loaded model.
+     * @throws IOException If the data is not a valid model file.
+     */
+    public static LocalModel load(ByteBuffer buffer) throws IOException {
+        try {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a model file");
+            int format = buffer.getInt();
+            if (format != FORMAT_VERSION) throw new IOException("Unsupported model format: " + format);
+            String version = readString(buffer);
+            int melBands = buffer.getInt();
+            String[] labels = new String[buffer.getInt()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = readString(buffer);
+            }
+
+            int layerCount = buffer.getInt();
+            List<Layer> layers = new ArrayList<>(layerCount);
+            int width = melBands;
+            boolean pooled = false;
+            for (int i = 0; i < layerCount; i++) {
+                byte type = buffer.get();
+                byte activation = buffer.get();
+                Layer layer;
+                if (type == LAYER_CONV1D) {
+                    if (pooled) throw new IOException("Convolution after pooling");
+                    int in = buffer.getInt();
+                    int out = buffer.getInt();
+                    int kernel = buffer.getInt();
+                    layer = new Layer(type, activation, in, out, kernel,
+                            readFloats(buffer, out * in * kernel), readFloats(buffer, out));
+                } else if (type == LAYER_DENSE) {
+                    if (!pooled) throw new IOException("Dense layer before pooling");
+                    int in = buffer.getInt();
+                    int out = buffer.getInt();
+                    layer = new Layer(type, activation, in, out, 1,
+                            readFloats(buffer, out * in), readFloats(buffer, out));
+                } else if (type == LAYER_GLOBAL_AVG_POOL) {
+                    pooled = true;
+                    layer = new Layer(type, activation, width, width, 0, null, null);
+                } else {
+                    throw new IOException("Unknown layer type: " + type);
+                }
+                if (layer.in != width) {
+                    throw new IOException("Layer " + i + " expects " + layer.in + " inputs, got " + width);
+                }
+                width = layer.out;
+                layers.add(layer);
+            }
+            if (!pooled || width != labels.length) {
+                throw new IOException("Model output does not match the " + labels.length + " labels");
+            }
+            return new LocalModel(version, melBands, labels, layers);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, NegativeArraySizeException, ... on truncated files
+            throw new IOException("Corrupt model file", e);
+        }
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public int getMelBands() {
+        return melBands;
+    }
+
+    public String[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * Runs the model on log-mel frames.
+     *
+     * @param features Frames of getMelBands() values each, frame by frame.
+     * @param frames The number of frames in features.
+     * @return The output of the last layer, one value per label (probabilities with a softmax head).
+     */
+    public float[] evaluate(float[] features, int frames) {
+        float[] current = features;
+        int steps = frames;
+        for (Layer layer : layers) {
+            if (layer.type == LAYER_CONV1D) {
+                int outSteps = Math.max(1, steps - layer.kernel + 1);
+                float[] next = new float[outSteps * layer.out];
+                conv1d(layer, current, steps, next, outSteps);
+                current = next;
+                steps = outSteps;
+            } else if (layer.type == LAYER_GLOBAL_AVG_POOL) {
+                float[] next = new float[layer.out];
+                for (int t = 0; t < steps; t++) {
+                    int base = t * layer.in;
+                    for (int c = 0; c < layer.in; c++) {
+                        next[c] += current[base + c];
+                    }
+                }
+                for (int c = 0; c < layer.out; c++) {
+                    next[c] /= steps;
+                }
+                current = next;
+                steps = 1;
+            } else {
+                float[] next = new float[layer.out];
+                for (int o = 0; o < layer.out; o++) {
+                    float sum = layer.bias[o];
+                    int row = o * layer.in;
+                    for (int i = 0; i < layer.in; i++) {
+                        sum += layer.weights[row + i] * current[i];
+                    }
+                    next[o] = sum;
+                }
+                current = next;
+            }
+            activate(layer.activation, current, steps * layer.out, layer.out);
+        }
+        return current;
+    }
+
+    /**
+     * "Valid" 1-D convolution over time, stride 1. Inputs shorter than the kernel are zero-padded.
+     */
+    private static void conv1d(Layer layer, float[] input, int steps, float[] output, int outSteps) {
+        for (int t = 0; t < outSteps; t++) {
+            for (int o = 0; o < layer.out; o++) {
+                float sum = layer.bias[o];
+                int weightBase = o * layer.in * layer.kernel;
+                for (int i = 0; i < layer.in; i++) {
+                    int w = weightBase + i * layer.kernel;
+                    for (int k = 0; k < layer.kernel; k++) {
+                        int step = t + k;
+                        if (step < steps) {
+                            sum += layer.weights[w + k] * input[step * layer.in + i];
+                        }
+                    }
+                }
+                output[t * layer.out + o] = sum;
+            }
+        }
+    }
+
+    private static void activate(byte activation, float[] values, int length, int width) {
+        if (activation == ACTIVATION_RELU) {
+            for (int i = 0; i < length; i++) {
+                if (values[i] < 0f) values[i] = 0f;
+            }
+        } else if (activation == ACTIVATION_SOFTMAX) {
+            for (int base = 0; base < length; base += width) {
+                float max = Float.NEGATIVE_INFINITY;
+                for (int i = base; i < base + width; i++) max = Math.max(max, values[i]);
+                float sum = 0f;
+                for (int i = base; i < base + width; i++) {
+                    values[i] = (float) Math.exp(values[i] - max);
+                    sum += values[i];
+                }
+                for (int i = base; i < base + width; i++) values[i] /= sum;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static float[] readFloats(ByteBuffer buffer, int count) {
+        float[] values = new float[count];
+        buffer.asFloatBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    /**
+     * One layer's shape and parameters.
+     */
+    private static final class Layer {
+        final byte type;
+        final byte activation;
+        final int in;
+        final int out;
+        final int kernel;
+        final float[] weights;
+        final float[] bias;
+
+        Layer(byte type, byte activation, int in, int out, int kernel, float[] weights, float[] bias) {
+            this.type = type;
+            this.activation = activation;
+            this.in = in;
+            this.out = out;
+            this.kernel = kernel;
+            this.weights = weights;
+            this.bias = bias;
+        }
+    }
+}
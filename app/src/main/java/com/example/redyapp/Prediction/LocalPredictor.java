@@ -0,0 +1,188 @@
+package com.example.redyapp.Prediction;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.Audio.AudioCaptureEngine;
+import com.example.redyapp.Audio.MelSpectrogram;
+import com.example.redyapp.Audio.PcmAudio;
+import com.example.redyapp.Audio.WavReader;
+import com.example.redyapp.PredictionResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+
+/**
+ * Predictor that runs the exported model on the device, with no network access.
+ *
+ * The model is loaded once, from getFilesDir()/models/thump_model.bin if a newer model was
+ * installed there, otherwise from the APK assets. If neither exists, or the model cannot be
+ * loaded, every prediction fails fast with an error, so PolicyPredictor can fall back to the
+ * backend; the load is not retried until the app restarts.
+ */
+public class LocalPredictor implements Predictor {
+
+    public static final String MODEL_FILE_NAME = "thump_model.bin";
+    private static final String TAG = "LocalPredictor";
+
+    private final Context appContext;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Recordings are scored in parallel on the shared compute pool (e.g. the taps of one
+    // recording, see EnsemblePredictor): the model is read-only once loaded, and every pool
+    // thread has its own extractor and scratch buffers
+    private final Executor inferenceExecutor = AppExecutors.getInstance().compute();
+
+    // Lazily initialized by the first task, under the lock of this predictor
+    private LocalModel model;
+    private boolean modelMissing = false;
+    // Why the model could not be loaded; a broken file is not read again on every prediction
+    private IOException loadFailure;
+    private final ThreadLocal<FeatureBuffers> featureBuffers = new ThreadLocal<>();
+
+    public LocalPredictor(Context context) {
+        this.appContext = context.getApplicationContext();
+    }
+
+    @Override
+    public PredictionTask predict(File wavFile, Callback callback) {
+        PredictionTask task = new PredictionTask();
+        inferenceExecutor.execute(() -> {
+            if (task.isCanceled()) return;
+            PredictionResponse result = null;
+            String error = null;
+            Throwable cause = null;
+            try {
+                result = runModel(wavFile);
+                if (result == null) error = "No on-device model installed.";
+            } catch (IOException | IllegalArgumentException e) {
+                error = "On-device prediction failed.";
+                cause = e;
+                Log.e(TAG, "Local inference failed: " + e.getMessage(), e);
+            }
+            final PredictionResponse finalResult = result;
+            final String finalError = error;
+            final Throwable finalCause = cause;
+            mainHandler.post(() -> {
+                if (task.isCanceled()) return;
+                if (finalResult != null) {
+                    callback.onResult(finalResult);
+                } else {
+                    callback.onError(finalError, finalCause);
+                }
+            });
+        });
+        return task;
+    }
+
+    /**
+     * Decodes the recording, extracts log-mel features and evaluates the model.
+     * Runs on inferenceExecutor, possibly on several threads at once.
+     *
+     * @return The prediction, or null if no model is available.
+     */
+    private PredictionResponse runModel(File wavFile) throws IOException {
+        LocalModel localModel = loadModel();
+        if (localModel == null) return null;
+
+        PcmAudio audio = WavReader.read(wavFile);
+        if (audio.getSampleRate() != AudioCaptureEngine.SAMPLE_RATE) {
+            // The model was trained on 16 kHz features; leave other files to the backend
+            throw new IllegalArgumentException("Unsupported sample rate: " + audio.getSampleRate());
+        }
+        FeatureBuffers buffers = featureBuffers.get();
+        if (buffers == null) {
+            buffers = new FeatureBuffers(new MelSpectrogram(AudioCaptureEngine.SAMPLE_RATE, MelSpectrogram.DEFAULT_FFT_SIZE,
+                    MelSpectrogram.DEFAULT_HOP_LENGTH, localModel.getMelBands()));
+            featureBuffers.set(buffers);
+        }
+        int frames = buffers.melSpectrogram.frameCount(audio.getSampleCount());
+        int values = frames * localModel.getMelBands();
+        if (buffers.features.length < values) {
+            buffers.features = new float[values];
+        }
+        long start = System.nanoTime();
+        buffers.melSpectrogram.compute(audio.getSamples(), audio.getSampleCount(), buffers.features);
+        float[] scores = localModel.evaluate(buffers.features, frames);
+
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        Log.d(TAG, "Local inference took " + (System.nanoTime() - start) / 1_000_000 + " ms for " + frames + " frames");
+        PredictionResponse prediction = new PredictionResponse(localModel.getLabels()[best], (double) scores[best]);
+        prediction.setModelVersion(localModel.getModelVersion());
+        return prediction;
+    }
+
+    /**
+     * Loads the model on first use. Runs on inferenceExecutor; concurrent first tasks wait
+     * for a single load. A failed load is remembered and reported again without retrying.
+     *
+     * @return The model, or null if none is installed.
+     * @throws IOException If the model could not be loaded, now or on an earlier call.
+     */
+    private synchronized LocalModel loadModel() throws IOException {
+        if (model != null || modelMissing) return model;
+        if (loadFailure != null) throw new IOException("On-device model failed to load", loadFailure);
+        try {
+            model = readModel();
+        } catch (IOException e) {
+            Log.e(TAG, "On-device model cannot be loaded, local predictions are disabled", e);
+            loadFailure = e;
+            throw e;
+        }
+        if (model != null) Log.i(TAG, "Loaded on-device model " + model.getModelVersion());
+        return model;
+    }
+
+    /**
+     * Reads the installed model, or the bundled one.
+     *
+     * @return The model, or null if none is installed.
+     */
+    private LocalModel readModel() throws IOException {
+        File installed = new File(new File(appContext.getFilesDir(), "models"), MODEL_FILE_NAME);
+        if (installed.exists()) {
+            try (FileInputStream in = new FileInputStream(installed);
+                 FileChannel channel = in.getChannel()) {
+                return LocalModel.load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        } else {
+            try (InputStream in = appContext.getAssets().open(MODEL_FILE_NAME)) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+                return LocalModel.load(ByteBuffer.wrap(bytes.toByteArray()));
+            } catch (FileNotFoundException e) {
+                Log.i(TAG, "No on-device model bundled, local predictions are disabled");
+                modelMissing = true;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The feature extractor and scratch buffer of one inference thread.
+     */
+    private static final class FeatureBuffers {
+        final MelSpectrogram melSpectrogram;
+        float[] features = new float[0];
+
+        FeatureBuffers(MelSpectrogram melSpectrogram) {
+            this.melSpectrogram = melSpectrogram;
+        }
+    }
+}
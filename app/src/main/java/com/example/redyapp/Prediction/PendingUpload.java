@@ -0,0 +1,81 @@
+package com.example.redyapp.Prediction;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * A recording waiting to be scored because the network was unavailable.
+ * This class is a Room Entity, defining the structure of the "pending_uploads" table.
+ * The audio already lives in getFilesDir()/history_audio and the history row exists with
+ * a pending label; UploadQueueWorker fills in the prediction once it gets through.
+ */
+@Entity(tableName = "pending_uploads")
+public class PendingUpload {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    private String audioPath; // Absolute path of the persisted recording
+    private int historyItemId; // The history row to update with the result
+    private int attempts; // Number of failed attempts so far
+    private long createdAt; // Milliseconds since epoch, the queue is drained oldest first
+    private String lastError; // Last failure reason, for debugging
+
+    public PendingUpload(String audioPath, int historyItemId, int attempts, long createdAt, String lastError) {
+        this.audioPath = audioPath;
+        this.historyItemId = historyItemId;
+        this.attempts = attempts;
+        this.createdAt = createdAt;
+        this.lastError = lastError;
+    }
+
+    // --- Getters and Setters ---
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getAudioPath() {
+        return audioPath;
+    }
+
+    public void setAudioPath(String audioPath) {
+        this.audioPath = audioPath;
+    }
+
+    public int getHistoryItemId() {
+        return historyItemId;
+    }
+
+    public void setHistoryItemId(int historyItemId) {
+        this.historyItemId = historyItemId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
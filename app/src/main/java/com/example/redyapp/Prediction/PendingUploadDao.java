@@ -0,0 +1,62 @@
+package com.example.redyapp.Prediction;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the pending_uploads table (the offline upload queue).
+ * All methods are blocking and must be called off the main thread.
+ */
+@Dao
+public interface PendingUploadDao {
+
+    /**
+     * Adds a recording to the queue.
+     * @param pendingUpload The queue entry.
+     * @return The row id of the new entry.
+     */
+    @Insert
+    long insert(PendingUpload pendingUpload);
+
+    /**
+     * Removes an entry once it was scored (or given up on).
+     * @param pendingUpload The queue entry.
+     */
+    @Delete
+    void delete(PendingUpload pendingUpload);
+
+    /**
+     * Returns the oldest entries first.
+     * @param limit The maximum number of entries to return.
+     * @return Up to limit queue entries.
+     */
+    @Query("SELECT * FROM pending_uploads ORDER BY createdAt ASC LIMIT :limit")
+    List<PendingUpload> getOldest(int limit);
+
+    /**
+     * Returns the entries after a given id, for walking the queue in batches.
+     * @param afterId The last id already seen (0 to start).
+     * @param limit The maximum number of entries to return.
+     * @return Up to limit queue entries, by increasing id.
+     */
+    @Query("SELECT * FROM pending_uploads WHERE id > :afterId ORDER BY id LIMIT :limit")
+    List<PendingUpload> getAfter(int afterId, int limit);
+
+    /**
+     * Records a failed attempt.
+     * @param id The queue entry id.
+     * @param error The failure reason.
+     */
+    @Query("UPDATE pending_uploads SET attempts = attempts + 1, lastError = :error WHERE id = :id")
+    void recordFailure(int id, String error);
+
+    /**
+     * @return The number of recordings waiting to be scored.
+     */
+    @Query("SELECT COUNT(*) FROM pending_uploads")
+    int count();
+}
@@ -0,0 +1,134 @@
+package com.example.redyapp.Prediction;
+
+import android.util.Log;
+
+import com.example.redyapp.AppSettings;
+import com.example.redyapp.PredictionResponse;
+
+import java.io.File;
+
+/**
+ * Predictor that combines the on-device and the backend predictors according to the
+ * PredictorPolicy selected in the settings (read again for every request).
+ *
+ * All callbacks of the wrapped predictors arrive on the main thread, so the bookkeeping
+ * here needs no synchronization.
+ */
+public class PolicyPredictor implements Predictor {
+
+    private static final String TAG = "PolicyPredictor";
+
+    private final Predictor localPredictor;
+    private final Predictor remotePredictor;
+    private final AppSettings appSettings;
+
+    public PolicyPredictor(Predictor localPredictor, Predictor remotePredictor, AppSettings appSettings) {
+        this.localPredictor = localPredictor;
+        this.remotePredictor = remotePredictor;
+        this.appSettings = appSettings;
+    }
+
+    @Override
+    public PredictionTask predict(File wavFile, Callback callback) {
+        return predict(wavFile, null, callback);
+    }
+
+    @Override
+    public PredictionTask predict(File wavFile, String contentHash, Callback callback) {
+        PredictorPolicy policy = appSettings.getPredictorPolicy();
+        switch (policy) {
+            case LOCAL_FIRST:
+                return withFallback(localPredictor, remotePredictor, wavFile, contentHash, callback);
+            case FASTEST:
+                return race(wavFile, contentHash, callback);
+            case REMOTE_FIRST:
+            default:
+                return withFallback(remotePredictor, localPredictor, wavFile, contentHash, callback);
+        }
+    }
+
+    /**
+     * Runs the primary predictor and, only if it fails, the fallback.
+     * If both fail, the backend's error is reported, as it is the more meaningful one for the user.
+     */
+    private PredictionTask withFallback(Predictor primary, Predictor fallback, File wavFile, String contentHash,
+                                        Callback callback) {
+        PredictionTask task = new PredictionTask();
+        PredictionTask first = primary.predict(wavFile, contentHash, new Callback() {
+            @Override
+            public void onResult(PredictionResponse prediction) {
+                if (!task.isCanceled()) callback.onResult(prediction);
+            }
+
+            @Override
+            public void onError(String message, Throwable cause) {
+                if (task.isCanceled()) return;
+                Log.d(TAG, "Primary predictor failed (" + message + "), trying fallback");
+                PredictionTask second = fallback.predict(wavFile, contentHash, new Callback() {
+                    @Override
+                    public void onResult(PredictionResponse prediction) {
+                        if (!task.isCanceled()) callback.onResult(prediction);
+                    }
+
+                    @Override
+                    public void onError(String fallbackMessage, Throwable fallbackCause) {
+                        if (task.isCanceled()) return;
+                        if (primary == remotePredictor) {
+                            callback.onError(message, cause);
+                        } else {
+                            callback.onError(fallbackMessage, fallbackCause);
+                        }
+                    }
+                });
+                task.setCancelAction(second::cancel);
+            }
+        });
+        task.setCancelAction(first::cancel);
+        return task;
+    }
+
+    /**
+     * Starts both predictors; the first result wins and the other request is canceled.
+     * An error is reported only when both have failed.
+     */
+    private PredictionTask race(File wavFile, String contentHash, Callback callback) {
+        PredictionTask task = new PredictionTask();
+        PredictionTask[] running = new PredictionTask[2];
+        // [0] = number of failures, [1] = 1 once the outcome was reported
+        int[] state = {0, 0};
+
+        Callback[] callbacks = new Callback[2];
+        for (int i = 0; i < 2; i++) {
+            final int self = i;
+            callbacks[i] = new Callback() {
+                @Override
+                public void onResult(PredictionResponse prediction) {
+                    if (task.isCanceled() || state[1] == 1) return;
+                    state[1] = 1;
+                    // Stop the slower predictor
+                    PredictionTask other = running[1 - self];
+                    if (other != null) other.cancel();
+                    Log.d(TAG, (self == 0 ? "Local" : "Remote") + " predictor answered first");
+                    callback.onResult(prediction);
+                }
+
+                @Override
+                public void onError(String message, Throwable cause) {
+                    if (task.isCanceled() || state[1] == 1) return;
+                    // Only fail once both predictors have failed; report the last error
+                    if (++state[0] == 2) {
+                        state[1] = 1;
+                        callback.onError(message, cause);
+                    }
+                }
+            };
+        }
+        running[0] = localPredictor.predict(wavFile, contentHash, callbacks[0]);
+        running[1] = remotePredictor.predict(wavFile, contentHash, callbacks[1]);
+        task.setCancelAction(() -> {
+            running[0].cancel();
+            running[1].cancel();
+        });
+        return task;
+    }
+}
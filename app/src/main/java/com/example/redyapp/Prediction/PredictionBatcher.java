@@ -0,0 +1,278 @@
+package com.example.redyapp.Prediction;
+
+import androidx.annotation.NonNull;
+
+import com.example.redyapp.ApiService;
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.Audio.LogMelEncoder;
+import com.example.redyapp.PredictionResponse;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Predictor that coalesces recordings submitted within a short window into a single call to
+ * the batch endpoints (see ApiService.predictBatch), so scoring a crate of melons costs one
+ * round trip instead of one per melon.
+ *
+ * A batch is sent when the window after its first submission elapses or when it reaches the
+ * maximum size, whichever comes first. WAV files and log-mel features are batched separately.
+ * Canceling a submission before its batch is sent removes it from the batch; afterwards only
+ * its callback is suppressed (the whole request is canceled once every submission in it is).
+ *
+ * A batch of one goes to the single endpoint (ApiService.predictWatermelonSweetness or
+ * predictFromFeatures), which skips the list wrapping on both ends. If the server answers a
+ * batch route with 404 or 501 (an older backend), the batch is resent as single calls and
+ * that lane stops batching for the life of the batcher.
+ *
+ * RemotePredictor sends every request through one, so the taps of a recording (see
+ * EnsemblePredictor) and queued recordings scored together cost one round trip. The window
+ * timer runs on a scheduler owned by the caller (AppExecutors.scheduler() in the app), so a
+ * batcher holds no thread of its own.
+ */
+public class PredictionBatcher implements Predictor {
+
+    // How long to wait for more submissions after the first one of a batch
+    public static final long DEFAULT_WINDOW_MS = 150;
+    // Upper bound on recordings per request
+    public static final int DEFAULT_MAX_BATCH_SIZE = 16;
+
+    private final long windowMs;
+    private final int maxBatchSize;
+    // Where callbacks are delivered (the main thread in the app)
+    private final Executor callbackExecutor;
+    // Runs the window flushes; shared, not owned by the batcher
+    private final ScheduledExecutorService scheduler;
+    private final ApiService apiService;
+    private final Lane fileLane;
+    private final Lane featureLane;
+
+    /**
+     * Creates a batcher with the default window and size that times its windows on the shared
+     * AppExecutors scheduler.
+     */
+    public PredictionBatcher(ApiService apiService, Executor callbackExecutor) {
+        this(apiService, DEFAULT_WINDOW_MS, DEFAULT_MAX_BATCH_SIZE, AppExecutors.getInstance().scheduler(),
+                callbackExecutor);
+    }
+
+    /**
+     * @param apiService The API to send the batches to.
+     * @param windowMs How long to wait for more submissions after the first one of a batch.
+     * @param maxBatchSize Upper bound on recordings per request.
+     * @param scheduler Runs the window timers; it is not shut down by the batcher.
+     * @param callbackExecutor Where callbacks are delivered.
+     */
+    public PredictionBatcher(ApiService apiService, long windowMs, int maxBatchSize,
+                             ScheduledExecutorService scheduler, Executor callbackExecutor) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        this.windowMs = windowMs;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+        this.callbackExecutor = callbackExecutor;
+        this.apiService = apiService;
+        this.fileLane = new Lane(apiService::predictBatch);
+        this.featureLane = new Lane(apiService::predictFeaturesBatch);
+    }
+
+    @Override
+    public PredictionTask predict(File wavFile, Callback callback) {
+        RequestBody requestFile = RequestBody.create(wavFile, MediaType.parse("audio/wav"));
+        return fileLane.submit(MultipartBody.Part.createFormData("files", wavFile.getName(), requestFile),
+                () -> apiService.predictWatermelonSweetness(
+                        MultipartBody.Part.createFormData("file", wavFile.getName(), requestFile)),
+                callback);
+    }
+
+    /**
+     * Scores a recording from its packed log-mel features (see LogMelEncoder).
+     *
+     * @param features The encoded features.
+     * @param name A name for the part, e.g. the recording's file name.
+     * @param callback Receives the result or an error on the callback executor.
+     * @return A handle that can be used to cancel the request.
+     */
+    public PredictionTask predictFeatures(byte[] features, String name, Callback callback) {
+        RequestBody requestFeatures = RequestBody.create(features, MediaType.parse(LogMelEncoder.CONTENT_TYPE));
+        return featureLane.submit(MultipartBody.Part.createFormData("features", name, requestFeatures),
+                () -> apiService.predictFromFeatures(requestFeatures), callback);
+    }
+
+    /**
+     * Sends whatever is waiting right away instead of waiting for the window.
+     */
+    public void flush() {
+        fileLane.flush();
+        featureLane.flush();
+    }
+
+    // A single recording waiting for (or travelling in) a batch
+    private static final class Submission {
+        final MultipartBody.Part part;
+        // Builds the same request for the single endpoint
+        final Supplier<Call<PredictionResponse>> singleCall;
+        final Callback callback;
+        final PredictionTask task = new PredictionTask();
+
+        Submission(MultipartBody.Part part, Supplier<Call<PredictionResponse>> singleCall, Callback callback) {
+            this.part = part;
+            this.singleCall = singleCall;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * Pending submissions for one batch endpoint.
+     */
+    private final class Lane {
+        private final Function<List<MultipartBody.Part>, Call<List<PredictionResponse>>> endpoint;
+        // Set once the server has said it has no batch route for this lane
+        private volatile boolean batchUnsupported;
+        private List<Submission> pending = new ArrayList<>();
+        private ScheduledFuture<?> scheduledFlush;
+
+        Lane(Function<List<MultipartBody.Part>, Call<List<PredictionResponse>>> endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        PredictionTask submit(MultipartBody.Part part, Supplier<Call<PredictionResponse>> singleCall,
+                              Callback callback) {
+            Submission submission = new Submission(part, singleCall, callback);
+            submission.task.setCancelAction(() -> remove(submission));
+            boolean full;
+            synchronized (this) {
+                pending.add(submission);
+                full = pending.size() >= maxBatchSize;
+                if (!full && scheduledFlush == null) {
+                    scheduledFlush = scheduler.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (full) flush();
+            return submission.task;
+        }
+
+        private synchronized void remove(Submission submission) {
+            pending.remove(submission);
+        }
+
+        void flush() {
+            List<Submission> batch;
+            synchronized (this) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+                if (pending.isEmpty()) return;
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            if (batch.size() == 1 || batchUnsupported) {
+                sendSingly(batch);
+                return;
+            }
+            List<MultipartBody.Part> parts = new ArrayList<>(batch.size());
+            for (Submission submission : batch) {
+                parts.add(submission.part);
+            }
+            Call<List<PredictionResponse>> batchCall = endpoint.apply(parts);
+            for (Submission submission : batch) {
+                // Only cancel the shared request once nobody is waiting for it anymore
+                submission.task.setCancelAction(() -> {
+                    if (allCanceled(batch)) batchCall.cancel();
+                });
+            }
+            batchCall.enqueue(new retrofit2.Callback<>() {
+                @Override
+                public void onResponse(@NonNull Call<List<PredictionResponse>> call,
+                                       @NonNull Response<List<PredictionResponse>> response) {
+                    List<PredictionResponse> predictions = response.body();
+                    if (response.code() == 404 || response.code() == 501) {
+                        // No batch route on this server: score these (and later ones) one by one
+                        batchUnsupported = true;
+                        sendSingly(batch);
+                    } else if (!response.isSuccessful() || predictions == null) {
+                        deliverError(batch, "Prediction failed. Code: " + response.code(),
+                                new PredictionHttpException(response.code()));
+                    } else if (predictions.size() != batch.size()) {
+                        deliverError(batch, "Batch returned " + predictions.size() + " results for "
+                                + batch.size() + " recordings.", null);
+                    } else {
+                        for (int i = 0; i < batch.size(); i++) {
+                            deliverResult(batch.get(i), predictions.get(i));
+                        }
+                    }
+                }
+
+                @Override
+                public void onFailure(@NonNull Call<List<PredictionResponse>> call, @NonNull Throwable t) {
+                    if (call.isCanceled()) return; // Every submission was canceled
+                    deliverError(batch, "Network request failed.", PredictionNetworkException.fromFailure(t));
+                }
+            });
+        }
+    }
+
+    private void sendSingly(List<Submission> batch) {
+        for (Submission submission : batch) {
+            if (submission.task.isCanceled()) continue;
+            Call<PredictionResponse> call = submission.singleCall.get();
+            submission.task.setCancelAction(call::cancel);
+            call.enqueue(new retrofit2.Callback<>() {
+                @Override
+                public void onResponse(@NonNull Call<PredictionResponse> call,
+                                       @NonNull Response<PredictionResponse> response) {
+                    PredictionResponse prediction = response.body();
+                    if (!response.isSuccessful() || prediction == null) {
+                        deliverError(Collections.singletonList(submission),
+                                "Prediction failed. Code: " + response.code(),
+                                new PredictionHttpException(response.code()));
+                    } else {
+                        deliverResult(submission, prediction);
+                    }
+                }
+
+                @Override
+                public void onFailure(@NonNull Call<PredictionResponse> call, @NonNull Throwable t) {
+                    if (call.isCanceled()) return;
+                    deliverError(Collections.singletonList(submission), "Network request failed.",
+                            PredictionNetworkException.fromFailure(t));
+                }
+            });
+        }
+    }
+
+    private static boolean allCanceled(List<Submission> batch) {
+        for (Submission submission : batch) {
+            if (!submission.task.isCanceled()) return false;
+        }
+        return true;
+    }
+
+    private void deliverResult(Submission submission, PredictionResponse prediction) {
+        callbackExecutor.execute(() -> {
+            if (!submission.task.isCanceled()) submission.callback.onResult(prediction);
+        });
+    }
+
+    private void deliverError(List<Submission> batch, String message, Throwable cause) {
+        for (Submission submission : batch) {
+            callbackExecutor.execute(() -> {
+                if (!submission.task.isCanceled()) submission.callback.onError(message, cause);
+            });
+        }
+    }
+}
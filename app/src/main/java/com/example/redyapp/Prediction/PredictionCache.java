@@ -0,0 +1,224 @@
+package com.example.redyapp.Prediction;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.History.HistoryDatabase;
+import com.example.redyapp.PredictionResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content-addressed cache of predictions.
+ *
+ * Entries are keyed by the SHA-256 of the audio bytes, the predictor that computed them
+ * (on-device or backend) and that predictor's model version, and live in a small in-memory
+ * LRU backed by the "prediction_cache" Room table. A lookup only matches entries of the latest
+ * model version seen from that predictor and younger than the TTL, so results go stale
+ * automatically when a model changes, and the two predictors never replace each other's entries.
+ *
+ * Uses the Singleton pattern so the in-memory LRU survives activity recreation.
+ * get() and put() are blocking and must be called off the main thread. put() writes, so it is
+ * called on AppExecutors.databaseWrite(); get() hands the removal of expired entries to it.
+ */
+public class PredictionCache {
+
+    // Entries computed by LocalPredictor
+    public static final String SOURCE_LOCAL = "local";
+    // Entries computed by RemotePredictor
+    public static final String SOURCE_REMOTE = "remote";
+
+    // How long a cached prediction stays valid
+    private static final long TTL_MS = TimeUnit.DAYS.toMillis(30);
+    // Number of entries kept in memory
+    private static final int MEMORY_ENTRIES = 64;
+    // Number of entries kept in the database
+    private static final int MAX_DB_ENTRIES = 500;
+    private static final String PREFS_NAME = "prediction_cache";
+    // Followed by the source; each predictor has its own latest model version
+    private static final String KEY_MODEL_VERSION = "latest_model_version_";
+
+    private static volatile PredictionCache INSTANCE;
+
+    private final PredictionCacheDao dao;
+    private final SharedPreferences prefs;
+    private final AppExecutors executors = AppExecutors.getInstance();
+    // Access-ordered map keyed by memoryKey(): iteration order is least recently used first
+    private final Map<String, PredictionCacheEntry> memory =
+            new LinkedHashMap<String, PredictionCacheEntry>(MEMORY_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PredictionCacheEntry> eldest) {
+                    return size() > MEMORY_ENTRIES;
+                }
+            };
+
+    private PredictionCache(Context context) {
+        dao = HistoryDatabase.getInstance(context).predictionCacheDao();
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Gets the singleton instance of the PredictionCache.
+     *
+     * @param context Any context; the application context is used.
+     * @return The singleton PredictionCache instance.
+     */
+    public static PredictionCache getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (PredictionCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new PredictionCache(context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Computes the hex SHA-256 of a file, streaming it through the digest in fixed-size blocks.
+     * Only for callers that do not read the file anyway; see hash(ByteBuffer...).
+     *
+     * @param file The audio file.
+     * @return The lowercase hex digest.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String hash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Computes the hex SHA-256 of audio bytes that are already in memory (or mapped), e.g. while
+     * they are parsed or written out. The positions of the buffers are not changed.
+     *
+     * @param parts The file contents, in order.
+     * @return The lowercase hex digest, equal to hash(File) of the same bytes.
+     * @throws IOException If SHA-256 is not available.
+     */
+    public static String hash(ByteBuffer... parts) throws IOException {
+        MessageDigest digest = newDigest();
+        for (ByteBuffer part : parts) {
+            digest.update(part.duplicate());
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Looks up a fresh cached prediction of the given predictor. Expired entries are removed.
+     *
+     * @param contentHash The hex SHA-256 of the audio.
+     * @param source SOURCE_LOCAL or SOURCE_REMOTE.
+     * @return The cached prediction, or null on a miss.
+     */
+    public PredictionResponse get(String contentHash, String source) {
+        String version = getLatestModelVersion(source);
+        String key = memoryKey(contentHash, source, version);
+        PredictionCacheEntry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+        }
+        if (entry == null) {
+            entry = dao.get(contentHash, source, version);
+            if (entry == null) return null;
+        }
+        if (System.currentTimeMillis() - entry.getCreatedAt() > TTL_MS) {
+            synchronized (memory) {
+                memory.remove(key);
+            }
+            executors.databaseWrite().execute(() -> dao.delete(contentHash, source, version));
+            return null;
+        }
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        PredictionResponse prediction = new PredictionResponse(entry.getPredictedLabel(), entry.getConfidence());
+        prediction.setModelVersion(version.isEmpty() ? null : version);
+        return prediction;
+    }
+
+    /**
+     * Stores a prediction. When it comes from a new model version of its predictor, that version
+     * becomes the latest one and the predictor's entries of other versions are dropped.
+     *
+     * @param contentHash The hex SHA-256 of the audio.
+     * @param source SOURCE_LOCAL or SOURCE_REMOTE.
+     * @param prediction The prediction to cache.
+     */
+    public void put(String contentHash, String source, PredictionResponse prediction) {
+        if (prediction.getPredictedLabel() == null || prediction.getConfidence() == null) return;
+        String version = prediction.getModelVersion() != null ? prediction.getModelVersion() : "";
+        if (!version.isEmpty() && !version.equals(getLatestModelVersion(source))) {
+            prefs.edit().putString(KEY_MODEL_VERSION + source, version).apply();
+            dropOtherVersions(source, version);
+        }
+        long now = System.currentTimeMillis();
+        PredictionCacheEntry entry = new PredictionCacheEntry(contentHash, source, version,
+                prediction.getPredictedLabel(), prediction.getConfidence(), now);
+        synchronized (memory) {
+            memory.put(memoryKey(contentHash, source, version), entry);
+        }
+        dao.insert(entry);
+        dao.deleteOlderThan(now - TTL_MS);
+        dao.trimTo(MAX_DB_ENTRIES);
+    }
+
+    /**
+     * The model version of the newest result seen from a predictor, "" if it never reported one.
+     */
+    private String getLatestModelVersion(String source) {
+        return prefs.getString(KEY_MODEL_VERSION + source, "");
+    }
+
+    private void dropOtherVersions(String source, String version) {
+        synchronized (memory) {
+            Iterator<PredictionCacheEntry> entries = memory.values().iterator();
+            while (entries.hasNext()) {
+                PredictionCacheEntry entry = entries.next();
+                if (entry.getSource().equals(source) && !entry.getModelVersion().equals(version)) {
+                    entries.remove();
+                }
+            }
+        }
+        dao.deleteOtherVersions(source, version);
+    }
+
+    private static String memoryKey(String contentHash, String source, String version) {
+        return source + '/' + version + '/' + contentHash;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.redyapp.Prediction;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+/**
+ * Data Access Object (DAO) for the prediction_cache table.
+ * All methods are blocking and must be called off the main thread.
+ */
+@Dao
+public interface PredictionCacheDao {
+
+    /**
+     * Looks up a cached prediction by audio content hash, predictor and model version.
+     * @param contentHash The hex SHA-256 of the audio file.
+     * @param source The predictor that computed it.
+     * @param modelVersion The model version, "" if unknown.
+     * @return The entry, or null if there is none.
+     */
+    @Query("SELECT * FROM prediction_cache WHERE contentHash = :contentHash AND source = :source "
+            + "AND modelVersion = :modelVersion")
+    PredictionCacheEntry get(String contentHash, String source, String modelVersion);
+
+    /**
+     * Inserts or replaces a cached prediction.
+     * @param entry The entry to store.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(PredictionCacheEntry entry);
+
+    /**
+     * Deletes a cached prediction, e.g. when it expired.
+     * @param contentHash The hex SHA-256 of the audio file.
+     * @param source The predictor that computed it.
+     * @param modelVersion The model version, "" if unknown.
+     */
+    @Query("DELETE FROM prediction_cache WHERE contentHash = :contentHash AND source = :source "
+            + "AND modelVersion = :modelVersion")
+    void delete(String contentHash, String source, String modelVersion);
+
+    /**
+     * Deletes the entries of a predictor computed by any other model version than the given one.
+     * Entries of the other predictor are kept.
+     * @param source The predictor whose model changed.
+     * @param modelVersion Its current model version.
+     */
+    @Query("DELETE FROM prediction_cache WHERE source = :source AND modelVersion != :modelVersion")
+    void deleteOtherVersions(String source, String modelVersion);
+
+    /**
+     * Deletes entries created before the given time (expired by TTL).
+     * @param createdBefore Cut-off in milliseconds since epoch.
+     */
+    @Query("DELETE FROM prediction_cache WHERE createdAt < :createdBefore")
+    void deleteOlderThan(long createdBefore);
+
+    /**
+     * Keeps only the newest entries so the table stays bounded.
+     * @param maxEntries The number of entries to keep.
+     */
+    @Query("DELETE FROM prediction_cache WHERE rowid NOT IN "
+            + "(SELECT rowid FROM prediction_cache ORDER BY createdAt DESC LIMIT :maxEntries)")
+    void trimTo(int maxEntries);
+}
@@ -0,0 +1,87 @@
+package com.example.redyapp.Prediction;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * A cached prediction, keyed by the SHA-256 of the audio file it was computed for, the
+ * predictor that computed it and that predictor's model version.
+ * This class is a Room Entity, defining the structure of the "prediction_cache" table.
+ */
+@Entity(tableName = "prediction_cache", primaryKeys = {"contentHash", "source", "modelVersion"})
+public class PredictionCacheEntry {
+
+    @NonNull
+    private String contentHash; // Hex SHA-256 of the audio bytes
+    @NonNull
+    private String source; // PredictionCache.SOURCE_LOCAL or SOURCE_REMOTE
+    @NonNull
+    private String modelVersion; // Version of the model that produced the result, "" if unknown
+
+    private String predictedLabel;
+    private double confidence;
+    private long createdAt; // Milliseconds since epoch, used for the TTL
+
+    public PredictionCacheEntry(@NonNull String contentHash, @NonNull String source, @NonNull String modelVersion,
+                                String predictedLabel, double confidence, long createdAt) {
+        this.contentHash = contentHash;
+        this.source = source;
+        this.modelVersion = modelVersion;
+        this.predictedLabel = predictedLabel;
+        this.confidence = confidence;
+        this.createdAt = createdAt;
+    }
+
+    // --- Getters and Setters ---
+
+    @NonNull
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(@NonNull String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    @NonNull
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(@NonNull String source) {
+        this.source = source;
+    }
+
+    @NonNull
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public void setModelVersion(@NonNull String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
+
+    public String getPredictedLabel() {
+        return predictedLabel;
+    }
+
+    public void setPredictedLabel(String predictedLabel) {
+        this.predictedLabel = predictedLabel;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public void setConfidence(double confidence) {
+        this.confidence = confidence;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
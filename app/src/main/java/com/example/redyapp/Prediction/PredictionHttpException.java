@@ -0,0 +1,30 @@
+package com.example.redyapp.Prediction;
+
+/**
+ * Passed as the cause of Predictor.Callback.onError() when the backend answered with an
+ * error status, so callers can tell a server that is busy from one that rejected the request.
+ * Unlike a network failure (a PredictionNetworkException) retrying right away will not help.
+ */
+public class PredictionHttpException extends Exception {
+
+    private final int code;
+
+    public PredictionHttpException(int code) {
+        super("Prediction failed. Code: " + code);
+        this.code = code;
+    }
+
+    /**
+     * @return The HTTP status code.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return true if the server is overloaded or failing and the same request may succeed later.
+     */
+    public boolean isRetryable() {
+        return code >= 500 || code == 429;
+    }
+}
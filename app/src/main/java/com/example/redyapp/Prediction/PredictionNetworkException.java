@@ -0,0 +1,29 @@
+package com.example.redyapp.Prediction;
+
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+
+/**
+ * Passed as the cause of Predictor.Callback.onError() when a request to the backend could not
+ * be completed (no connection, timeout, reset connection), so callers can keep the recording
+ * and score it once the network is back. Only RemotePredictor and PredictionBatcher create it;
+ * other I/O errors, such as an unreadable recording or model file, are passed on as they are,
+ * since waiting for the network will not fix them.
+ */
+public class PredictionNetworkException extends IOException {
+
+    public PredictionNetworkException(IOException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * @param t The failure passed to a Retrofit callback's onFailure().
+     * @return t wrapped in a PredictionNetworkException if the transport failed, or t itself
+     *         otherwise (e.g. for a response body that could not be parsed).
+     */
+    static Throwable fromFailure(Throwable t) {
+        boolean network = t instanceof IOException && !(t instanceof MalformedJsonException);
+        return network ? new PredictionNetworkException((IOException) t) : t;
+    }
+}
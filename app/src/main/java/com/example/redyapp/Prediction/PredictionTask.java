@@ -0,0 +1,46 @@
+package com.example.redyapp.Prediction;
+
+/**
+ * Handle to a running prediction that allows it to be canceled.
+ * The underlying work (an HTTP call, a background job) registers how it is stopped
+ * through setCancelAction(), which may be replaced as a request moves between stages.
+ */
+public class PredictionTask {
+
+    private boolean canceled = false;
+    private Runnable cancelAction;
+
+    /**
+     * Registers the action that stops the current stage of the request.
+     * If the task is already canceled, the action runs immediately.
+     *
+     * @param action The action to run on cancel(), or null.
+     */
+    public void setCancelAction(Runnable action) {
+        synchronized (this) {
+            if (!canceled) {
+                cancelAction = action;
+                return;
+            }
+        }
+        if (action != null) action.run();
+    }
+
+    /**
+     * Cancels the request. The callback will not be invoked afterwards.
+     */
+    public void cancel() {
+        Runnable action;
+        synchronized (this) {
+            if (canceled) return;
+            canceled = true;
+            action = cancelAction;
+            cancelAction = null;
+        }
+        if (action != null) action.run();
+    }
+
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+}
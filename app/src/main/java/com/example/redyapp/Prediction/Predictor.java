@@ -0,0 +1,45 @@
+package com.example.redyapp.Prediction;
+
+import com.example.redyapp.PredictionResponse;
+
+import java.io.File;
+
+/**
+ * A Predictor scores a recorded watermelon thump.
+ * Implementations may call the backend (RemotePredictor) or run a model on the device
+ * (LocalPredictor); PolicyPredictor combines the two.
+ */
+public interface Predictor {
+
+    /**
+     * Receives the outcome of a prediction. Methods are called on the main thread,
+     * exactly once per request, and never after the task was canceled.
+     */
+    interface Callback {
+        void onResult(PredictionResponse prediction);
+        void onError(String message, Throwable cause);
+    }
+
+    /**
+     * Starts scoring the given recording.
+     *
+     * @param wavFile The WAV file to score.
+     * @param callback Receives the result or an error on the main thread.
+     * @return A handle that can be used to cancel the request.
+     */
+    PredictionTask predict(File wavFile, Callback callback);
+
+    /**
+     * Starts scoring the given recording whose SHA-256 the caller already computed while reading
+     * or writing it, so decorators that key on content (CachingPredictor) don't read it again.
+     * Predictors that have no use for the hash ignore it.
+     *
+     * @param wavFile The WAV file to score.
+     * @param contentHash The hex SHA-256 of the file (see PredictionCache.hash), or null if unknown.
+     * @param callback Receives the result or an error on the main thread.
+     * @return A handle that can be used to cancel the request.
+     */
+    default PredictionTask predict(File wavFile, String contentHash, Callback callback) {
+        return predict(wavFile, callback);
+    }
+}
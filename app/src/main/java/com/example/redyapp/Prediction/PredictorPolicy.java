@@ -0,0 +1,13 @@
+package com.example.redyapp.Prediction;
+
+/**
+ * Strategy used by PolicyPredictor to choose between the on-device and the backend predictor.
+ */
+public enum PredictorPolicy {
+    // Run the on-device model, use the backend only if it fails or is not installed
+    LOCAL_FIRST,
+    // Call the backend, use the on-device model only if the request fails
+    REMOTE_FIRST,
+    // Start both and take whichever answers first
+    FASTEST
+}
@@ -0,0 +1,35 @@
+package com.example.redyapp.Prediction;
+
+import android.content.Context;
+
+import com.example.redyapp.AppSettings;
+
+/**
+ * Builds the predictor chain every recording is scored with, so recordings scored live and
+ * recordings scored later from the upload queue take the same path and get the same answer.
+ */
+public final class Predictors {
+
+    private Predictors() {
+        // Utility class, no instances
+    }
+
+    /**
+     * Creates the scoring chain: each tap of a recording is scored on its own and voted on
+     * (EnsemblePredictor); the settings pick the engine (PolicyPredictor); each engine caches
+     * its own results by content (CachingPredictor).
+     *
+     * @param context Any context; the application context is used.
+     * @param appSettings The settings, read again for every request.
+     * @param remotePredictor The backend predictor.
+     * @return The chain; MainActivity also scores taps ahead through it while recording.
+     */
+    public static EnsemblePredictor create(Context context, AppSettings appSettings, Predictor remotePredictor) {
+        Context appContext = context.getApplicationContext();
+        PredictionCache cache = PredictionCache.getInstance(appContext);
+        return new EnsemblePredictor(appContext, new PolicyPredictor(
+                new CachingPredictor(new LocalPredictor(appContext), cache, PredictionCache.SOURCE_LOCAL),
+                new CachingPredictor(remotePredictor, cache, PredictionCache.SOURCE_REMOTE),
+                appSettings));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.redyapp.Prediction;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.AppSettings;
+import com.example.redyapp.Audio.AudioCaptureEngine;
+import com.example.redyapp.Audio.LogMelEncoder;
+import com.example.redyapp.Audio.MelSpectrogram;
+import com.example.redyapp.Audio.PcmAudio;
+import com.example.redyapp.Audio.PcmStream;
+import com.example.redyapp.Audio.WavReader;
+import com.example.redyapp.PredictionResponse;
+import com.example.redyapp.RetrofitClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import okhttp3.MultipartBody;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * Predictor backed by the prediction API (see ApiService).
+ *
+ * The recording is sent as a multipart WAV upload, or, when "send compact features" is
+ * enabled in the settings, as packed log-mel frames computed on the device first.
+ * Files that cannot be decoded for feature extraction fall back to the regular upload.
+ * Requests go through a PredictionBatcher with a short window, so the taps of one recording,
+ * which are submitted together, reach the backend as a single batch request. A recording that
+ * is uploaded while it is captured (see predictStreaming) is sent on its own.
+ */
+public class RemotePredictor implements Predictor {
+
+    private static final String TAG = "RemotePredictor";
+    // The taps of a recording are submitted within a few milliseconds of each other (features
+    // are encoded one after another first), so a short window collects all of them
+    private static final long BATCH_WINDOW_MS = 50;
+
+    private final AppSettings appSettings;
+    private final PredictionBatcher batcher = new PredictionBatcher(RetrofitClient.getInstance(), BATCH_WINDOW_MS,
+            PredictionBatcher.DEFAULT_MAX_BATCH_SIZE, AppExecutors.getInstance().scheduler(),
+            AppExecutors.getInstance().mainThread());
+    // On-device feature extraction before upload, one at a time on the shared compute pool
+    private final Executor featureExecutor = AppExecutors.serial(AppExecutors.getInstance().compute());
+    // Log-mel feature encoder, reused across uploads (only touched on featureExecutor)
+    private final LogMelEncoder logMelEncoder = new LogMelEncoder(new MelSpectrogram(AudioCaptureEngine.SAMPLE_RATE));
+
+    public RemotePredictor(AppSettings appSettings) {
+        this.appSettings = appSettings;
+    }
+
+    @Override
+    public PredictionTask predict(File wavFile, Callback callback) {
+        if (!appSettings.isSendFeaturesEnabled()) {
+            return batcher.predict(wavFile, callback);
+        }
+        PredictionTask task = new PredictionTask();
+        // Extract features in the background, then hand them to the batcher
+        featureExecutor.execute(() -> {
+            if (task.isCanceled()) return;
+            byte[] features = encodeLogMelFeatures(wavFile);
+            if (task.isCanceled()) return; // Canceled while extracting
+            PredictionTask inner = features != null
+                    ? batcher.predictFeatures(features, wavFile.getName(), callback)
+                    : batcher.predict(wavFile, callback);
+            task.setCancelAction(inner::cancel);
+        });
+        return task;
+    }
+
+    /**
+     * Starts scoring a recording that is still being captured. The WAV data is sent as it is
+     * produced (see StreamingWavRequestBody), so the request completes shortly after the
+     * capture ends. Compact features are not used here since they need the whole recording.
+     *
+     * @param pcmStream The live stream from AudioCaptureEngine.openStream().
+     * @param fileName The file name to report in the multipart part.
+     * @param callback Receives the result or an error on the main thread.
+     * @return A handle that can be used to cancel the request.
+     */
+    public PredictionTask predictStreaming(PcmStream pcmStream, String fileName, Callback callback) {
+        PredictionTask task = new PredictionTask();
+        MultipartBody.Part body = MultipartBody.Part.createFormData("file", fileName,
+                new StreamingWavRequestBody(pcmStream));
+        enqueue(RetrofitClient.getInstance().predictWatermelonSweetness(body), task, callback);
+        return task;
+    }
+
+    /**
+     * Decodes a WAV file and packs its log-mel spectrogram for the features endpoint
+     * Runs on featureExecutor
+     *
+     * @param file The WAV file to analyze
+     * @return The encoded request body, or null if the file is not 16 kHz 16-bit PCM
+     */
+    private byte[] encodeLogMelFeatures(File file) {
+        try {
+            PcmAudio audio = WavReader.read(file);
+            if (audio.getSampleRate() != AudioCaptureEngine.SAMPLE_RATE) {
+                Log.d(TAG, "Skipping feature extraction for " + audio.getSampleRate() + " Hz audio");
+                return null;
+            }
+            byte[] features = logMelEncoder.encode(audio);
+            Log.d(TAG, "Encoded log-mel features: " + features.length + " bytes (file: " + file.length() + " bytes)");
+            return features;
+        } catch (IOException e) {
+            Log.w(TAG, "Feature extraction failed, sending the file instead: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Executes a prediction call and forwards the outcome to the callback
+     */
+    private void enqueue(Call<PredictionResponse> call, PredictionTask task, Callback callback) {
+        task.setCancelAction(call::cancel);
+        call.enqueue(new retrofit2.Callback<>() {
+            @Override
+            public void onResponse(@NonNull Call<PredictionResponse> call, @NonNull Response<PredictionResponse> response) {
+                if (task.isCanceled()) return;
+                if (response.isSuccessful() && response.body() != null) {
+                    callback.onResult(response.body());
+                } else {
+                    Log.e(TAG, "API Error or empty body. Code: " + response.code());
+                    callback.onError("Prediction failed. Code: " + response.code(),
+                            new PredictionHttpException(response.code()));
+                }
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<PredictionResponse> call, @NonNull Throwable t) {
+                // Don't report cancellation as an error
+                if (call.isCanceled() || task.isCanceled()) {
+                    Log.d(TAG, "Upload was canceled");
+                    return;
+                }
+                Log.e(TAG, "Network Failure: " + t.getMessage(), t);
+                callback.onError("Network request failed.", PredictionNetworkException.fromFailure(t));
+            }
+        });
+    }
+}
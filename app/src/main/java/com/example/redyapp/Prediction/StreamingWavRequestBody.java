@@ -0,0 +1,56 @@
+package com.example.redyapp.Prediction;
+
+import androidx.annotation.NonNull;
+
+import com.example.redyapp.Audio.AudioCaptureEngine;
+import com.example.redyapp.Audio.PcmStream;
+import com.example.redyapp.Audio.WavHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Request body that sends a recording while it is being captured.
+ *
+ * The WAV header is written first with UNKNOWN_SIZE lengths, followed by the PCM chunks
+ * as the capture engine produces them. The length is unknown up front, so OkHttp uses
+ * chunked transfer encoding (or an unsized HTTP/2 stream) and the body ends as soon as
+ * the recording does.
+ */
+class StreamingWavRequestBody extends RequestBody {
+
+    private static final MediaType AUDIO_WAV = MediaType.parse("audio/wav");
+
+    private final PcmStream pcmStream;
+
+    StreamingWavRequestBody(PcmStream pcmStream) {
+        this.pcmStream = pcmStream;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return AUDIO_WAV;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1; // Unknown until the recording ends
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return true; // The audio can only be read once, so OkHttp must not retry the body
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        ByteBuffer header = WavHeader.create(AudioCaptureEngine.SAMPLE_RATE, AudioCaptureEngine.CHANNELS,
+                AudioCaptureEngine.BITS_PER_SAMPLE, WavHeader.UNKNOWN_SIZE);
+        sink.write(header.array(), 0, WavHeader.HEADER_SIZE);
+        pcmStream.drainTo(sink.outputStream());
+    }
+}
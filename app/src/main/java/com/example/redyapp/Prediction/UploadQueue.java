@@ -0,0 +1,84 @@
+package com.example.redyapp.Prediction;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.redyapp.History.HistoryDatabase;
+import com.example.redyapp.History.HistoryItem;
+import com.example.redyapp.History.WaveformGenerator;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of recordings that could not be scored because the network was down.
+ *
+ * Queued recordings get a history row right away (labelled HistoryItem.LABEL_PENDING) and a
+ * pending_uploads row pointing at the audio in getFilesDir(). UploadQueueWorker drains the queue
+ * when a network is available and writes the results back into the history rows.
+ */
+public final class UploadQueue {
+
+    private static final String TAG = "UploadQueue";
+    // Unique work name, so there is at most one drain chain at a time
+    private static final String WORK_NAME = "upload_queue";
+    // First retry delay; WorkManager doubles it on every retry (capped at 5 hours)
+    private static final long INITIAL_BACKOFF_SECONDS = 30;
+
+    private UploadQueue() {
+    }
+
+    /**
+     * Saves a recording for later scoring and schedules the worker.
+     * Blocking, must be called off the main thread.
+     *
+     * This method:
+     * 1. Inserts a pending history item for the recording
+     * 2. Inserts the queue entry that references it
+     * 3. Starts computing the recording's waveform in the background
+     * 4. Schedules UploadQueueWorker to run once a network is available
+     *
+     * @param context Any context; the application context is used.
+     * @param persistentAudioFile The recording, already copied to getFilesDir().
+     */
+    public static void enqueue(Context context, File persistentAudioFile) {
+        HistoryDatabase database = HistoryDatabase.getInstance(context);
+        long now = System.currentTimeMillis();
+        HistoryItem historyItem = new HistoryItem(HistoryItem.LABEL_PENDING, 0.0,
+                persistentAudioFile.getAbsolutePath(), new Date(now));
+        historyItem.setAudioCodec(HistoryItem.CODEC_WAV);
+        historyItem.setAudioSizeBytes(persistentAudioFile.length());
+        int historyItemId = (int) database.historyDao().insert(historyItem);
+        database.pendingUploadDao().insert(
+                new PendingUpload(persistentAudioFile.getAbsolutePath(), historyItemId, 0, now, null));
+        WaveformGenerator.generateInBackground(context, historyItemId, persistentAudioFile);
+        Log.d(TAG, "Queued " + persistentAudioFile.getName() + " for upload");
+        schedule(context);
+    }
+
+    /**
+     * Schedules a drain of the queue once a network is available.
+     * Appends to a running drain so recordings queued while it works are not missed.
+     *
+     * @param context Any context; the application context is used.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(UploadQueueWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.redyapp.Prediction;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.redyapp.AppExecutors;
+import com.example.redyapp.AppSettings;
+import com.example.redyapp.History.HistoryDao;
+import com.example.redyapp.History.HistoryDatabase;
+import com.example.redyapp.History.HistoryItem;
+import com.example.redyapp.PredictionResponse;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the offline upload queue (see UploadQueue).
+ *
+ * Entries are sent oldest first, a few at a time, through the same predictor chain as live
+ * recordings (see Predictors), so a queued recording is scored tap by tap, with the chosen
+ * engine and the send-features setting, and gets the answer it would have got online. The chain
+ * runs on the shared pools and OkHttp's dispatcher; the worker thread only waits for results and
+ * writes each one into the history row as soon as it arrives, through the database writer
+ * (see AppExecutors.awaitDatabaseWrite()). If the network drops again or the
+ * server is unavailable the worker returns retry() and WorkManager runs it again with
+ * exponential backoff.
+ */
+public class UploadQueueWorker extends Worker {
+
+    private static final String TAG = "UploadQueueWorker";
+    // Number of recordings being scored at the same time
+    private static final int MAX_CONCURRENT_UPLOADS = 3;
+    // Number of entries read from the queue per round
+    private static final int BATCH_SIZE = 12;
+    // Attempts after which an entry is given up on
+    private static final int MAX_ATTEMPTS = 8;
+    // Longest wait for the next result; the requests time out well before this,
+    // so it only guards against a callback that never arrives
+    private static final long RESULT_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(3);
+
+    // Outcome of a single upload
+    private enum Outcome { DONE, RETRY, OFFLINE }
+
+    private final PendingUploadDao pendingUploadDao;
+    private final HistoryDao historyDao;
+    private final Predictor predictor;
+    private final AppExecutors executors = AppExecutors.getInstance();
+
+    public UploadQueueWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+        HistoryDatabase database = HistoryDatabase.getInstance(context);
+        pendingUploadDao = database.pendingUploadDao();
+        historyDao = database.historyDao();
+        AppSettings appSettings = new AppSettings(context);
+        predictor = Predictors.create(context, appSettings, new RemotePredictor(appSettings));
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        while (!isStopped()) {
+            List<PendingUpload> batch = pendingUploadDao.getOldest(BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return Result.success();
+            }
+            if (!drainBatch(batch)) {
+                Log.d(TAG, "Upload queue not fully drained, retrying later");
+                return Result.retry();
+            }
+        }
+        return Result.retry();
+    }
+
+    /**
+     * Scores one batch with bounded concurrency and records each outcome on this thread.
+     *
+     * @return true if every entry of the batch was settled, false if some must be retried
+     */
+    private boolean drainBatch(List<PendingUpload> batch) {
+        BlockingQueue<Scored> results = new LinkedBlockingQueue<>();
+        List<PredictionTask> tasks = new ArrayList<>(batch.size());
+        int next = 0;
+        int running = 0;
+        // Once one upload sees the network is gone the rest of the batch is not attempted
+        boolean offline = false;
+        boolean settled = true;
+        try {
+            while (true) {
+                while (running < MAX_CONCURRENT_UPLOADS && next < batch.size() && !offline && !isStopped()) {
+                    PendingUpload pendingUpload = batch.get(next++);
+                    File audioFile = new File(pendingUpload.getAudioPath());
+                    if (!audioFile.exists()) {
+                        // The history item (and its audio) was deleted while waiting
+                        executors.awaitDatabaseWrite(() -> pendingUploadDao.delete(pendingUpload));
+                        continue;
+                    }
+                    tasks.add(score(pendingUpload, audioFile, results));
+                    running++;
+                }
+                if (running == 0) break;
+                Scored scored = results.poll(RESULT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (scored == null) {
+                    Log.w(TAG, "No prediction within " + RESULT_TIMEOUT_MS + " ms");
+                    return false;
+                }
+                running--;
+                Outcome outcome = record(scored);
+                if (outcome == Outcome.OFFLINE) offline = true;
+                if (outcome != Outcome.DONE) settled = false;
+            }
+            return settled && next == batch.size();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            // Stops whatever is still running when the worker gives up early
+            for (PredictionTask task : tasks) task.cancel();
+        }
+    }
+
+    /**
+     * Starts scoring a queued recording; the outcome is handed back through the results queue.
+     */
+    private PredictionTask score(PendingUpload pendingUpload, File audioFile, BlockingQueue<Scored> results) {
+        return predictor.predict(audioFile, new Predictor.Callback() {
+            @Override
+            public void onResult(PredictionResponse prediction) {
+                results.add(new Scored(pendingUpload, prediction, null, null));
+            }
+
+            @Override
+            public void onError(String message, Throwable cause) {
+                results.add(new Scored(pendingUpload, null, message, cause));
+            }
+        });
+    }
+
+    /**
+     * Writes the outcome of a queued recording into its history row and the queue.
+     */
+    private Outcome record(Scored scored) {
+        PendingUpload pendingUpload = scored.pendingUpload;
+        PredictionResponse prediction = scored.prediction;
+        if (prediction != null && prediction.getPredictedLabel() != null && prediction.getConfidence() != null) {
+            executors.awaitDatabaseWrite(() -> {
+                historyDao.updatePrediction(pendingUpload.getHistoryItemId(), prediction.getPredictedLabel(),
+                        prediction.getConfidence(), prediction.getTapScores(), prediction.getConfidenceVariance());
+                pendingUploadDao.delete(pendingUpload);
+            });
+            Log.d(TAG, "Scored queued recording " + pendingUpload.getAudioPath());
+            return Outcome.DONE;
+        }
+        if (prediction != null) {
+            return recordFailure(pendingUpload, "Empty prediction", false);
+        }
+        if (scored.cause instanceof PredictionNetworkException) {
+            // Not counted against MAX_ATTEMPTS: the recording is fine, the network is not
+            executors.awaitDatabaseWrite(() -> pendingUploadDao.recordFailure(pendingUpload.getId(), scored.message));
+            return Outcome.OFFLINE;
+        }
+        // Rejected requests are given up on; anything else (e.g. an unreadable recording)
+        // may work on a later attempt, up to MAX_ATTEMPTS
+        boolean retryable = !(scored.cause instanceof PredictionHttpException)
+                || ((PredictionHttpException) scored.cause).isRetryable();
+        return recordFailure(pendingUpload, scored.message, retryable);
+    }
+
+    /**
+     * Counts a failed attempt; gives up on the entry when the server rejected it or it ran
+     * out of attempts, marking the history item as not scored.
+     */
+    private Outcome recordFailure(PendingUpload pendingUpload, String error, boolean retryable) {
+        Log.w(TAG, error + " for " + pendingUpload.getAudioPath());
+        if (retryable && pendingUpload.getAttempts() + 1 < MAX_ATTEMPTS) {
+            executors.awaitDatabaseWrite(() -> pendingUploadDao.recordFailure(pendingUpload.getId(), error));
+            return Outcome.RETRY;
+        }
+        executors.awaitDatabaseWrite(() -> {
+            historyDao.updatePrediction(pendingUpload.getHistoryItemId(), HistoryItem.LABEL_FAILED, 0.0, null, null);
+            pendingUploadDao.delete(pendingUpload);
+        });
+        return Outcome.DONE;
+    }
+
+    /**
+     * The outcome of one queued recording: a prediction, or an error message and cause.
+     */
+    private static final class Scored {
+        final PendingUpload pendingUpload;
+        final PredictionResponse prediction;
+        final String message;
+        final Throwable cause;
+
+        Scored(PendingUpload pendingUpload, PredictionResponse prediction, String message, Throwable cause) {
+            this.pendingUpload = pendingUpload;
+            this.prediction = prediction;
+            this.message = message;
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.redyapp;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * PredictionResponse is a data class that represents the response from the prediction endpoint.
+ * It includes the predicted label, its confidence, and the version of the model that produced it
+ * (used to invalidate cached predictions when the model changes; may be null).
+ * When a recording was scored tap by tap (see EnsemblePredictor), it also carries the score of
+ * every tap and the variance of the confidence across them; both are null otherwise.
+ * This class is used to deserialize the JSON response from the server, and is also
+ * produced directly by the on-device predictor.
+ * @see ApiService for the API endpoint
+ */
+public class PredictionResponse {
+    String predicted_label;
+    Double confidence;
+    String model_version;
+    List<TapScore> tap_scores;
+    Double confidence_variance;
+
+    public PredictionResponse() {
+    }
+
+    public PredictionResponse(String predictedLabel, Double confidence) {
+        this.predicted_label = predictedLabel;
+        this.confidence = confidence;
+    }
+
+    public String getPredictedLabel() { return predicted_label; }
+    public void setPredictedLabel(String predicted_label) { this.predicted_label = predicted_label; }
+    public Double getConfidence() { return confidence; }
+    public void setConfidence(Double confidence) { this.confidence = confidence; }
+    public String getModelVersion() { return model_version; }
+    public void setModelVersion(String model_version) { this.model_version = model_version; }
+    public List<TapScore> getTapScores() { return tap_scores; }
+    public void setTapScores(List<TapScore> tap_scores) { this.tap_scores = tap_scores; }
+    public Double getConfidenceVariance() { return confidence_variance; }
+    public void setConfidenceVariance(Double confidence_variance) { this.confidence_variance = confidence_variance; }
+
+    /**
+     * The prediction for a single tap of a recording.
+     * Serializable because history items keep a list of them.
+     */
+    public static class TapScore implements Serializable {
+        String predicted_label;
+        double confidence;
+        // Start of the tap in the recording
+        long onset_ms;
+
+        public TapScore() {
+        }
+
+        public TapScore(String predictedLabel, double confidence, long onsetMs) {
+            this.predicted_label = predictedLabel;
+            this.confidence = confidence;
+            this.onset_ms = onsetMs;
+        }
+
+        public String getPredictedLabel() { return predicted_label; }
+        public double getConfidence() { return confidence; }
+        public long getOnsetMs() { return onset_ms; }
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.redyapp;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/**
+ * PredictionTracer records how long each stage of a prediction takes, from the tap on the
+ * microphone to the rendered result and the saved history item, so slow predictions can be
+ * told apart: network (NETWORK, RESPONSE, and CONNECT when no pooled connection was reused),
+ * cold start (the first trace in a process, see processAgeMs in the export), or client side.
+ *
+ * This class:
+ * 1. Keeps the last TRACE_CAPACITY traces in a ring; a new trace reuses the oldest one
+ * 2. Preallocates every trace and its spans, so tracing a prediction allocates nothing
+ * 3. Mirrors every span as an async android.os.Trace section (visible in system traces)
+ * 4. Attributes API calls to the trace that was active when they started (see NetworkMetrics);
+ *    background uploads that happen to run during a prediction are attributed to it as well
+ * 5. Exports the recent traces as JSON with a per-stage breakdown (see exportJson())
+ *
+ * Traces are identified by ids, so a span ended late for a trace that was already recycled
+ * is ignored. Uses the Singleton pattern; all methods are thread-safe.
+ */
+public class PredictionTracer {
+
+    private static final String TAG = "PredictionTracer";
+
+    static final int TRACE_CAPACITY = 32;
+    // An ensemble of 6 taps needs about 30: each API call adds up to 3 spans
+    static final int MAX_SPANS = 40;
+
+    /**
+     * Stages of a prediction, in the order they usually happen.
+     */
+    public enum Stage {
+        PERMISSION,       // Microphone permission check or prompt
+        RECORDER_START,   // Creating and starting the AudioRecord capture
+        CAPTURE,          // Recording the taps
+        FINALIZE,         // Writing the WAV file after a manual stop
+        IMPORT,           // Copying a picked file into the app
+        QUALITY_CHECK,    // On-device signal quality check
+        PREDICT,          // Predictor call until its result is on the main thread
+        REQUEST_BUILD,    // Start of PREDICT until the first API call starts
+        CONNECT,          // DNS, TCP and TLS of a new connection
+        NETWORK,          // API call until the response headers
+        RESPONSE,         // Response body download and JSON parse
+        RENDER,           // Result received until the frame showing it is committed
+        PERSIST           // Copying the recording and inserting the history item
+    }
+
+    /**
+     * Where the scored audio came from.
+     */
+    public enum Source { RECORDING, FILE }
+
+    /**
+     * How a trace ended; IN_PROGRESS until finish() is called.
+     */
+    public enum Outcome { IN_PROGRESS, OK, ERROR, CANCELED, ABANDONED }
+
+    private static final PredictionTracer INSTANCE = new PredictionTracer();
+
+    private final TraceRecord[] traces = new TraceRecord[TRACE_CAPACITY];
+    private long lastTraceId;
+    // Id of the trace that new stages belong to, 0 if none
+    private long activeTraceId;
+
+    private PredictionTracer() {
+        for (int i = 0; i < TRACE_CAPACITY; i++) {
+            traces[i] = new TraceRecord();
+        }
+    }
+
+    /**
+     * @return The singleton PredictionTracer instance.
+     */
+    public static PredictionTracer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts a new trace and makes it the active one. An unfinished active trace is
+     * finished as ABANDONED.
+     *
+     * @param source Where the scored audio comes from.
+     * @return The id of the new trace.
+     */
+    public synchronized long begin(Source source) {
+        if (activeTraceId != 0) finish(activeTraceId, Outcome.ABANDONED);
+        long id = ++lastTraceId;
+        TraceRecord trace = traces[slot(id)];
+        trace.id = id;
+        trace.source = source;
+        trace.outcome = Outcome.IN_PROGRESS;
+        trace.startWallMs = System.currentTimeMillis();
+        trace.processAgeMs = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        trace.startNanos = System.nanoTime();
+        trace.endNanos = 0;
+        trace.spanCount = 0;
+        trace.droppedSpans = 0;
+        activeTraceId = id;
+        return id;
+    }
+
+    /**
+     * @return The id of the active trace, or 0 if no prediction is being traced.
+     */
+    public synchronized long getActiveTraceId() {
+        return activeTraceId;
+    }
+
+    /**
+     * Starts a stage of the active trace. Does nothing if no trace is active.
+     */
+    public synchronized void start(Stage stage) {
+        start(activeTraceId, stage);
+    }
+
+    /**
+     * Ends the latest open span of a stage of the active trace, if any.
+     */
+    public synchronized void end(Stage stage) {
+        TraceRecord trace = find(activeTraceId);
+        if (trace == null) return;
+        for (int i = trace.spanCount - 1; i >= 0; i--) {
+            SpanRecord span = trace.spans[i];
+            if (span.stage == stage && span.endNanos == 0) {
+                endSpan(trace, i, System.nanoTime());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts a stage of a trace, from any thread. Use the returned handle with end(long, int)
+     * when the same stage may run several times at once (e.g. concurrent API calls).
+     *
+     * @param traceId The trace, as returned by begin() or getActiveTraceId().
+     * @param stage The stage that starts now.
+     * @return A handle of the span, or -1 if the trace is gone or full.
+     */
+    public synchronized int start(long traceId, Stage stage) {
+        TraceRecord trace = find(traceId);
+        if (trace == null) return -1;
+        long now = System.nanoTime();
+        if (stage == Stage.NETWORK) recordRequestBuild(trace, now);
+        int index = addSpan(trace, stage, now, 0);
+        if (index >= 0) Trace.beginAsyncSection(stage.name(), cookie(traceId, index));
+        return index;
+    }
+
+    /**
+     * Ends a span started with start(long, Stage). Ending it again, or for a trace that was
+     * recycled meanwhile, does nothing.
+     */
+    public synchronized void end(long traceId, int span) {
+        TraceRecord trace = find(traceId);
+        if (trace == null || span < 0 || span >= trace.spanCount || trace.spans[span].endNanos != 0) return;
+        endSpan(trace, span, System.nanoTime());
+    }
+
+    /**
+     * Adds a span that already ended, from any thread. It is not mirrored to android.os.Trace.
+     *
+     * @param startNanos The start, from System.nanoTime().
+     * @param endNanos The end, from System.nanoTime().
+     */
+    public synchronized void record(long traceId, Stage stage, long startNanos, long endNanos) {
+        TraceRecord trace = find(traceId);
+        if (trace == null || startNanos == 0 || endNanos < startNanos) return;
+        addSpan(trace, stage, startNanos, endNanos);
+    }
+
+    /**
+     * Finishes the active trace, if any.
+     */
+    public synchronized void finish(Outcome outcome) {
+        if (activeTraceId != 0) finish(activeTraceId, outcome);
+    }
+
+    /**
+     * Finishes a trace. Spans may still be added and ended afterwards (e.g. PERSIST, which
+     * continues in the background after the result is shown); unless the outcome is OK,
+     * open spans are ended now.
+     *
+     * @param traceId The trace to finish.
+     * @param outcome How the prediction ended.
+     */
+    public synchronized void finish(long traceId, Outcome outcome) {
+        if (traceId == activeTraceId) activeTraceId = 0;
+        TraceRecord trace = find(traceId);
+        if (trace == null || trace.outcome != Outcome.IN_PROGRESS) return;
+        long now = System.nanoTime();
+        trace.outcome = outcome;
+        trace.endNanos = now;
+        if (outcome != Outcome.OK) {
+            for (int i = 0; i < trace.spanCount; i++) {
+                if (trace.spans[i].endNanos == 0) endSpan(trace, i, now);
+            }
+        }
+        if (BuildConfig.DEBUG) Log.d(TAG, summarize(trace));
+    }
+
+    /**
+     * Exports the recent traces, oldest first. For each trace the "stages" object holds the
+     * time in milliseconds from the first start to the last end of each stage; "spans" lists
+     * every span with its start relative to the trace start. Open spans have no duration.
+     *
+     * @return The traces as a JSON document.
+     */
+    public synchronized String exportJson() {
+        try {
+            JSONArray list = new JSONArray();
+            long first = Math.max(1, lastTraceId - TRACE_CAPACITY + 1);
+            for (long id = first; id <= lastTraceId; id++) {
+                list.put(toJson(traces[slot(id)]));
+            }
+            return new JSONObject()
+                    .put("exportedAt", System.currentTimeMillis())
+                    .put("device", Build.MODEL)
+                    .put("appVersion", BuildConfig.VERSION_NAME)
+                    .put("traces", list)
+                    .toString(2);
+        } catch (JSONException e) {
+            // Only thrown for NaN or infinite numbers, which are never put
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds REQUEST_BUILD the first time an API call starts during an open PREDICT span.
+     */
+    private void recordRequestBuild(TraceRecord trace, long now) {
+        long predictStart = 0;
+        for (int i = 0; i < trace.spanCount; i++) {
+            SpanRecord span = trace.spans[i];
+            if (span.stage == Stage.REQUEST_BUILD) return;
+            if (span.stage == Stage.PREDICT && span.endNanos == 0) predictStart = span.startNanos;
+        }
+        if (predictStart != 0) addSpan(trace, Stage.REQUEST_BUILD, predictStart, now);
+    }
+
+    private int addSpan(TraceRecord trace, Stage stage, long startNanos, long endNanos) {
+        if (trace.spanCount == MAX_SPANS) {
+            trace.droppedSpans++;
+            return -1;
+        }
+        int index = trace.spanCount++;
+        SpanRecord span = trace.spans[index];
+        span.stage = stage;
+        span.startNanos = startNanos;
+        span.endNanos = endNanos;
+        return index;
+    }
+
+    private void endSpan(TraceRecord trace, int index, long now) {
+        SpanRecord span = trace.spans[index];
+        span.endNanos = now;
+        Trace.endAsyncSection(span.stage.name(), cookie(trace.id, index));
+    }
+
+    private TraceRecord find(long traceId) {
+        if (traceId <= 0) return null;
+        TraceRecord trace = traces[slot(traceId)];
+        return trace.id == traceId ? trace : null;
+    }
+
+    private static int slot(long traceId) {
+        return (int) (traceId % TRACE_CAPACITY);
+    }
+
+    // Async sections with the same name need distinct cookies while they overlap
+    private static int cookie(long traceId, int span) {
+        return (int) (traceId * MAX_SPANS + span);
+    }
+
+    private static JSONObject toJson(TraceRecord trace) throws JSONException {
+        JSONObject stages = new JSONObject();
+        for (Stage stage : Stage.values()) {
+            long start = Long.MAX_VALUE;
+            long end = 0;
+            for (int i = 0; i < trace.spanCount; i++) {
+                SpanRecord span = trace.spans[i];
+                if (span.stage != stage || span.endNanos == 0) continue;
+                start = Math.min(start, span.startNanos);
+                end = Math.max(end, span.endNanos);
+            }
+            if (end != 0) stages.put(stage.name(), millis(start, end));
+        }
+        JSONArray spans = new JSONArray();
+        for (int i = 0; i < trace.spanCount; i++) {
+            SpanRecord span = trace.spans[i];
+            JSONObject json = new JSONObject()
+                    .put("stage", span.stage.name())
+                    .put("startMs", millis(trace.startNanos, span.startNanos));
+            if (span.endNanos != 0) json.put("durationMs", millis(span.startNanos, span.endNanos));
+            spans.put(json);
+        }
+        JSONObject json = new JSONObject()
+                .put("id", trace.id)
+                .put("source", trace.source.name())
+                .put("outcome", trace.outcome.name())
+                .put("startedAt", trace.startWallMs)
+                .put("processAgeMs", trace.processAgeMs)
+                .put("firstInProcess", trace.id == 1)
+                .put("stages", stages)
+                .put("spans", spans);
+        if (trace.endNanos != 0) json.put("totalMs", millis(trace.startNanos, trace.endNanos));
+        if (trace.droppedSpans > 0) json.put("droppedSpans", trace.droppedSpans);
+        return json;
+    }
+
+    private static String summarize(TraceRecord trace) {
+        StringBuilder summary = new StringBuilder(String.format(Locale.US, "trace %d %s %.1fms:",
+                trace.id, trace.outcome.name().toLowerCase(Locale.US), millis(trace.startNanos, trace.endNanos)));
+        for (int i = 0; i < trace.spanCount; i++) {
+            SpanRecord span = trace.spans[i];
+            summary.append(' ').append(span.stage.name().toLowerCase(Locale.US)).append('=');
+            summary.append(span.endNanos == 0 ? "open" : String.format(Locale.US, "%.1f", millis(span.startNanos, span.endNanos)));
+        }
+        return summary.toString();
+    }
+
+    private static double millis(long start, long end) {
+        return (end - start) / 1e6;
+    }
+
+    /**
+     * One traced prediction; reused when the ring wraps around.
+     */
+    private static final class TraceRecord {
+        long id;
+        Source source;
+        Outcome outcome;
+        long startWallMs;
+        long processAgeMs;
+        long startNanos;
+        // 0 while in progress
+        long endNanos;
+        final SpanRecord[] spans = new SpanRecord[MAX_SPANS];
+        int spanCount;
+        int droppedSpans;
+
+        TraceRecord() {
+            for (int i = 0; i < MAX_SPANS; i++) {
+                spans[i] = new SpanRecord();
+            }
+        }
+    }
+
+    /**
+     * One stage of a trace, pooled in its TraceRecord.
+     */
+    private static final class SpanRecord {
+        Stage stage;
+        long startNanos;
+        // 0 while open
+        long endNanos;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.redyapp;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.redyapp.Audio.SignalQuality;
+
+import java.util.Locale;
+
+/**
+ * QualityGateMetrics counts the verdicts of the signal-quality check that runs before a
+ * recording is scored (see SignalQuality), so the logs show how many predictions it saved:
+ * every rejected recording the user did not send anyway is a request that never went out.
+ * Each verdict is also logged with its measurements.
+ * Uses the Singleton pattern; all methods are thread-safe.
+ */
+public class QualityGateMetrics {
+
+    private static final String TAG = "QualityGate";
+
+    private static final QualityGateMetrics INSTANCE = new QualityGateMetrics();
+
+    private final long[] verdicts = new long[SignalQuality.Verdict.values().length];
+    private long unreadable;
+    private long scoredAnyway;
+
+    private QualityGateMetrics() {
+    }
+
+    /**
+     * @return The singleton QualityGateMetrics instance.
+     */
+    public static QualityGateMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the check of one recording.
+     *
+     * @param name The file name, for the log.
+     * @param quality The report.
+     */
+    public synchronized void record(String name, SignalQuality quality) {
+        verdicts[quality.getVerdict().ordinal()]++;
+        Log.i(TAG, name + ": " + quality);
+    }
+
+    /**
+     * Records a recording that could not be analyzed; it is scored without a check.
+     */
+    public synchronized void recordUnreadable(String name, String error) {
+        unreadable++;
+        Log.w(TAG, name + ": not analyzed (" + error + ")");
+    }
+
+    /**
+     * Records a rejected recording the user chose to score anyway.
+     */
+    public synchronized void recordScoredAnyway() {
+        scoredAnyway++;
+    }
+
+    public synchronized long getCount(SignalQuality.Verdict verdict) {
+        return verdicts[verdict.ordinal()];
+    }
+
+    /**
+     * @return The number of predictions that were not requested because of the check.
+     */
+    public synchronized long getSavedRequests() {
+        return verdicts[SignalQuality.Verdict.REJECT.ordinal()] - scoredAnyway;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "good=%d warned=%d rejected=%d (scored anyway %d, %d requests saved) unreadable=%d",
+                getCount(SignalQuality.Verdict.GOOD), getCount(SignalQuality.Verdict.WARN),
+                getCount(SignalQuality.Verdict.REJECT), scoredAnyway, getSavedRequests(), unreadable);
+    }
+}
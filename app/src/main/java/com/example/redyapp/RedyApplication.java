@@ -0,0 +1,50 @@
+package com.example.redyapp;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import com.example.redyapp.Audio.ClipPlayer;
+import com.example.redyapp.History.AudioCompaction;
+import com.example.redyapp.History.HistoryDatabase;
+import com.example.redyapp.History.HistoryReconciler;
+import com.example.redyapp.Prediction.UploadQueue;
+
+/**
+ * Application entry point. Schedules the app-wide background work once per process instead of
+ * once per activity. When the app goes to the background it logs the executor and network
+ * metrics and drops the decoded playback cache.
+ */
+public class RedyApplication extends Application {
+
+    private static final String TAG = "RedyApplication";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Keep the stored recordings compact and within their storage budget
+        AudioCompaction.schedule(this);
+        // Clean up files and rows left inconsistent by crashes or failed operations
+        HistoryReconciler.schedule(this);
+
+        // Re-schedule the upload queue in case recordings are still waiting from an earlier session
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            if (HistoryDatabase.getInstance(this).pendingUploadDao().count() > 0) {
+                UploadQueue.schedule(this);
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            Log.d(TAG, "Executors: " + AppExecutors.getInstance());
+            Log.d(TAG, "Network: " + NetworkMetrics.getInstance());
+            Log.d(TAG, "Quality gate: " + QualityGateMetrics.getInstance());
+            // Decoded recordings are only worth keeping while the history can be played
+            ClipPlayer.getInstance().trimMemory();
+        }
+    }
+}
@@ -1,51 +1,110 @@
 package com.example.redyapp;
 
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
+
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 /**
- * RetrofitClient is a singleton class that provides an instance of Retrofit for making network requests.
- * It configures the client with optimized timeouts, minimal logging, and connection pooling for better performance.
+ * RetrofitClient is a singleton class that provides the ApiService for making network requests.
+ * It configures one shared OkHttp client with optimized timeouts, HTTP/2, connection pooling,
+ * per-phase timing (see NetworkMetrics) and, in debug builds only, header logging.
  */
 public class RetrofitClient {
     private static final String BASE_URL = "https://watermelon-api-96308048537.me-west1.run.app/";
-    private static Retrofit retrofit = null;
+    private static final String TAG = "RetrofitClient";
+    // Don't warm up again if the last warm-up was this recent (the connection is still pooled)
+    private static final long WARM_UP_INTERVAL_MS = 60_000;
+
+    // Volatile instance to ensure visibility across threads.
+    private static volatile ApiService apiService;
+    private static long lastWarmUpAt;
 
     /**
-     * getInstance() is a static method that returns the Retrofit instance.
-     * @return Retrofit instance
+     * getInstance() is a static method that returns the ApiService proxy.
+     * The client and the proxy are created once and shared by all callers.
+     * @return ApiService instance
      */
     public static ApiService getInstance() {
-        // If retrofit is null, create a new instance
-        if (retrofit == null) {
-            // Create a logging interceptor with minimal logging for production performance
+        if (apiService == null) {
+            // Use a synchronized block to prevent race conditions during instantiation.
+            synchronized (RetrofitClient.class) {
+                if (apiService == null) {
+                    apiService = createRetrofit().create(ApiService.class);
+                }
+            }
+        }
+        return apiService;
+    }
+
+    /**
+     * Opens a connection to the backend ahead of the first prediction with a lightweight
+     * health ping, so DNS, TCP/TLS setup and a Cloud Run cold start are not paid by the
+     * user's first upload. The response itself is ignored. Safe to call from the main thread.
+     */
+    public static void warmUp() {
+        synchronized (RetrofitClient.class) {
+            long now = SystemClock.elapsedRealtime();
+            if (lastWarmUpAt != 0 && now - lastWarmUpAt < WARM_UP_INTERVAL_MS) return;
+            lastWarmUpAt = now;
+        }
+        long start = SystemClock.elapsedRealtime();
+        getInstance().health().enqueue(new Callback<Void>() {
+            @Override
+            public void onResponse(@NonNull Call<Void> call, @NonNull Response<Void> response) {
+                Log.d(TAG, "Warm-up finished in " + (SystemClock.elapsedRealtime() - start)
+                        + " ms (code " + response.code() + ")");
+            }
+
+            @Override
+            public void onFailure(@NonNull Call<Void> call, @NonNull Throwable t) {
+                Log.d(TAG, "Warm-up failed: " + t.getMessage());
+                synchronized (RetrofitClient.class) {
+                    lastWarmUpAt = 0; // Try again next time
+                }
+            }
+        });
+    }
+
+    private static Retrofit createRetrofit() {
+        // Create an OkHttpClient with optimized settings for faster API calls
+        OkHttpClient.Builder httpClient = new OkHttpClient.Builder()
+                // Reduced timeouts for faster failure detection and retry
+                .connectTimeout(10, TimeUnit.SECONDS) // Reduced from 30s
+                .readTimeout(15, TimeUnit.SECONDS)    // Reduced from 30s
+                .writeTimeout(20, TimeUnit.SECONDS)   // Slightly reduced but kept higher for file uploads
+                // Prefer HTTP/2 so concurrent requests share one connection (negotiated via ALPN)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                // Add connection pooling optimization
+                .connectionPool(new okhttp3.ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .retryOnConnectionFailure(true)
+                // Time DNS, connect, TLS and time to first byte of every call
+                .eventListenerFactory(NetworkMetrics.getInstance().listenerFactory());
+
+        if (BuildConfig.DEBUG) {
+            // Header logging only in debug builds; release builds skip the interceptor entirely
             HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
-            // Use HEADERS instead of BODY to reduce logging overhead while keeping debugging capability
             loggingInterceptor.setLevel(HttpLoggingInterceptor.Level.HEADERS);
-
-            // Create an OkHttpClient with optimized settings for faster API calls
-            OkHttpClient httpClient = new OkHttpClient.Builder()
-                    .addInterceptor(loggingInterceptor)
-                    // Reduced timeouts for faster failure detection and retry
-                    .connectTimeout(10, TimeUnit.SECONDS) // Reduced from 30s
-                    .readTimeout(15, TimeUnit.SECONDS)    // Reduced from 30s
-                    .writeTimeout(20, TimeUnit.SECONDS)   // Slightly reduced but kept higher for file uploads
-                    // Add connection pooling optimization
-                    .connectionPool(new okhttp3.ConnectionPool(5, 5, TimeUnit.MINUTES))
-                    // Enable response compression
-                    .retryOnConnectionFailure(true)
-                    .build();
-
-            // Build the Retrofit instance with the base URL, client, and Gson converter
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(BASE_URL)
-                    .client(httpClient)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .build();
+            httpClient.addInterceptor(loggingInterceptor);
         }
-        return retrofit.create(ApiService.class);
+
+        // Build the Retrofit instance with the base URL, client, and Gson converter
+        return new Retrofit.Builder()
+                .baseUrl(BASE_URL)
+                .client(httpClient.build())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build();
     }
 }
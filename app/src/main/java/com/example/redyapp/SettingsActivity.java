@@ -1,19 +1,49 @@
 package com.example.redyapp;
 
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.ImageButton;
+import android.widget.RadioGroup;
+import android.widget.Spinner;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
+import androidx.appcompat.widget.SwitchCompat;
 
+import com.example.redyapp.History.AudioCompaction;
 import com.example.redyapp.LogReg.MainLogRegActivity;
+import com.example.redyapp.Prediction.PredictorPolicy;
 import com.google.firebase.auth.FirebaseAuth;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 public class SettingsActivity extends AppCompatActivity {
 
+    private static final String TAG = "SettingsActivity";
+
+    // Storage budget choices for recordings, matching the spinner entries by position (0 = no limit)
+    private static final String[] STORAGE_BUDGETS = {"100 MB", "250 MB", "500 MB", "1 GB", "No limit"};
+    private static final int[] STORAGE_BUDGETS_MB = {100, 250, 500, 1024, 0};
+
+    /**
+     * Launcher for choosing where to save the exported prediction timings
+     */
+    private final ActivityResultLauncher<String> exportTracesLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("application/json"), uri -> {
+                if (uri != null) exportTraces(uri);
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -22,6 +52,77 @@ public class SettingsActivity extends AppCompatActivity {
         // Optional: Disable Dark Mode for consistency
         AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
 
+        AppSettings appSettings = new AppSettings(this);
+
+        // Toggle for sending on-device log-mel features instead of the raw recording
+        SwitchCompat sendFeaturesSwitch = findViewById(R.id.send_features_switch);
+        sendFeaturesSwitch.setChecked(appSettings.isSendFeaturesEnabled());
+        sendFeaturesSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                appSettings.setSendFeaturesEnabled(isChecked));
+
+        // Toggle for uploading the recording while it is being captured
+        SwitchCompat streamUploadSwitch = findViewById(R.id.stream_upload_switch);
+        streamUploadSwitch.setChecked(appSettings.isStreamUploadEnabled());
+        streamUploadSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                appSettings.setStreamUploadEnabled(isChecked));
+
+        // Toggle for scoring each tap as soon as it was recorded
+        SwitchCompat liveTapScoringSwitch = findViewById(R.id.live_tap_scoring_switch);
+        liveTapScoringSwitch.setChecked(appSettings.isLiveTapScoringEnabled());
+        liveTapScoringSwitch.setOnCheckedChangeListener((buttonView, isChecked) ->
+                appSettings.setLiveTapScoringEnabled(isChecked));
+
+        // Choice between the on-device model and the backend
+        RadioGroup policyGroup = findViewById(R.id.predictor_policy_group);
+        switch (appSettings.getPredictorPolicy()) {
+            case LOCAL_FIRST:
+                policyGroup.check(R.id.policy_local_first);
+                break;
+            case FASTEST:
+                policyGroup.check(R.id.policy_fastest);
+                break;
+            default:
+                policyGroup.check(R.id.policy_remote_first);
+                break;
+        }
+        policyGroup.setOnCheckedChangeListener((group, checkedId) -> {
+            if (checkedId == R.id.policy_local_first) {
+                appSettings.setPredictorPolicy(PredictorPolicy.LOCAL_FIRST);
+            } else if (checkedId == R.id.policy_fastest) {
+                appSettings.setPredictorPolicy(PredictorPolicy.FASTEST);
+            } else {
+                appSettings.setPredictorPolicy(PredictorPolicy.REMOTE_FIRST);
+            }
+        });
+
+        // Space the history recordings may take before the least recently used are removed
+        Spinner storageBudgetSpinner = findViewById(R.id.storage_budget_spinner);
+        ArrayAdapter<String> budgetAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, STORAGE_BUDGETS);
+        budgetAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        storageBudgetSpinner.setAdapter(budgetAdapter);
+        int currentBudget = appSettings.getAudioStorageBudgetMb();
+        for (int i = 0; i < STORAGE_BUDGETS_MB.length; i++) {
+            if (STORAGE_BUDGETS_MB[i] == currentBudget) storageBudgetSpinner.setSelection(i);
+        }
+        storageBudgetSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                int budget = STORAGE_BUDGETS_MB[position];
+                if (budget == appSettings.getAudioStorageBudgetMb()) return;
+                appSettings.setAudioStorageBudgetMb(budget);
+                // Apply a lower budget now rather than at the next daily run
+                AudioCompaction.runNow(getApplicationContext());
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {}
+        });
+
+        // Stage-by-stage timings of the recent predictions, as JSON
+        Button exportTracesButton = findViewById(R.id.export_traces_button);
+        exportTracesButton.setOnClickListener(view ->
+                exportTracesLauncher.launch("prediction-timings-" + System.currentTimeMillis() + ".json"));
+
         Button logoutButton = findViewById(R.id.logout_button);
         // Set an OnClickListener for back_button to the previous activity
         ImageButton backButton = findViewById(R.id.back_button);
@@ -49,4 +150,27 @@ public class SettingsActivity extends AppCompatActivity {
             finish();
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the recent prediction traces (see PredictionTracer) to the chosen document
+     * in the background
+     *
+     * @param uri The document returned by the file picker
+     */
+    private void exportTraces(Uri uri) {
+        AppExecutors.getInstance().diskIO().execute(() -> {
+            boolean saved;
+            try (OutputStream output = getContentResolver().openOutputStream(uri)) {
+                if (output == null) throw new IOException("Cannot open " + uri);
+                output.write(PredictionTracer.getInstance().exportJson().getBytes(StandardCharsets.UTF_8));
+                saved = true;
+            } catch (IOException | SecurityException e) {
+                Log.e(TAG, "Failed to export prediction timings", e);
+                saved = false;
+            }
+            final boolean success = saved;
+            runOnUiThread(() -> Toast.makeText(SettingsActivity.this,
+                    success ? "Prediction timings exported." : "Export failed.", Toast.LENGTH_SHORT).show());
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.redyapp;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.example.redyapp.Audio.SpectrumAnalyzer;
+import com.example.redyapp.Audio.TripleBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Live level meter and spectrum shown while recording, fed by LiveSpectrum.
+ *
+ * While a source is set the view redraws on every display frame: it takes the newest
+ * analyzed frame, if any, and moves its bars toward it, rising at once and falling off
+ * smoothly, so the picture stays fluid although audio frames arrive every 20 ms. The meter
+ * turns red when the input gets close to clipping. Drawing allocates nothing.
+ */
+public class SpectrumView extends View {
+
+    // Time for a falling bar to drop by about two thirds
+    private static final float RELEASE_SECONDS = 0.12f;
+    // Peaks above this (dBFS) are about to clip
+    private static final float CLIP_WARNING_DB = -1f;
+
+    private final Paint barPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint meterPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint clipPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint trackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float meterHeight;
+    private final float gap;
+
+    private TripleBuffer<SpectrumAnalyzer.Frame> source;
+    // Values on screen, from 0 to 1
+    private final float[] shownBands = new float[SpectrumAnalyzer.BANDS];
+    private float shownLevel;
+    private boolean clipping;
+    private long lastDrawMs;
+
+    public SpectrumView(Context context) {
+        this(context, null);
+    }
+
+    public SpectrumView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        meterHeight = 6 * density;
+        gap = 2 * density;
+        barPaint.setColor(ContextCompat.getColor(context, R.color.green));
+        meterPaint.setColor(ContextCompat.getColor(context, R.color.dark_green));
+        clipPaint.setColor(ContextCompat.getColor(context, R.color.red));
+        trackPaint.setColor(ContextCompat.getColor(context, R.color.dark_gray));
+    }
+
+    /**
+     * Starts drawing the frames of a capture.
+     *
+     * @param source The frames of a LiveSpectrum; this view becomes their only consumer.
+     */
+    public void setSource(TripleBuffer<SpectrumAnalyzer.Frame> source) {
+        this.source = source;
+        Arrays.fill(shownBands, 0f);
+        shownLevel = 0f;
+        clipping = false;
+        lastDrawMs = 0;
+        postInvalidateOnAnimation();
+    }
+
+    /**
+     * Stops drawing frames and empties the view.
+     */
+    public void clearSource() {
+        source = null;
+        Arrays.fill(shownBands, 0f);
+        shownLevel = 0f;
+        clipping = false;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        long now = SystemClock.uptimeMillis();
+        float elapsed = lastDrawMs == 0 ? 0f : (now - lastDrawMs) / 1000f;
+        lastDrawMs = now;
+        if (source != null) {
+            source.acquire();
+            update(source.getFrontSlot(), (float) Math.exp(-elapsed / RELEASE_SECONDS));
+        }
+
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float left = getPaddingLeft();
+        float bottom = getHeight() - getPaddingBottom();
+
+        // Level meter along the bottom
+        canvas.drawRect(left, bottom - meterHeight, left + width, bottom, trackPaint);
+        canvas.drawRect(left, bottom - meterHeight, left + width * shownLevel, bottom,
+                clipping ? clipPaint : meterPaint);
+
+        // Spectrum bars above it
+        float barsBottom = bottom - meterHeight - gap;
+        float barsHeight = barsBottom - getPaddingTop();
+        float slot = width / SpectrumAnalyzer.BANDS;
+        for (int b = 0; b < SpectrumAnalyzer.BANDS; b++) {
+            float x = left + b * slot;
+            float top = barsBottom - Math.max(gap, barsHeight * shownBands[b]);
+            canvas.drawRect(x + gap / 2, top, x + slot - gap / 2, barsBottom, barPaint);
+        }
+
+        if (source != null) postInvalidateOnAnimation();
+    }
+
+    /**
+     * Moves the shown values toward a frame: up at once, down by the release factor.
+     */
+    private void update(SpectrumAnalyzer.Frame frame, float release) {
+        for (int b = 0; b < shownBands.length; b++) {
+            shownBands[b] = follow(shownBands[b], frame.bands[b], release);
+        }
+        shownLevel = follow(shownLevel, (frame.levelDb - SpectrumAnalyzer.MIN_DB) / -SpectrumAnalyzer.MIN_DB, release);
+        clipping = frame.peakDb > CLIP_WARNING_DB;
+    }
+
+    private static float follow(float shown, float target, float release) {
+        return target >= shown ? target : target + (shown - target) * release;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.redyapp;
+
+import android.os.Process;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the ordering guarantee of AppExecutors.serial(), the blocking database write hand-off
+ * and the metrics of MeteredExecutor.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AppExecutorsTest {
+
+    @Test
+    public void serialExecutor_runsTasksOneAtATimeInOrder() throws InterruptedException {
+        MeteredExecutor pool = new MeteredExecutor("test", 4, Process.THREAD_PRIORITY_DEFAULT);
+        Executor serial = AppExecutors.serial(pool);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(200);
+
+        for (int i = 0; i < 200; i++) {
+            final int index = i;
+            serial.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                order.add(index);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void meteredExecutor_tracksQueueDepthAndLatency() throws InterruptedException {
+        MeteredExecutor pool = new MeteredExecutor("test", 1, Process.THREAD_PRIORITY_DEFAULT);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+
+        // Block the only thread so the next two tasks queue up behind it
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        pool.execute(done::countDown);
+        pool.execute(done::countDown);
+        Thread.sleep(50);
+        assertEquals(2, pool.getQueueDepth());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // The last task finishes after counting down, so wait for its bookkeeping
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getCompletedTasks() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(0, pool.getQueueDepth());
+        assertTrue(pool.getMaxQueueDepth() >= 2);
+        assertEquals(3, pool.getCompletedTasks());
+        assertTrue("queued tasks waited for the blocked one", pool.getMaxWaitMs() >= 40);
+        assertTrue(pool.getMaxRunMs() >= 40);
+    }
+
+    @Test
+    public void awaitDatabaseWrite_runsOnTheWriterThreadAndReturnsItsResult() throws InterruptedException {
+        AppExecutors executors = AppExecutors.getInstance();
+        // A write already queued from the app runs first
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        executors.databaseWrite().execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            order.add("app");
+        });
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        }).start();
+
+        String thread = executors.awaitDatabaseWrite(() -> {
+            order.add("worker");
+            return Thread.currentThread().getName();
+        });
+
+        assertEquals(Arrays.asList("app", "worker"), order);
+        assertTrue(thread, thread.startsWith("db-write"));
+        try {
+            executors.awaitDatabaseWrite(() -> {
+                throw new IllegalStateException("constraint failed");
+            });
+            fail("Expected the write's exception");
+        } catch (IllegalStateException e) {
+            assertEquals("constraint failed", e.getMessage());
+        }
+    }
+}
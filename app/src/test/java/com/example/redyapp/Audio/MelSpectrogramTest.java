@@ -0,0 +1,186 @@
+package com.example.redyapp.Audio;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the allocation-free FFT and log-mel pipeline against a straightforward
+ * double-precision reference (naive DFT and directly evaluated triangular filters).
+ */
+public class MelSpectrogramTest {
+
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void fft_matchesNaiveDft() {
+        int n = 256;
+        Random random = new Random(42);
+        float[] re = new float[n];
+        float[] im = new float[n];
+        double[] input = new double[n];
+        for (int i = 0; i < n; i++) {
+            input[i] = random.nextGaussian();
+            re[i] = (float) input[i];
+        }
+        new Fft(n).transform(re, im);
+
+        for (int k = 0; k < n; k++) {
+            double sumRe = 0;
+            double sumIm = 0;
+            for (int t = 0; t < n; t++) {
+                double angle = -2.0 * Math.PI * k * t / n;
+                sumRe += input[t] * Math.cos(angle);
+                sumIm += input[t] * Math.sin(angle);
+            }
+            assertEquals("re[" + k + "]", sumRe, re[k], 1e-3);
+            assertEquals("im[" + k + "]", sumIm, im[k], 1e-3);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fft_rejectsNonPowerOfTwo() {
+        new Fft(300);
+    }
+
+    @Test
+    public void logMel_matchesReferenceImplementation() {
+        short[] pcm = testSignal(SAMPLE_RATE / 4);
+        int fftSize = 512;
+        int hop = 160;
+        int mels = 40;
+        MelSpectrogram melSpectrogram = new MelSpectrogram(SAMPLE_RATE, fftSize, hop, mels);
+
+        int frames = melSpectrogram.frameCount(pcm.length);
+        assertEquals(1 + (pcm.length - fftSize) / hop, frames);
+        float[] actual = new float[frames * mels];
+        assertEquals(frames, melSpectrogram.compute(pcm, pcm.length, actual));
+
+        double[] expected = referenceLogMel(pcm, fftSize, hop, mels);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("value " + i, expected[i], actual[i], 1e-2);
+        }
+    }
+
+    @Test
+    public void logMel_silenceHitsLogFloor() {
+        MelSpectrogram melSpectrogram = new MelSpectrogram(SAMPLE_RATE);
+        short[] silence = new short[2048];
+        float[] out = new float[melSpectrogram.frameCount(silence.length) * melSpectrogram.getMelBands()];
+        melSpectrogram.compute(silence, silence.length, out);
+        for (float value : out) {
+            assertEquals(Math.log(MelSpectrogram.LOG_FLOOR), value, 1e-3);
+        }
+    }
+
+    @Test
+    public void float16_roundTripsWithinHalfPrecision() {
+        float[] values = {0f, -0f, 1f, -2.5f, 0.333333f, 65504f, 6.1035156e-5f, 5.9604645e-8f, -23.0258f};
+        for (float value : values) {
+            float back = Float16.toFloat(Float16.fromFloat(value));
+            assertEquals(value, back, Math.abs(value) * 1e-3 + 1e-7);
+        }
+        assertTrue(Float.isInfinite(Float16.toFloat(Float16.fromFloat(1e6f))));
+        assertTrue(Float.isNaN(Float16.toFloat(Float16.fromFloat(Float.NaN))));
+    }
+
+    @Test
+    public void encoder_writesHeaderAndHalfFloats() {
+        short[] pcm = testSignal(4000);
+        MelSpectrogram melSpectrogram = new MelSpectrogram(SAMPLE_RATE);
+        byte[] body = new LogMelEncoder(melSpectrogram).encode(new PcmAudio(pcm, pcm.length, SAMPLE_RATE));
+
+        int frames = melSpectrogram.frameCount(pcm.length);
+        int bands = melSpectrogram.getMelBands();
+        assertEquals(LogMelEncoder.HEADER_SIZE + frames * bands * 2, body.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals('L', buffer.get(0));
+        assertEquals('M', buffer.get(1));
+        assertEquals('E', buffer.get(2));
+        assertEquals('L', buffer.get(3));
+        assertEquals(1, buffer.getShort(4));
+        assertEquals(bands, buffer.getShort(6));
+        assertEquals(frames, buffer.getInt(8));
+        assertEquals(SAMPLE_RATE, buffer.getInt(12));
+        assertEquals(MelSpectrogram.DEFAULT_HOP_LENGTH, buffer.getInt(16));
+
+        float[] expected = new float[frames * bands];
+        melSpectrogram.compute(pcm, pcm.length, expected);
+        float first = Float16.toFloat(buffer.getShort(LogMelEncoder.HEADER_SIZE));
+        assertEquals(expected[0], first, Math.abs(expected[0]) * 1e-3);
+    }
+
+    /**
+     * A decaying two-tone "thump" plus a little noise.
+     */
+    private static short[] testSignal(int length) {
+        Random random = new Random(7);
+        short[] pcm = new short[length];
+        for (int i = 0; i < length; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double value = Math.exp(-t * 8) * (0.5 * Math.sin(2 * Math.PI * 180 * t) + 0.2 * Math.sin(2 * Math.PI * 950 * t))
+                    + 0.01 * random.nextGaussian();
+            pcm[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value * 32767));
+        }
+        return pcm;
+    }
+
+    /**
+     * Reference log-mel: pre-emphasis, naive DFT of each Hann-windowed frame and triangular
+     * HTK filters evaluated directly from their definition, all in double precision.
+     */
+    private static double[] referenceLogMel(short[] pcm, int fftSize, int hop, int mels) {
+        int frames = 1 + (pcm.length - fftSize) / hop;
+        int bins = fftSize / 2 + 1;
+        double minMel = 2595.0 * Math.log10(1.0 + 50.0 / 700.0);
+        double maxMel = 2595.0 * Math.log10(1.0 + (SAMPLE_RATE / 2.0) / 700.0);
+        double[] edges = new double[mels + 2];
+        for (int i = 0; i < edges.length; i++) {
+            double mel = minMel + (maxMel - minMel) * i / (mels + 1);
+            edges[i] = 700.0 * (Math.pow(10.0, mel / 2595.0) - 1.0);
+        }
+        double[] emphasized = new double[pcm.length];
+        for (int i = 0; i < pcm.length; i++) {
+            emphasized[i] = (pcm[i] - 0.97 * (i > 0 ? pcm[i - 1] : 0)) / 32768.0;
+        }
+
+        double[] out = new double[frames * mels];
+        for (int f = 0; f < frames; f++) {
+            double[] power = new double[bins];
+            for (int k = 0; k < bins; k++) {
+                double sumRe = 0;
+                double sumIm = 0;
+                for (int t = 0; t < fftSize; t++) {
+                    double w = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * t / fftSize);
+                    double x = emphasized[f * hop + t] * w;
+                    double angle = -2.0 * Math.PI * k * t / fftSize;
+                    sumRe += x * Math.cos(angle);
+                    sumIm += x * Math.sin(angle);
+                }
+                power[k] = sumRe * sumRe + sumIm * sumIm;
+            }
+            for (int m = 0; m < mels; m++) {
+                double energy = 0;
+                for (int k = 0; k < bins; k++) {
+                    double hz = (double) k * SAMPLE_RATE / fftSize;
+                    double weight;
+                    if (hz < edges[m] || hz > edges[m + 2]) {
+                        weight = 0;
+                    } else if (hz <= edges[m + 1]) {
+                        weight = (hz - edges[m]) / (edges[m + 1] - edges[m]);
+                    } else {
+                        weight = (edges[m + 2] - hz) / (edges[m + 2] - edges[m + 1]);
+                    }
+                    energy += weight * power[k];
+                }
+                out[f * mels + m] = Math.log(Math.max(energy, MelSpectrogram.LOG_FLOOR));
+            }
+        }
+        return out;
+    }
+}
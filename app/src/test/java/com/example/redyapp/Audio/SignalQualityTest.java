@@ -0,0 +1,108 @@
+package com.example.redyapp.Audio;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the quality verdicts on synthetic recordings.
+ */
+public class SignalQualityTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int SAMPLES = 5 * SAMPLE_RATE;
+
+    @Test
+    public void analyze_clearTaps_areGood() {
+        short[] samples = noise(30, 1);
+        addTaps(samples, 6000, new Random(2));
+
+        SignalQuality quality = SignalQuality.analyze(new PcmAudio(samples, SAMPLES, SAMPLE_RATE));
+
+        assertEquals(quality.toString(), SignalQuality.Verdict.GOOD, quality.getVerdict());
+        assertEquals(4, quality.getTapCount());
+        assertTrue(quality.getSnrDb() > SignalQuality.WARN_SNR_DB);
+        assertNull(quality.getReason());
+    }
+
+    @Test
+    public void analyze_silence_isRejected() {
+        SignalQuality quality = SignalQuality.analyze(new PcmAudio(noise(3, 3), SAMPLES, SAMPLE_RATE));
+
+        assertEquals(SignalQuality.Verdict.REJECT, quality.getVerdict());
+        assertTrue(quality.getPeakDb() < SignalQuality.SILENT_PEAK_DB);
+        assertNotNull(quality.getReason());
+    }
+
+    @Test
+    public void analyze_overloadedRecording_isRejected() {
+        short[] samples = noise(30, 4);
+        for (int i = 0; i < SAMPLES; i++) {
+            // Every tenth sample pinned at full scale
+            if (i % 10 == 0) samples[i] = Short.MAX_VALUE;
+        }
+
+        SignalQuality quality = SignalQuality.analyze(new PcmAudio(samples, SAMPLES, SAMPLE_RATE));
+
+        assertEquals(SignalQuality.Verdict.REJECT, quality.getVerdict());
+        assertEquals(0.1, quality.getClippedRatio(), 0.001);
+    }
+
+    @Test
+    public void analyze_steadyWindNoise_isRejected() {
+        // Loud rumble throughout, with the taps buried in it
+        short[] samples = new short[SAMPLES];
+        Random random = new Random(5);
+        double rumble = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            rumble = 0.95 * rumble + random.nextGaussian() * 1500;
+            samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, rumble));
+        }
+        addTaps(samples, 1500, new Random(6));
+
+        SignalQuality quality = SignalQuality.analyze(new PcmAudio(samples, SAMPLES, SAMPLE_RATE));
+
+        assertEquals(quality.toString(), SignalQuality.Verdict.REJECT, quality.getVerdict());
+        assertTrue(quality.getSnrDb() < SignalQuality.REJECT_SNR_DB);
+    }
+
+    @Test
+    public void analyze_noTaps_isWarned() {
+        // A steady tone: loud enough and clean, but nothing was tapped
+        short[] samples = noise(30, 7);
+        for (int i = 0; i < SAMPLES; i++) {
+            double envelope = i < SAMPLES / 2 ? (double) i / (SAMPLES / 2) : 1;
+            samples[i] += (short) (8000 * envelope * Math.sin(2 * Math.PI * 200 * i / SAMPLE_RATE));
+        }
+
+        SignalQuality quality = SignalQuality.analyze(new PcmAudio(samples, SAMPLES, SAMPLE_RATE));
+
+        assertEquals(quality.toString(), SignalQuality.Verdict.WARN, quality.getVerdict());
+        assertEquals(0, quality.getTapCount());
+    }
+
+    private static short[] noise(double level, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = (short) (random.nextGaussian() * level);
+        }
+        return samples;
+    }
+
+    /**
+     * Adds four sharp, decaying noise bursts, one per second.
+     */
+    private static void addTaps(short[] samples, double level, Random random) {
+        for (int tap = 0; tap < 4; tap++) {
+            int start = (600 + tap * 1000) * SAMPLE_RATE / 1000;
+            for (int i = start; i < start + SAMPLE_RATE / 4; i++) {
+                double envelope = Math.exp(-(i - start) / (0.03 * SAMPLE_RATE));
+                double value = samples[i] + random.nextGaussian() * level * envelope;
+                samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.redyapp.Audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the level and band values of the live spectrum on pure tones.
+ */
+public class SpectrumAnalyzerTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int LEVEL_SAMPLES = 320;
+
+    @Test
+    public void analyze_fullScaleSine_peaksInItsBand() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SAMPLE_RATE);
+        SpectrumAnalyzer.Frame frame = new SpectrumAnalyzer.Frame();
+
+        analyzer.analyze(sine(1000, 32767), LEVEL_SAMPLES, frame);
+
+        // RMS of a sine is 3 dB below its peak
+        assertEquals(-3.0, frame.levelDb, 0.2);
+        assertEquals(0.0, frame.peakDb, 0.1);
+        int loudest = 0;
+        for (int b = 1; b < SpectrumAnalyzer.BANDS; b++) {
+            if (frame.bands[b] > frame.bands[loudest]) loudest = b;
+        }
+        assertEquals(1.0, frame.bands[loudest], 0.02);
+        // 1 kHz is in the upper middle of the log scale from 60 Hz to 8 kHz
+        assertTrue("band " + loudest, loudest > SpectrumAnalyzer.BANDS / 2 && loudest < SpectrumAnalyzer.BANDS - 4);
+        assertTrue(frame.bands[0] < 0.5f);
+    }
+
+    @Test
+    public void analyze_quieterSine_scalesWithLevel() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SAMPLE_RATE);
+        SpectrumAnalyzer.Frame loud = new SpectrumAnalyzer.Frame();
+        SpectrumAnalyzer.Frame quiet = new SpectrumAnalyzer.Frame();
+
+        analyzer.analyze(sine(1000, 32767), LEVEL_SAMPLES, loud);
+        analyzer.analyze(sine(1000, 328), LEVEL_SAMPLES, quiet);
+
+        assertEquals(loud.levelDb - 40, quiet.levelDb, 0.2);
+        float maxLoud = 0, maxQuiet = 0;
+        for (int b = 0; b < SpectrumAnalyzer.BANDS; b++) {
+            maxLoud = Math.max(maxLoud, loud.bands[b]);
+            maxQuiet = Math.max(maxQuiet, quiet.bands[b]);
+        }
+        assertEquals(40 / -SpectrumAnalyzer.MIN_DB, maxLoud - maxQuiet, 0.02);
+    }
+
+    @Test
+    public void analyze_silence_isEmpty() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SAMPLE_RATE);
+        SpectrumAnalyzer.Frame frame = new SpectrumAnalyzer.Frame();
+
+        analyzer.analyze(new short[SpectrumAnalyzer.FFT_SIZE], LEVEL_SAMPLES, frame);
+
+        assertEquals(SpectrumAnalyzer.MIN_DB, frame.levelDb, 0f);
+        for (float band : frame.bands) {
+            assertEquals(0f, band, 0f);
+        }
+    }
+
+    private static short[] sine(double hz, int amplitude) {
+        short[] samples = new short[SpectrumAnalyzer.FFT_SIZE];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.round(amplitude * Math.sin(2 * Math.PI * hz * i / SAMPLE_RATE));
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.redyapp.Audio;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a recording is split into one segment per tap.
+ */
+public class TapSegmenterTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    // Frame-accurate onsets, plus the frame an attack may straddle
+    private static final long ONSET_TOLERANCE_MS = 2L * OnsetDetector.FRAME_SIZE * 1000 / SAMPLE_RATE;
+
+    @Test
+    public void split_findsEveryTap() {
+        long[] tapsMs = {600, 1600, 2600, 3600};
+        PcmAudio audio = recording(5000, tapsMs, 1);
+
+        List<TapSegmenter.Segment> segments = TapSegmenter.split(audio, 8);
+
+        assertEquals(tapsMs.length, segments.size());
+        int previousEnd = 0;
+        for (int i = 0; i < tapsMs.length; i++) {
+            TapSegmenter.Segment segment = segments.get(i);
+            assertEquals(tapsMs[i], segment.onsetMs, ONSET_TOLERANCE_MS);
+            assertTrue("segments overlap", segment.start >= previousEnd);
+            assertTrue(segment.length <= TapSegmenter.MAX_TAP_MS * SAMPLE_RATE / 1000);
+            assertTrue(segment.length >= TapSegmenter.MIN_TAP_MS * SAMPLE_RATE / 1000);
+            previousEnd = segment.start + segment.length;
+        }
+    }
+
+    @Test
+    public void split_endsSegmentAtNextTap() {
+        // Taps 400 ms apart are shorter than the longest segment
+        PcmAudio audio = recording(3000, new long[]{500, 900, 1300}, 2);
+
+        List<TapSegmenter.Segment> segments = TapSegmenter.split(audio, 8);
+
+        assertEquals(3, segments.size());
+        assertTrue(segments.get(0).start + segments.get(0).length <= segments.get(1).start);
+        assertTrue(segments.get(1).start + segments.get(1).length <= segments.get(2).start);
+    }
+
+    @Test
+    public void split_limitsNumberOfTaps() {
+        PcmAudio audio = recording(5000, new long[]{600, 1600, 2600, 3600}, 3);
+
+        List<TapSegmenter.Segment> segments = TapSegmenter.split(audio, 2);
+
+        assertEquals(2, segments.size());
+        assertEquals(600, segments.get(0).onsetMs, ONSET_TOLERANCE_MS);
+    }
+
+    @Test
+    public void split_findsNothingInBackgroundNoise() {
+        PcmAudio audio = recording(5000, new long[0], 4);
+
+        assertTrue(TapSegmenter.split(audio, 8).isEmpty());
+    }
+
+    @Test
+    public void split_usesTheWindowsMarkedByTheRecorder() throws IOException {
+        // Two 300 ms tap windows cut from a capture, whose taps were heard at 1.0 s and 2.5 s
+        int window = 300 * SAMPLE_RATE / 1000;
+        PcmAudio windows = recording(600, new long[]{50, 350}, 5);
+        int dataBytes = windows.getSampleCount() * 2;
+        int tapChunkSize = WavHeader.tapChunkSize(2);
+        ByteBuffer header = ByteBuffer.allocate(WavHeader.HEADER_SIZE);
+        WavHeader.write(header, SAMPLE_RATE, 1, 16, dataBytes, tapChunkSize);
+        ByteBuffer file = ByteBuffer.allocate(WavHeader.HEADER_SIZE + dataBytes + tapChunkSize)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        file.put(header);
+        for (int i = 0; i < windows.getSampleCount(); i++) {
+            file.putShort(windows.getSamples()[i]);
+        }
+        file.putInt(WavHeader.TAP_CHUNK_ID).putInt(tapChunkSize - 8).putInt(2);
+        file.putInt(0).putInt(window).putInt(SAMPLE_RATE);
+        file.putInt(window).putInt(window).putInt(SAMPLE_RATE * 5 / 2);
+        file.flip();
+        assertEquals(file.limit() - 8, file.getInt(4));
+
+        PcmAudio audio = WavReader.parse(file);
+        List<TapSegmenter.Segment> segments = TapSegmenter.split(audio, 8);
+
+        assertEquals(windows.getSampleCount(), audio.getSampleCount());
+        assertEquals(2, segments.size());
+        assertEquals(0, segments.get(0).start);
+        assertEquals(window, segments.get(1).start);
+        assertEquals(window, segments.get(1).length);
+        // Onsets in the original capture, not in the shortened file
+        assertEquals(1000, segments.get(0).onsetMs);
+        assertEquals(2500, segments.get(1).onsetMs);
+        assertEquals(1, TapSegmenter.split(audio, 1).size());
+    }
+
+    /**
+     * Quiet background noise with a sharp, decaying noise burst at each tap.
+     */
+    private static PcmAudio recording(int durationMs, long[] tapsMs, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[durationMs * SAMPLE_RATE / 1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 30);
+        }
+        for (long tapMs : tapsMs) {
+            int start = (int) (tapMs * SAMPLE_RATE / 1000);
+            for (int i = start; i < samples.length && i < start + SAMPLE_RATE / 4; i++) {
+                double envelope = Math.exp(-(i - start) / (0.03 * SAMPLE_RATE));
+                double value = samples[i] + random.nextGaussian() * 8000 * envelope;
+                samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            }
+        }
+        return new PcmAudio(samples, samples.length, SAMPLE_RATE);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.redyapp.Audio;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the single-producer/single-consumer handoff used by the live spectrum.
+ */
+public class TripleBufferTest {
+
+    @Test
+    public void acquire_returnsLatestPublishedValue() {
+        TripleBuffer<int[]> buffer = new TripleBuffer<>(new int[1], new int[1], new int[1]);
+        assertFalse(buffer.acquire());
+
+        buffer.getBackSlot()[0] = 1;
+        buffer.publish();
+        buffer.getBackSlot()[0] = 2;
+        buffer.publish();
+
+        assertTrue(buffer.acquire());
+        assertEquals(2, buffer.getFrontSlot()[0]);
+        // Nothing new since
+        assertFalse(buffer.acquire());
+        assertEquals(2, buffer.getFrontSlot()[0]);
+    }
+
+    @Test
+    public void concurrentHandoff_neverTearsOrGoesBack() throws InterruptedException {
+        // Every slot is filled with one sequence number; a torn read would mix two
+        int size = 64;
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(new long[size], new long[size], new long[size]);
+        long frames = 200_000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(() -> {
+            for (long sequence = 1; sequence <= frames; sequence++) {
+                long[] slot = buffer.getBackSlot();
+                for (int i = 0; i < size; i++) slot[i] = sequence;
+                buffer.publish();
+            }
+        });
+        Thread consumer = new Thread(() -> {
+            long last = 0;
+            while (last < frames) {
+                if (!buffer.acquire()) continue;
+                long[] slot = buffer.getFrontSlot();
+                long sequence = slot[0];
+                for (int i = 1; i < size; i++) {
+                    if (slot[i] != sequence) {
+                        failure.set(new AssertionError("torn frame " + sequence + "/" + slot[i]));
+                        return;
+                    }
+                }
+                if (sequence <= last) {
+                    failure.set(new AssertionError("went back from " + last + " to " + sequence));
+                    return;
+                }
+                last = sequence;
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join(10_000);
+        consumer.join(10_000);
+
+        assertFalse("consumer did not see the last frame", consumer.isAlive());
+        if (failure.get() != null) throw new AssertionError(failure.get());
+    }
+}
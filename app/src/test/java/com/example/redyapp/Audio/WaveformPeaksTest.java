@@ -0,0 +1,50 @@
+package com.example.redyapp.Audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the min/max downsampling used for the history waveforms.
+ */
+public class WaveformPeaksTest {
+
+    @Test
+    public void compute_keepsMinAndMaxOfEachSlice() {
+        // Four slices of 100 samples: silence, a positive spike, a negative spike, full scale
+        short[] samples = new short[400];
+        samples[150] = 16384;
+        samples[250] = -16384;
+        for (int i = 300; i < 400; i++) {
+            samples[i] = (short) (i % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE);
+        }
+
+        byte[] peaks = WaveformPeaks.compute(new PcmAudio(samples, samples.length, 16000), 4);
+
+        assertArrayEquals(new byte[]{0, 0, 0, 64, -64, 0, -128, 127}, peaks);
+        assertEquals(128, WaveformPeaks.maxAmplitude(peaks));
+    }
+
+    @Test
+    public void compute_ignoresUnusedBufferTail() {
+        // Only the first sampleCount samples belong to the recording
+        short[] samples = new short[1000];
+        samples[900] = Short.MAX_VALUE;
+
+        byte[] peaks = WaveformPeaks.compute(new PcmAudio(samples, 500, 16000), WaveformPeaks.BUCKETS);
+
+        assertEquals(2 * WaveformPeaks.BUCKETS, peaks.length);
+        assertEquals(0, WaveformPeaks.maxAmplitude(peaks));
+    }
+
+    @Test
+    public void compute_leavesEmptySlicesOfShortRecordingsAtZero() {
+        short[] samples = {8192, -8192};
+
+        byte[] peaks = WaveformPeaks.compute(new PcmAudio(samples, samples.length, 16000), 4);
+
+        assertEquals(8, peaks.length);
+        // Slices 1 and 3 hold one sample each, slices 0 and 2 none
+        assertArrayEquals(new byte[]{0, 0, 32, 32, 0, 0, -32, -32}, peaks);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.redyapp.History;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the aggregate queries of HistoryDao against an in-memory database.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HistoryDaoStatsTest {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    private HistoryDatabase database;
+    private HistoryDao historyDao;
+
+    @Before
+    public void setUp() {
+        database = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), HistoryDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        historyDao = database.historyDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void labelStats_countsAndAveragesPerLabel() {
+        long now = System.currentTimeMillis();
+        insert("Sweet", 0.9, now);
+        insert("Sweet", 0.7, now - 1000);
+        insert("Not sweet", 0.6, now - 2000);
+        // Unscored items are not part of the statistics
+        insert(HistoryItem.LABEL_PENDING, 0, now);
+        insert(HistoryItem.LABEL_FAILED, 0, now);
+
+        List<LabelStats> stats = historyDao.getLabelStats(new Date(0));
+
+        assertEquals(2, stats.size());
+        assertEquals("Sweet", stats.get(0).predictedLabel);
+        assertEquals(2, stats.get(0).count);
+        assertEquals(0.8, stats.get(0).averageConfidence, 1e-9);
+        assertEquals("Not sweet", stats.get(1).predictedLabel);
+        assertEquals(1, stats.get(1).count);
+    }
+
+    @Test
+    public void labelStats_onlyCountsItemsSince() {
+        long now = System.currentTimeMillis();
+        insert("Sweet", 0.9, now);
+        insert("Sweet", 0.5, now - 10 * DAY_MS);
+
+        List<LabelStats> stats = historyDao.getLabelStats(new Date(now - DAY_MS));
+
+        assertEquals(1, stats.size());
+        assertEquals(1, stats.get(0).count);
+        assertEquals(0.9, stats.get(0).averageConfidence, 1e-9);
+    }
+
+    @Test
+    public void dailyStats_groupsByDayAndLabel_newestDayFirst() {
+        // Noon, so the items stay on their day in any time zone offset up to 12 hours
+        long today = System.currentTimeMillis() / DAY_MS * DAY_MS + DAY_MS / 2;
+        insert("Sweet", 0.8, today);
+        insert("Sweet", 0.6, today + 1000);
+        insert("Not sweet", 0.7, today);
+        insert("Sweet", 0.9, today - DAY_MS);
+
+        List<DailyLabelStats> stats = historyDao.getDailyStats(new Date(0));
+
+        assertEquals(3, stats.size());
+        assertEquals(stats.get(0).day, stats.get(1).day);
+        assertEquals("Sweet", stats.get(0).predictedLabel);
+        assertEquals(2, stats.get(0).count);
+        assertEquals(0.7, stats.get(0).averageConfidence, 1e-9);
+        assertEquals("Not sweet", stats.get(1).predictedLabel);
+        assertTrue(stats.get(2).day.compareTo(stats.get(0).day) < 0);
+        assertEquals(1, stats.get(2).count);
+    }
+
+    private void insert(String label, double confidence, long timestamp) {
+        historyDao.insert(new HistoryItem(label, confidence, "/data/" + timestamp + ".wav", new Date(timestamp)));
+    }
+}
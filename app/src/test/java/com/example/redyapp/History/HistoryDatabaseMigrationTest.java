@@ -0,0 +1,341 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.redyapp.Prediction.PredictionCacheDao;
+import com.example.redyapp.Prediction.PredictionCacheEntry;
+import com.example.redyapp.PredictionResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Migrates databases written by every earlier schema version to the current one on the JVM
+ * (Robolectric), checks that no history is lost, and checks the query plans of the history
+ * queries. Room validates the migrated schema (tables and indexes) against the entities when
+ * the database is opened, so a migration that misses something fails here.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HistoryDatabaseMigrationTest {
+
+    private static final String TEST_DB = "migration-test";
+
+    // Schema as created by each earlier version
+    private static final String HISTORY_V1 = "CREATE TABLE IF NOT EXISTS `history_table` ("
+            + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `predictedLabel` TEXT, "
+            + "`confidence` REAL NOT NULL, `localAudioPath` TEXT, `timestamp` INTEGER)";
+    private static final String PREDICTION_CACHE_V2 = "CREATE TABLE IF NOT EXISTS `prediction_cache` ("
+            + "`contentHash` TEXT NOT NULL, `predictedLabel` TEXT, `confidence` REAL NOT NULL, "
+            + "`modelVersion` TEXT, `createdAt` INTEGER NOT NULL, PRIMARY KEY(`contentHash`))";
+    private static final String PENDING_UPLOADS_V3 = "CREATE TABLE IF NOT EXISTS `pending_uploads` ("
+            + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `audioPath` TEXT, "
+            + "`historyItemId` INTEGER NOT NULL, `attempts` INTEGER NOT NULL, "
+            + "`createdAt` INTEGER NOT NULL, `lastError` TEXT)";
+    private static final String TIMESTAMP_INDEX_V4 =
+            "CREATE INDEX IF NOT EXISTS `index_history_table_timestamp` ON `history_table` (`timestamp`)";
+    private static final String LABEL_INDEX_V4 =
+            "CREATE INDEX IF NOT EXISTS `index_history_table_predictedLabel` ON `history_table` (`predictedLabel`)";
+
+    private static final String[] SEARCH_V5 = {
+            "ALTER TABLE `history_table` ADD COLUMN `notes` TEXT",
+            "ALTER TABLE `history_table` ADD COLUMN `tags` TEXT",
+            "CREATE VIRTUAL TABLE IF NOT EXISTS `history_fts` USING FTS4("
+                    + "`predictedLabel` TEXT, `notes` TEXT, `tags` TEXT, content=`history_table`)",
+            "INSERT INTO `history_fts`(`history_fts`) VALUES ('rebuild')"};
+    // The triggers Room keeps the external-content index in sync with
+    private static final String[] SEARCH_TRIGGERS_V5 = {
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_BEFORE_UPDATE "
+                    + "BEFORE UPDATE ON `history_table` BEGIN DELETE FROM `history_fts` WHERE `docid`=OLD.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_BEFORE_DELETE "
+                    + "BEFORE DELETE ON `history_table` BEGIN DELETE FROM `history_fts` WHERE `docid`=OLD.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_AFTER_UPDATE "
+                    + "AFTER UPDATE ON `history_table` BEGIN INSERT INTO `history_fts`(`docid`, `predictedLabel`, `notes`, `tags`) "
+                    + "VALUES (NEW.`rowid`, NEW.`predictedLabel`, NEW.`notes`, NEW.`tags`); END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_AFTER_INSERT "
+                    + "AFTER INSERT ON `history_table` BEGIN INSERT INTO `history_fts`(`docid`, `predictedLabel`, `notes`, `tags`) "
+                    + "VALUES (NEW.`rowid`, NEW.`predictedLabel`, NEW.`notes`, NEW.`tags`); END"};
+
+    private static final String[] AUDIO_INFO_V6 = {
+            "ALTER TABLE `history_table` ADD COLUMN `audioCodec` TEXT",
+            "ALTER TABLE `history_table` ADD COLUMN `audioSizeBytes` INTEGER NOT NULL DEFAULT 0",
+            "ALTER TABLE `history_table` ADD COLUMN `lastPlayedAt` INTEGER",
+            "UPDATE `history_table` SET `audioCodec` = 'wav' WHERE `localAudioPath` IS NOT NULL"};
+    private static final String AUDIO_PATH_INDEX_V7 =
+            "CREATE INDEX IF NOT EXISTS `index_history_table_localAudioPath` ON `history_table` (`localAudioPath`)";
+    private static final String[] WAVEFORM_V8 = {
+            "ALTER TABLE `history_table` ADD COLUMN `durationMs` INTEGER NOT NULL DEFAULT 0",
+            "ALTER TABLE `history_table` ADD COLUMN `waveform` BLOB"};
+    private static final String[] TAP_SCORES_V9 = {
+            "ALTER TABLE `history_table` ADD COLUMN `tapScores` TEXT",
+            "ALTER TABLE `history_table` ADD COLUMN `confidenceVariance` REAL"};
+
+    private Context context;
+    private HistoryDatabase database;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        if (database != null) database.close();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrateFromVersion1_keepsHistory() {
+        createDatabase(1);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion2_keepsHistory() {
+        createDatabase(2);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion3_keepsHistory() {
+        createDatabase(3);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion4_keepsHistory() {
+        createDatabase(4);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion5_keepsHistory() {
+        createDatabase(5);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion6_keepsHistory() {
+        createDatabase(6);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion7_keepsHistory() {
+        createDatabase(7);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion8_keepsHistory() {
+        createDatabase(8);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion9_keepsHistory() {
+        createDatabase(9);
+        assertHistoryKept(openMigrated());
+    }
+
+    @Test
+    public void migrateFromVersion9_keysCacheByPredictorAndModelVersion() {
+        createDatabase(9);
+        HistoryDatabase db = openMigrated();
+        // Results cached under the old key are dropped
+        assertNull(db.predictionCacheDao().get("abc", "remote", ""));
+
+        PredictionCacheDao cache = db.predictionCacheDao();
+        cache.insert(new PredictionCacheEntry("abc", "local", "m1", "sweet", 0.9, 1000));
+        cache.insert(new PredictionCacheEntry("abc", "remote", "v1", "not sweet", 0.6, 1000));
+        cache.insert(new PredictionCacheEntry("abc", "remote", "v2", "sweet", 0.8, 2000));
+        assertEquals("sweet", cache.get("abc", "local", "m1").getPredictedLabel());
+        assertEquals("not sweet", cache.get("abc", "remote", "v1").getPredictedLabel());
+
+        // A new backend model drops only the backend's other versions
+        cache.deleteOtherVersions("remote", "v2");
+        assertNull(cache.get("abc", "remote", "v1"));
+        assertNotNull(cache.get("abc", "remote", "v2"));
+        assertNotNull(cache.get("abc", "local", "m1"));
+
+        cache.trimTo(1);
+        assertNotNull(cache.get("abc", "remote", "v2"));
+        assertNull(cache.get("abc", "local", "m1"));
+    }
+
+    @Test
+    public void migrateFromVersion8_storesTapScores() {
+        createDatabase(8);
+        HistoryDatabase db = openMigrated();
+        HistoryItem item = new HistoryItem("sweet", 0.8, "/data/d.wav", new Date(3000));
+        item.setTapScores(Arrays.asList(
+                new PredictionResponse.TapScore("sweet", 0.9, 500),
+                new PredictionResponse.TapScore("sweet", 0.7, 1500)));
+        item.setConfidenceVariance(0.02);
+        db.historyDao().insert(item);
+
+        HistoryItem stored = db.historyDao().getNewest(1).get(0);
+        assertEquals(2, stored.getTapScores().size());
+        assertEquals("sweet", stored.getTapScores().get(1).getPredictedLabel());
+        assertEquals(0.7, stored.getTapScores().get(1).getConfidence(), 1e-9);
+        assertEquals(1500, stored.getTapScores().get(1).getOnsetMs());
+        assertEquals(0.02, stored.getConfidenceVariance(), 1e-9);
+    }
+
+    @Test
+    public void migrateFromVersion5_keepsSearchIndexInSync() {
+        createDatabase(5);
+        HistoryDatabase db = openMigrated();
+        HistoryItem item = db.historyDao().getNewest(1).get(0);
+        db.historyDao().updateNotes(item.getId(), "bought at the market", "ripe");
+        db.historyDao().delete(db.historyDao().getNewest(3).get(1));
+
+        List<HistoryItem> found = db.historyDao().searchPage("market*", new Date(0), new Date(Long.MAX_VALUE),
+                0, 1, new Date(Long.MAX_VALUE), Integer.MAX_VALUE, 10);
+        assertEquals(1, found.size());
+        assertEquals(item.getId(), found.get(0).getId());
+        // The deleted row left the index
+        assertTrue(db.historyDao().searchPage("not*", new Date(0), new Date(Long.MAX_VALUE),
+                0, 1, new Date(Long.MAX_VALUE), Integer.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    public void newestPage_readsTimestampIndexWithoutSorting() {
+        createDatabase(1);
+        String plan = explain(openMigrated(),
+                "SELECT * FROM history_table ORDER BY timestamp DESC, id DESC LIMIT 30");
+        assertTrue(plan, plan.contains("index_history_table_timestamp"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void olderPage_seeksTimestampIndexWithoutSorting() {
+        createDatabase(1);
+        String plan = explain(openMigrated(),
+                "SELECT * FROM history_table WHERE timestamp <= 2000 AND (timestamp < 2000 OR id < 2) "
+                        + "ORDER BY timestamp DESC, id DESC LIMIT 30");
+        // SEARCH (a range seek), not SCAN of the whole index
+        assertTrue(plan, plan.contains("SEARCH"));
+        assertTrue(plan, plan.contains("index_history_table_timestamp"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void labelFilter_usesLabelIndex() {
+        createDatabase(1);
+        String plan = explain(openMigrated(),
+                "SELECT COUNT(*) FROM history_table WHERE predictedLabel = 'sweet'");
+        assertTrue(plan, plan.contains("index_history_table_predictedLabel"));
+    }
+
+    /**
+     * Writes a database file with the schema and user_version of an earlier release, with three history rows.
+     */
+    private void createDatabase(int version) {
+        File file = context.getDatabasePath(TEST_DB);
+        file.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.execSQL(HISTORY_V1);
+        if (version >= 2) db.execSQL(PREDICTION_CACHE_V2);
+        if (version >= 3) db.execSQL(PENDING_UPLOADS_V3);
+        if (version >= 4) {
+            db.execSQL(TIMESTAMP_INDEX_V4);
+            db.execSQL(LABEL_INDEX_V4);
+        }
+        db.execSQL("INSERT INTO history_table (predictedLabel, confidence, localAudioPath, timestamp) "
+                + "VALUES ('sweet', 0.91, '/data/a.wav', 1000)");
+        db.execSQL("INSERT INTO history_table (predictedLabel, confidence, localAudioPath, timestamp) "
+                + "VALUES ('not sweet', 0.62, '/data/b.wav', 2000)");
+        db.execSQL("INSERT INTO history_table (predictedLabel, confidence, localAudioPath, timestamp) "
+                + "VALUES ('sweet', 0.77, '/data/c.wav', 2000)");
+        if (version >= 5) {
+            // Added after the rows, so the index is filled by the rebuild; later writes go through the triggers
+            for (String sql : SEARCH_V5) db.execSQL(sql);
+            for (String sql : SEARCH_TRIGGERS_V5) db.execSQL(sql);
+        }
+        if (version >= 6) {
+            for (String sql : AUDIO_INFO_V6) db.execSQL(sql);
+        }
+        if (version >= 7) db.execSQL(AUDIO_PATH_INDEX_V7);
+        if (version >= 8) {
+            for (String sql : WAVEFORM_V8) db.execSQL(sql);
+        }
+        if (version >= 9) {
+            for (String sql : TAP_SCORES_V9) db.execSQL(sql);
+            db.execSQL("INSERT INTO prediction_cache (contentHash, predictedLabel, confidence, modelVersion, createdAt) "
+                    + "VALUES ('abc', 'sweet', 0.9, NULL, 1000)");
+        }
+        db.setVersion(version);
+        db.close();
+    }
+
+    private HistoryDatabase openMigrated() {
+        database = Room.databaseBuilder(context, HistoryDatabase.class, TEST_DB)
+                .addMigrations(HistoryDatabase.ALL_MIGRATIONS)
+                .allowMainThreadQueries()
+                .build();
+        return database;
+    }
+
+    private static void assertHistoryKept(HistoryDatabase db) {
+        List<HistoryItem> items = db.historyDao().getNewest(10);
+        assertEquals(3, items.size());
+        // Newest first, ties on the timestamp broken by id
+        assertEquals("sweet", items.get(0).getPredictedLabel());
+        assertEquals(0.77, items.get(0).getConfidence(), 1e-9);
+        assertEquals("/data/c.wav", items.get(0).getLocalAudioPath());
+        assertEquals(2000, items.get(0).getTimestamp().getTime());
+        assertEquals("not sweet", items.get(1).getPredictedLabel());
+        assertEquals("/data/a.wav", items.get(2).getLocalAudioPath());
+        // Existing recordings are known to be WAV; their sizes are filled in later
+        assertEquals(HistoryItem.CODEC_WAV, items.get(0).getAudioCodec());
+        assertEquals(0, items.get(0).getAudioSizeBytes());
+        // Waveforms are computed later for every recording
+        assertEquals(0, items.get(0).getDurationMs());
+        assertNull(items.get(0).getWaveform());
+        assertEquals(3, db.historyDao().getItemsWithoutWaveform(10).size());
+        // Recordings scored as a whole have no tap scores
+        assertNull(items.get(0).getTapScores());
+        assertNull(items.get(0).getConfidenceVariance());
+
+        List<HistoryItem> older = db.historyDao().getOlderThan(items.get(1).getTimestamp(), items.get(1).getId(), 10);
+        assertEquals(1, older.size());
+        assertEquals(items.get(2).getId(), older.get(0).getId());
+
+        // Existing rows were added to the full-text index
+        List<HistoryItem> found = db.historyDao().searchPage("not*", new Date(0), new Date(Long.MAX_VALUE),
+                0, 1, new Date(Long.MAX_VALUE), Integer.MAX_VALUE, 10);
+        assertEquals(1, found.size());
+        assertEquals("/data/b.wav", found.get(0).getLocalAudioPath());
+
+        // Tables added by later versions are usable
+        assertEquals(0, db.pendingUploadDao().count());
+        assertNull(db.predictionCacheDao().get("missing", "remote", ""));
+    }
+
+    private static String explain(HistoryDatabase db, String sql) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.query("EXPLAIN QUERY PLAN " + sql, null)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
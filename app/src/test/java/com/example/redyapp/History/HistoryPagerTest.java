@@ -0,0 +1,99 @@
+package com.example.redyapp.History;
+
+import android.os.Looper;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks that HistoryPager keeps only the pages near the visible rows, with stable positions.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HistoryPagerTest {
+
+    private static final int ITEMS = 500;
+
+    private HistoryDatabase database;
+    private HistoryPager pager;
+    private List<HistoryItem> rows = Collections.emptyList();
+
+    @Before
+    public void setUp() {
+        database = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), HistoryDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        HistoryDao historyDao = database.historyDao();
+        // Item i is the i-th oldest
+        for (int i = 1; i <= ITEMS; i++) {
+            historyDao.insert(new HistoryItem("Sweet", 0.9, null, new Date(i * 1000L)));
+        }
+        pager = new HistoryPager(database, Runnable::run, items -> rows = items);
+        pager.start();
+        idle();
+    }
+
+    @After
+    public void tearDown() {
+        pager.stop();
+        database.close();
+    }
+
+    @Test
+    public void scrolling_keepsOnlyThePagesNearTheVisibleRows() {
+        assertEquals(HistoryPager.PAGE_SIZE, rows.size());
+
+        scrollTo(ITEMS - 10);
+
+        assertEquals(ITEMS, rows.size());
+        // Placeholders above, loaded rows at the end, each in its place
+        assertNull(rows.get(0));
+        for (int i = ITEMS - 10; i < ITEMS; i++) {
+            assertEquals(new Date((ITEMS - i) * 1000L), rows.get(i).getTimestamp());
+        }
+        int loaded = 0;
+        for (HistoryItem item : rows) {
+            if (item != null) loaded++;
+        }
+        assertTrue("loaded " + loaded, loaded <= 2 * HistoryPager.KEEP_DISTANCE + 2 * HistoryPager.PAGE_SIZE);
+    }
+
+    @Test
+    public void scrollingBack_loadsTheDroppedPagesAgain() {
+        scrollTo(ITEMS - 10);
+        for (int first = ITEMS - 10; first >= 0; first -= 5) {
+            pager.loadAround(first, first + 9);
+            idle();
+        }
+
+        assertEquals(ITEMS, rows.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(new Date((ITEMS - i) * 1000L), rows.get(i).getTimestamp());
+        }
+        assertNull(rows.get(ITEMS - 1));
+    }
+
+    // Moves ten visible rows down the list a few at a time, as a fling does
+    private void scrollTo(int position) {
+        for (int first = 0; first <= position; first += 5) {
+            pager.loadAround(first, Math.min(first + 9, rows.size() - 1));
+            idle();
+        }
+    }
+
+    private static void idle() {
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
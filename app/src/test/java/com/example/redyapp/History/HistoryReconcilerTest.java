@@ -0,0 +1,159 @@
+package com.example.redyapp.History;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.redyapp.Prediction.PendingUpload;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks HistoryReconciler against an in-memory database and temporary directories.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HistoryReconcilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HistoryDatabase database;
+    private HistoryReconciler reconciler;
+    private File audioDirectory;
+    private File cacheDirectory;
+    private long old;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = ApplicationProvider.getApplicationContext();
+        database = Room.inMemoryDatabaseBuilder(context, HistoryDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        audioDirectory = folder.newFolder("history_audio");
+        cacheDirectory = folder.newFolder("cache");
+        reconciler = new HistoryReconciler(database, audioDirectory, Arrays.asList(cacheDirectory, null),
+                context.getSharedPreferences("reconciler_test", Context.MODE_PRIVATE));
+        old = System.currentTimeMillis() - HistoryReconciler.CACHE_MAX_AGE_MS - 1000;
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void deletesOnlyOldUnreferencedFiles_andReportsBytes() throws IOException {
+        File referenced = createFile(audioDirectory, "referenced.wav", 100, old);
+        File queued = createFile(audioDirectory, "queued.wav", 100, old);
+        File orphan = createFile(audioDirectory, "orphan.wav", 300, old);
+        File young = createFile(audioDirectory, "young.wav", 100, System.currentTimeMillis());
+        insertItem("Sweet", referenced);
+        int pendingId = insertItem(HistoryItem.LABEL_PENDING, queued);
+        database.pendingUploadDao().insert(new PendingUpload(queued.getAbsolutePath(), pendingId, 0, 0, null));
+
+        HistoryReconciler.Report report = reconciler.reconcile(() -> false);
+
+        assertFalse(orphan.exists());
+        assertTrue(referenced.exists());
+        assertTrue(queued.exists());
+        assertTrue(young.exists()); // May belong to an import in progress
+        assertEquals(1, report.filesDeleted);
+        assertEquals(300, report.bytesReclaimed);
+    }
+
+    @Test
+    public void flagsRowsWhoseFileIsGone_keepingThePrediction() {
+        int id = insertItem("Sweet", new File(audioDirectory, "missing.wav"));
+
+        HistoryReconciler.Report report = reconciler.reconcile(() -> false);
+
+        HistoryItem item = database.historyDao().getNewest(1).get(0);
+        assertEquals(id, item.getId());
+        assertNull(item.getLocalAudioPath());
+        assertEquals("Sweet", item.getPredictedLabel());
+        assertEquals(1, report.rowsFlagged);
+    }
+
+    @Test
+    public void clearAudio_leavesRowRepointedByCompaction() throws IOException {
+        File wav = new File(audioDirectory, "melon.wav");
+        int id = insertItem("Sweet", wav);
+        // Compaction points the row at the new file and deletes the WAV after the check read the row
+        File aac = createFile(audioDirectory, "melon.m4a", 40, old);
+        database.historyDao().updateAudio(id, aac.getAbsolutePath(), HistoryItem.CODEC_AAC, 40);
+
+        assertEquals(0, database.historyDao().clearAudio(id, wav.getAbsolutePath()));
+        assertEquals(aac.getAbsolutePath(), database.historyDao().getNewest(1).get(0).getLocalAudioPath());
+        // Still referenced, so not an orphan either
+        reconciler.reconcile(() -> false);
+        assertTrue(aac.exists());
+    }
+
+    @Test
+    public void dropsQueueEntriesWhoseFileIsGone() {
+        File missing = new File(audioDirectory, "missing.wav");
+        int id = insertItem(HistoryItem.LABEL_PENDING, missing);
+        database.pendingUploadDao().insert(new PendingUpload(missing.getAbsolutePath(), id, 0, 0, null));
+
+        HistoryReconciler.Report report = reconciler.reconcile(() -> false);
+
+        assertEquals(0, database.pendingUploadDao().count());
+        assertEquals(HistoryItem.LABEL_FAILED, database.historyDao().getNewest(1).get(0).getPredictedLabel());
+        assertEquals(1, report.queueEntriesDropped);
+    }
+
+    @Test
+    public void deletesStaleCacheFiles() throws IOException {
+        File stale = createFile(cacheDirectory, "recorded_watermelon_thump.wav", 50, old);
+        File fresh = createFile(cacheDirectory, "upload.wav", 50, System.currentTimeMillis());
+
+        HistoryReconciler.Report report = reconciler.reconcile(() -> false);
+
+        assertFalse(stale.exists());
+        assertTrue(fresh.exists());
+        assertEquals(50, report.bytesReclaimed);
+    }
+
+    @Test
+    public void stoppedRun_changesNothing() throws IOException {
+        File orphan = createFile(audioDirectory, "orphan.wav", 10, old);
+        File stale = createFile(cacheDirectory, "recorded_watermelon_thump.wav", 50, old);
+
+        HistoryReconciler.Report report = reconciler.reconcile(() -> true);
+
+        assertTrue(orphan.exists());
+        assertTrue(stale.exists());
+        assertEquals(0, report.filesDeleted);
+    }
+
+    private int insertItem(String label, File audio) {
+        HistoryItem item = new HistoryItem(label, 0.9, audio.getAbsolutePath(), new Date());
+        item.setAudioCodec(HistoryItem.CODEC_WAV);
+        item.setAudioSizeBytes(audio.length());
+        return (int) database.historyDao().insert(item);
+    }
+
+    private static File createFile(File directory, String name, int size, long lastModified) throws IOException {
+        File file = new File(directory, name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+}
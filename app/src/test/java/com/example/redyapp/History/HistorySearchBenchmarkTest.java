@@ -0,0 +1,153 @@
+package com.example.redyapp.History;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmarks the filtered and full-text history queries against the unfiltered page query
+ * on a history of 20,000 items, and checks that they need no sort of the matching rows.
+ * Timings are medians of repeated runs on the JVM's SQLite; the bound is deliberately loose
+ * (same order of magnitude as the unfiltered page) so the test only fails on a plan regression
+ * such as a full scan and sort, not on machine noise.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HistorySearchBenchmarkTest {
+
+    private static final int ITEMS = 20_000;
+    private static final int PAGE = HistoryPager.PAGE_SIZE;
+    private static final int WARM_UP_RUNS = 3;
+    private static final int MEASURED_RUNS = 15;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final String[] TAGS = {"ripe", "heavy", "garden", "shop"};
+
+    private HistoryDatabase database;
+    private HistoryDao historyDao;
+    private long now;
+
+    @Before
+    public void setUp() {
+        database = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), HistoryDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        historyDao = database.historyDao();
+        now = System.currentTimeMillis();
+
+        // A year of history, with tags on every item and notes on one in a hundred
+        Random random = new Random(42);
+        database.runInTransaction(() -> {
+            for (int i = 0; i < ITEMS; i++) {
+                HistoryItem item = new HistoryItem(random.nextBoolean() ? "Sweet" : "Not sweet",
+                        0.5 + random.nextDouble() / 2, "/data/rec_" + i + ".wav",
+                        new Date(now - (long) i * 365 * DAY_MS / ITEMS));
+                item.setTags(TAGS[random.nextInt(TAGS.length)]);
+                if (i % 100 == 0) item.setNotes("Bought at the farmers market");
+                historyDao.insert(item);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void filteredQueries_areAsFastAsTheUnfilteredPage() {
+        Date anyTime = new Date(0);
+        Date forever = new Date(Long.MAX_VALUE);
+        Date lastMonth = new Date(now - 30 * DAY_MS);
+        List<HistoryItem> middle = historyDao.getNewest(ITEMS / 2);
+        HistoryItem deep = middle.get(middle.size() - 1);
+
+        double unfiltered = median(() -> historyDao.getNewest(PAGE));
+        double unfilteredDeep = median(() -> historyDao.getOlderThan(deep.getTimestamp(), deep.getId(), PAGE));
+        double dateAndConfidence = median(() -> historyDao.getFilteredPage(lastMonth, forever, 0.8, 1,
+                forever, Integer.MAX_VALUE, PAGE));
+        double confidenceDeep = median(() -> historyDao.getFilteredPage(anyTime, forever, 0.8, 1,
+                deep.getTimestamp(), deep.getId(), PAGE));
+        double commonWord = median(() -> historyDao.searchPage("sweet*", anyTime, forever, 0, 1,
+                forever, Integer.MAX_VALUE, PAGE));
+        double rareWord = median(() -> historyDao.searchPage("farmers*", anyTime, forever, 0, 1,
+                forever, Integer.MAX_VALUE, PAGE));
+        double wordAndFilters = median(() -> historyDao.searchPage("ripe*", lastMonth, forever, 0.8, 1,
+                forever, Integer.MAX_VALUE, PAGE));
+
+        double bound = Math.max(unfiltered, unfilteredDeep) * 10 + 5;
+        assertTrue("date+confidence " + dateAndConfidence, dateAndConfidence <= bound);
+        assertTrue("confidence deep " + confidenceDeep, confidenceDeep <= bound);
+        assertTrue("common word " + commonWord, commonWord <= bound);
+        assertTrue("rare word " + rareWord, rareWord <= bound);
+        assertTrue("word+filters " + wordAndFilters, wordAndFilters <= bound);
+    }
+
+    @Test
+    public void filteredPage_readsTimestampIndexWithoutSorting() {
+        String plan = explain("SELECT * FROM history_table WHERE timestamp BETWEEN 0 AND 9000000000000 "
+                + "AND confidence BETWEEN 0.8 AND 1 AND timestamp <= 9000000000000 "
+                + "AND (timestamp < 9000000000000 OR id < 100) ORDER BY timestamp DESC, id DESC LIMIT 30");
+        assertTrue(plan, plan.contains("index_history_table_timestamp"));
+        assertFalse(plan, plan.contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void searchPage_returnsMatchesNewestFirstAcrossPages() {
+        Date anyTime = new Date(0);
+        Date forever = new Date(Long.MAX_VALUE);
+        List<HistoryItem> first = historyDao.searchPage(new HistoryFilter("FARMERS!", null, null, 0, 1).getMatchQuery(),
+                anyTime, forever, 0, 1, forever, Integer.MAX_VALUE, PAGE);
+        assertEquals(PAGE, first.size());
+        HistoryItem last = first.get(first.size() - 1);
+        List<HistoryItem> second = historyDao.searchPage("farmers*", anyTime, forever, 0, 1,
+                last.getTimestamp(), last.getId(), PAGE);
+        // One item in a hundred has notes
+        assertEquals(ITEMS / 100 - PAGE, second.size());
+        assertTrue(second.get(0).getTimestamp().before(last.getTimestamp()));
+        for (HistoryItem item : second) {
+            assertEquals("Bought at the farmers market", item.getNotes());
+        }
+    }
+
+    /**
+     * Runs a query a few times to warm up, then returns the median of the measured runs in ms.
+     */
+    private static double median(Supplier<List<HistoryItem>> query) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            query.get();
+        }
+        double[] runs = new double[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            runs[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(runs);
+        return runs[MEASURED_RUNS / 2];
+    }
+
+    private String explain(String sql) {
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = database.query("EXPLAIN QUERY PLAN " + sql, null)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.redyapp.Prediction;
+
+import com.example.redyapp.PredictionResponse;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the confidence-weighted vote over the taps of a recording.
+ */
+public class EnsembleVoteTest {
+
+    @Test
+    public void combine_agreeingTaps_averageTheirConfidence() {
+        PredictionResponse verdict = EnsembleVote.combine(Arrays.asList(
+                tap("sweet", 0.9, 500), tap("sweet", 0.8, 1500), tap("sweet", 0.7, 2500)));
+
+        assertEquals("sweet", verdict.getPredictedLabel());
+        assertEquals(0.8, verdict.getConfidence(), 1e-9);
+        assertEquals(0.01, verdict.getConfidenceVariance(), 1e-9);
+        assertEquals(3, verdict.getTapScores().size());
+        assertEquals(1500, verdict.getTapScores().get(1).getOnsetMs());
+    }
+
+    @Test
+    public void combine_weighsVotesByConfidence() {
+        // Two unsure taps are outvoted by a confident one
+        PredictionResponse verdict = EnsembleVote.combine(Arrays.asList(
+                tap("not sweet", 0.4, 500), tap("sweet", 0.95, 1500), tap("not sweet", 0.45, 2500)));
+
+        assertEquals("sweet", verdict.getPredictedLabel());
+        // The dissenting taps count as 0 for the winner
+        assertEquals(0.95 / 3, verdict.getConfidence(), 1e-9);
+        assertTrue(verdict.getConfidenceVariance() > 0.25);
+    }
+
+    @Test
+    public void combine_tieGoesToEarlierTap() {
+        PredictionResponse verdict = EnsembleVote.combine(Arrays.asList(
+                tap("sweet", 0.6, 500), tap("not sweet", 0.6, 1500)));
+
+        assertEquals("sweet", verdict.getPredictedLabel());
+    }
+
+    @Test
+    public void combine_singleTap_hasNoVariance() {
+        PredictionResponse verdict = EnsembleVote.combine(Collections.singletonList(tap("sweet", 0.7, 500)));
+
+        assertEquals("sweet", verdict.getPredictedLabel());
+        assertEquals(0.7, verdict.getConfidence(), 1e-9);
+        assertEquals(0.0, verdict.getConfidenceVariance(), 0.0);
+    }
+
+    private static PredictionResponse.TapScore tap(String label, double confidence, long onsetMs) {
+        return new PredictionResponse.TapScore(label, confidence, onsetMs);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.redyapp.Prediction;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the model file parser and the evaluator on a tiny hand-built model.
+ */
+public class LocalModelTest {
+
+    private static final int MAGIC = 0x4D594452;
+
+    @Test
+    public void load_tinyModel_readsHeaderAndEvaluates() throws IOException {
+        LocalModel model = LocalModel.load(ByteBuffer.wrap(tinyModel(1, LocalModel.ACTIVATION_NONE)));
+
+        assertEquals("tiny-1", model.getModelVersion());
+        assertEquals(2, model.getMelBands());
+        assertArrayEquals(new String[]{"sweet", "un_sweet"}, model.getLabels());
+
+        // Frames (band 0, band 1): (1, 0), (3, 2), (5, 4)
+        // Convolution, kernel 2: out0 = x[t][0] + x[t+1][0] -> 4, 8
+        //                        out1 = x[t][1] - x[t+1][1] -> -2, -2, cut to 0 by the ReLU
+        // Average pool -> (6, 0); the dense layer is the identity
+        float[] scores = model.evaluate(new float[]{1, 0, 3, 2, 5, 4}, 3);
+        assertArrayEquals(new float[]{6f, 0f}, scores, 1e-6f);
+    }
+
+    @Test
+    public void evaluate_softmaxHead_returnsProbabilities() throws IOException {
+        LocalModel model = LocalModel.load(ByteBuffer.wrap(tinyModel(1, LocalModel.ACTIVATION_SOFTMAX)));
+
+        float[] scores = model.evaluate(new float[]{1, 0, 3, 2, 5, 4}, 3);
+
+        double expected = Math.exp(6) / (Math.exp(6) + 1);
+        assertEquals(expected, scores[0], 1e-5);
+        assertEquals(1 - expected, scores[1], 1e-5);
+    }
+
+    @Test
+    public void evaluate_shorterThanKernel_isZeroPadded() throws IOException {
+        LocalModel model = LocalModel.load(ByteBuffer.wrap(tinyModel(1, LocalModel.ACTIVATION_NONE)));
+
+        // One frame: out0 = 7 + 0, out1 = 1 - 0
+        assertArrayEquals(new float[]{7f, 1f}, model.evaluate(new float[]{7, 1}, 1), 1e-6f);
+    }
+
+    @Test
+    public void load_truncatedFile_fails() {
+        byte[] model = tinyModel(1, LocalModel.ACTIVATION_NONE);
+        for (int length : new int[]{0, 6, 20, model.length / 2, model.length - 1}) {
+            try {
+                LocalModel.load(ByteBuffer.wrap(Arrays.copyOf(model, length)));
+                fail("loaded a model cut to " + length + " bytes");
+            } catch (IOException expected) {
+                // Every truncation is reported as an I/O error, never as a runtime exception
+            }
+        }
+    }
+
+    @Test
+    public void load_corruptFile_fails() {
+        byte[] badMagic = tinyModel(1, LocalModel.ACTIVATION_NONE);
+        badMagic[0] ^= 0xFF;
+        assertLoadFails(badMagic, "Not a model file");
+
+        // A layer count far beyond the data
+        ByteBuffer header = header(1, "tiny-1").putInt(1000);
+        assertLoadFails(Arrays.copyOf(header.array(), header.position()), "Corrupt model file");
+    }
+
+    @Test
+    public void load_otherFormatVersion_fails() {
+        assertLoadFails(tinyModel(2, LocalModel.ACTIVATION_NONE), "Unsupported model format: 2");
+    }
+
+    @Test
+    public void load_mismatchedLayerShapes_fails() {
+        ByteBuffer buffer = header(1, "tiny-1").putInt(2);
+        // Dense layer straight after the input: not allowed before pooling
+        buffer.put(LocalModel.LAYER_GLOBAL_AVG_POOL).put(LocalModel.ACTIVATION_NONE);
+        buffer.put(LocalModel.LAYER_DENSE).put(LocalModel.ACTIVATION_NONE).putInt(3).putInt(2);
+        putFloats(buffer, new float[6]);
+        putFloats(buffer, new float[2]);
+        assertLoadFails(Arrays.copyOf(buffer.array(), buffer.position()), "Layer 1 expects 3 inputs, got 2");
+    }
+
+    private static void assertLoadFails(byte[] model, String message) {
+        try {
+            LocalModel.load(ByteBuffer.wrap(model));
+            fail("loaded an invalid model");
+        } catch (IOException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    /**
+     * Conv1D (2 -> 2, kernel 2, ReLU), global average pool, dense identity (2 -> 2).
+     */
+    private static byte[] tinyModel(int format, byte headActivation) {
+        ByteBuffer buffer = header(format, "tiny-1").putInt(3);
+        buffer.put(LocalModel.LAYER_CONV1D).put(LocalModel.ACTIVATION_RELU).putInt(2).putInt(2).putInt(2);
+        // weights[out][in][kernel]
+        putFloats(buffer, new float[]{
+                1, 1, 0, 0,    // out0: sum of band 0 over the kernel
+                0, 0, 1, -1}); // out1: difference of band 1
+        putFloats(buffer, new float[]{0, 0});
+        buffer.put(LocalModel.LAYER_GLOBAL_AVG_POOL).put(LocalModel.ACTIVATION_NONE);
+        buffer.put(LocalModel.LAYER_DENSE).put(headActivation).putInt(2).putInt(2);
+        putFloats(buffer, new float[]{1, 0, 0, 1});
+        putFloats(buffer, new float[]{0, 0});
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static ByteBuffer header(int format, String version) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(format);
+        putString(buffer, version);
+        buffer.putInt(2).putInt(2);
+        putString(buffer, "sweet");
+        putString(buffer, "un_sweet");
+        return buffer;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static void putFloats(ByteBuffer buffer, float[] values) {
+        for (float value : values) buffer.putFloat(value);
+    }
+}
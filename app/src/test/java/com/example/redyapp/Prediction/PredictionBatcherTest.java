@@ -0,0 +1,375 @@
+package com.example.redyapp.Prediction;
+
+import com.example.redyapp.ApiService;
+import com.example.redyapp.PredictionResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the PredictionBatcher against a local MockWebServer standing in for the prediction API.
+ */
+public class PredictionBatcherTest {
+
+    private static final long WINDOW_MS = 20;
+
+    private MockWebServer server;
+    private ApiService apiService;
+    // Stands in for AppExecutors.scheduler()
+    private ScheduledExecutorService scheduler;
+    private final List<File> files = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        apiService = new Retrofit.Builder()
+                .baseUrl(server.url("/"))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build()
+                .create(ApiService.class);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        scheduler.shutdownNow();
+        server.shutdown();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void submissionsWithinWindow_areSentAsOneRequestAndAnsweredInOrder() throws Exception {
+        server.enqueue(new MockResponse().setBody(
+                "[{\"predicted_label\":\"sweet\",\"confidence\":0.9},"
+                        + "{\"predicted_label\":\"not sweet\",\"confidence\":0.6},"
+                        + "{\"predicted_label\":\"sweet\",\"confidence\":0.7}]"));
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 16, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(3);
+        for (int i = 0; i < 3; i++) {
+            batcher.predict(createWav("melon" + i), recorder.callback(i));
+        }
+        assertTrue(recorder.await());
+
+        assertEquals(1, server.getRequestCount());
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/predict/batch", request.getPath());
+        String body = request.getBody().readUtf8();
+        assertTrue(body.indexOf("melon0") < body.indexOf("melon1"));
+        assertTrue(body.indexOf("melon1") < body.indexOf("melon2"));
+        assertEquals("sweet", recorder.labels[0]);
+        assertEquals("not sweet", recorder.labels[1]);
+        assertEquals("sweet", recorder.labels[2]);
+    }
+
+    @Test
+    public void fullBatch_isSentWithoutWaitingForWindow() throws Exception {
+        server.enqueue(new MockResponse().setBody(
+                "[{\"predicted_label\":\"sweet\",\"confidence\":0.9},"
+                        + "{\"predicted_label\":\"sweet\",\"confidence\":0.8}]"));
+        // A window far longer than the await below
+        PredictionBatcher batcher = new PredictionBatcher(apiService, 60_000, 2, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(2);
+        batcher.predict(createWav("a"), recorder.callback(0));
+        batcher.predict(createWav("b"), recorder.callback(1));
+        assertTrue(recorder.await());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void canceledBeforeFlush_isLeftOutOfTheBatch() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"predicted_label\":\"sweet\",\"confidence\":0.9}"));
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 16, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(1);
+        PredictionTask canceled = batcher.predict(createWav("dropped"), recorder.callback(1));
+        batcher.predict(createWav("kept"), recorder.callback(0));
+        canceled.cancel();
+        assertTrue(recorder.await());
+
+        // The one left is sent on its own
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/predict", request.getPath());
+        assertFalse(request.getBody().readUtf8().contains("dropped"));
+        assertEquals("sweet", recorder.labels[0]);
+        assertNull(recorder.labels[1]);
+    }
+
+    @Test
+    public void mismatchedResultCount_failsEverySubmission() throws Exception {
+        server.enqueue(new MockResponse().setBody("[{\"predicted_label\":\"sweet\",\"confidence\":0.9}]"));
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 16, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(2);
+        batcher.predict(createWav("a"), recorder.callback(0));
+        batcher.predict(createWav("b"), recorder.callback(1));
+        assertTrue(recorder.await());
+        assertNotNull(recorder.errors[0]);
+        assertNotNull(recorder.errors[1]);
+    }
+
+    @Test
+    public void manyRecordings_costOneRequestPerFullBatch() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String body = request.getBody().readUtf8();
+                int parts = body.split("name=\"files\"", -1).length - 1;
+                StringBuilder json = new StringBuilder("[");
+                for (int i = 0; i < parts; i++) {
+                    if (i > 0) json.append(',');
+                    json.append("{\"predicted_label\":\"sweet\",\"confidence\":0.9}");
+                }
+                return new MockResponse().setBody(json.append(']').toString());
+            }
+        });
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 3, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(8);
+        for (int i = 0; i < 8; i++) {
+            batcher.predict(createWav("melon" + i), recorder.callback(i));
+        }
+        assertTrue(recorder.await());
+
+        // Two full batches of three and the remaining two when the window closes, instead of eight
+        assertEquals(3, server.getRequestCount());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("sweet", recorder.labels[i]);
+        }
+    }
+
+    @Test
+    public void rejectedRequest_reportsTheStatusCode() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 16, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(1);
+        batcher.predict(createWav("a"), recorder.callback(0));
+        assertTrue(recorder.await());
+
+        assertEquals(503, ((PredictionHttpException) recorder.causes[0]).getCode());
+        assertTrue(((PredictionHttpException) recorder.causes[0]).isRetryable());
+    }
+
+    @Test
+    public void droppedConnection_isReportedAsNetworkFailure() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 16, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(1);
+        batcher.predict(createWav("a"), recorder.callback(0));
+        assertTrue(recorder.await());
+
+        assertTrue(String.valueOf(recorder.causes[0]), recorder.causes[0] instanceof PredictionNetworkException);
+    }
+
+    @Test
+    public void malformedResponse_isNotReportedAsNetworkFailure() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"predicted_label\": sweet"));
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 16, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(1);
+        batcher.predict(createWav("a"), recorder.callback(0));
+        assertTrue(recorder.await());
+
+        assertNotNull(recorder.errors[0]);
+        assertFalse(recorder.causes[0] instanceof PredictionNetworkException);
+    }
+
+    @Test
+    public void singleFeatures_goToTheSingleEndpoint() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"predicted_label\":\"sweet\",\"confidence\":0.9}"));
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 16, scheduler, Runnable::run);
+
+        Recorder recorder = new Recorder(1);
+        batcher.predictFeatures(new byte[]{1, 2, 3, 4}, "a", recorder.callback(0));
+        assertTrue(recorder.await());
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/predict/features", request.getPath());
+        assertEquals(4, request.getBodySize());
+        assertEquals("sweet", recorder.labels[0]);
+    }
+
+    @Test
+    public void missingBatchRoute_fallsBackToSingleCalls() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if ("/predict/batch".equals(request.getPath())) return new MockResponse().setResponseCode(404);
+                return new MockResponse().setBody("{\"predicted_label\":\"sweet\",\"confidence\":0.9}");
+            }
+        });
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, 16, scheduler, Runnable::run);
+
+        Recorder first = new Recorder(3);
+        for (int i = 0; i < 3; i++) {
+            batcher.predict(createWav("melon" + i), first.callback(i));
+        }
+        assertTrue(first.await());
+        Recorder second = new Recorder(2);
+        for (int i = 0; i < 2; i++) {
+            batcher.predict(createWav("later" + i), second.callback(i));
+        }
+        assertTrue(second.await());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("sweet", first.labels[i]);
+        }
+        assertEquals("sweet", second.labels[0]);
+        assertEquals("sweet", second.labels[1]);
+        // One rejected batch, then every recording on its own; the route is not tried again
+        int batchRequests = 0;
+        for (int i = server.getRequestCount(); i > 0; i--) {
+            if ("/predict/batch".equals(server.takeRequest().getPath())) batchRequests++;
+        }
+        assertEquals(1, batchRequests);
+        assertEquals(1 + 5, server.getRequestCount());
+    }
+
+    @Test
+    public void batchedRecordings_finishSoonerThanSingleCalls() throws Exception {
+        final int count = 16;
+        final long latencyMs = 100;
+        // Every request costs the same round trip, whatever it carries
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String result = "{\"predicted_label\":\"sweet\",\"confidence\":0.9}";
+                if ("/predict/batch".equals(request.getPath())) {
+                    StringBuilder json = new StringBuilder("[");
+                    for (int i = 0; i < count; i++) {
+                        if (i > 0) json.append(',');
+                        json.append(result);
+                    }
+                    result = json.append(']').toString();
+                }
+                return new MockResponse().setBody(result).setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS);
+            }
+        });
+
+        // N single calls, as the app made before batching
+        Recorder singles = new Recorder(count);
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Predictor.Callback callback = singles.callback(i);
+            RequestBody wav = RequestBody.create(createWav("melon" + i), MediaType.parse("audio/wav"));
+            apiService.predictWatermelonSweetness(MultipartBody.Part.createFormData("file", "melon" + i, wav))
+                    .enqueue(new Callback<PredictionResponse>() {
+                        @Override
+                        public void onResponse(Call<PredictionResponse> call, Response<PredictionResponse> response) {
+                            callback.onResult(response.body());
+                        }
+
+                        @Override
+                        public void onFailure(Call<PredictionResponse> call, Throwable t) {
+                            callback.onError(t.getMessage(), t);
+                        }
+                    });
+        }
+        assertTrue(singles.await());
+        double singleMs = (System.nanoTime() - start) / 1e6;
+        int singleRequests = server.getRequestCount();
+
+        PredictionBatcher batcher = new PredictionBatcher(apiService, WINDOW_MS, count, scheduler, Runnable::run);
+        Recorder batched = new Recorder(count);
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            batcher.predict(createWav("melon" + i), batched.callback(i));
+        }
+        assertTrue(batched.await());
+        double batchedMs = (System.nanoTime() - start) / 1e6;
+        int batchedRequests = server.getRequestCount() - singleRequests;
+
+        for (int i = 0; i < count; i++) {
+            assertEquals("sweet", singles.labels[i]);
+            assertEquals("sweet", batched.labels[i]);
+        }
+        assertEquals(count, singleRequests);
+        assertEquals(1, batchedRequests);
+        // OkHttp runs at most five calls per host at once, so the single calls pay the round trip
+        // about count / 5 times; the batch pays it once, plus the window
+        String timings = "batched " + batchedMs + " ms, single " + singleMs + " ms";
+        assertTrue(timings, batchedMs < singleMs);
+        assertTrue(timings, batchedMs < 2 * latencyMs + WINDOW_MS + 500);
+    }
+
+    private File createWav(String name) throws IOException {
+        File file = File.createTempFile(name + "_", ".wav");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[256]);
+        }
+        files.add(file);
+        return file;
+    }
+
+    /**
+     * Collects callback results by submission index.
+     */
+    private static final class Recorder {
+        final String[] labels;
+        final String[] errors;
+        final Throwable[] causes;
+        private final CountDownLatch latch;
+
+        Recorder(int expected) {
+            int slots = Math.max(8, expected);
+            labels = new String[slots];
+            errors = new String[slots];
+            causes = new Throwable[slots];
+            latch = new CountDownLatch(expected);
+        }
+
+        Predictor.Callback callback(int index) {
+            return new Predictor.Callback() {
+                @Override
+                public void onResult(PredictionResponse prediction) {
+                    labels[index] = prediction.getPredictedLabel();
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(String message, Throwable cause) {
+                    errors[index] = message;
+                    causes[index] = cause;
+                    latch.countDown();
+                }
+            };
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.redyapp.Prediction;
+
+import com.example.redyapp.Audio.PcmStream;
+import com.example.redyapp.Audio.WavHeader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.BufferedSink;
+import okio.Okio;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a StreamingWavRequestBody sends the captured audio while the capture is still running.
+ */
+public class StreamingWavRequestBodyTest {
+
+    private static final int CHUNK_BYTES = 640;
+
+    @Test
+    public void capturedChunks_areWrittenBeforeTheCaptureEnds() throws Exception {
+        PcmStream pcmStream = new PcmStream(CHUNK_BYTES);
+        // Synchronized, so the test can read what the upload thread has written so far
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Stands in for the OkHttp thread writing the request
+        Thread upload = new Thread(() -> {
+            try (BufferedSink sink = Okio.buffer(Okio.sink(received))) {
+                new StreamingWavRequestBody(pcmStream).writeTo(sink);
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        upload.start();
+
+        // The capture thread hands over the first chunk and keeps recording
+        pcmStream.write(chunk((byte) 1));
+        assertTrue(awaitSize(received, WavHeader.HEADER_SIZE + CHUNK_BYTES));
+        assertTrue("The body ended before the capture", upload.isAlive());
+
+        pcmStream.write(chunk((byte) 2));
+        assertTrue(awaitSize(received, WavHeader.HEADER_SIZE + 2 * CHUNK_BYTES));
+        assertTrue(upload.isAlive());
+
+        pcmStream.close();
+        upload.join(5000);
+        assertFalse(upload.isAlive());
+        assertNull(failure.get());
+
+        byte[] body = received.toByteArray();
+        assertEquals(WavHeader.HEADER_SIZE + 2 * CHUNK_BYTES, body.length);
+        assertEquals("RIFF", new String(body, 0, 4, "US-ASCII"));
+        // The length is not known while streaming
+        assertEquals(WavHeader.UNKNOWN_SIZE, ByteBuffer.wrap(body, 40, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+        assertEquals(1, body[WavHeader.HEADER_SIZE]);
+        assertEquals(2, body[body.length - 1]);
+    }
+
+    @Test
+    public void abortedCapture_failsTheBody() throws Exception {
+        PcmStream pcmStream = new PcmStream(CHUNK_BYTES);
+        pcmStream.write(chunk((byte) 1));
+        pcmStream.abort();
+
+        try (BufferedSink sink = Okio.buffer(Okio.blackhole())) {
+            new StreamingWavRequestBody(pcmStream).writeTo(sink);
+            fail("Expected the aborted recording to fail the upload");
+        } catch (IOException expected) {
+            // The request is failed instead of sending a truncated recording
+        }
+    }
+
+    @Test
+    public void upload_usesChunkedTransferEncoding() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.enqueue(new MockResponse());
+        server.start();
+        try {
+            PcmStream pcmStream = new PcmStream(CHUNK_BYTES);
+            Thread capture = new Thread(() -> {
+                for (int i = 0; i < 5; i++) {
+                    pcmStream.write(chunk((byte) i));
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        pcmStream.abort();
+                        return;
+                    }
+                }
+                pcmStream.close();
+            });
+            capture.start();
+
+            Request request = new Request.Builder()
+                    .url(server.url("/predict"))
+                    .post(new StreamingWavRequestBody(pcmStream))
+                    .build();
+            new OkHttpClient().newCall(request).execute().close();
+            capture.join();
+
+            RecordedRequest recorded = server.takeRequest();
+            assertEquals("chunked", recorded.getHeader("Transfer-Encoding"));
+            assertEquals(WavHeader.HEADER_SIZE + 5 * CHUNK_BYTES, recorded.getBodySize());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static ByteBuffer chunk(byte value) {
+        byte[] pcm = new byte[CHUNK_BYTES];
+        Arrays.fill(pcm, value);
+        return ByteBuffer.wrap(pcm);
+    }
+
+    private static boolean awaitSize(ByteArrayOutputStream out, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (out.size() >= size) return out.size() == size;
+            Thread.sleep(5);
+        }
+        return false;
+    }
+}
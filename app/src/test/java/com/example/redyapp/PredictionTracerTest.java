@@ -0,0 +1,106 @@
+package com.example.redyapp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the stage breakdown, trace recycling and JSON export of PredictionTracer.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PredictionTracerTest {
+
+    private final PredictionTracer tracer = PredictionTracer.getInstance();
+
+    @Test
+    public void finishedTrace_exportsStagesAndRequestBuild() throws JSONException {
+        long id = tracer.begin(PredictionTracer.Source.RECORDING);
+        tracer.start(PredictionTracer.Stage.CAPTURE);
+        tracer.end(PredictionTracer.Stage.CAPTURE);
+        tracer.start(PredictionTracer.Stage.PREDICT);
+        int network = tracer.start(id, PredictionTracer.Stage.NETWORK);
+        int response = tracer.start(id, PredictionTracer.Stage.RESPONSE);
+        tracer.end(id, network);
+        tracer.end(id, response);
+        tracer.end(PredictionTracer.Stage.PREDICT);
+        int persist = tracer.start(id, PredictionTracer.Stage.PERSIST);
+        tracer.finish(id, PredictionTracer.Outcome.OK);
+        // Persisting continues after the result is shown
+        tracer.end(id, persist);
+
+        assertEquals(0, tracer.getActiveTraceId());
+        JSONObject trace = findTrace(id);
+        assertEquals("OK", trace.getString("outcome"));
+        assertEquals("RECORDING", trace.getString("source"));
+        assertTrue(trace.has("totalMs"));
+        JSONObject stages = trace.getJSONObject("stages");
+        for (String stage : new String[]{"CAPTURE", "PREDICT", "REQUEST_BUILD", "NETWORK", "RESPONSE", "PERSIST"}) {
+            assertTrue(stage, stages.getDouble(stage) >= 0);
+        }
+        assertFalse(stages.has("CONNECT"));
+        assertEquals(6, trace.getJSONArray("spans").length());
+    }
+
+    @Test
+    public void begin_abandonsUnfinishedTrace_andIgnoresItsLateSpans() throws JSONException {
+        long first = tracer.begin(PredictionTracer.Source.FILE);
+        int predict = tracer.start(first, PredictionTracer.Stage.PREDICT);
+        long second = tracer.begin(PredictionTracer.Source.RECORDING);
+
+        assertEquals(second, tracer.getActiveTraceId());
+        tracer.end(first, predict);
+        JSONObject trace = findTrace(first);
+        assertEquals("ABANDONED", trace.getString("outcome"));
+        // The open span was ended with the trace
+        assertTrue(trace.getJSONArray("spans").getJSONObject(0).has("durationMs"));
+        // Stages of the active trace no longer go to the first one
+        tracer.start(PredictionTracer.Stage.CAPTURE);
+        assertEquals(1, findTrace(first).getJSONArray("spans").length());
+        tracer.finish(PredictionTracer.Outcome.CANCELED);
+        assertEquals("CANCELED", findTrace(second).getString("outcome"));
+    }
+
+    @Test
+    public void ring_keepsOnlyRecentTraces() throws JSONException {
+        long oldest = tracer.begin(PredictionTracer.Source.RECORDING);
+        tracer.finish(PredictionTracer.Outcome.OK);
+        long last = oldest;
+        for (int i = 0; i < PredictionTracer.TRACE_CAPACITY; i++) {
+            last = tracer.begin(PredictionTracer.Source.RECORDING);
+            tracer.finish(PredictionTracer.Outcome.OK);
+        }
+
+        JSONArray traces = new JSONObject(tracer.exportJson()).getJSONArray("traces");
+        assertEquals(PredictionTracer.TRACE_CAPACITY, traces.length());
+        assertEquals(oldest + 1, traces.getJSONObject(0).getLong("id"));
+        assertEquals(last, traces.getJSONObject(traces.length() - 1).getLong("id"));
+        // The recycled trace takes no more spans
+        assertEquals(-1, tracer.start(oldest, PredictionTracer.Stage.PERSIST));
+    }
+
+    @Test
+    public void spansBeyondTheLimit_areCountedAsDropped() throws JSONException {
+        long id = tracer.begin(PredictionTracer.Source.RECORDING);
+        for (int i = 0; i < PredictionTracer.MAX_SPANS + 3; i++) {
+            tracer.record(id, PredictionTracer.Stage.CONNECT, 1, 2);
+        }
+        tracer.finish(id, PredictionTracer.Outcome.OK);
+
+        JSONObject trace = findTrace(id);
+        assertEquals(PredictionTracer.MAX_SPANS, trace.getJSONArray("spans").length());
+        assertEquals(3, trace.getInt("droppedSpans"));
+    }
+
+    private JSONObject findTrace(long id) throws JSONException {
+        JSONArray traces = new JSONObject(tracer.exportJson()).getJSONArray("traces");
+        for (int i = 0; i < traces.length(); i++) {
+            if (traces.getJSONObject(i).getLong("id") == id) return traces.getJSONObject(i);
+        }
+        throw new AssertionError("trace " + id + " not exported");
+    }
+}